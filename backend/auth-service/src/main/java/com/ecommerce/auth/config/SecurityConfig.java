@@ -2,6 +2,7 @@ package com.ecommerce.auth.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -28,6 +29,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Lot de fiches utilisateur : réservé aux appels de service (jeton rôle SERVICE)
+                        .requestMatchers(HttpMethod.POST, "/api/internal/users/batch").hasRole("SERVICE")
                         .requestMatchers(
                                 "/api/auth/login",
                                 "/api/auth/register",
@@ -7,9 +7,15 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -17,6 +23,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class InternalUserController {
 
+    // Taille max d'un lot (les appelants découpent au-delà)
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserRepository userRepository;
 
     @GetMapping("/{id}")
@@ -28,12 +37,40 @@ public class InternalUserController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Fiches de plusieurs utilisateurs en une requête ; les identifiants invalides ou inconnus sont ignorés.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getUsersByIds(@RequestBody List<String> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_BATCH_SIZE + " ids per request"));
+        }
+
+        Set<UUID> uuids = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id == null) {
+                continue;
+            }
+            try {
+                uuids.add(UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                // Identifiant invalide : ignoré
+            }
+        }
+
+        List<UserDto> users = userRepository.findAllById(uuids).stream()
+                .map(this::convertToDto)
+                .toList();
+        return ResponseEntity.ok(users);
+    }
+
     private UserDto convertToDto(User user) {
         return UserDto.builder()
                 .id(user.getId())
                 .email(user.getEmail())
                 .name(user.getName())
                 .role(user.getRole().name())
+                .phoneNumber(user.getPhoneNumber())
                 .build();
     }
 }
@@ -182,7 +182,7 @@ public class AuthService {
         return convertToUserDto(user);
     }
 
-    private final org.springframework.kafka.core.KafkaTemplate<String, Object> kafkaTemplate;
+    private final com.ecommerce.common.kafka.EventPublisher eventPublisher;
 
     @Transactional
     public void forgotPassword(String email) {
@@ -196,7 +196,7 @@ public class AuthService {
                 resetToken,
                 user.getName());
 
-        kafkaTemplate.send("password-reset-topic", event);
+        eventPublisher.publish("password-reset-topic", String.valueOf(user.getId()), event);
         log.info("Password reset requested for {}. Event published.", email);
     }
 
@@ -14,7 +14,7 @@ import org.testcontainers.utility.DockerImageName;
 public abstract class AbstractIntegrationTest {
 
     @org.springframework.boot.test.mock.mockito.MockBean
-    protected org.springframework.kafka.core.KafkaTemplate<String, Object> kafkaTemplate;
+    protected com.ecommerce.common.kafka.EventPublisher eventPublisher;
 
     static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:15"))
             .withDatabaseName("auth_db_test")
@@ -0,0 +1,82 @@
+package com.ecommerce.auth;
+
+import com.ecommerce.auth.entity.User;
+import com.ecommerce.auth.repository.UserRepository;
+import com.ecommerce.auth.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lot de fiches utilisateur (e-mails, téléphones) : réservé aux jetons de service.
+ */
+class InternalUserBatchIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String BATCH_URL = "/api/internal/users/batch";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        // Utilisateur propre au test : les conteneurs sont partagés entre les classes
+        user = userRepository.save(User.builder()
+                .email("batch-" + UUID.randomUUID() + "@example.com")
+                .name("Client Lot")
+                .phoneNumber("0600000000")
+                .role(User.Role.CUSTOMER)
+                .build());
+    }
+
+    @Test
+    void serviceTokenGetsTheRequestedUsers() {
+        ResponseEntity<List> response = post(jwtUtil.generateAccessToken(UUID.randomUUID(), "order-service", "SERVICE"),
+                List.of(user.getId().toString(), "pas-un-uuid", UUID.randomUUID().toString()), List.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        // Identifiants invalides ou inconnus ignorés
+        assertThat(response.getBody()).hasSize(1);
+        assertThat((Map<?, ?>) response.getBody().get(0)).containsEntry("email", user.getEmail());
+    }
+
+    @Test
+    void customerTokenIsForbidden() {
+        ResponseEntity<String> response = post(jwtUtil.generateAccessToken(user.getId(), user.getEmail(), "CUSTOMER"),
+                List.of(user.getId().toString()), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    @Test
+    void requestWithoutATokenIsRejected() {
+        ResponseEntity<String> response = restTemplate.postForEntity(BATCH_URL, List.of(user.getId().toString()), String.class);
+
+        assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+    }
+
+    private <T> ResponseEntity<T> post(String token, List<String> ids, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return restTemplate.exchange(BATCH_URL, HttpMethod.POST, new HttpEntity<>(ids, headers), responseType);
+    }
+}
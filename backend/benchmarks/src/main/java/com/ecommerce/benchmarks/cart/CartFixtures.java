@@ -0,0 +1,78 @@
+package com.ecommerce.benchmarks.cart;
+
+import com.ecommerce.cart.dto.ProductDto;
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.entity.PromoCode;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Paniers et produits de test, déterministes pour que deux exécutions mesurent la même chose.
+ */
+final class CartFixtures {
+
+    static final String PROMO_CODE = "BENCH10";
+
+    private CartFixtures() {
+    }
+
+    static Cart cart(String userId, int itemCount) {
+        List<CartItem> items = new ArrayList<>(itemCount);
+        for (long id = 1; id <= itemCount; id++) {
+            items.add(item(product(id), 1 + (int) (id % 3)));
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Cart cart = Cart.builder()
+                .userId(userId)
+                .items(items)
+                .promoCodes(new ArrayList<>(List.of(PROMO_CODE)))
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        cart.calculateTotal();
+        return cart;
+    }
+
+    static CartItem item(ProductDto product, int quantity) {
+        return CartItem.builder()
+                .productId(product.getId())
+                .categoryId(product.getCategoryId())
+                .productName(product.getName())
+                .price(product.getPrice())
+                .quantity(quantity)
+                .imageUrl(product.getImages().get(0))
+                .images(product.getImages())
+                .build();
+    }
+
+    static ProductDto product(long id) {
+        return ProductDto.builder()
+                .id(id)
+                .name("Product " + id)
+                .categoryId(id % 5)
+                .price(new BigDecimal(10 + id % 50 + ".99"))
+                .stockQuantity(1000)
+                .images(List.of("https://cdn.example.com/products/" + id + "/1.jpg",
+                        "https://cdn.example.com/products/" + id + "/2.jpg"))
+                .build();
+    }
+
+    // 10 % sur les catégories 1 et 2, plafonné, cumulable
+    static PromoCode promoCode() {
+        return PromoCode.builder()
+                .code(PROMO_CODE)
+                .discountPercent(new BigDecimal("10.00"))
+                .minAmount(new BigDecimal("5.00"))
+                .maxDiscount(new BigDecimal("500.00"))
+                .expiresAt(LocalDateTime.now().plusYears(1))
+                .active(true)
+                .categoryIds(Set.of(1L, 2L))
+                .stackable(true)
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.benchmarks.cart;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.PromoCode;
+import com.ecommerce.cart.promo.CompiledPromoRule;
+import com.ecommerce.cart.promo.PromoEvaluation;
+import com.ecommerce.cart.promo.PromoRuleSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcul des totaux d'un panier : méthodes historiques de l'entité (BigDecimal) et évaluation
+ * des codes promo compilés, telle que CartService la fait sur chaque panier retourné.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartPricingBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int items;
+
+    private Cart cart;
+    private PromoCode promoCode;
+    private PromoRuleSet rules;
+    private List<String> codes;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cart = CartFixtures.cart("bench-user", items);
+        promoCode = CartFixtures.promoCode();
+        rules = new PromoRuleSet(1, Map.of(CartFixtures.PROMO_CODE, CompiledPromoRule.compile(promoCode)));
+        codes = cart.getPromoCodes();
+        now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public Cart calculateTotal() {
+        cart.calculateTotal();
+        return cart;
+    }
+
+    @Benchmark
+    public Cart applyPromoCode() {
+        cart.applyPromoCode(promoCode);
+        return cart;
+    }
+
+    @Benchmark
+    public PromoEvaluation evaluatePromoRules() {
+        return rules.evaluate(codes, cart.getItems(), now);
+    }
+}
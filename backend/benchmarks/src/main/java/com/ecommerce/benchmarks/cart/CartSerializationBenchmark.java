@@ -0,0 +1,87 @@
+package com.ecommerce.benchmarks.cart;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartHashCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodage des paniers dans leur hash Redis (CartHashCodec, utilisé par CartRepository) :
+ * métadonnées écrites à chaque ligne ajoutée, relecture du hash (HGETALL) et de la réponse des scripts de mutation.
+ * Le hash est construit au format de cart-mutate.lua.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartSerializationBenchmark {
+
+    private static final String USER_ID = "bench-user";
+
+    @Param({"1", "10", "100", "1000"})
+    private int items;
+
+    private CartHashCodec codec;
+    private Cart cart;
+    private Map<Object, Object> hash;
+    private List<Object> scriptResult;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = new CartHashCodec();
+        cart = CartFixtures.cart(USER_ID, items);
+
+        hash = new HashMap<>();
+        long position = 0;
+        for (CartItem item : cart.getItems()) {
+            hash.put(CartHashCodec.ITEM_PREFIX + item.getProductId(), item.getQuantity() + "|"
+                    + CartHashCodec.toCents(item.getPrice()) + "|" + ++position + "|" + codec.metadata(item));
+        }
+        long createdAt = cart.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        hash.put(CartHashCodec.HEADER_FIELD, "{\"createdAt\":" + createdAt + ",\"updatedAt\":" + createdAt
+                + ",\"subtotal\":" + CartHashCodec.toCents(cart.getSubtotal())
+                + ",\"promoCodes\":\"" + String.join(",", cart.getPromoCodes()) + "\",\"seq\":" + position + "}");
+
+        scriptResult = new ArrayList<>();
+        scriptResult.add("OK");
+        hash.forEach((field, value) -> {
+            scriptResult.add(field);
+            scriptResult.add(value);
+        });
+
+        Cart decoded = codec.decode(USER_ID, hash);
+        if (!decoded.getItems().equals(cart.getItems()) || decoded.getSubtotal().compareTo(cart.getSubtotal()) != 0) {
+            throw new IllegalStateException("Cart hash round trip mismatch");
+        }
+    }
+
+    // Métadonnées de chaque ligne, telles qu'envoyées aux scripts (ajout, fusion, reprise)
+    @Benchmark
+    public void encodeLines(Blackhole blackhole) {
+        for (CartItem item : cart.getItems()) {
+            blackhole.consume(codec.metadata(item));
+        }
+    }
+
+    // CartRepository.find / findAll : HGETALL relu en panier
+    @Benchmark
+    public Cart decodeHash() {
+        return codec.decode(USER_ID, hash);
+    }
+
+    // Mutations : réponse du script (statut puis champs et valeurs)
+    @Benchmark
+    public Cart decodeScriptResult() {
+        return codec.decode(USER_ID, scriptResult);
+    }
+}
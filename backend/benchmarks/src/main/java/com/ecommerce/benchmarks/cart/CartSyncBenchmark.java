@@ -0,0 +1,123 @@
+package com.ecommerce.benchmarks.cart;
+
+import com.ecommerce.cart.client.ProductClient;
+import com.ecommerce.cart.client.ProductSnapshotCache;
+import com.ecommerce.cart.dto.ProductDto;
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.entity.PromoCode;
+import com.ecommerce.cart.promo.CompiledPromoRule;
+import com.ecommerce.cart.promo.PromoRuleEngine;
+import com.ecommerce.cart.promo.PromoRuleSet;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.cart.service.CartService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartService.getCart sans réseau : synchronisation du panier avec les fiches produits
+ * (syncCartWithProducts) puis calcul de la réduction. Redis et product-service sont simulés ;
+ * le cache des fiches est chaud, comme en régime établi.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartSyncBenchmark {
+
+    private static final String USER_ID = "bench-user";
+
+    @Param({"1", "10", "100", "1000"})
+    private int items;
+
+    private CartService cartService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Cart cart = CartFixtures.cart(USER_ID, items);
+        Map<Long, ProductDto> catalog = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            catalog.put(item.getProductId(), CartFixtures.product(item.getProductId()));
+        }
+
+        ProductSnapshotCache productSnapshotCache = new ProductSnapshotCache(new StubProductClient(catalog), 50_000, 600);
+        PromoRuleSet rules = new PromoRuleSet(1, Map.of(CartFixtures.PROMO_CODE, CompiledPromoRule.compile(CartFixtures.promoCode())));
+        cartService = new CartService(new StubCartRepository(cart), null, new StubPromoRuleEngine(rules), productSnapshotCache);
+
+        // Remplit le cache des fiches
+        cartService.getCart(USER_ID);
+    }
+
+    @Benchmark
+    public Cart getCart() {
+        return cartService.getCart(USER_ID);
+    }
+
+    private static class StubProductClient extends ProductClient {
+
+        private final Map<Long, ProductDto> catalog;
+
+        StubProductClient(Map<Long, ProductDto> catalog) {
+            super(null);
+            this.catalog = catalog;
+        }
+
+        @Override
+        public List<ProductDto> getProductsByIds(List<Long> ids) {
+            return ids.stream().map(catalog::get).toList();
+        }
+
+        @Override
+        public ProductDto getProductById(Long id) {
+            return catalog.get(id);
+        }
+    }
+
+    private static class StubCartRepository extends CartRepository {
+
+        private final Cart cart;
+
+        StubCartRepository(Cart cart) {
+            super(new StringRedisTemplate(), new RedisTemplate<>());
+            this.cart = cart;
+        }
+
+        @Override
+        public Cart find(String userId) {
+            return cart;
+        }
+
+        @Override
+        public Cart syncItem(String userId, CartItem item, int available) {
+            return cart;
+        }
+
+        @Override
+        public Cart removeItem(String userId, Long productId) {
+            return cart;
+        }
+    }
+
+    private static class StubPromoRuleEngine extends PromoRuleEngine {
+
+        private final PromoRuleSet rules;
+
+        StubPromoRuleEngine(PromoRuleSet rules) {
+            super(null, null);
+            this.rules = rules;
+        }
+
+        @Override
+        public PromoRuleSet current() {
+            return rules;
+        }
+    }
+}
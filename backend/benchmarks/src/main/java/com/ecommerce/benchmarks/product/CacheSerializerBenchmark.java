@@ -0,0 +1,80 @@
+package com.ecommerce.benchmarks.product;
+
+import com.ecommerce.product.config.RedisConfig;
+import com.ecommerce.product.dto.ProductDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aller-retour des valeurs des caches produits : JSON historique contre codec binaire de product-service.
+ * `products` = 1 : fiche produit (productDetails) ; au-delà : liste de résultats (searchResults, popularProducts).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "binary"})
+    private String format;
+
+    @Param({"1", "20"})
+    private int products;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GenericJackson2JsonRedisSerializer json = RedisConfig.jsonCacheSerializer();
+        serializer = "binary".equals(format) ? RedisConfig.binaryCacheSerializer(json) : json;
+
+        if (products == 1) {
+            value = product(42L);
+        } else {
+            List<ProductDto> listing = new ArrayList<>(products);
+            for (long id = 1; id <= products; id++) {
+                listing.add(product(id));
+            }
+            value = listing;
+        }
+
+        serialized = serializer.serialize(value);
+        if (!value.equals(serializer.deserialize(serialized))) {
+            throw new IllegalStateException("Cache value round trip mismatch (" + format + ")");
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+
+    private static ProductDto product(long id) {
+        return ProductDto.builder()
+                .id(id)
+                .name("Casque audio sans fil " + id)
+                .description("Réduction de bruit active, 30 h d'autonomie, charge rapide USB-C.")
+                .price(new BigDecimal("129.99"))
+                .stockQuantity(250)
+                .categoryId(3L)
+                .categoryName("Électronique")
+                .images(new ArrayList<>(List.of(
+                        "/api/files/products/" + id + "-front.jpg", "/api/files/products/" + id + "-side.jpg")))
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.ecommerce.cart.client;
+
+import com.ecommerce.cart.dto.ProductDto;
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copie locale des fiches produits utilisées par les paniers.
+ *
+ * Tenue à jour par les événements product-events : une mise à jour remplace l'instantané,
+ * un changement de stock ou une suppression l'invalide. En régime établi, la synchronisation
+ * d'un panier ne fait aucun appel à product-service ; seuls les produits absents sont chargés, par lot.
+ *
+ * Un chargement pose d'abord un marqueur par produit, et n'écrit sa valeur que si le marqueur est
+ * toujours là : un événement reçu entre-temps pour ce produit (qui remplace ou retire le marqueur)
+ * l'emporte sur la réponse, sans invalider les chargements des autres produits.
+ */
+@Component
+@Slf4j
+public class ProductSnapshotCache {
+
+    private final ProductClient productClient;
+    private final Cache<Long, Snapshot> snapshots;
+
+    public ProductSnapshotCache(ProductClient productClient,
+                                @Value("${product-snapshot.max-size:50000}") long maxSize,
+                                @Value("${product-snapshot.ttl-seconds:600}") long ttlSeconds) {
+        this.productClient = productClient;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public Map<Long, ProductDto> getProducts(List<Long> productIds) {
+        Map<Long, ProductDto> products = new HashMap<>();
+        Map<Long, Snapshot> loading = new HashMap<>();
+        for (Long productId : productIds) {
+            Snapshot snapshot = snapshots.getIfPresent(productId);
+            if (snapshot != null && snapshot.product() != null) {
+                products.put(productId, snapshot.product());
+            } else {
+                loading.put(productId, startLoading(productId));
+            }
+        }
+
+        if (!loading.isEmpty()) {
+            try {
+                List<ProductDto> loaded = productClient.getProductsByIds(List.copyOf(loading.keySet()));
+                for (ProductDto product : loaded) {
+                    products.put(product.getId(), product);
+                    finishLoading(product.getId(), loading.remove(product.getId()), product);
+                }
+            } finally {
+                // Produits absents de la réponse ou appel en échec : marqueurs retirés
+                loading.forEach((productId, placeholder) -> finishLoading(productId, placeholder, null));
+            }
+        }
+        return products;
+    }
+
+    public ProductDto getProduct(Long productId) {
+        Snapshot snapshot = snapshots.getIfPresent(productId);
+        if (snapshot != null && snapshot.product() != null) {
+            return snapshot.product();
+        }
+
+        Snapshot placeholder = startLoading(productId);
+        ProductDto product = null;
+        try {
+            product = productClient.getProductById(productId);
+        } finally {
+            finishLoading(productId, placeholder, product);
+        }
+        return product;
+    }
+
+    public void apply(ProductChangedEvent event) {
+        if (event.getProductId() == null) {
+            return;
+        }
+
+        // Remplace ou retire aussi le marqueur d'un chargement en cours, dont la réponse sera ignorée
+        if (!ProductChangedEvent.UPDATED.equals(event.getEventType())) {
+            snapshots.invalidate(event.getProductId());
+            return;
+        }
+
+        // Un événement plus ancien que l'instantané (livré en retard) est ignoré
+        snapshots.asMap().compute(event.getProductId(), (productId, current) -> {
+            if (current != null && current.version() > event.getVersion()) {
+                return current;
+            }
+            ProductDto product = ProductDto.builder()
+                    .id(productId)
+                    .name(event.getName())
+                    .price(event.getPrice())
+                    .stockQuantity(event.getStockQuantity())
+                    .categoryId(event.getCategoryId())
+                    .categoryName(event.getCategoryName())
+                    .images(event.getImages())
+                    .build();
+            return new Snapshot(product, event.getVersion());
+        });
+    }
+
+    // Marqueur du chargement (product null), celui d'un chargement concurrent du même produit,
+    // ou l'instantané arrivé entre-temps, que le chargement ne remplacera pas
+    private Snapshot startLoading(Long productId) {
+        return snapshots.asMap().compute(productId, (id, current) -> current != null ? current : new Snapshot(null, 0L));
+    }
+
+    // N'écrit la valeur chargée (null : retire le marqueur) que si aucun événement n'a remplacé le marqueur
+    private void finishLoading(Long productId, Snapshot placeholder, ProductDto product) {
+        if (placeholder == null || placeholder.product() != null) {
+            return;
+        }
+        snapshots.asMap().computeIfPresent(productId, (id, current) -> {
+            if (current != placeholder) {
+                return current;
+            }
+            return product != null ? new Snapshot(product, 0L) : null;
+        });
+    }
+
+    // product null : chargement en cours
+    private record Snapshot(ProductDto product, long version) {
+    }
+}
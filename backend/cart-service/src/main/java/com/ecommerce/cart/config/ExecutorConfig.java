@@ -0,0 +1,33 @@
+package com.ecommerce.cart.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Pool borné pour les appels de validation du stock en parallèle.
+     * Saturé, la soumission échoue aussitôt (RejectedExecutionException) : exécuter le lot dans le thread
+     * de la requête le ferait attendre au-delà du délai de validation, sans pouvoir l'interrompre.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService stockValidationExecutor(@Value("${checkout.validation.max-concurrency:16}") int maxConcurrency) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxConcurrency * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stock-validation-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
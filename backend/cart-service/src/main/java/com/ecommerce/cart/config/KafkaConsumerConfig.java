@@ -0,0 +1,62 @@
+package com.ecommerce.cart.config;
+
+import com.ecommerce.common.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Configuration
+@Slf4j
+public class KafkaConsumerConfig {
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Bean
+    public ConsumerFactory<String, ProductChangedEvent> productEventConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Chaque réplica tient sa propre copie : un groupe par instance, qui reçoit tous les événements.
+        // Démarrage à "latest" : la copie part vide et se remplit à la demande
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "cart-service-products-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        JsonDeserializer<ProductChangedEvent> deserializer = new JsonDeserializer<>(ProductChangedEvent.class);
+        deserializer.addTrustedPackages("com.ecommerce.common.event");
+        deserializer.setUseTypeHeaders(false);
+
+        return new DefaultKafkaConsumerFactory<>(
+                props,
+                new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(deserializer));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ProductChangedEvent> productEventKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ProductChangedEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(productEventConsumerFactory());
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
+                (consumerRecord, exception) -> log.error("Product event skipped: {}", exception.getMessage()),
+                new FixedBackOff(0L, 0L));
+        errorHandler.addNotRetryableExceptions(org.apache.kafka.common.errors.SerializationException.class);
+        factory.setCommonErrorHandler(errorHandler);
+
+        return factory;
+    }
+}
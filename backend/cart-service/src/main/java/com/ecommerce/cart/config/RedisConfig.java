@@ -1,6 +1,7 @@
 package com.ecommerce.cart.config;
 
 import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.promo.PromoRuleEngine;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -8,6 +9,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -19,6 +22,21 @@ public class RedisConfig {
         RedisTemplate<String, Cart> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
+        GenericJackson2JsonRedisSerializer serializer = cartSerializer();
+
+        // Key serializer (String)
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+
+        // Value serializer (JSON)
+        template.setValueSerializer(serializer);
+        template.setHashValueSerializer(serializer);
+
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private static GenericJackson2JsonRedisSerializer cartSerializer() {
         // Configure ObjectMapper for LocalDateTime AND type information
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -32,17 +50,17 @@ public class RedisConfig {
                 com.fasterxml.jackson.annotation.JsonTypeInfo.As.PROPERTY);
 
         // Use Generic serializer which is more robust
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
-
-        // Key serializer (String)
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setHashKeySerializer(new StringRedisSerializer());
-
-        // Value serializer (JSON)
-        template.setValueSerializer(serializer);
-        template.setHashValueSerializer(serializer);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
 
-        template.afterPropertiesSet();
-        return template;
+    @Bean
+    public RedisMessageListenerContainer promoRulesListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            PromoRuleEngine promoRuleEngine) {
+        // Rechargement des codes promo en mémoire quand un autre réplica les modifie
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(promoRuleEngine, new ChannelTopic(PromoRuleEngine.CHANNEL));
+        return container;
     }
 }
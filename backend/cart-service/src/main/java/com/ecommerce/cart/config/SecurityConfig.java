@@ -44,6 +44,9 @@ public class SecurityConfig {
                                                 .requestMatchers(HttpMethod.DELETE, "/api/cart/promo-codes/**")
                                                 .authenticated()
 
+                                                // Guest carts (session anonyme, en-tête X-Cart-Session)
+                                                .requestMatchers("/api/cart/guest", "/api/cart/guest/**").permitAll()
+
                                                 // Cart endpoints require authentication
                                                 .requestMatchers("/api/cart/**").authenticated()
 
@@ -7,6 +7,8 @@ import com.ecommerce.cart.dto.DirectCheckoutRequest;
 import com.ecommerce.cart.entity.Cart;
 import com.ecommerce.cart.service.CartService;
 import com.ecommerce.cart.dto.CheckoutRequest;
+import com.ecommerce.cart.saga.CheckoutPendingException;
+import com.ecommerce.cart.service.CheckoutIdempotencyService;
 import com.ecommerce.cart.service.CheckoutService;
 import org.springframework.web.bind.annotation.RequestHeader;
 
@@ -19,6 +21,7 @@ import org.springframework.http.HttpStatus;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -28,6 +31,7 @@ public class CartController {
 
     private final CartService cartService;
     private final CheckoutService checkoutService;
+    private final CheckoutIdempotencyService checkoutIdempotencyService;
 
     @GetMapping
     public ResponseEntity<Cart> getCart(Authentication authentication) {
@@ -72,6 +76,24 @@ public class CartController {
         return ResponseEntity.ok(cart);
     }
 
+    /**
+     * À la connexion : le panier invité de la session rejoint celui de l'utilisateur en une seule opération.
+     */
+    @PostMapping("/merge")
+    public ResponseEntity<?> mergeGuestCart(
+            Authentication authentication,
+            @RequestHeader(GuestCartController.SESSION_HEADER) String sessionId) {
+        String userId = authentication.getName();
+        log.info("Merging guest cart into cart of user: {}", userId);
+
+        try {
+            return ResponseEntity.ok(cartService.mergeGuestCart(userId, sessionId));
+        } catch (IllegalArgumentException e) {
+            log.warn("❌ Guest cart merge error: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cart session"));
+        }
+    }
+
     @PostMapping("/promo")
     public ResponseEntity<?> applyPromoCode(
             Authentication authentication,
@@ -104,11 +126,19 @@ public class CartController {
     public ResponseEntity<?> checkout(
             Authentication authentication,
             @RequestHeader("Authorization") String authorizationHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody CheckoutRequest request) {
 
         String userId = authentication.getName();
         log.info("🛍️ Checkout initiated for user: {}", userId);
 
+        // Un retry (client ou load balancer) avec la même clé rejoue la première réponse
+        return checkoutIdempotencyService.execute(userId, idempotencyKey, "checkout", request,
+                sagaId -> processCheckout(userId, authorizationHeader, request, sagaId));
+    }
+
+    private ResponseEntity<?> processCheckout(String userId, String authorizationHeader, CheckoutRequest request,
+                                              String sagaId) {
         try {
             // Extract JWT token
             String jwtToken = authorizationHeader.replace("Bearer ", "");
@@ -127,15 +157,21 @@ public class CartController {
             }
 
             // Process checkout
-            Map<String, Object> response = checkoutService.checkout(userId, request, jwtToken);
+            Map<String, Object> response = checkoutService.checkout(userId, request, jwtToken, sagaId);
 
             return ResponseEntity.ok(response);
 
+        } catch (CheckoutPendingException e) {
+            return pending(e);
         } catch (IllegalArgumentException e) {
             log.warn("❌ Checkout validation error: {}", e.getMessage());
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(errorResponse);
+        } catch (RejectedExecutionException e) {
+            log.warn("❌ Checkout rejected, stock validation pool saturated");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Checkout temporarily unavailable, please retry"));
         } catch (Exception e) {
             log.error("❌ Checkout failed: {}", e.getMessage());
             Map<String, Object> errorResponse = new HashMap<>();
@@ -148,11 +184,18 @@ public class CartController {
     public ResponseEntity<?> checkoutDirect(
             Authentication authentication,
             @RequestHeader("Authorization") String authorizationHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody DirectCheckoutRequest request) {
 
         String userId = authentication.getName();
         log.info("🚀 Direct Checkout initiated for user: {}", userId);
 
+        return checkoutIdempotencyService.execute(userId, idempotencyKey, "checkout-direct", request,
+                sagaId -> processCheckoutDirect(userId, authorizationHeader, request, sagaId));
+    }
+
+    private ResponseEntity<?> processCheckoutDirect(String userId, String authorizationHeader, DirectCheckoutRequest request,
+                                                    String sagaId) {
         try {
             String jwtToken = authorizationHeader.replace("Bearer ", "");
 
@@ -163,12 +206,18 @@ public class CartController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Product ID and Quantity are required"));
             }
 
-            Map<String, Object> response = checkoutService.checkoutDirect(userId, request, jwtToken);
+            Map<String, Object> response = checkoutService.checkoutDirect(userId, request, jwtToken, sagaId);
             return ResponseEntity.ok(response);
 
+        } catch (CheckoutPendingException e) {
+            return pending(e);
         } catch (IllegalArgumentException e) {
             log.warn("❌ Direct Checkout validation error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            log.warn("❌ Direct Checkout rejected, stock validation pool saturated");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Checkout temporarily unavailable, please retry"));
         } catch (Exception e) {
             log.error("❌ Direct Checkout failed: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -176,6 +225,17 @@ public class CartController {
         }
     }
 
+    // Commande créée, stock pas encore validé : le client rejoue la même Idempotency-Key pour connaître l'issue
+    private ResponseEntity<?> pending(CheckoutPendingException e) {
+        log.warn("⏳ Checkout {} accepted, stock confirmation pending", e.getSagaId());
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("pending", true);
+        response.put("message", "Order created, stock confirmation pending");
+        response.put("order", e.getOrder());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
     @DeleteMapping
     public ResponseEntity<Void> clearCart(Authentication authentication) {
         String userId = authentication.getName();
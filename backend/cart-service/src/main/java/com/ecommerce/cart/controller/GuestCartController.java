@@ -0,0 +1,78 @@
+package com.ecommerce.cart.controller;
+
+import com.ecommerce.cart.dto.AddToCartRequest;
+import com.ecommerce.cart.dto.UpdateCartItemRequest;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.cart.service.CartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Panier anonyme d'une session, identifiée par l'en-tête X-Cart-Session (UUID généré par le client).
+ * Fusionné dans le panier de l'utilisateur à la connexion (POST /api/cart/merge).
+ */
+@RestController
+@RequestMapping("/api/cart/guest")
+@RequiredArgsConstructor
+@Slf4j
+public class GuestCartController {
+
+    public static final String SESSION_HEADER = "X-Cart-Session";
+
+    private final CartService cartService;
+
+    @GetMapping
+    public ResponseEntity<?> getCart(@RequestHeader(SESSION_HEADER) String sessionId) {
+        return withGuestCart(sessionId, cartService::getCart);
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<?> addItem(
+            @RequestHeader(SESSION_HEADER) String sessionId,
+            @RequestBody AddToCartRequest request) {
+        return withGuestCart(sessionId, cartId -> cartService.addItem(cartId, request));
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<?> updateItem(
+            @RequestHeader(SESSION_HEADER) String sessionId,
+            @PathVariable Long productId,
+            @RequestBody UpdateCartItemRequest request) {
+        return withGuestCart(sessionId, cartId -> cartService.updateItemQuantity(cartId, productId, request.getQuantity()));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<?> removeItem(
+            @RequestHeader(SESSION_HEADER) String sessionId,
+            @PathVariable Long productId) {
+        return withGuestCart(sessionId, cartId -> cartService.removeItem(cartId, productId));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> clearCart(@RequestHeader(SESSION_HEADER) String sessionId) {
+        String cartId;
+        try {
+            cartId = CartRepository.guestCartId(sessionId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cart session"));
+        }
+        cartService.deleteCart(cartId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<?> withGuestCart(String sessionId, Function<String, Object> operation) {
+        String cartId;
+        try {
+            cartId = CartRepository.guestCartId(sessionId);
+        } catch (IllegalArgumentException e) {
+            log.warn("❌ Invalid guest cart session: {}", sessionId);
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cart session"));
+        }
+        return ResponseEntity.ok(operation.apply(cartId));
+    }
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
 @Builder
@@ -19,5 +20,8 @@ public class CreatePromoCodeRequest {
     private LocalDateTime expiresAt;
     private BigDecimal minAmount;
     private BigDecimal maxDiscount;
+    private Set<Long> categoryIds;
+    private Integer maxUsesPerUser;
+    private Boolean stackable;
 }
 
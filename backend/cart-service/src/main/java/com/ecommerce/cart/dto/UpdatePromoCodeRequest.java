@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
 @Builder
@@ -18,6 +19,9 @@ public class UpdatePromoCodeRequest {
     private LocalDateTime expiresAt;
     private BigDecimal minAmount;
     private BigDecimal maxDiscount;
+    private Set<Long> categoryIds;
+    private Integer maxUsesPerUser;
+    private Boolean stackable;
     private Boolean active;
 }
 
@@ -33,7 +33,9 @@ public class Cart implements Serializable {
     private BigDecimal totalAmount; // Total après réduction
 
     // Promo Code fields
-    private String promoCode;
+    private String promoCode; // Codes appliqués, séparés par des virgules s'ils sont cumulés
+    @Builder.Default
+    private List<String> promoCodes = new ArrayList<>();
     private BigDecimal discount;
     // Added fields for recalculation
     private BigDecimal promoDiscountPercent;
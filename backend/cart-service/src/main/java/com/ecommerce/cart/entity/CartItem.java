@@ -15,6 +15,7 @@ import java.math.BigDecimal;
 public class CartItem implements Serializable {
     
     private Long productId;
+    private Long categoryId; // Pour les codes promo limités à une catégorie
     private String productName;
     private BigDecimal price;
     private Integer quantity;
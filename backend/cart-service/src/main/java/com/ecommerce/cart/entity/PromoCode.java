@@ -12,6 +12,7 @@ import org.springframework.data.redis.core.TimeToLive;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
 @Builder
@@ -29,6 +30,11 @@ public class PromoCode implements Serializable {
     private BigDecimal minAmount; // Montant minimum
     private BigDecimal maxDiscount; // Réduction maximale
     private Boolean active; // Active/Inactive
+
+    // Règles avancées (optionnelles)
+    private Set<Long> categoryIds; // Réduction limitée aux articles de ces catégories (null : tout le panier)
+    private Integer maxUsesPerUser; // Nombre de commandes par utilisateur (null : illimité)
+    private Boolean stackable; // Cumulable avec d'autres codes cumulables
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
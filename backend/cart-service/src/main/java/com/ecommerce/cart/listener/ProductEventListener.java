@@ -0,0 +1,22 @@
+package com.ecommerce.cart.listener;
+
+import com.ecommerce.cart.client.ProductSnapshotCache;
+import com.ecommerce.common.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductEventListener {
+
+    private final ProductSnapshotCache productSnapshotCache;
+
+    @KafkaListener(topics = "product-events", containerFactory = "productEventKafkaListenerContainerFactory")
+    public void handleProductEvent(ProductChangedEvent event) {
+        log.debug("Product event {} for product {}", event.getEventType(), event.getProductId());
+        productSnapshotCache.apply(event);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.cart.promo;
+
+import com.ecommerce.cart.entity.PromoCode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+
+/**
+ * Code promo précompilé pour l'évaluation : montants en centimes, pourcentage en points de base,
+ * expiration en epoch ms. Immuable, partagé entre threads.
+ */
+public record CompiledPromoRule(
+        String code,
+        long basisPoints,
+        Long minCents,
+        Long maxDiscountCents,
+        long expiresAtMillis,
+        boolean active,
+        Set<Long> categoryIds,
+        Integer maxUsesPerUser,
+        boolean stackable,
+        PromoCode source) {
+
+    public static CompiledPromoRule compile(PromoCode promo) {
+        return new CompiledPromoRule(
+                promo.getCode(),
+                promo.getDiscountPercent() != null
+                        ? promo.getDiscountPercent().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact()
+                        : 0,
+                promo.getMinAmount() != null ? toCents(promo.getMinAmount()) : null,
+                promo.getMaxDiscount() != null ? toCents(promo.getMaxDiscount()) : null,
+                toMillis(promo.getExpiresAt()),
+                Boolean.TRUE.equals(promo.getActive()),
+                promo.getCategoryIds() != null && !promo.getCategoryIds().isEmpty() ? Set.copyOf(promo.getCategoryIds()) : null,
+                promo.getMaxUsesPerUser(),
+                Boolean.TRUE.equals(promo.getStackable()),
+                promo);
+    }
+
+    // Même règle que PromoCode.isValid
+    public boolean isValidAt(long nowMillis) {
+        return active && expiresAtMillis > nowMillis;
+    }
+
+    public boolean appliesTo(Long categoryId) {
+        return categoryIds == null || (categoryId != null && categoryIds.contains(categoryId));
+    }
+
+    /**
+     * Réduction sur le montant éligible, arrondi HALF_UP au centime, plafonnée.
+     * Le minimum de commande porte sur le sous-total du panier.
+     */
+    long discount(long subtotalCents, long eligibleCents) {
+        if (minCents != null && subtotalCents < minCents) {
+            return 0;
+        }
+        long discount = (eligibleCents * basisPoints + 5000) / 10000;
+        return maxDiscountCents != null ? Math.min(discount, maxDiscountCents) : discount;
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+}
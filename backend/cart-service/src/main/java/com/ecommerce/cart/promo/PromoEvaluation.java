@@ -0,0 +1,12 @@
+package com.ecommerce.cart.promo;
+
+import java.util.List;
+
+/**
+ * Résultat de l'évaluation des codes d'un panier : réduction totale et codes effectivement retenus
+ * (un code expiré, désactivé ou supprimé depuis son application ne compte plus).
+ */
+public record PromoEvaluation(long discountCents, List<CompiledPromoRule> appliedRules) {
+
+    public static final PromoEvaluation NONE = new PromoEvaluation(0, List.of());
+}
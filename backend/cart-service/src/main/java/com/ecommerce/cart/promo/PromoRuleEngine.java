@@ -0,0 +1,99 @@
+package com.ecommerce.cart.promo;
+
+import com.ecommerce.cart.entity.PromoCode;
+import com.ecommerce.cart.repository.PromoCodeRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codes promo chargés en mémoire et compilés : valider un code ou évaluer un panier ne touche pas Redis.
+ *
+ * Chargés au démarrage. Chaque écriture incrémente une version dans Redis et la publie ; tous les réplicas
+ * rechargent alors l'ensemble (quelques dizaines de codes). Une vérification périodique de la version
+ * rattrape un message perdu, ou un chargement initial échoué. Les lectures ne rechargent jamais.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PromoRuleEngine implements MessageListener {
+
+    public static final String CHANNEL = "cart-service:promo-rules";
+    private static final String VERSION_KEY = "promo:rules:version";
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile PromoRuleSet rules = PromoRuleSet.EMPTY;
+
+    // Chargement initial ; s'il échoue, l'instantané vide (version -1) est rechargé par refreshIfStale
+    @PostConstruct
+    void load() {
+        reload();
+    }
+
+    public PromoRuleSet current() {
+        return rules;
+    }
+
+    /**
+     * À appeler après chaque écriture d'un code promo.
+     */
+    public void changed() {
+        try {
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+            stringRedisTemplate.convertAndSend(CHANNEL, "changed");
+        } catch (Exception e) {
+            // La vérification périodique de la version propagera le changement
+            log.warn("Could not publish promo rules change: {}", e.getMessage());
+        }
+        reload();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${promo.rules.refresh-interval-ms:30000}")
+    public void refreshIfStale() {
+        try {
+            if (readVersion() != rules.version()) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Could not check promo rules version: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void reload() {
+        try {
+            // Version lue avant les codes : une écriture concurrente redéclenchera un rechargement
+            long version = readVersion();
+            Map<String, CompiledPromoRule> compiled = new HashMap<>();
+            for (PromoCode promo : promoCodeRepository.findAll()) {
+                if (promo != null && promo.getCode() != null) {
+                    compiled.put(promo.getCode().toUpperCase(), CompiledPromoRule.compile(promo));
+                }
+            }
+            rules = new PromoRuleSet(version, Map.copyOf(compiled));
+            log.info("🏷️ Promo rules loaded: {} codes (version {})", compiled.size(), version);
+        } catch (Exception e) {
+            // On garde l'instantané précédent
+            log.error("Failed to load promo rules: {}", e.getMessage());
+        }
+    }
+
+    private long readVersion() {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return version != null ? Long.parseLong(version) : 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.cart.promo;
+
+import com.ecommerce.cart.entity.CartItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instantané immuable et versionné des codes promo. Remplacé d'un bloc à chaque changement :
+ * les évaluations en cours gardent une vue cohérente sans verrou.
+ */
+public record PromoRuleSet(long version, Map<String, CompiledPromoRule> rules) {
+
+    public static final PromoRuleSet EMPTY = new PromoRuleSet(-1, Map.of());
+
+    public CompiledPromoRule rule(String code) {
+        return code != null ? rules.get(code.toUpperCase()) : null;
+    }
+
+    public Collection<CompiledPromoRule> all() {
+        return rules.values();
+    }
+
+    /**
+     * Évalue les codes d'un panier, dans leur ordre d'application. Les réductions des codes cumulés
+     * s'additionnent, sans dépasser le sous-total ; sans code cumulable, seul le dernier code compte.
+     */
+    public PromoEvaluation evaluate(List<String> codes, List<CartItem> items, long nowMillis) {
+        if (codes == null || codes.isEmpty() || items == null || items.isEmpty()) {
+            return PromoEvaluation.NONE;
+        }
+
+        List<CompiledPromoRule> valid = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            CompiledPromoRule rule = rule(code);
+            if (rule != null && rule.isValidAt(nowMillis)) {
+                valid.add(rule);
+            }
+        }
+        if (valid.isEmpty()) {
+            return PromoEvaluation.NONE;
+        }
+        if (valid.size() > 1 && !valid.stream().allMatch(CompiledPromoRule::stackable)) {
+            valid = List.of(valid.get(valid.size() - 1));
+        }
+
+        long subtotal = 0;
+        long[] lineTotals = new long[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            lineTotals[i] = CompiledPromoRule.toCents(item.getPrice()) * item.getQuantity();
+            subtotal += lineTotals[i];
+        }
+
+        long discount = 0;
+        List<CompiledPromoRule> applied = new ArrayList<>(valid.size());
+        for (CompiledPromoRule rule : valid) {
+            long eligible = subtotal;
+            if (rule.categoryIds() != null) {
+                eligible = 0;
+                for (int i = 0; i < items.size(); i++) {
+                    if (rule.appliesTo(items.get(i).getCategoryId())) {
+                        eligible += lineTotals[i];
+                    }
+                }
+            }
+            discount += rule.discount(subtotal, eligible);
+            applied.add(rule);
+        }
+        return new PromoEvaluation(Math.min(discount, subtotal), applied);
+    }
+}
@@ -0,0 +1,154 @@
+package com.ecommerce.cart.repository;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodage d'un panier dans son hash Redis, côté Java : métadonnées des lignes écrites par les scripts,
+ * et relecture du hash (ou de la réponse d'un script) en {@link Cart}.
+ *
+ * Ligne (champ "item:<productId>") : "<quantité>|<prix unitaire en centimes>|<position>|<json des métadonnées>"
+ * En-tête (champ "header") : JSON, montants en centimes. Le format est écrit par cart-mutate.lua.
+ */
+@Slf4j
+public final class CartHashCodec {
+
+    public static final String HEADER_FIELD = "header";
+    public static final String ITEM_PREFIX = "item:";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Réponse d'un script : statut puis HGETALL (champ, valeur, champ, valeur...)
+    public Cart decode(String userId, List<?> result) {
+        Map<Object, Object> fields = new HashMap<>();
+        for (int i = 1; i + 1 < result.size(); i += 2) {
+            fields.put(result.get(i), result.get(i + 1));
+        }
+        return decode(userId, fields);
+    }
+
+    public Cart decode(String userId, Map<Object, Object> fields) {
+        CartHeader header = readJson((String) fields.get(HEADER_FIELD), CartHeader.class);
+        if (header == null) {
+            header = new CartHeader();
+        }
+
+        List<PositionedItem> lines = new ArrayList<>();
+        for (Map.Entry<Object, Object> field : fields.entrySet()) {
+            String name = (String) field.getKey();
+            if (name.startsWith(ITEM_PREFIX)) {
+                lines.add(parseLine(Long.valueOf(name.substring(ITEM_PREFIX.length())), (String) field.getValue()));
+            }
+        }
+        lines.sort(Comparator.comparingLong(PositionedItem::position));
+
+        // Ancien en-tête : un seul code, dans promoCode
+        String codes = header.promoCodes != null ? header.promoCodes : header.promoCode;
+        return Cart.builder()
+                .userId(userId)
+                .items(new ArrayList<>(lines.stream().map(PositionedItem::item).toList()))
+                .subtotal(fromCents(header.subtotal))
+                .totalAmount(fromCents(header.subtotal))
+                .promoCodes(codes != null && !codes.isEmpty() ? new ArrayList<>(List.of(codes.split(","))) : new ArrayList<>())
+                .createdAt(toDateTime(header.createdAt))
+                .updatedAt(toDateTime(header.updatedAt))
+                .build();
+    }
+
+    /**
+     * Métadonnées d'une ligne (nom, catégorie, images), passées telles quelles aux scripts.
+     */
+    public String metadata(CartItem item) {
+        LineMetadata metadata = new LineMetadata();
+        metadata.productName = item.getProductName();
+        metadata.categoryId = item.getCategoryId();
+        metadata.imageUrl = item.getImageUrl();
+        metadata.images = item.getImages();
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cart item " + item.getProductId(), e);
+        }
+    }
+
+    // Dernière modification lue dans l'en-tête (epoch ms), null si absente ou illisible
+    Long updatedAt(String header) {
+        CartHeader parsed = readJson(header, CartHeader.class);
+        return parsed != null ? parsed.updatedAt : null;
+    }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private PositionedItem parseLine(Long productId, String value) {
+        String[] parts = value.split("\\|", 4);
+        LineMetadata metadata = readJson(parts[3], LineMetadata.class);
+        CartItem item = CartItem.builder()
+                .productId(productId)
+                .categoryId(metadata != null ? metadata.categoryId : null)
+                .quantity(Integer.valueOf(parts[0]))
+                .price(fromCents(Long.parseLong(parts[1])))
+                .productName(metadata != null ? metadata.productName : null)
+                .imageUrl(metadata != null ? metadata.imageUrl : null)
+                .images(metadata != null ? metadata.images : null)
+                .build();
+        return new PositionedItem(Long.parseLong(parts[2]), item);
+    }
+
+    private <T> T readJson(String json, Class<T> type) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable cart field: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static LocalDateTime toDateTime(Long epochMillis) {
+        return epochMillis != null ? LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()) : null;
+    }
+
+    private record PositionedItem(long position, CartItem item) {
+    }
+
+    // En-tête écrit par le script (montants en centimes)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class CartHeader {
+        public Long createdAt;
+        public Long updatedAt;
+        public long subtotal;
+        public String promoCodes;
+        public String promoCode; // Ancien format
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class LineMetadata {
+        public String productName;
+        public Long categoryId;
+        public String imageUrl;
+        public List<String> images;
+    }
+}
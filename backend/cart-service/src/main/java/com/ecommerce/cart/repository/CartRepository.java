@@ -0,0 +1,322 @@
+package com.ecommerce.cart.repository;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stockage des paniers en hash Redis : un champ par ligne ("item:<productId>") et un champ d'en-tête.
+ *
+ * Chaque mutation est un script Lua qui ne réécrit que la ligne touchée et l'en-tête, et recalcule
+ * le sous-total côté serveur : deux onglets qui modifient le même panier ne s'écrasent plus.
+ * Les montants sont stockés en centimes pour que le script calcule en entiers. Seuls les codes promo
+ * appliqués sont stockés : la réduction est évaluée par CartService (PromoRuleEngine).
+ *
+ * Le script tient aussi un index d'activité (sorted set userId → dernière modification) qui permet
+ * de retrouver les paniers inactifs sans parcourir les clés.
+ *
+ * Les paniers invités sont des paniers comme les autres, identifiés par "guest:<sessionId>".
+ *
+ * Reprise de l'ancien format (JSON sous cart:<userId>) : au premier accès, en un seul script
+ * (cart-migrate.lua). Déploiement : remplacer tous les réplicas d'un coup (docker compose up recrée
+ * le conteneur). Un ancien réplica encore actif lit et écrit cart:<userId> : il voit un panier vide
+ * pour les paniers déjà repris, et ses écritures sont fusionnées dans le hash au prochain accès.
+ */
+@Repository
+@Slf4j
+public class CartRepository {
+
+    public static final String GUEST_PREFIX = "guest:";
+    private static final String KEY_PREFIX = "cart:v2:";
+    // Ancien format : le panier entier sérialisé en JSON sous une seule clé
+    private static final String LEGACY_KEY_PREFIX = "cart:";
+    private static final String ACTIVITY_KEY = "cart:activity";
+    private static final long TTL_SECONDS = 7 * 24 * 3600;
+    private static final int MIGRATION_ATTEMPTS = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MUTATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cart-mutate.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MERGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cart-merge.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MIGRATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cart-migrate.lua"), List.class);
+    private static final RedisScript<Long> ACTIVITY_RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cart-activity-release.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, Cart> legacyTemplate;
+    private final CartHashCodec codec = new CartHashCodec();
+
+    public CartRepository(StringRedisTemplate stringRedisTemplate, RedisTemplate<String, Cart> redisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.legacyTemplate = redisTemplate;
+    }
+
+    /**
+     * Panier de l'utilisateur, ou null s'il n'en a pas.
+     */
+    public Cart find(String userId) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGetAll((KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+            connection.keyCommands().exists((LEGACY_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        if (Boolean.TRUE.equals(results.get(1))) {
+            return migrateLegacy(userId);
+        }
+        if (results.get(0) instanceof Map<?, ?> fields && !fields.isEmpty()) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> hash = (Map<Object, Object>) fields;
+            return codec.decode(userId, hash);
+        }
+        return null;
+    }
+
+    public Cart create(String userId) {
+        return mutate(userId, "touch");
+    }
+
+    public Cart addItem(String userId, CartItem item) {
+        return mutate(userId, "add", String.valueOf(item.getProductId()), String.valueOf(item.getQuantity()),
+                String.valueOf(CartHashCodec.toCents(item.getPrice())), codec.metadata(item));
+    }
+
+    public Cart updateQuantity(String userId, Long productId, int quantity) {
+        return mutate(userId, "set", String.valueOf(productId), String.valueOf(quantity));
+    }
+
+    /**
+     * Remplace nom, prix et images d'une ligne existante et plafonne sa quantité actuelle à {@code available}
+     * (stock à 0 : suppression). La quantité de {@code item} est ignorée.
+     */
+    public Cart syncItem(String userId, CartItem item, int available) {
+        return mutate(userId, "sync", String.valueOf(item.getProductId()), String.valueOf(available),
+                String.valueOf(CartHashCodec.toCents(item.getPrice())), codec.metadata(item));
+    }
+
+    public Cart removeItem(String userId, Long productId) {
+        return mutate(userId, "remove", String.valueOf(productId));
+    }
+
+    public Cart clear(String userId) {
+        return mutate(userId, "clear");
+    }
+
+    /**
+     * Remplace les codes promo appliqués (liste vide : aucun code).
+     */
+    public Cart setPromoCodes(String userId, List<String> codes) {
+        return mutate(userId, "promos", String.join(",", codes));
+    }
+
+    public void delete(String userId) {
+        stringRedisTemplate.delete(List.of(KEY_PREFIX + userId, LEGACY_KEY_PREFIX + userId));
+        stringRedisTemplate.opsForZSet().remove(ACTIVITY_KEY, userId);
+    }
+
+    /**
+     * Identifiant du panier invité d'une session (UUID généré par le client).
+     * IllegalArgumentException si l'identifiant de session n'est pas un UUID.
+     */
+    public static String guestCartId(String sessionId) {
+        return GUEST_PREFIX + UUID.fromString(sessionId);
+    }
+
+    public static boolean isGuest(String cartId) {
+        return cartId.startsWith(GUEST_PREFIX);
+    }
+
+    /**
+     * Fusionne un panier invité dans celui de l'utilisateur en un seul script : quantités additionnées,
+     * lignes revalidées avec {@code lines}, panier invité supprimé. Le panier utilisateur doit déjà être au format hash.
+     */
+    public Cart merge(String userId, String guestCartId, List<MergeLine> lines) {
+        List<String> argv = new ArrayList<>(3 + lines.size() * 4);
+        argv.add(String.valueOf(System.currentTimeMillis()));
+        argv.add(String.valueOf(TTL_SECONDS));
+        argv.add(userId);
+        for (MergeLine line : lines) {
+            argv.add(String.valueOf(line.productId()));
+            argv.add(line.item() != null ? String.valueOf(CartHashCodec.toCents(line.item().getPrice())) : "-1");
+            argv.add(String.valueOf(line.available()));
+            argv.add(line.item() != null ? codec.metadata(line.item()) : "");
+        }
+
+        List<?> result = stringRedisTemplate.execute(MERGE_SCRIPT,
+                List.of(KEY_PREFIX + userId, KEY_PREFIX + guestCartId, ACTIVITY_KEY), argv.toArray());
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Cart merge failed for user " + userId);
+        }
+        return codec.decode(userId, result);
+    }
+
+    /**
+     * Paniers non modifiés depuis {@code before} (epoch ms), les plus anciens d'abord, avec leur dernière activité.
+     */
+    public Set<TypedTuple<String>> findIdle(long before, int limit) {
+        Set<TypedTuple<String>> idle = stringRedisTemplate.opsForZSet().rangeByScoreWithScores(ACTIVITY_KEY, 0, before, 0, limit);
+        return idle != null ? idle : Set.of();
+    }
+
+    /**
+     * Lecture d'un lot de paniers en un aller-retour (pipeline). Les paniers expirés sont absents du résultat.
+     */
+    public Map<String, Cart> findAll(Collection<String> userIds) {
+        List<String> ids = List.copyOf(userIds);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String userId : ids) {
+                connection.hashCommands().hGetAll((KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        Map<String, Cart> carts = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (results.get(i) instanceof Map<?, ?> fields && !fields.isEmpty()) {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> hash = (Map<Object, Object>) fields;
+                carts.put(ids.get(i), codec.decode(ids.get(i), hash));
+            }
+        }
+        return carts;
+    }
+
+    /**
+     * Sort un panier de l'index d'activité, sauf s'il a été modifié depuis {@code lastActivity} (il y reste alors).
+     */
+    public boolean releaseIdle(String userId, long lastActivity) {
+        Long removed = stringRedisTemplate.execute(ACTIVITY_RELEASE_SCRIPT, List.of(ACTIVITY_KEY), userId, String.valueOf(lastActivity));
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * Indexe les paniers écrits avant l'index d'activité (SCAN incrémental, sans écraser une activité plus récente).
+     * Retourne le nombre de paniers ajoutés.
+     */
+    public int indexExisting(int scanCount) {
+        int indexed = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(scanCount).build();
+        try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object raw = stringRedisTemplate.opsForHash().get(key, CartHashCodec.HEADER_FIELD);
+                Long updatedAt = codec.updatedAt((String) raw);
+                if (updatedAt == null) {
+                    continue;
+                }
+                String userId = key.substring(KEY_PREFIX.length());
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForZSet().addIfAbsent(ACTIVITY_KEY, userId, updatedAt))) {
+                    indexed++;
+                }
+            }
+        }
+        return indexed;
+    }
+
+    private Cart mutate(String userId, String operation, String... args) {
+        return codec.decode(userId, execute(userId, operation, args));
+    }
+
+    private List<?> execute(String userId, String operation, String... args) {
+        List<?> result = executeScript(userId, operation, args);
+        if ("LEGACY".equals(result.get(0))) {
+            // Premier accès depuis le passage au hash : reprise de l'ancien panier, puis l'opération
+            migrateLegacy(userId);
+            result = executeScript(userId, operation, args);
+        }
+        return result;
+    }
+
+    private List<?> executeScript(String userId, String operation, String... args) {
+        Object[] argv = new Object[3 + args.length];
+        argv[0] = operation;
+        argv[1] = String.valueOf(System.currentTimeMillis());
+        argv[2] = String.valueOf(TTL_SECONDS);
+        System.arraycopy(args, 0, argv, 3, args.length);
+
+        List<?> result = stringRedisTemplate.execute(MUTATE_SCRIPT, List.of(KEY_PREFIX + userId, LEGACY_KEY_PREFIX + userId, ACTIVITY_KEY), argv);
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Cart operation " + operation + " failed for user " + userId);
+        }
+        return result;
+    }
+
+    /**
+     * Reprise d'un panier à l'ancien format, écrite en une fois par cart-migrate.lua.
+     * L'ancienne clé n'est supprimée que si elle n'a pas changé depuis sa lecture (sinon nouvelle tentative).
+     */
+    private Cart migrateLegacy(String userId) {
+        String legacyKey = LEGACY_KEY_PREFIX + userId;
+        for (int attempt = 0; attempt < MIGRATION_ATTEMPTS; attempt++) {
+            String raw = stringRedisTemplate.opsForValue().get(legacyKey);
+            if (raw == null) {
+                // Reprise faite entre-temps par un autre appel
+                Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+                return fields.isEmpty() ? null : codec.decode(userId, fields);
+            }
+
+            Cart legacy;
+            try {
+                legacy = (Cart) legacyTemplate.getValueSerializer().deserialize(raw.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                log.warn("Dropping unreadable legacy cart of user {}: {}", userId, e.getMessage());
+                stringRedisTemplate.delete(legacyKey);
+                continue;
+            }
+            List<CartItem> legacyItems = legacy != null && legacy.getItems() != null ? legacy.getItems() : List.of();
+
+            List<String> argv = new ArrayList<>(5 + legacyItems.size() * 4);
+            argv.add(raw);
+            argv.add(String.valueOf(System.currentTimeMillis()));
+            argv.add(String.valueOf(TTL_SECONDS));
+            argv.add(legacy != null && legacy.getCreatedAt() != null
+                    ? String.valueOf(legacy.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                    : "");
+            // Le code est réévalué à chaque lecture : un code devenu invalide ne compte simplement plus
+            argv.add(legacy != null && legacy.getPromoCode() != null ? legacy.getPromoCode() : "");
+            for (CartItem item : legacyItems) {
+                argv.add(String.valueOf(item.getProductId()));
+                argv.add(String.valueOf(item.getQuantity()));
+                argv.add(String.valueOf(CartHashCodec.toCents(item.getPrice())));
+                argv.add(codec.metadata(item));
+            }
+
+            List<?> result = stringRedisTemplate.execute(MIGRATE_SCRIPT,
+                    List.of(KEY_PREFIX + userId, legacyKey, ACTIVITY_KEY), argv.toArray());
+            if (result != null && "OK".equals(result.get(0))) {
+                log.info("🛒 Cart of user {} migrated to hash storage ({} items)", userId, legacyItems.size());
+                return codec.decode(userId, result);
+            }
+        }
+        throw new IllegalStateException("Legacy cart of user " + userId + " keeps changing, migration aborted");
+    }
+
+    /**
+     * Produit revalidé pour une fusion : {@code item} porte prix et métadonnées à jour (null : produit disparu),
+     * {@code available} plafonne la quantité.
+     */
+    public record MergeLine(Long productId, CartItem item, int available) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.cart.saga;
+
+import com.ecommerce.cart.dto.OrderResponse;
+import lombok.Getter;
+
+/**
+ * Commande créée mais stock pas encore validé (échec transitoire du commit) : le checkout n'a pas abouti,
+ * la saga reste active et le balayage retente le commit. À répondre en 202, pas en succès.
+ */
+@Getter
+public class CheckoutPendingException extends RuntimeException {
+
+    private final String sagaId;
+    private final OrderResponse order;
+
+    public CheckoutPendingException(String sagaId, OrderResponse order, String message) {
+        super(message);
+        this.sagaId = sagaId;
+        this.order = order;
+    }
+}
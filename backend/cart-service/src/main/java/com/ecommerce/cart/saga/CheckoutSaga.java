@@ -0,0 +1,40 @@
+package com.ecommerce.cart.saga;
+
+import com.ecommerce.cart.dto.CreateOrderRequest;
+import com.ecommerce.cart.dto.OrderResponse;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * État persistant d'un checkout : assez pour reprendre ou compenser la saga après un redémarrage.
+ * Aucun jeton utilisateur n'y est conservé : les étapes s'authentifient avec un jeton de service.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutSaga {
+
+    private String id;
+    private String userId;
+    private CheckoutSagaStatus status;
+
+    // Checkout du panier (à vider à la fin) ou achat direct
+    private boolean clearCart;
+    private CreateOrderRequest orderRequest;
+
+    private String reservationId;
+    private Long orderId;
+    private OrderResponse order;
+
+    private String error;
+    private int compensationAttempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,414 @@
+package com.ecommerce.cart.saga;
+
+import com.ecommerce.cart.dto.CreateOrderRequest;
+import com.ecommerce.cart.dto.OrderResponse;
+import com.ecommerce.cart.security.JwtTokenProvider;
+import com.ecommerce.cart.service.CartService;
+import com.ecommerce.cart.service.PromoCodeService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Orchestration du checkout en saga : réserver le stock → créer la commande → valider la réservation → vider le panier.
+ *
+ * Chaque transition est persistée avant l'étape suivante. En cas d'échec avant la création de la commande,
+ * la réservation est rendue ; une réservation refusée après coup annule la commande. Une fois la commande créée,
+ * les erreurs transitoires ne compensent pas : la réservation garde le stock et la saga est reprise plus tard.
+ * Le checkout n'est annoncé réussi qu'une fois le stock validé : avant, il est en attente (CheckoutPendingException).
+ * Les sagas interrompues (redémarrage, crash) sont reprises par un balayage périodique. Une compensation qui
+ * échoue trop souvent, ou sur une erreur non transitoire, est mise de côté (DEAD_LETTERED) pour reprise manuelle.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutSagaOrchestrator {
+
+    private static final int RESUME_BATCH_SIZE = 50;
+
+    private final CheckoutSagaRepository sagaRepository;
+    private final CartService cartService;
+    private final PromoCodeService promoCodeService;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Value("${order-service.url:http://localhost:8083}")
+    private String orderServiceUrl;
+
+    @Value("${product-service.url:http://localhost:8082}")
+    private String productServiceUrl;
+
+    // Doit dépasser le bail : une saga reprise tardivement garde encore son stock
+    @Value("${checkout.saga.reservation-ttl-seconds:600}")
+    private long reservationTtlSeconds;
+
+    // Durée du verrou d'une saga ; au-delà sans transition, elle est considérée comme interrompue
+    @Value("${checkout.saga.lease-ms:120000}")
+    private long leaseMs;
+
+    // Tentatives de compensation avant mise de côté de la saga
+    @Value("${checkout.saga.max-compensation-attempts:10}")
+    private int maxCompensationAttempts;
+
+    /**
+     * Exécute un nouveau checkout sous l'id {@code sagaId} (choisi par l'appelant, unique par tentative)
+     * et retourne la commande créée.
+     * IllegalArgumentException si le stock manque, CheckoutPendingException si la commande attend la validation
+     * du stock, RuntimeException pour les autres échecs (déjà compensés).
+     */
+    public OrderResponse start(String sagaId, String userId, CreateOrderRequest orderRequest, boolean clearCart) {
+        LocalDateTime now = LocalDateTime.now();
+        CheckoutSaga saga = CheckoutSaga.builder()
+                .id(sagaId)
+                .userId(userId)
+                .status(CheckoutSagaStatus.STARTED)
+                .clearCart(clearCart)
+                .orderRequest(orderRequest)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        sagaRepository.tryLock(saga.getId(), Duration.ofMillis(leaseMs));
+        try {
+            sagaRepository.save(saga);
+            log.info("🧾 Checkout saga {} started for user {}", saga.getId(), userId);
+            return run(saga);
+        } finally {
+            sagaRepository.unlock(saga.getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${checkout.saga.resume-interval-ms:30000}")
+    public void resumeStalledSagas() {
+        try {
+            for (String sagaId : sagaRepository.findStalled(System.currentTimeMillis() - leaseMs, RESUME_BATCH_SIZE)) {
+                if (!sagaRepository.tryLock(sagaId, Duration.ofMillis(leaseMs))) {
+                    continue;
+                }
+                try {
+                    CheckoutSaga saga = sagaRepository.find(sagaId);
+                    if (saga == null) {
+                        sagaRepository.removeActive(sagaId);
+                    } else {
+                        resume(saga);
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not resume checkout saga {}: {}", sagaId, e.getMessage());
+                } finally {
+                    sagaRepository.unlock(sagaId);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sweep stalled checkout sagas: {}", e.getMessage());
+        }
+    }
+
+    private void resume(CheckoutSaga saga) {
+        log.info("🔁 Resuming checkout saga {} from {}", saga.getId(), saga.getStatus());
+        meterRegistry.counter("checkout.saga.resumed", "status", saga.getStatus().name().toLowerCase()).increment();
+
+        switch (saga.getStatus()) {
+            // La réservation éventuelle expirera d'elle-même
+            case STARTED -> fail(saga, "Interrupted before stock reservation");
+            // Issue de la création de commande inconnue : la compensation la retrouve par sa clé, l'annule et rend le stock
+            case STOCK_RESERVED -> {
+                saga.setError("Interrupted during order creation");
+                transition(saga, CheckoutSagaStatus.COMPENSATING);
+                compensate(saga);
+            }
+            case COMPENSATING -> compensate(saga);
+            case ORDER_CREATED, STOCK_COMMITTED -> {
+                try {
+                    run(saga);
+                } catch (RuntimeException e) {
+                    log.warn("Resumed checkout saga {} ended with: {}", saga.getId(), e.getMessage());
+                }
+            }
+            default -> sagaRepository.save(saga);
+        }
+    }
+
+    private OrderResponse run(CheckoutSaga saga) {
+        try {
+            if (saga.getStatus() == CheckoutSagaStatus.STARTED) {
+                // Plafonds par utilisateur des codes promo, comptés avant d'engager du stock
+                step("claim-promo", () -> promoCodeService.claimUsage(
+                        saga.getId(), saga.getUserId(), saga.getOrderRequest().getPromoCode()));
+                saga.setReservationId(step("reserve-stock", () -> reserveStock(saga)));
+                transition(saga, CheckoutSagaStatus.STOCK_RESERVED);
+            }
+
+            if (saga.getStatus() == CheckoutSagaStatus.STOCK_RESERVED) {
+                OrderResponse order = step("create-order", () -> createOrder(saga));
+                saga.setOrderId(order.getId());
+                saga.setOrder(order);
+                transition(saga, CheckoutSagaStatus.ORDER_CREATED);
+            }
+
+            if (saga.getStatus() == CheckoutSagaStatus.ORDER_CREATED) {
+                try {
+                    step("commit-stock", () -> commitReservation(saga));
+                } catch (HttpClientErrorException.Conflict e) {
+                    // Réservation expirée ou stock en base insuffisant : la commande ne peut pas être servie
+                    throw new RuntimeException("Stock reservation could not be committed: " + errorMessage(e));
+                } catch (RuntimeException e) {
+                    // Le commit est idempotent et la réservation tient le stock : on le retentera. La commande
+                    // peut encore être annulée (réservation expirée entre-temps) : pas de succès annoncé
+                    log.warn("⏳ Stock commit pending for saga {} (order {}), will retry: {}",
+                            saga.getId(), saga.getOrderId(), e.getMessage());
+                    throw new CheckoutPendingException(saga.getId(), saga.getOrder(),
+                            "Stock confirmation pending: " + e.getMessage());
+                }
+                transition(saga, CheckoutSagaStatus.STOCK_COMMITTED);
+            }
+
+            if (saga.getStatus() == CheckoutSagaStatus.STOCK_COMMITTED) {
+                if (saga.isClearCart()) {
+                    try {
+                        step("clear-cart", () -> cartService.clearCart(saga.getUserId()));
+                    } catch (RuntimeException e) {
+                        // La commande est passée : un panier non vidé n'annule rien
+                        log.warn("Could not clear cart of user {} after checkout: {}", saga.getUserId(), e.getMessage());
+                    }
+                }
+                finish(saga, CheckoutSagaStatus.COMPLETED, null);
+                log.info("✅ Checkout saga {} completed. Order ID: {}", saga.getId(), saga.getOrderId());
+            }
+            return saga.getOrder();
+        } catch (CheckoutPendingException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("❌ Checkout saga {} failed at {}: {}", saga.getId(), saga.getStatus(), e.getMessage());
+            if (saga.getReservationId() == null && saga.getOrderId() == null) {
+                fail(saga, e.getMessage());
+            } else {
+                saga.setError(e.getMessage());
+                transition(saga, CheckoutSagaStatus.COMPENSATING);
+                compensate(saga);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Annule la commande puis rend la réservation. Chaque action est idempotente :
+     * en cas d'échec transitoire la saga reste COMPENSATING et le balayage la rejoue, au plus
+     * {@code maxCompensationAttempts} fois ; une erreur 4xx ne passera pas mieux au prochain essai.
+     * Sans id de commande, la création a pu aboutir sans réponse : la commande est cherchée par la clé
+     * d'idempotence (id de la saga) avant de rendre le stock, pour ne pas laisser une commande sans stock.
+     */
+    private void compensate(CheckoutSaga saga) {
+        try {
+            if (saga.getOrderId() == null && saga.getReservationId() != null) {
+                OrderResponse order = step("find-order", () -> findOrder(saga));
+                if (order != null) {
+                    log.warn("Order {} was created by saga {} despite the failure, cancelling it", order.getId(), saga.getId());
+                    saga.setOrderId(order.getId());
+                    saga.setOrder(order);
+                    transition(saga, CheckoutSagaStatus.COMPENSATING);
+                }
+            }
+            if (saga.getOrderId() != null) {
+                step("cancel-order", () -> cancelOrder(saga));
+            }
+            if (saga.getReservationId() != null) {
+                step("release-stock", () -> releaseReservation(saga));
+            }
+            step("release-promo", () -> promoCodeService.releaseUsage(saga.getId(), saga.getUserId()));
+            finish(saga, CheckoutSagaStatus.COMPENSATED, saga.getError());
+            log.warn("↩️ Checkout saga {} compensated (order {}, reservation {})",
+                    saga.getId(), saga.getOrderId(), saga.getReservationId());
+        } catch (RuntimeException e) {
+            saga.setCompensationAttempts(saga.getCompensationAttempts() + 1);
+            if (e instanceof HttpClientErrorException || saga.getCompensationAttempts() >= maxCompensationAttempts) {
+                // Alerte : checkout.saga.finished{outcome=dead_lettered}
+                log.error("🚨 CRITICAL: Compensation of checkout saga {} abandoned after {} attempts, manual action required: {}",
+                        saga.getId(), saga.getCompensationAttempts(), e.getMessage());
+                finish(saga, CheckoutSagaStatus.DEAD_LETTERED, "Compensation failed: " + e.getMessage());
+                return;
+            }
+            log.error("🚨 CRITICAL: Compensation of checkout saga {} failed (attempt {}), will retry: {}",
+                    saga.getId(), saga.getCompensationAttempts(), e.getMessage());
+            transition(saga, CheckoutSagaStatus.COMPENSATING);
+        }
+    }
+
+    private String reserveStock(CheckoutSaga saga) {
+        List<Map<String, Object>> items = saga.getOrderRequest().getItems().stream()
+                .map(item -> Map.<String, Object>of(
+                        "productId", item.getProductId(),
+                        "quantity", item.getQuantity()))
+                .collect(Collectors.toList());
+
+        try {
+            ResponseEntity<Map> response = restTemplate.exchange(
+                    productServiceUrl + "/reservations",
+                    HttpMethod.POST,
+                    new HttpEntity<>(Map.of("items", items, "ttlSeconds", reservationTtlSeconds, "owner", saga.getId()),
+                            createServiceHeaders(saga)),
+                    Map.class
+            );
+            Object reservationId = response.getBody() != null ? response.getBody().get("reservationId") : null;
+            if (reservationId == null) {
+                throw new RuntimeException("Product Service returned no reservation id");
+            }
+            log.info("🔒 Stock reserved for saga {}: {}", saga.getId(), reservationId);
+            return reservationId.toString();
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new IllegalArgumentException(errorMessage(e));
+        }
+    }
+
+    private OrderResponse createOrder(CheckoutSaga saga) {
+        log.info("📝 Creating order in Order Service");
+        try {
+            ResponseEntity<OrderResponse> response = restTemplate.postForEntity(
+                    orderServiceUrl + "/api/orders",
+                    new HttpEntity<>(saga.getOrderRequest(), createOrderHeaders(saga)),
+                    OrderResponse.class
+            );
+
+            if (response.getStatusCode() == HttpStatus.CREATED && response.getBody() != null) {
+                return response.getBody();
+            }
+            throw new RuntimeException("Order Service returned non-created status: " + response.getStatusCode());
+        } catch (HttpClientErrorException e) {
+            log.error("❌ Order Service Error: {}", e.getResponseBodyAsString());
+            throw new RuntimeException("Failed to create order: " + e.getMessage());
+        }
+    }
+
+    // Commande créée avec la clé de cette saga, null si la création n'a pas abouti
+    private OrderResponse findOrder(CheckoutSaga saga) {
+        try {
+            return restTemplate.exchange(
+                    orderServiceUrl + "/api/orders/idempotency/" + saga.getId(),
+                    HttpMethod.GET,
+                    new HttpEntity<>(createServiceHeaders(saga)),
+                    OrderResponse.class
+            ).getBody();
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+    }
+
+    private void commitReservation(CheckoutSaga saga) {
+        restTemplate.exchange(
+                productServiceUrl + "/reservations/" + saga.getReservationId() + "/commit?owner=" + saga.getId(),
+                HttpMethod.POST,
+                new HttpEntity<>(createServiceHeaders(saga)),
+                Void.class
+        );
+        log.debug("✅ Reservation {} committed", saga.getReservationId());
+    }
+
+    private void cancelOrder(CheckoutSaga saga) {
+        restTemplate.exchange(
+                orderServiceUrl + "/api/orders/" + saga.getOrderId() + "/status?status=CANCELLED",
+                HttpMethod.PATCH,
+                new HttpEntity<>(createServiceHeaders(saga)),
+                Void.class
+        );
+        log.info("🗑️ Order {} cancelled by saga {}", saga.getOrderId(), saga.getId());
+    }
+
+    private void releaseReservation(CheckoutSaga saga) {
+        try {
+            restTemplate.exchange(
+                    productServiceUrl + "/reservations/" + saga.getReservationId() + "?owner=" + saga.getId(),
+                    HttpMethod.DELETE,
+                    new HttpEntity<>(createServiceHeaders(saga)),
+                    Void.class
+            );
+        } catch (HttpClientErrorException.NotFound e) {
+            // Déjà rendue (rollback du commit) ou expirée : le stock est libre
+            log.debug("Reservation {} already closed", saga.getReservationId());
+        }
+    }
+
+    private void transition(CheckoutSaga saga, CheckoutSagaStatus status) {
+        saga.setStatus(status);
+        saga.setUpdatedAt(LocalDateTime.now());
+        sagaRepository.save(saga);
+    }
+
+    // Échec sans rien à compenser côté services : seules les utilisations de codes promo sont rendues
+    private void fail(CheckoutSaga saga, String error) {
+        try {
+            promoCodeService.releaseUsage(saga.getId(), saga.getUserId());
+        } catch (RuntimeException e) {
+            log.warn("Could not release promo code usage of saga {}: {}", saga.getId(), e.getMessage());
+        }
+        finish(saga, CheckoutSagaStatus.FAILED, error);
+    }
+
+    private void finish(CheckoutSaga saga, CheckoutSagaStatus status, String error) {
+        saga.setError(error);
+        transition(saga, status);
+        meterRegistry.counter("checkout.saga.finished", "outcome", status.name().toLowerCase()).increment();
+        meterRegistry.timer("checkout.saga.duration", "outcome", status.name().toLowerCase())
+                .record(Duration.between(saga.getCreatedAt(), saga.getUpdatedAt()));
+    }
+
+    // Durée et issue de chaque étape : checkout.saga.step{step, outcome}
+    private <T> T step(String name, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            outcome = "failure";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("checkout.saga.step", "step", name, "outcome", outcome));
+        }
+    }
+
+    private void step(String name, Runnable action) {
+        step(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private String errorMessage(HttpClientErrorException e) {
+        try {
+            String error = objectMapper.readTree(e.getResponseBodyAsString()).path("error").asText(null);
+            return error != null ? error : e.getMessage();
+        } catch (Exception parseError) {
+            return e.getMessage();
+        }
+    }
+
+    // Une création rejouée (reprise, retry) renvoie la commande déjà créée pour cette saga
+    private HttpHeaders createOrderHeaders(CheckoutSaga saga) {
+        HttpHeaders headers = createServiceHeaders(saga);
+        headers.set("Idempotency-Key", saga.getId());
+        return headers;
+    }
+
+    // Jeton de service émis pour chaque appel, au nom de l'utilisateur de la saga : rien n'expire pendant une reprise
+    private HttpHeaders createServiceHeaders(CheckoutSaga saga) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtTokenProvider.generateServiceToken(saga.getUserId()));
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.cart.saga;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sagas de checkout dans Redis : une clé JSON par saga, plus un sorted set des sagas non terminées
+ * dont le score est l'instant de la dernière transition (une saga qui n'avance plus est à reprendre).
+ * Un verrou par saga empêche deux réplicas de la faire avancer en même temps.
+ * Les sagas mises de côté sont conservées sans expiration et listées pour reprise manuelle.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutSagaRepository {
+
+    private static final String KEY_PREFIX = "checkout:saga:";
+    private static final String LOCK_PREFIX = "checkout:saga:lock:";
+    private static final String ACTIVE_KEY = "checkout:sagas:active";
+    private static final String DEAD_LETTER_KEY = "checkout:sagas:dead-letter";
+
+    private static final RedisScript<Long> LOCK_RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/lock-release.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Identifie ce réplica comme propriétaire des verrous
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${checkout.saga.retention-hours:24}")
+    private long retentionHours;
+
+    public void save(CheckoutSaga saga) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(saga);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize checkout saga " + saga.getId(), e);
+        }
+
+        if (saga.getStatus() == CheckoutSagaStatus.DEAD_LETTERED) {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + saga.getId(), json);
+            stringRedisTemplate.opsForZSet().add(DEAD_LETTER_KEY, saga.getId(), System.currentTimeMillis());
+        } else {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + saga.getId(), json, Duration.ofHours(retentionHours));
+        }
+        if (saga.getStatus().isTerminal()) {
+            stringRedisTemplate.opsForZSet().remove(ACTIVE_KEY, saga.getId());
+        } else {
+            stringRedisTemplate.opsForZSet().add(ACTIVE_KEY, saga.getId(), System.currentTimeMillis());
+        }
+    }
+
+    public CheckoutSaga find(String sagaId) {
+        String json = stringRedisTemplate.opsForValue().get(KEY_PREFIX + sagaId);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, CheckoutSaga.class);
+        } catch (JsonProcessingException e) {
+            log.error("Unreadable checkout saga {}: {}", sagaId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sagas non terminées dont la dernière transition est antérieure à {@code before} (epoch ms).
+     */
+    public Set<String> findStalled(long before, int limit) {
+        Set<String> ids = stringRedisTemplate.opsForZSet().rangeByScore(ACTIVE_KEY, 0, before, 0, limit);
+        return ids != null ? ids : Set.of();
+    }
+
+    public void removeActive(String sagaId) {
+        stringRedisTemplate.opsForZSet().remove(ACTIVE_KEY, sagaId);
+    }
+
+    public boolean tryLock(String sagaId, Duration lease) {
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_PREFIX + sagaId, instanceId, lease);
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    public void unlock(String sagaId) {
+        try {
+            stringRedisTemplate.execute(LOCK_RELEASE_SCRIPT, List.of(LOCK_PREFIX + sagaId), instanceId);
+        } catch (Exception e) {
+            // Le verrou expirera de lui-même
+            log.warn("Could not release lock of checkout saga {}: {}", sagaId, e.getMessage());
+        }
+    }
+}
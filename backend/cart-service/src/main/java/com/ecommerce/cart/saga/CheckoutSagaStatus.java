@@ -0,0 +1,20 @@
+package com.ecommerce.cart.saga;
+
+/**
+ * Étapes du checkout. Les statuts terminaux sortent la saga de l'index des sagas actives.
+ */
+public enum CheckoutSagaStatus {
+    STARTED,          // Rien d'engagé côté services distants (une réservation éventuelle expirera seule)
+    STOCK_RESERVED,   // Réservation posée dans Product Service
+    ORDER_CREATED,    // Commande créée : point de non-retour, la saga avance vers le commit
+    STOCK_COMMITTED,  // Stock décrémenté en base
+    COMPLETED,
+    COMPENSATING,     // Annulation en cours (commande annulée, réservation rendue)
+    COMPENSATED,
+    FAILED,           // Échec avant toute réservation : rien à compenser
+    DEAD_LETTERED;    // Compensation abandonnée : commande ou réservation peut-être encore active, reprise manuelle
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == COMPENSATED || this == FAILED || this == DEAD_LETTERED;
+    }
+}
@@ -9,19 +9,43 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    private static final String SERVICE_SUBJECT = "cart-service";
+
     private final SecretKey key;
 
+    // Jetons de service : courts, ils ne servent qu'à un appel sortant
+    @Value("${jwt.service-token-ttl-ms:60000}")
+    private long serviceTokenTtlMs;
+
     public JwtTokenProvider(@Value("${jwt.secret}") String secret) {
         log.info("🔹 Cart Service Secret: length={}, content='{}...{}'", secret.length(), secret.substring(0, 5),
                 secret.substring(secret.length() - 5));
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Jeton d'appel service à service (rôle SERVICE), signé avec le secret partagé.
+     * {@code userId} identifie l'utilisateur pour le compte duquel l'appel est fait (peut être null).
+     */
+    public String generateServiceToken(String userId) {
+        Date now = new Date();
+        var builder = Jwts.builder()
+                .subject(SERVICE_SUBJECT)
+                .claim("role", "SERVICE")
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + serviceTokenTtlMs));
+        if (userId != null) {
+            builder.claim("userId", userId);
+        }
+        return builder.signWith(key).compact();
+    }
+
     public boolean validateToken(String token) {
         try {
             Jwts.parser()
@@ -0,0 +1,183 @@
+package com.ecommerce.cart.service;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.common.event.AbandonedCartEvent;
+import com.ecommerce.common.kafka.EventPublisher;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Détection des paniers abandonnés (topic abandoned-cart-events, clé = userId).
+ *
+ * Parcourt l'index d'activité par lots, du plus ancien au plus récent, hors du chemin des requêtes :
+ * un seul réplica à la fois (verrou Redis), émission limitée en débit et en volume par passage.
+ * Un panier signalé sort de l'index ; il y revient à sa prochaine modification et pourra être signalé à nouveau.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AbandonedCartScanner {
+
+    public static final String TOPIC = "abandoned-cart-events";
+
+    private static final String LOCK_KEY = "cart:abandoned:scan:lock";
+    // Posé une fois les paniers antérieurs à l'index d'activité indexés
+    private static final String INDEXED_FLAG_KEY = "cart:activity:indexed";
+
+    private static final RedisScript<Long> LOCK_RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/lock-release.lua"), Long.class);
+
+    private final CartRepository cartRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final EventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private Bucket throttle;
+
+    @Value("${cart.abandonment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cart.abandonment.idle-hours:24}")
+    private long idleHours;
+
+    @Value("${cart.abandonment.batch-size:200}")
+    private int batchSize;
+
+    @Value("${cart.abandonment.max-events-per-second:50}")
+    private long maxEventsPerSecond;
+
+    @Value("${cart.abandonment.max-events-per-run:5000}")
+    private int maxEventsPerRun;
+
+    // Doit couvrir un passage complet (max-events-per-run / max-events-per-second)
+    @Value("${cart.abandonment.lease-ms:600000}")
+    private long leaseMs;
+
+    @PostConstruct
+    void init() {
+        throttle = Bucket.builder()
+                .addLimit(Bandwidth.classic(maxEventsPerSecond, Refill.greedy(maxEventsPerSecond, Duration.ofSeconds(1))))
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${cart.abandonment.scan-interval-ms:300000}")
+    public void scan() {
+        if (!enabled) {
+            return;
+        }
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, instanceId, Duration.ofMillis(leaseMs));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+
+        try {
+            indexExistingCarts();
+            int emitted = scanIdleCarts(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(idleHours));
+            if (emitted > 0) {
+                log.info("🛒 {} abandoned carts published", emitted);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Abandoned cart scan stopped: {}", e.getMessage());
+        } finally {
+            try {
+                stringRedisTemplate.execute(LOCK_RELEASE_SCRIPT, List.of(LOCK_KEY), instanceId);
+            } catch (Exception e) {
+                // Le verrou expirera de lui-même
+                log.warn("Could not release abandoned cart scan lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    private int scanIdleCarts(long idleBefore) throws Exception {
+        int emitted = 0;
+        while (emitted < maxEventsPerRun) {
+            Set<TypedTuple<String>> idle = cartRepository.findIdle(idleBefore, batchSize);
+            if (idle.isEmpty()) {
+                break;
+            }
+            Map<String, Cart> carts = cartRepository.findAll(idle.stream().map(TypedTuple::getValue).toList());
+
+            for (TypedTuple<String> entry : idle) {
+                if (emitted >= maxEventsPerRun) {
+                    break;
+                }
+                String userId = entry.getValue();
+                long lastActivity = entry.getScore().longValue();
+                Cart cart = carts.get(userId);
+
+                // Panier expiré, vidé ou invité (personne à relancer) : il sort simplement de l'index
+                if (cart != null && !cart.getItems().isEmpty() && !CartRepository.isGuest(userId)) {
+                    throttle.asBlocking().consume(1);
+                    publish(cart, lastActivity);
+                    emitted++;
+                }
+                cartRepository.releaseIdle(userId, lastActivity);
+            }
+
+            if (idle.size() < batchSize) {
+                break;
+            }
+        }
+        return emitted;
+    }
+
+    private void publish(Cart cart, long lastActivity) throws InterruptedException, ExecutionException, TimeoutException {
+        AbandonedCartEvent event = AbandonedCartEvent.builder()
+                .userId(cart.getUserId())
+                .lastActivityAt(lastActivity)
+                .detectedAt(System.currentTimeMillis())
+                .subtotal(cart.getSubtotal())
+                .promoCodes(cart.getPromoCodes())
+                .items(cart.getItems().stream()
+                        .map(item -> AbandonedCartEvent.Item.builder()
+                                .productId(item.getProductId())
+                                .productName(item.getProductName())
+                                .quantity(item.getQuantity())
+                                .price(item.getPrice())
+                                .imageUrl(item.getImageUrl())
+                                .build())
+                        .toList())
+                .build();
+
+        // Attente de l'accusé : le panier ne sort de l'index qu'une fois l'événement publié
+        eventPublisher.publish(TOPIC, cart.getUserId(), event).get(10, TimeUnit.SECONDS);
+        meterRegistry.counter("cart.abandoned.published").increment();
+    }
+
+    /**
+     * Premier passage après déploiement : les paniers écrits avant l'index d'activité y sont ajoutés (une seule fois).
+     */
+    private void indexExistingCarts() {
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(INDEXED_FLAG_KEY))) {
+            return;
+        }
+        int indexed = cartRepository.indexExisting(batchSize);
+        stringRedisTemplate.opsForValue().set(INDEXED_FLAG_KEY, String.valueOf(System.currentTimeMillis()));
+        log.info("🛒 Cart activity index initialized ({} existing carts)", indexed);
+    }
+}
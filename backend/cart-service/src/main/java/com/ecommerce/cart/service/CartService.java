@@ -3,79 +3,68 @@ package com.ecommerce.cart.service;
 import com.ecommerce.cart.dto.AddToCartRequest;
 import com.ecommerce.cart.entity.Cart;
 import com.ecommerce.cart.entity.CartItem;
-import com.ecommerce.cart.entity.PromoCode;
+import com.ecommerce.cart.promo.CompiledPromoRule;
+import com.ecommerce.cart.promo.PromoEvaluation;
+import com.ecommerce.cart.promo.PromoRuleEngine;
+import com.ecommerce.cart.repository.CartRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
-
+import java.util.ArrayList;
 import java.util.List;
-import com.ecommerce.cart.client.ProductClient; // Added import
+import java.util.stream.Collectors;
+import com.ecommerce.cart.client.ProductSnapshotCache;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CartService {
 
-    private final RedisTemplate<String, Cart> redisTemplate;
+    // Hash Redis par panier : chaque mutation ne touche que sa ligne, sous-total recalculé côté Redis
+    private final CartRepository cartRepository;
     private final PromoCodeService promoCodeService;
-    private final ProductClient productClient;
-
-    private static final String CART_KEY_PREFIX = "cart:";
-    private static final long CART_TTL_DAYS = 7;
+    // Réduction évaluée en mémoire sur chaque panier retourné
+    private final PromoRuleEngine promoRuleEngine;
+    // Fiches produits locales (invalidées par product-events) : pas d'appel à product-service en régime établi
+    private final ProductSnapshotCache productSnapshotCache;
 
     public Cart getCart(String userId) {
-        String key = CART_KEY_PREFIX + userId;
-        Cart cart = redisTemplate.opsForValue().get(key);
+        Cart cart = cartRepository.find(userId);
 
         if (cart == null) {
             log.info("Creating new cart for user: {}", userId);
-            cart = Cart.builder()
-                    .userId(userId)
-                    .subtotal(BigDecimal.ZERO)
-                    .totalAmount(BigDecimal.ZERO)
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .build();
-            saveCart(cart);
+            cart = cartRepository.create(userId);
         } else {
             // ✅ SYNC WITH PRODUCT SERVICE
-            syncCartWithProducts(cart);
+            cart = syncCartWithProducts(cart);
         }
 
-        return cart;
+        return priced(cart);
     }
 
-    private void syncCartWithProducts(Cart cart) {
+    private Cart syncCartWithProducts(Cart cart) {
         if (cart.getItems() == null || cart.getItems().isEmpty()) {
-            return;
+            return cart;
         }
 
         List<Long> productIds = cart.getItems().stream()
                 .map(CartItem::getProductId)
                 .toList();
 
-        List<com.ecommerce.cart.dto.ProductDto> products = productClient.getProductsByIds(productIds);
-        java.util.Map<Long, com.ecommerce.cart.dto.ProductDto> productMap = products.stream()
-                .collect(java.util.stream.Collectors.toMap(com.ecommerce.cart.dto.ProductDto::getId, p -> p));
-
-        boolean changed = false;
-        java.util.Iterator<CartItem> iterator = cart.getItems().iterator();
+        java.util.Map<Long, com.ecommerce.cart.dto.ProductDto> productMap = productSnapshotCache.getProducts(productIds);
 
-        while (iterator.hasNext()) {
-            CartItem item = iterator.next();
+        Cart synced = cart;
+        for (CartItem item : cart.getItems()) {
             com.ecommerce.cart.dto.ProductDto product = productMap.get(item.getProductId());
 
             if (product == null) {
-                iterator.remove();
-                changed = true;
+                synced = cartRepository.removeItem(cart.getUserId(), item.getProductId());
                 continue;
             }
 
+            boolean changed = false;
             if (!product.getName().equals(item.getProductName())) {
                 item.setProductName(product.getName());
                 changed = true;
@@ -87,26 +76,27 @@ public class CartService {
                 changed = true;
             }
 
+            if (product.getCategoryId() != null && !product.getCategoryId().equals(item.getCategoryId())) {
+                item.setCategoryId(product.getCategoryId());
+                changed = true;
+            }
+
             if (product.getStockQuantity() < item.getQuantity()) {
-                if (product.getStockQuantity() == 0) {
-                    iterator.remove();
-                } else {
-                    item.setQuantity(product.getStockQuantity());
-                }
+                // Le script plafonne la quantité courante au stock (stock à 0 : ligne supprimée)
                 changed = true;
             }
-        }
 
-        if (changed) {
-            cart.calculateTotal(); // Fixed method name
-            saveCart(cart);
+            // Seules les lignes modifiées sont réécrites
+            if (changed) {
+                synced = cartRepository.syncItem(cart.getUserId(), item, product.getStockQuantity());
+            }
         }
+
+        return synced;
     }
 
     public Cart addItem(String userId, AddToCartRequest request) {
-        Cart cart = getCart(userId);
-
-        com.ecommerce.cart.dto.ProductDto product = productClient.getProductById(request.getProductId());
+        com.ecommerce.cart.dto.ProductDto product = productSnapshotCache.getProduct(request.getProductId());
         if (product == null) {
             throw new RuntimeException("Product not found");
         }
@@ -114,83 +104,141 @@ public class CartService {
             throw new RuntimeException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
-        CartItem item = CartItem.builder()
+        return priced(cartRepository.addItem(userId, toItem(product, request.getQuantity())));
+    }
+
+    private CartItem toItem(com.ecommerce.cart.dto.ProductDto product, Integer quantity) {
+        return CartItem.builder()
                 .productId(product.getId())
+                .categoryId(product.getCategoryId())
                 .productName(product.getName())
                 .price(product.getPrice())
-                .quantity(request.getQuantity())
+                .quantity(quantity)
                 .imageUrl(product.getImages() != null && !product.getImages().isEmpty() ? product.getImages().get(0) : null)
                 .images(product.getImages())
                 .build();
-
-        cart.addItem(item);
-        cart.calculateTotal(); // Fixed method name
-        cart.setUpdatedAt(LocalDateTime.now());
-
-        saveCart(cart);
-        return cart;
     }
 
     public Cart updateItemQuantity(String userId, Long productId, Integer quantity) {
-        Cart cart = getCart(userId);
-
-        com.ecommerce.cart.dto.ProductDto product = productClient.getProductById(productId);
+        com.ecommerce.cart.dto.ProductDto product = productSnapshotCache.getProduct(productId);
         if (product != null && product.getStockQuantity() < quantity) {
              throw new RuntimeException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
-        if (quantity <= 0) {
-            cart.removeItem(productId);
-        } else {
-            cart.updateItemQuantity(productId, quantity);
-        }
-
-        cart.setUpdatedAt(LocalDateTime.now());
-        saveCart(cart);
-        return cart;
+        // quantity <= 0 : la ligne est supprimée par le script
+        return priced(cartRepository.updateQuantity(userId, productId, quantity));
     }
 
     public Cart removeItem(String userId, Long productId) {
-        Cart cart = getCart(userId);
-        cart.removeItem(productId);
-        cart.setUpdatedAt(LocalDateTime.now());
-        saveCart(cart);
-        return cart;
+        return priced(cartRepository.removeItem(userId, productId));
     }
 
     public void clearCart(String userId) {
-        Cart cart = getCart(userId);
-        cart.clear();
-        cart.setUpdatedAt(LocalDateTime.now());
-        saveCart(cart);
+        cartRepository.clear(userId);
     }
 
     public void deleteCart(String userId) {
-        String key = CART_KEY_PREFIX + userId;
-        redisTemplate.delete(key);
+        cartRepository.delete(userId);
+    }
+
+    /**
+     * À la connexion : fusionne le panier invité de la session dans celui de l'utilisateur, en une seule écriture.
+     * Les prix et stocks de tous les produits des deux paniers sont revalidés en un seul lookup.
+     */
+    public Cart mergeGuestCart(String userId, String sessionId) {
+        String guestCartId = CartRepository.guestCartId(sessionId);
+        Cart guest = cartRepository.find(guestCartId);
+        if (guest == null || guest.getItems().isEmpty()) {
+            cartRepository.delete(guestCartId);
+            return getCart(userId);
+        }
+
+        // Reprend au besoin un panier à l'ancien format avant la fusion
+        Cart current = cartRepository.find(userId);
+
+        java.util.Set<Long> productIds = new java.util.LinkedHashSet<>();
+        if (current != null) {
+            current.getItems().forEach(item -> productIds.add(item.getProductId()));
+        }
+        guest.getItems().forEach(item -> productIds.add(item.getProductId()));
+
+        java.util.Map<Long, com.ecommerce.cart.dto.ProductDto> productMap = productSnapshotCache.getProducts(List.copyOf(productIds));
+        List<CartRepository.MergeLine> lines = productIds.stream()
+                .map(productId -> {
+                    com.ecommerce.cart.dto.ProductDto product = productMap.get(productId);
+                    return product != null
+                            ? new CartRepository.MergeLine(productId, toItem(product, null), product.getStockQuantity())
+                            : new CartRepository.MergeLine(productId, null, 0);
+                })
+                .toList();
+
+        Cart merged = cartRepository.merge(userId, guestCartId, lines);
+        log.info("🛒 Guest cart merged for user {} ({} items)", userId, merged.getItems().size());
+        return priced(merged);
     }
 
     public Cart applyPromoCode(String userId, String code) {
-        Cart cart = getCart(userId);
-        PromoCode promo = promoCodeService.validatePromoCode(code)
+        CompiledPromoRule rule = promoCodeService.validatePromoCode(code)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid or expired promo code"));
-        cart.applyPromoCode(promo);
-        cart.setUpdatedAt(LocalDateTime.now());
-        saveCart(cart);
-        return cart;
+
+        Cart cart = cartRepository.find(userId);
+        if (cart == null) {
+            cart = cartRepository.create(userId);
+        }
+
+        if (rule.minCents() != null && cart.getSubtotal().movePointRight(2).longValue() < rule.minCents()) {
+            throw new IllegalArgumentException(
+                    String.format("Minimum amount required: %.2f", BigDecimal.valueOf(rule.minCents(), 2)));
+        }
+        if (rule.categoryIds() != null && cart.getItems().stream().noneMatch(item -> rule.appliesTo(item.getCategoryId()))) {
+            throw new IllegalArgumentException("Promo code does not apply to any item in the cart");
+        }
+        if (promoCodeService.hasReachedUsageLimit(userId, rule)) {
+            throw new IllegalArgumentException("Promo code usage limit reached");
+        }
+
+        // Cumul seulement entre codes cumulables ; sinon le nouveau code remplace les précédents
+        List<String> codes = new ArrayList<>();
+        if (rule.stackable()) {
+            for (String existing : cart.getPromoCodes()) {
+                CompiledPromoRule existingRule = promoRuleEngine.current().rule(existing);
+                if (existingRule != null && existingRule.stackable() && !existingRule.code().equals(rule.code())) {
+                    codes.add(existingRule.code());
+                }
+            }
+        }
+        codes.add(rule.code());
+
+        return priced(cartRepository.setPromoCodes(userId, codes));
     }
 
     public Cart removePromoCode(String userId) {
-        Cart cart = getCart(userId);
-        cart.removePromoCode();
-        cart.setUpdatedAt(LocalDateTime.now());
-        saveCart(cart);
-        return cart;
+        return priced(cartRepository.setPromoCodes(userId, List.of()));
     }
 
-    private void saveCart(Cart cart) {
-        cart.calculateTotal(); // Fixed method name
-        String key = CART_KEY_PREFIX + cart.getUserId();
-        redisTemplate.opsForValue().set(key, cart, CART_TTL_DAYS, TimeUnit.DAYS);
+    /**
+     * Réduction et total à partir des codes appliqués, évalués sur l'instantané en mémoire des codes promo.
+     */
+    private Cart priced(Cart cart) {
+        PromoEvaluation evaluation = promoRuleEngine.current()
+                .evaluate(cart.getPromoCodes(), cart.getItems(), System.currentTimeMillis());
+        if (evaluation.appliedRules().isEmpty()) {
+            cart.setPromoCode(null);
+            cart.setDiscount(null);
+            cart.setTotalAmount(cart.getSubtotal());
+            return cart;
+        }
+
+        BigDecimal discount = BigDecimal.valueOf(evaluation.discountCents(), 2);
+        cart.setPromoCode(evaluation.appliedRules().stream().map(CompiledPromoRule::code).collect(Collectors.joining(",")));
+        cart.setDiscount(discount);
+        cart.setTotalAmount(cart.getSubtotal().subtract(discount));
+        if (evaluation.appliedRules().size() == 1) {
+            CompiledPromoRule rule = evaluation.appliedRules().get(0);
+            cart.setPromoDiscountPercent(BigDecimal.valueOf(rule.basisPoints(), 2));
+            cart.setPromoMinAmount(rule.minCents() != null ? BigDecimal.valueOf(rule.minCents(), 2) : null);
+            cart.setPromoMaxDiscount(rule.maxDiscountCents() != null ? BigDecimal.valueOf(rule.maxDiscountCents(), 2) : null);
+        }
+        return cart;
     }
 }
@@ -0,0 +1,317 @@
+package com.ecommerce.cart.service;
+
+import com.ecommerce.cart.saga.CheckoutSaga;
+import com.ecommerce.cart.saga.CheckoutSagaRepository;
+import com.ecommerce.cart.saga.CheckoutSagaStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Déduplication des checkouts par clé d'idempotence (en-tête Idempotency-Key, comme payment-service).
+ *
+ * La première requête pose un marqueur "en cours" dans Redis, avec un propriétaire, l'id de la saga qu'elle
+ * va lancer et un bail renouvelé tant que le checkout s'exécute. Le marqueur est ensuite remplacé par la réponse ;
+ * chaque écriture vérifie dans un script que la requête en est toujours propriétaire. Un doublon concurrent
+ * attend cette réponse au lieu de relancer la saga ; un doublon ultérieur la rejoue telle quelle.
+ *
+ * Une erreur 5xx ne dit pas si une commande a été passée : l'enregistrement garde alors une issue inconnue,
+ * comme un marqueur dont le bail a expiré (instance morte), ou une réponse 202 (commit du stock en attente).
+ * Un doublon la résout par la saga : terminée, sa commande est rejouée ; compensée, échouée ou jamais lancée,
+ * le checkout repart avec une nouvelle saga ; mise de côté, il est refusé sans relancer ; encore active,
+ * le doublon attend. Un refus du pool de validation (503) n'a rien engagé : la clé est libérée.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckoutIdempotencyService {
+
+    private static final String KEY_PREFIX = "checkout:idempotency:";
+    private static final String PENDING = "PENDING";
+    private static final String UNKNOWN = "UNKNOWN";
+    private static final String DONE = "DONE";
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private static final RedisScript<Long> REPLACE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/idempotency-replace.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final CheckoutSagaRepository sagaRepository;
+
+    // Renouvelle les baux des checkouts en cours sur ce réplica
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkout-idempotency-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Durée de conservation des réponses
+    @Value("${checkout.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    // Bail du marqueur "en cours", renouvelé pendant le checkout : expiré, l'instance est considérée morte
+    @Value("${checkout.idempotency.pending-ttl-ms:120000}")
+    private long pendingTtlMs;
+
+    // Attente maximale d'un doublon concurrent avant de répondre 409
+    @Value("${checkout.idempotency.wait-ms:15000}")
+    private long waitMs;
+
+    @PreDestroy
+    void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+
+    /**
+     * Exécute le checkout une seule fois par (utilisateur, clé). Sans clé, le checkout s'exécute normalement.
+     * Le checkout reçoit l'id de la saga à lancer, enregistré avec la clé pour résoudre une issue inconnue.
+     */
+    public ResponseEntity<?> execute(String userId, String idempotencyKey, String operation, Object request,
+                                     Function<String, ResponseEntity<?>> checkout) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return checkout.apply(UUID.randomUUID().toString());
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Idempotency-Key is too long"));
+        }
+
+        String key = KEY_PREFIX + userId + ":" + idempotencyKey;
+        String fingerprint = fingerprint(operation, request);
+        long deadline = System.currentTimeMillis() + waitMs;
+
+        while (true) {
+            IdempotencyRecord attempt = pending(fingerprint);
+            if (claim(key, attempt)) {
+                return runAndStore(key, attempt, checkout);
+            }
+
+            IdempotencyRecord existing = read(key);
+            if (existing != null) {
+                if (!fingerprint.equals(existing.getFingerprint())) {
+                    return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                            .body(Map.of("error", "Idempotency-Key already used with a different request"));
+                }
+                if (DONE.equals(existing.getState())) {
+                    log.info("♻️ Replaying checkout response for key {} (user {})", idempotencyKey, userId);
+                    return replay(existing);
+                }
+                boolean leaseExpired = PENDING.equals(existing.getState())
+                        && existing.getLeaseUntil() < System.currentTimeMillis();
+                if (UNKNOWN.equals(existing.getState()) || leaseExpired) {
+                    ResponseEntity<?> resolved = resolve(key, existing, attempt, checkout);
+                    if (resolved != null) {
+                        return resolved;
+                    }
+                }
+            }
+            // Marqueur absent : la requête d'origine a échoué ou expiré, on retente de la prendre
+
+            if (System.currentTimeMillis() >= deadline) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "A checkout with this Idempotency-Key is still in progress"));
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a concurrent checkout");
+            }
+        }
+    }
+
+    /**
+     * Issue inconnue d'une requête précédente, tranchée par l'état de sa saga.
+     * Retourne null tant qu'elle n'est pas tranchée (saga encore active, ou enregistrement modifié entre-temps).
+     */
+    private ResponseEntity<?> resolve(String key, IdempotencyRecord existing, IdempotencyRecord attempt,
+                                      Function<String, ResponseEntity<?>> checkout) {
+        CheckoutSaga saga = existing.getSagaId() != null ? sagaRepository.find(existing.getSagaId()) : null;
+
+        if (saga != null && saga.getStatus() == CheckoutSagaStatus.COMPLETED) {
+            IdempotencyRecord done = new IdempotencyRecord(DONE, existing.getOwner(), existing.getSagaId(), 0,
+                    existing.getFingerprint(), HttpStatus.OK.value(), objectMapper.valueToTree(Map.of(
+                            "success", true,
+                            "message", "Order created successfully",
+                            "order", saga.getOrder())));
+            replace(key, existing.getOwner(), done, "");
+            log.info("♻️ Checkout saga {} completed, replaying its order", saga.getId());
+            return replay(done);
+        }
+        if (saga != null && saga.getStatus() == CheckoutSagaStatus.DEAD_LETTERED) {
+            // Une commande peut encore exister : pas de nouvelle saga tant que l'incident n'est pas traité
+            IdempotencyRecord done = new IdempotencyRecord(DONE, existing.getOwner(), existing.getSagaId(), 0,
+                    existing.getFingerprint(), HttpStatus.CONFLICT.value(), objectMapper.valueToTree(Map.of(
+                            "error", "Checkout failed and is under manual review")));
+            replace(key, existing.getOwner(), done, "");
+            return replay(done);
+        }
+        if (saga == null || saga.getStatus().isTerminal()) {
+            // Compensée, échouée ou jamais lancée : aucune commande, le checkout peut repartir
+            if (replace(key, existing.getOwner(), attempt, "")) {
+                log.info("Previous checkout {} ended without an order, running it again", existing.getSagaId());
+                return runAndStore(key, attempt, checkout);
+            }
+        }
+        // Saga active : le balayage des sagas la mène à son terme
+        return null;
+    }
+
+    private ResponseEntity<?> runAndStore(String key, IdempotencyRecord attempt, Function<String, ResponseEntity<?>> checkout) {
+        long renewEveryMs = Math.max(pendingTtlMs / 3, 1);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(
+                () -> renewLease(key, attempt), renewEveryMs, renewEveryMs, TimeUnit.MILLISECONDS);
+
+        ResponseEntity<?> response;
+        try {
+            response = checkout.apply(attempt.getSagaId());
+        } catch (RuntimeException e) {
+            settle(key, attempt, outcome(attempt, UNKNOWN, 0, null));
+            throw e;
+        } finally {
+            renewal.cancel(false);
+        }
+
+        if (response.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            // Validation refusée avant toute saga : un nouvel essai avec la même clé doit pouvoir repartir
+            settle(key, attempt, null);
+        } else if (response.getStatusCode().is5xxServerError()
+                || response.getStatusCode().value() == HttpStatus.ACCEPTED.value()) {
+            // Issue pas encore connue : un doublon la tranchera par la saga
+            settle(key, attempt, outcome(attempt, UNKNOWN, response.getStatusCode().value(), null));
+        } else {
+            settle(key, attempt, outcome(attempt, DONE, response.getStatusCode().value(),
+                    objectMapper.valueToTree(response.getBody())));
+        }
+        return response;
+    }
+
+    private void renewLease(String key, IdempotencyRecord attempt) {
+        IdempotencyRecord renewed = outcome(attempt, PENDING, 0, null);
+        renewed.setLeaseUntil(System.currentTimeMillis() + pendingTtlMs);
+        try {
+            replace(key, attempt.getOwner(), renewed, PENDING);
+        } catch (Exception e) {
+            log.warn("Could not renew checkout lease {}: {}", key, e.getMessage());
+        }
+    }
+
+    // Issue finale de la requête propriétaire ; null libère la clé
+    private void settle(String key, IdempotencyRecord attempt, IdempotencyRecord outcome) {
+        try {
+            if (!replace(key, attempt.getOwner(), outcome, "")) {
+                log.warn("Checkout record {} was taken over, outcome not stored", key);
+            }
+        } catch (Exception e) {
+            // Le bail expirera : un doublon ultérieur résoudra l'issue par la saga
+            log.error("Could not store checkout outcome for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private boolean claim(String key, IdempotencyRecord attempt) {
+        Boolean acquired = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, toJson(attempt), Duration.ofHours(ttlHours));
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    // Remplace l'enregistrement s'il appartient toujours à {@code owner} (et est dans l'état attendu si précisé)
+    private boolean replace(String key, String owner, IdempotencyRecord record, String expectedState) {
+        Long replaced = stringRedisTemplate.execute(REPLACE_SCRIPT, List.of(key),
+                owner,
+                record != null ? toJson(record) : "",
+                String.valueOf(Duration.ofHours(ttlHours).toMillis()),
+                expectedState);
+        return replaced != null && replaced > 0;
+    }
+
+    private IdempotencyRecord pending(String fingerprint) {
+        return new IdempotencyRecord(PENDING, UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                System.currentTimeMillis() + pendingTtlMs, fingerprint, 0, null);
+    }
+
+    private static IdempotencyRecord outcome(IdempotencyRecord attempt, String state, int status, JsonNode body) {
+        return new IdempotencyRecord(state, attempt.getOwner(), attempt.getSagaId(), attempt.getLeaseUntil(),
+                attempt.getFingerprint(), status, body);
+    }
+
+    private static ResponseEntity<?> replay(IdempotencyRecord record) {
+        return ResponseEntity.status(record.getStatus())
+                .header("Idempotent-Replayed", "true")
+                .body(record.getBody());
+    }
+
+    private IdempotencyRecord read(String key) {
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, IdempotencyRecord.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable idempotency record {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private String toJson(IdempotencyRecord record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize idempotency record", e);
+        }
+    }
+
+    // Une même clé réutilisée pour une autre requête doit être refusée, pas rejouée
+    private String fingerprint(String operation, Object request) {
+        try {
+            byte[] payload = (operation + ":" + objectMapper.writeValueAsString(request)).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(payload));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint checkout request", e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class IdempotencyRecord {
+        private String state;
+        // Requête qui détient l'enregistrement : seule elle peut le renouveler ou y écrire son issue
+        private String owner;
+        // Saga lancée par cette requête, pour trancher une issue inconnue
+        private String sagaId;
+        // Fin du bail d'un marqueur PENDING (epoch ms)
+        private long leaseUntil;
+        private String fingerprint;
+        private int status;
+        private JsonNode body;
+    }
+}
@@ -3,17 +3,28 @@ package com.ecommerce.cart.service;
 import com.ecommerce.cart.dto.*;
 import com.ecommerce.cart.entity.Cart;
 import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.saga.CheckoutSagaOrchestrator;
+import com.ecommerce.common.http.RequestDeadline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,14 +34,21 @@ public class CheckoutService {
 
     private final CartService cartService;
     private final RestTemplate restTemplate;
-
-    @Value("${order-service.url:http://localhost:8083}")
-    private String orderServiceUrl;
+    private final ExecutorService stockValidationExecutor;
+    private final CheckoutSagaOrchestrator checkoutSagaOrchestrator;
 
     @Value("${product-service.url:http://localhost:8082}")
     private String productServiceUrl;
 
-    public Map<String, Object> checkout(String userId, CheckoutRequest request, String jwtToken) {
+    // Nombre de produits par appel POST /batch
+    @Value("${checkout.validation.batch-size:100}")
+    private int validationBatchSize;
+
+    // Délai global de la validation du stock, tous lots confondus
+    @Value("${checkout.validation.deadline-ms:3000}")
+    private long validationDeadlineMs;
+
+    public Map<String, Object> checkout(String userId, CheckoutRequest request, String jwtToken, String sagaId) {
         // 1. Récupération du panier
         Cart cart = cartService.getCart(userId);
 
@@ -40,17 +58,12 @@ public class CheckoutService {
 
         log.info("🛒 Starting checkout for user {} with {} items", userId, cart.getItems().size());
 
-        // 2. Validation du Stock (Lecture seule pour vérifier)
+        // 2. Validation du Stock (lecture seule, échec rapide avant d'engager quoi que ce soit)
         validateStock(cart.getItems(), jwtToken);
 
-        // 3. Création de la commande
-        OrderResponse order = createOrder(userId, cart, request, jwtToken);
-
-        // 4. Mise à jour réelle du stock (Écriture)
-        updateProductStock(cart.getItems(), jwtToken);
-
-        // 5. Vider le panier
-        cartService.clearCart(userId);
+        // 3. Saga : réservation du stock → commande → validation de la réservation → panier vidé
+        OrderResponse order = checkoutSagaOrchestrator.start(
+                sagaId, userId, buildOrderRequest(userId, cart, request), true);
 
         log.info("✅ Checkout completed successfully. Order ID: {}", order.getId());
 
@@ -62,7 +75,7 @@ public class CheckoutService {
         return response;
     }
 
-    public Map<String, Object> checkoutDirect(String userId, DirectCheckoutRequest request, String jwtToken) {
+    public Map<String, Object> checkoutDirect(String userId, DirectCheckoutRequest request, String jwtToken, String sagaId) {
         log.info("🚀 Starting DIRECT checkout for user {} - Product: {}, Quantity: {}",
                 userId, request.getProductId(), request.getQuantity());
 
@@ -110,13 +123,9 @@ public class CheckoutService {
         // 3. Validate Stock
         validateStock(transientCart.getItems(), jwtToken);
 
-        // 4. Create Order (Using the transient cart)
-        OrderResponse order = createOrder(userId, transientCart, request, jwtToken);
-
-        // 5. Update Stock
-        updateProductStock(transientCart.getItems(), jwtToken);
-
-        // NOTE: We DO NOT clear the persistent cart here!
+        // 4. Saga (Using the transient cart) - we DO NOT clear the persistent cart here!
+        OrderResponse order = checkoutSagaOrchestrator.start(
+                sagaId, userId, buildOrderRequest(userId, transientCart, request), false);
 
         log.info("✅ Direct Checkout completed successfully. Order ID: {}", order.getId());
 
@@ -128,46 +137,92 @@ public class CheckoutService {
         return response;
     }
 
+    /**
+     * Validation du stock via l'API batch. Les gros paniers sont découpés en lots interrogés en parallèle
+     * sur un pool borné ; la première rupture constatée arrête la validation et annule les lots restants.
+     * Le tout est borné par un délai global, au lieu de cumuler les timeouts de chaque appel : chaque appel
+     * a pour timeout de réponse le temps restant (RequestDeadline), un lot abandonné libère donc son thread.
+     */
     private void validateStock(List<CartItem> items, String jwtToken) {
         log.info("📦 Validating stock for {} items", items.size());
 
+        Map<Long, Integer> requested = new LinkedHashMap<>();
+        Map<Long, String> names = new HashMap<>();
+        for (CartItem item : items) {
+            requested.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            names.putIfAbsent(item.getProductId(), item.getProductName());
+        }
+
+        List<Long> productIds = new ArrayList<>(requested.keySet());
         HttpHeaders headers = createHeaders(jwtToken);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(validationDeadlineMs);
 
-        for (CartItem item : items) {
-            try {
-                String url = productServiceUrl + "/" + item.getProductId();
-
-                ResponseEntity<Map> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        new HttpEntity<>(headers),
-                        Map.class
-                );
+        CompletionService<Map<Long, Integer>> completion = new ExecutorCompletionService<>(stockValidationExecutor);
+        List<Future<Map<Long, Integer>>> pending = new ArrayList<>();
+        try {
+            for (int from = 0; from < productIds.size(); from += validationBatchSize) {
+                List<Long> chunk = productIds.subList(from, Math.min(from + validationBatchSize, productIds.size()));
+                // Pool saturé : RejectedExecutionException, la requête échoue sans attendre
+                pending.add(completion.submit(() -> RequestDeadline.callBefore(deadline, () -> fetchStock(chunk, headers))));
+            }
 
-                if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                    Map<String, Object> product = response.getBody();
-                    Number stockQtyNum = (Number) product.get("stockQuantity");
-                    int stockQuantity = stockQtyNum != null ? stockQtyNum.intValue() : 0;
-
-                    if (stockQuantity < item.getQuantity()) {
-                        throw new IllegalArgumentException(
-                                String.format("Stock insuffisant pour : %s (Demandé: %d, Dispo: %d)",
-                                        item.getProductName(), item.getQuantity(), stockQuantity)
-                        );
-                    }
+            for (int i = 0; i < pending.size(); i++) {
+                Future<Map<Long, Integer>> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new RuntimeException("Stock validation timed out after " + validationDeadlineMs + " ms");
                 }
-            } catch (HttpClientErrorException.NotFound e) {
-                throw new IllegalArgumentException("Produit introuvable : " + item.getProductName());
-            } catch (Exception e) {
-                log.warn("⚠️ Erreur validation stock pour {}: {}", item.getProductId(), e.getMessage());
-                if (e instanceof IllegalArgumentException) throw e;
+                checkStock(done.get(), requested, names);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Stock validation interrupted");
+        } catch (ExecutionException e) {
+            log.error("❌ Stock validation failed: {}", e.getCause().getMessage());
+            throw new RuntimeException("Stock validation unavailable: " + e.getCause().getMessage());
+        } finally {
+            // Fail-fast : les lots encore en vol ne servent plus à rien
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Map<Long, Integer> fetchStock(List<Long> productIds, HttpHeaders headers) {
+        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                productServiceUrl + "/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(productIds, headers),
+                new ParameterizedTypeReference<List<Map<String, Object>>>() {}
+        );
+
+        Map<Long, Integer> stockByProduct = new HashMap<>();
+        if (response.getBody() != null) {
+            for (Map<String, Object> product : response.getBody()) {
+                Number stockQtyNum = (Number) product.get("stockQuantity");
+                stockByProduct.put(((Number) product.get("id")).longValue(),
+                        stockQtyNum != null ? stockQtyNum.intValue() : 0);
             }
         }
+        // Un produit absent de la réponse n'existe plus : on le marque explicitement
+        productIds.forEach(productId -> stockByProduct.putIfAbsent(productId, null));
+        return stockByProduct;
     }
 
-    private OrderResponse createOrder(String userId, Cart cart, CheckoutRequest request, String jwtToken) {
-        log.info("📝 Creating order in Order Service");
+    private void checkStock(Map<Long, Integer> stockByProduct, Map<Long, Integer> requested, Map<Long, String> names) {
+        for (Map.Entry<Long, Integer> entry : stockByProduct.entrySet()) {
+            Integer stockQuantity = entry.getValue();
+            int quantity = requested.getOrDefault(entry.getKey(), 0);
+            if (stockQuantity == null) {
+                throw new IllegalArgumentException("Produit introuvable : " + names.get(entry.getKey()));
+            }
+            if (stockQuantity < quantity) {
+                throw new IllegalArgumentException(
+                        String.format("Stock insuffisant pour : %s (Demandé: %d, Dispo: %d)",
+                                names.get(entry.getKey()), quantity, stockQuantity)
+                );
+            }
+        }
+    }
 
+    private CreateOrderRequest buildOrderRequest(String userId, Cart cart, CheckoutRequest request) {
         List<OrderItemDto> orderItems = cart.getItems().stream()
                 .map(item -> OrderItemDto.builder()
                         .productId(item.getProductId())
@@ -177,7 +232,7 @@ public class CheckoutService {
                         .build())
                 .collect(Collectors.toList());
 
-        CreateOrderRequest orderRequest = CreateOrderRequest.builder()
+        return CreateOrderRequest.builder()
                 .userId(userId) // Indispensable
                 .items(orderItems)
                 .totalAmount(cart.getTotalAmount())
@@ -186,63 +241,6 @@ public class CheckoutService {
                 .promoCode(cart.getPromoCode())
                 .discount(cart.getDiscount())
                 .build();
-
-        HttpHeaders headers = createHeaders(jwtToken);
-        HttpEntity<CreateOrderRequest> entity = new HttpEntity<>(orderRequest, headers);
-
-        try {
-            String url = orderServiceUrl + "/api/orders";
-
-            ResponseEntity<OrderResponse> response = restTemplate.postForEntity(
-                    url,
-                    entity,
-                    OrderResponse.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.CREATED && response.getBody() != null) {
-                return response.getBody();
-            } else {
-                throw new RuntimeException("Order Service returned non-created status: " + response.getStatusCode());
-            }
-        } catch (HttpClientErrorException e) {
-            log.error("❌ Order Service Error: {}", e.getResponseBodyAsString());
-            throw new RuntimeException("Failed to create order: " + e.getMessage());
-        } catch (Exception e) {
-            log.error("❌ System Error creating order: {}", e.getMessage());
-            throw new RuntimeException("System error during checkout");
-        }
-    }
-
-    // ✅ IMPLEMENTATION DE LA MISE A JOUR DU STOCK
-    private void updateProductStock(List<CartItem> items, String jwtToken) {
-        log.info("📉 Updating stock for {} items...", items.size());
-
-        HttpHeaders headers = createHeaders(jwtToken);
-
-        for (CartItem item : items) {
-            try {
-                // Appel PATCH /api/products/{id}/stock/reduce?quantity=X
-                String url = String.format("%s/%d/stock/reduce?quantity=%d",
-                        productServiceUrl, item.getProductId(), item.getQuantity());
-
-                restTemplate.exchange(
-                        url,
-                        HttpMethod.PATCH, // Utilisation de PATCH
-                        new HttpEntity<>(headers),
-                        Void.class
-                );
-
-                log.debug("✅ Stock reduced for product {}", item.getProductId());
-
-            } catch (Exception e) {
-                // IMPORTANT : Dans une architecture distribuée sans Saga Pattern complet,
-                // si la mise à jour du stock échoue après la création de la commande,
-                // on a une incohérence.
-                // Ici, on loggue une erreur CRITIQUE pour intervention manuelle.
-                log.error("🚨 CRITICAL: Failed to update stock for product {} after order placement! Error: {}",
-                        item.getProductId(), e.getMessage());
-            }
-        }
     }
 
     private HttpHeaders createHeaders(String jwtToken) {
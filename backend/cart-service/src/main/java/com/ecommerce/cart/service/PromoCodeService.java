@@ -3,24 +3,49 @@ package com.ecommerce.cart.service;
 import com.ecommerce.cart.dto.CreatePromoCodeRequest;
 import com.ecommerce.cart.dto.UpdatePromoCodeRequest;
 import com.ecommerce.cart.entity.PromoCode;
+import com.ecommerce.cart.promo.CompiledPromoRule;
+import com.ecommerce.cart.promo.PromoRuleEngine;
 import com.ecommerce.cart.repository.PromoCodeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PromoCodeService {
 
+    // Utilisations par code : hash userId -> nombre de commandes passées avec ce code
+    private static final String USAGE_PREFIX = "promo:usage:";
+    // Compteurs incrémentés par une saga de checkout, pour ne compter qu'une fois et pouvoir rendre
+    private static final String USAGE_SAGA_PREFIX = "promo:usage:saga:";
+
+    private static final RedisScript<Long> USAGE_CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/promo-usage-claim.lua"), Long.class);
+    private static final RedisScript<Long> USAGE_RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/promo-usage-release.lua"), Long.class);
+
     private final PromoCodeRepository promoCodeRepository;
+    // Lectures servies depuis l'instantané en mémoire ; les écritures passent par Redis puis le rechargent
+    private final PromoRuleEngine promoRuleEngine;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Une saga peut être reprise ou compensée tant qu'elle est conservée
+    @Value("${checkout.saga.retention-hours:24}")
+    private long sagaRetentionHours;
 
     // CREATE
     public PromoCode createPromoCode(CreatePromoCodeRequest request) {
@@ -36,6 +61,9 @@ public class PromoCodeService {
                 .expiresAt(request.getExpiresAt())
                 .minAmount(request.getMinAmount())
                 .maxDiscount(request.getMaxDiscount())
+                .categoryIds(request.getCategoryIds())
+                .maxUsesPerUser(request.getMaxUsesPerUser())
+                .stackable(request.getStackable())
                 .active(true)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
@@ -44,6 +72,7 @@ public class PromoCodeService {
         promoCode.calculateTTL();
 
         PromoCode saved = promoCodeRepository.save(promoCode);
+        promoRuleEngine.changed();
         log.info("✅ Created promo code: {}", saved.getCode());
 
         return saved;
@@ -51,19 +80,22 @@ public class PromoCodeService {
 
     // READ ONE
     public Optional<PromoCode> getPromoCode(String code) {
-        return promoCodeRepository.findById(code.toUpperCase());
+        return Optional.ofNullable(promoRuleEngine.current().rule(code)).map(CompiledPromoRule::source);
     }
 
     // READ ALL
     public List<PromoCode> getAllPromoCodes() {
-        return StreamSupport.stream(promoCodeRepository.findAll().spliterator(), false)
+        return promoRuleEngine.current().all().stream()
+                .map(CompiledPromoRule::source)
                 .collect(Collectors.toList());
     }
 
     // READ ACTIVE ONLY
     public List<PromoCode> getActivePromoCodes() {
-        return getAllPromoCodes().stream()
-                .filter(PromoCode::isValid)
+        long now = System.currentTimeMillis();
+        return promoRuleEngine.current().all().stream()
+                .filter(rule -> rule.isValidAt(now))
+                .map(CompiledPromoRule::source)
                 .collect(Collectors.toList());
     }
 
@@ -91,10 +123,20 @@ public class PromoCodeService {
         if (request.getActive() != null) {
             promoCode.setActive(request.getActive());
         }
+        if (request.getCategoryIds() != null) {
+            promoCode.setCategoryIds(request.getCategoryIds().isEmpty() ? null : request.getCategoryIds());
+        }
+        if (request.getMaxUsesPerUser() != null) {
+            promoCode.setMaxUsesPerUser(request.getMaxUsesPerUser() > 0 ? request.getMaxUsesPerUser() : null);
+        }
+        if (request.getStackable() != null) {
+            promoCode.setStackable(request.getStackable());
+        }
 
         promoCode.setUpdatedAt(LocalDateTime.now());
 
         PromoCode updated = promoCodeRepository.save(promoCode);
+        promoRuleEngine.changed();
         log.info("✏️ Updated promo code: {}", updated.getCode());
 
         return updated;
@@ -107,27 +149,81 @@ public class PromoCodeService {
         }
 
         promoCodeRepository.deleteById(code.toUpperCase());
+        promoRuleEngine.changed();
         log.info("🗑️ Deleted promo code: {}", code);
     }
 
     // VALIDATE (for cart usage)
-    public Optional<PromoCode> validatePromoCode(String code) {
-        Optional<PromoCode> promoOpt = promoCodeRepository.findById(code.toUpperCase());
+    public Optional<CompiledPromoRule> validatePromoCode(String code) {
+        CompiledPromoRule rule = promoRuleEngine.current().rule(code);
 
-        if (promoOpt.isEmpty()) {
+        if (rule == null) {
             log.warn("Promo code not found: {}", code);
             return Optional.empty();
         }
 
-        PromoCode promo = promoOpt.get();
-
-        if (!promo.isValid()) {
+        if (!rule.isValidAt(System.currentTimeMillis())) {
             log.warn("Promo code invalid or expired: {}", code);
             return Optional.empty();
         }
 
         log.info("Promo code validated: {}", code);
-        return Optional.of(promo);
+        return Optional.of(rule);
+    }
+
+    // USAGE CAPS (maxUsesPerUser) : vérification anticipée à l'application du code, sans réserver
+    public boolean hasReachedUsageLimit(String userId, CompiledPromoRule rule) {
+        if (rule.maxUsesPerUser() == null) {
+            return false;
+        }
+        Object uses = stringRedisTemplate.opsForHash().get(USAGE_PREFIX + rule.code(), userId);
+        return uses != null && Long.parseLong(uses.toString()) >= rule.maxUsesPerUser();
+    }
+
+    /**
+     * Compte une utilisation des codes plafonnés de la commande (liste séparée par des virgules), au checkout.
+     * Vérification et incrément atomiques, tout ou rien : deux checkouts concurrents ne dépassent pas le plafond.
+     * Marqué par saga : une saga reprise ne compte pas deux fois.
+     *
+     * @throws IllegalArgumentException si le plafond d'un code est atteint
+     */
+    public void claimUsage(String sagaId, String userId, String promoCodes) {
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        keys.add(USAGE_SAGA_PREFIX + sagaId);
+        args.add(userId);
+        args.add(String.valueOf(Duration.ofHours(sagaRetentionHours).toSeconds()));
+        for (String code : promoCodes == null ? new String[0] : promoCodes.split(",")) {
+            CompiledPromoRule rule = promoRuleEngine.current().rule(code.trim());
+            // Seuls les codes plafonnés ont besoin d'un compteur
+            if (rule != null && rule.maxUsesPerUser() != null) {
+                keys.add(USAGE_PREFIX + rule.code());
+                args.add(String.valueOf(rule.maxUsesPerUser()));
+            }
+        }
+        if (keys.size() == 1) {
+            return;
+        }
+
+        Long claimed = stringRedisTemplate.execute(USAGE_CLAIM_SCRIPT, keys, args.toArray());
+        if (claimed == null || claimed == 0) {
+            throw new IllegalArgumentException("Promo code usage limit reached");
+        }
+    }
+
+    /**
+     * Rend les utilisations comptées par claimUsage pour une saga qui n'a pas abouti. Idempotent.
+     */
+    public void releaseUsage(String sagaId, String userId) {
+        String marker = USAGE_SAGA_PREFIX + sagaId;
+        Set<Object> counters = stringRedisTemplate.opsForHash().keys(marker);
+        if (counters == null || counters.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        keys.add(marker);
+        counters.forEach(counter -> keys.add(counter.toString()));
+        stringRedisTemplate.execute(USAGE_RELEASE_SCRIPT, keys, userId);
     }
 
     // SEED INITIAL DATA (appelé au démarrage)
@@ -0,0 +1,7 @@
+-- Retire un panier de l'index d'activité seulement s'il n'a pas été modifié depuis sa lecture
+-- KEYS[1] = cart:activity, ARGV[1] = userId, ARGV[2] = score lu (ms)
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if score and tonumber(score) == tonumber(ARGV[2]) then
+    return redis.call('ZREM', KEYS[1], ARGV[1])
+end
+return 0
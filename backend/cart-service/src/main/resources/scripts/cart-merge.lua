@@ -0,0 +1,115 @@
+-- Fusion atomique d'un panier invité dans le panier d'un utilisateur, écrit en une fois.
+-- KEYS[1] = cart:v2:<userId>, KEYS[2] = cart:v2:guest:<sessionId>, KEYS[3] = cart:activity
+-- ARGV[1] = maintenant (ms), ARGV[2] = TTL (s), ARGV[3] = userId
+-- ARGV[4..] = par produit revalidé : productId, prix en centimes, quantité disponible, métadonnées
+--             (prix -1 : produit disparu, la ligne est retirée)
+-- Les quantités des deux paniers s'additionnent, plafonnées au stock disponible ; un produit absent des
+-- arguments (ajouté entre-temps au panier invité) garde son prix et sera revalidé à la prochaine lecture.
+-- Retour : { statut, HGETALL du panier fusionné... }
+
+local userKey = KEYS[1]
+local guestKey = KEYS[2]
+local now = tonumber(ARGV[1])
+local ttl = tonumber(ARGV[2])
+
+local function num(value)
+    return string.format('%.0f', value)
+end
+
+local function parseLine(value)
+    local qty, price, pos, meta = string.match(value, '^(%-?%d+)|(%-?%d+)|(%d+)|(.*)$')
+    return { qty = tonumber(qty), price = tonumber(price), pos = tonumber(pos), meta = meta }
+end
+
+local function readCart(key)
+    local cart = { header = nil, lines = {}, order = {} }
+    local all = redis.call('HGETALL', key)
+    for i = 1, #all, 2 do
+        local field = all[i]
+        if field == 'header' then
+            cart.header = cjson.decode(all[i + 1])
+        elseif string.sub(field, 1, 5) == 'item:' then
+            local line = parseLine(all[i + 1])
+            cart.lines[field] = line
+            cart.order[#cart.order + 1] = field
+        end
+    end
+    table.sort(cart.order, function(a, b) return cart.lines[a].pos < cart.lines[b].pos end)
+    return cart
+end
+
+local user = readCart(userKey)
+local guest = readCart(guestKey)
+
+local header = user.header or { createdAt = now, subtotal = 0, seq = 0 }
+header.seq = header.seq or 0
+-- Ancien format d'en-tête : ne garder que le code
+if header.promoCode then
+    header.promoCodes = header.promoCodes or header.promoCode
+    header.promoCode = nil
+    header.promoBp = nil
+    header.promoMin = nil
+    header.promoMax = nil
+end
+header.discount = nil
+header.total = nil
+
+-- Lignes invitées : ajoutées à la suite, dans leur ordre d'origine
+for _, field in ipairs(guest.order) do
+    local guestLine = guest.lines[field]
+    local line = user.lines[field]
+    if line then
+        line.qty = line.qty + guestLine.qty
+    else
+        header.seq = header.seq + 1
+        guestLine.pos = header.seq
+        user.lines[field] = guestLine
+    end
+end
+
+-- Revalidation : prix, métadonnées et plafond de stock issus d'un seul lookup produit
+for i = 4, #ARGV, 4 do
+    local field = 'item:' .. ARGV[i]
+    local line = user.lines[field]
+    if line then
+        local price = tonumber(ARGV[i + 1])
+        local available = tonumber(ARGV[i + 2])
+        if price < 0 or available <= 0 then
+            user.lines[field] = nil
+            redis.call('HDEL', userKey, field)
+        else
+            line.price = price
+            line.qty = math.min(line.qty, available)
+            line.meta = ARGV[i + 3]
+        end
+    end
+end
+
+-- Les codes de l'utilisateur priment ; sinon ceux de l'invité (réévalués à la lecture)
+if not header.promoCodes and guest.header then
+    header.promoCodes = guest.header.promoCodes or guest.header.promoCode
+end
+
+header.subtotal = 0
+local writes = {}
+for field, line in pairs(user.lines) do
+    header.subtotal = header.subtotal + line.qty * line.price
+    writes[#writes + 1] = field
+    writes[#writes + 1] = num(line.qty) .. '|' .. num(line.price) .. '|' .. num(line.pos) .. '|' .. line.meta
+end
+header.updatedAt = now
+writes[#writes + 1] = 'header'
+writes[#writes + 1] = cjson.encode(header)
+
+redis.call('HSET', userKey, unpack(writes))
+redis.call('EXPIRE', userKey, ttl)
+redis.call('DEL', guestKey)
+redis.call('ZADD', KEYS[3], now, ARGV[3])
+redis.call('ZREM', KEYS[3], string.sub(guestKey, #'cart:v2:' + 1))
+
+local response = { 'OK' }
+local all = redis.call('HGETALL', userKey)
+for i = 1, #all do
+    response[#response + 1] = all[i]
+end
+return response
@@ -0,0 +1,68 @@
+-- Reprise atomique d'un panier à l'ancien format (JSON sous cart:<userId>) dans le hash cart:v2:<userId>.
+-- KEYS[1] = cart:v2:<userId>, KEYS[2] = cart:<userId>, KEYS[3] = cart:activity
+-- ARGV[1] = valeur lue de l'ancien panier, ARGV[2] = maintenant (ms), ARGV[3] = TTL (s)
+-- ARGV[4] = date de création (ms, '' : inconnue), ARGV[5] = code promo ('' : aucun)
+-- ARGV[6..] = par ligne : productId, quantité, prix en centimes, métadonnées
+-- L'ancienne clé n'est supprimée que si elle vaut toujours ARGV[1], dans le même script que l'écriture
+-- du hash : un crash ne perd plus le panier, une réécriture concurrente n'est pas écrasée.
+-- Si le hash existe déjà (ancien réplica qui a réécrit cart:<userId> après une première reprise),
+-- les lignes sont fusionnées en gardant la plus grande quantité.
+-- Retour : { 'CHANGED' } si l'ancienne clé a changé depuis la lecture, sinon { 'OK', HGETALL du panier... }
+
+local key = KEYS[1]
+local now = tonumber(ARGV[2])
+local ttl = tonumber(ARGV[3])
+
+if redis.call('GET', KEYS[2]) ~= ARGV[1] then
+    return { 'CHANGED' }
+end
+
+local function num(value)
+    return string.format('%.0f', value)
+end
+
+local raw = redis.call('HGET', key, 'header')
+local header
+if raw then
+    header = cjson.decode(raw)
+else
+    header = { createdAt = ARGV[4] ~= '' and tonumber(ARGV[4]) or now, subtotal = 0, seq = 0 }
+end
+
+for i = 6, #ARGV, 4 do
+    local field = 'item:' .. ARGV[i]
+    local qty = tonumber(ARGV[i + 1])
+    local existing = redis.call('HGET', key, field)
+    if existing then
+        local lineQty, price, pos, meta = string.match(existing, '^(%-?%d+)|(%-?%d+)|(%d+)|(.*)$')
+        lineQty = tonumber(lineQty)
+        if qty > lineQty then
+            header.subtotal = header.subtotal + (qty - lineQty) * tonumber(price)
+            redis.call('HSET', key, field, num(qty) .. '|' .. price .. '|' .. pos .. '|' .. meta)
+        end
+    elseif qty > 0 then
+        header.seq = header.seq + 1
+        local price = tonumber(ARGV[i + 2])
+        header.subtotal = header.subtotal + qty * price
+        redis.call('HSET', key, field, num(qty) .. '|' .. num(price) .. '|' .. num(header.seq) .. '|' .. ARGV[i + 3])
+    end
+end
+
+if ARGV[5] ~= '' and not header.promoCodes and not header.promoCode then
+    header.promoCodes = ARGV[5]
+end
+header.discount = nil
+header.total = nil
+header.updatedAt = now
+
+redis.call('HSET', key, 'header', cjson.encode(header))
+redis.call('EXPIRE', key, ttl)
+redis.call('DEL', KEYS[2])
+redis.call('ZADD', KEYS[3], now, string.sub(key, #'cart:v2:' + 1))
+
+local response = { 'OK' }
+local all = redis.call('HGETALL', key)
+for i = 1, #all do
+    response[#response + 1] = all[i]
+end
+return response
@@ -0,0 +1,158 @@
+-- Mutation atomique d'un panier stocké en hash Redis : seule la ligne concernée et l'en-tête sont réécrits.
+-- KEYS[1] = cart:v2:<userId>, KEYS[2] = cart:<userId> (ancien format), KEYS[3] = cart:activity
+-- ARGV[1] = opération, ARGV[2] = maintenant (ms), ARGV[3] = TTL (s), ARGV[4..] = arguments de l'opération
+--
+-- Ligne (champ "item:<productId>") : "<quantité>|<prix unitaire en centimes>|<position>|<json des métadonnées>"
+-- En-tête (champ "header") : JSON, montants en centimes, codes promo appliqués ("A,B")
+-- La réduction est évaluée côté service (PromoRuleEngine) : le script ne tient que le sous-total
+-- Retour : { statut, HGETALL du panier... } ; { 'LEGACY' } si un panier à l'ancien format doit d'abord être repris
+-- (y compris quand le hash existe : un ancien réplica a pu réécrire cart:<userId> depuis la reprise)
+
+local key = KEYS[1]
+local op = ARGV[1]
+local now = tonumber(ARGV[2])
+local ttl = tonumber(ARGV[3])
+
+local function num(value)
+    return string.format('%.0f', value)
+end
+
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return { 'LEGACY' }
+end
+
+local raw = redis.call('HGET', key, 'header')
+
+local header
+if raw then
+    header = cjson.decode(raw)
+else
+    header = { createdAt = now, subtotal = 0, discount = 0, total = 0, seq = 0 }
+end
+
+local function readLine(field)
+    local value = redis.call('HGET', key, field)
+    if not value then
+        return nil
+    end
+    local qty, price, pos, meta = string.match(value, '^(%-?%d+)|(%-?%d+)|(%d+)|(.*)$')
+    return { qty = tonumber(qty), price = tonumber(price), pos = tonumber(pos), meta = meta }
+end
+
+local function writeLine(field, line)
+    redis.call('HSET', key, field, num(line.qty) .. '|' .. num(line.price) .. '|' .. num(line.pos) .. '|' .. line.meta)
+end
+
+local function result(status)
+    local response = { status }
+    local all = redis.call('HGETALL', key)
+    for i = 1, #all do
+        response[#response + 1] = all[i]
+    end
+    return response
+end
+
+if op == 'touch' then
+    -- Crée l'en-tête si besoin (date de création optionnelle, pour la migration)
+    if not raw and ARGV[4] and ARGV[4] ~= '' then
+        header.createdAt = tonumber(ARGV[4])
+    end
+
+elseif op == 'add' then
+    -- ARGV : productId, quantité ajoutée, prix, métadonnées
+    local field = 'item:' .. ARGV[4]
+    local qty = tonumber(ARGV[5])
+    local line = readLine(field)
+    if line then
+        line.qty = line.qty + qty
+        header.subtotal = header.subtotal + qty * line.price
+    else
+        header.seq = header.seq + 1
+        line = { qty = qty, price = tonumber(ARGV[6]), pos = header.seq, meta = ARGV[7] }
+        header.subtotal = header.subtotal + qty * line.price
+    end
+    writeLine(field, line)
+
+elseif op == 'set' then
+    -- ARGV : productId, quantité (<= 0 : suppression)
+    local field = 'item:' .. ARGV[4]
+    local qty = tonumber(ARGV[5])
+    local line = readLine(field)
+    if line then
+        if qty <= 0 then
+            redis.call('HDEL', key, field)
+            header.subtotal = header.subtotal - line.qty * line.price
+        else
+            header.subtotal = header.subtotal + (qty - line.qty) * line.price
+            line.qty = qty
+            writeLine(field, line)
+        end
+    end
+
+elseif op == 'sync' then
+    -- ARGV : productId, stock disponible, prix, métadonnées (rafraîchis depuis product-service)
+    -- La quantité n'est jamais reprise de la lecture côté service, qui a pu être dépassée par un autre
+    -- onglet : elle est seulement plafonnée au stock (stock à 0 : ligne supprimée)
+    local field = 'item:' .. ARGV[4]
+    local line = readLine(field)
+    if line then
+        header.subtotal = header.subtotal - line.qty * line.price
+        local qty = math.min(line.qty, tonumber(ARGV[5]))
+        if qty <= 0 then
+            redis.call('HDEL', key, field)
+        else
+            line.qty = qty
+            line.price = tonumber(ARGV[6])
+            line.meta = ARGV[7]
+            header.subtotal = header.subtotal + line.qty * line.price
+            writeLine(field, line)
+        end
+    end
+
+elseif op == 'remove' then
+    -- ARGV : productId
+    local field = 'item:' .. ARGV[4]
+    local line = readLine(field)
+    if line then
+        redis.call('HDEL', key, field)
+        header.subtotal = header.subtotal - line.qty * line.price
+    end
+
+elseif op == 'clear' then
+    redis.call('DEL', key)
+    header.subtotal = 0
+    header.promoCodes = nil
+
+elseif op == 'promos' then
+    -- ARGV : codes appliqués, séparés par des virgules ('' : aucun)
+    header.promoCodes = ARGV[4] ~= '' and ARGV[4] or nil
+
+else
+    return redis.error_reply('Unknown cart operation: ' .. tostring(op))
+end
+
+-- Ancien format d'en-tête (un seul code et ses paramètres) : ne garder que le code
+if header.promoCode then
+    if not header.promoCodes and op ~= 'promos' and op ~= 'clear' then
+        header.promoCodes = header.promoCode
+    end
+    header.promoCode = nil
+    header.promoBp = nil
+    header.promoMin = nil
+    header.promoMax = nil
+end
+header.discount = nil
+header.total = nil
+header.updatedAt = now
+
+redis.call('HSET', key, 'header', cjson.encode(header))
+redis.call('EXPIRE', key, ttl)
+
+-- Index d'activité (score = dernière modification) : les paniers inactifs se trouvent sans parcourir les clés
+local userId = string.sub(key, #'cart:v2:' + 1)
+if op == 'clear' then
+    redis.call('ZREM', KEYS[3], userId)
+else
+    redis.call('ZADD', KEYS[3], now, userId)
+end
+return result('OK')
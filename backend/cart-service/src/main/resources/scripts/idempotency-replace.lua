@@ -0,0 +1,20 @@
+-- Remplace (ou supprime) un enregistrement d'idempotence seulement s'il appartient encore à l'appelant
+-- KEYS[1] = clé d'idempotence, ARGV[1] = propriétaire attendu,
+-- ARGV[2] = nouvel enregistrement JSON ('' = suppression), ARGV[3] = TTL (ms),
+-- ARGV[4] = état attendu ('' = quel qu'il soit ; un renouvellement de bail ne réécrit pas une issue déjà stockée)
+local current = redis.call('GET', KEYS[1])
+if not current then
+    return 0
+end
+local ok, record = pcall(cjson.decode, current)
+if not ok or type(record) ~= 'table' or record.owner ~= ARGV[1] then
+    return 0
+end
+if ARGV[4] ~= '' and record.state ~= ARGV[4] then
+    return 0
+end
+if ARGV[2] == '' then
+    return redis.call('DEL', KEYS[1])
+end
+redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+return 1
@@ -0,0 +1,6 @@
+-- Libère un verrou seulement s'il appartient encore à l'appelant
+-- KEYS[1] = clé du verrou, ARGV[1] = propriétaire
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,19 @@
+-- Compte une utilisation des codes plafonnés d'une saga, tout ou rien, une seule fois par saga
+-- KEYS[1] = promo:usage:saga:<sagaId> (hash clé de compteur -> 1), KEYS[2..n] = promo:usage:<CODE>
+-- ARGV[1] = userId, ARGV[2] = TTL de la marque (s), ARGV[3..n+1] = plafond de chaque code (même ordre que KEYS[2..n])
+-- Retour : 1 si compté (ou déjà compté pour cette saga), 0 si un plafond est atteint (rien n'est écrit)
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 1
+end
+for i = 2, #KEYS do
+    local uses = tonumber(redis.call('HGET', KEYS[i], ARGV[1]) or '0')
+    if uses >= tonumber(ARGV[i + 1]) then
+        return 0
+    end
+end
+for i = 2, #KEYS do
+    redis.call('HINCRBY', KEYS[i], ARGV[1], 1)
+    redis.call('HSET', KEYS[1], KEYS[i], '1')
+end
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return 1
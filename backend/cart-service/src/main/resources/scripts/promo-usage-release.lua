@@ -0,0 +1,15 @@
+-- Rend les utilisations comptées pour une saga compensée ou échouée, une seule fois
+-- KEYS[1] = promo:usage:saga:<sagaId>, KEYS[2..n] = compteurs lus dans la marque, ARGV[1] = userId
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+for i = 2, #KEYS do
+    if redis.call('HEXISTS', KEYS[1], KEYS[i]) == 1 then
+        local uses = redis.call('HINCRBY', KEYS[i], ARGV[1], -1)
+        if uses <= 0 then
+            redis.call('HDEL', KEYS[i], ARGV[1])
+        end
+    end
+end
+redis.call('DEL', KEYS[1])
+return 1
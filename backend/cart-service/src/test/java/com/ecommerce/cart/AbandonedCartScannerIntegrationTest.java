@@ -0,0 +1,124 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.cart.service.AbandonedCartScanner;
+import com.ecommerce.common.event.AbandonedCartEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Paniers abandonnés : seuls les paniers inactifs de l'index d'activité sont publiés, et ils n'en sortent
+ * qu'une fois l'événement acquitté ; paniers expirés et paniers invités sortent de l'index sans événement.
+ */
+class AbandonedCartScannerIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String ACTIVITY_KEY = "cart:activity";
+
+    @Autowired
+    private AbandonedCartScanner scanner;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String idleUser;
+    private String activeUser;
+    private long idleSince;
+
+    @BeforeEach
+    void setUp() {
+        // Balayage désactivé pour les autres classes de test : activé ici, appelé à la main
+        ReflectionTestUtils.setField(scanner, "enabled", true);
+
+        // Utilisateurs propres au test : les conteneurs sont partagés entre les classes
+        idleUser = UUID.randomUUID().toString();
+        activeUser = UUID.randomUUID().toString();
+        idleSince = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(48);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(scanner, "enabled", false);
+    }
+
+    @Test
+    void idleCartIsPublishedAndLeavesTheIndex() {
+        addItem(idleUser);
+        addItem(activeUser);
+        markIdle(idleUser);
+        when(eventPublisher.publish(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        scanner.scan();
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publish(eq(AbandonedCartScanner.TOPIC), eq(idleUser), event.capture());
+        AbandonedCartEvent published = (AbandonedCartEvent) event.getValue();
+        assertThat(published.getLastActivityAt()).isEqualTo(idleSince);
+        assertThat(published.getItems()).extracting(AbandonedCartEvent.Item::getProductId).containsExactly(7L);
+        verify(eventPublisher, never()).publish(eq(AbandonedCartScanner.TOPIC), eq(activeUser), any());
+
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVITY_KEY, idleUser)).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVITY_KEY, activeUser)).isNotNull();
+    }
+
+    @Test
+    void cartStaysIndexedUntilItsEventIsAcknowledged() {
+        addItem(idleUser);
+        markIdle(idleUser);
+        when(eventPublisher.publish(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker indisponible")));
+
+        scanner.scan();
+
+        // Reprise au prochain passage
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVITY_KEY, idleUser)).isEqualTo((double) idleSince);
+        stringRedisTemplate.opsForZSet().remove(ACTIVITY_KEY, idleUser);
+    }
+
+    @Test
+    void expiredAndGuestCartsLeaveTheIndexWithoutAnEvent() {
+        String guestCart = CartRepository.guestCartId(UUID.randomUUID().toString());
+        addItem(guestCart);
+        markIdle(guestCart);
+        // Panier expiré : encore dans l'index, plus dans Redis
+        markIdle(idleUser);
+
+        scanner.scan();
+
+        verify(eventPublisher, never()).publish(eq(AbandonedCartScanner.TOPIC), eq(guestCart), any());
+        verify(eventPublisher, never()).publish(eq(AbandonedCartScanner.TOPIC), eq(idleUser), any());
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVITY_KEY, guestCart)).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVITY_KEY, idleUser)).isNull();
+    }
+
+    private void addItem(String userId) {
+        cartRepository.addItem(userId, CartItem.builder()
+                .productId(7L).productName("Produit 7").price(new BigDecimal("12.00")).quantity(1).build());
+    }
+
+    // Dernière activité il y a 48 h, au-delà du délai d'abandon
+    private void markIdle(String userId) {
+        stringRedisTemplate.opsForZSet().add(ACTIVITY_KEY, userId, idleSince);
+    }
+}
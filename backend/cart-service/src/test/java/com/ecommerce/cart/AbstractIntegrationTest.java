@@ -0,0 +1,46 @@
+package com.ecommerce.cart;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.ecommerce.common.kafka.EventPublisher;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.utility.DockerImageName;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public abstract class AbstractIntegrationTest {
+
+    // Événements de paniers abandonnés : aucun envoi réel pendant les tests
+    @MockitoBean
+    protected EventPublisher eventPublisher;
+
+    static final KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.3.2"));
+
+    static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.0.12-alpine"))
+            .withExposedPorts(6379)
+            .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*\\n", 1));
+
+    static {
+        kafka.start();
+        redis.start();
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.bootstrap-servers", kafka::getBootstrapServers);
+
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+
+        // Mock JWT Secret for tests
+        registry.add("jwt.secret", () -> "mySuperSecretKeyForIntegrationTesting1234567890");
+
+        // Pas de limitation de débit ni de balayage des paniers abandonnés pendant les tests
+        registry.add("rate-limiting.enabled", () -> "false");
+        registry.add("cart.abandonment.enabled", () -> "false");
+    }
+}
@@ -0,0 +1,125 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.cart.repository.CartRepository.MergeLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Fusion d'un panier invité dans celui de l'utilisateur par cart-merge.lua.
+ */
+class CartMergeIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String userId;
+    private String guestCartId;
+
+    @BeforeEach
+    void setUp() {
+        // Paniers propres au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+        guestCartId = CartRepository.guestCartId(UUID.randomUUID().toString());
+        cartRepository.create(userId);
+    }
+
+    @Test
+    void quantitiesAreSummedAndCappedToStock() {
+        cartRepository.addItem(userId, item(1L, "10.00", 2));
+        cartRepository.addItem(userId, item(2L, "5.00", 1));
+        cartRepository.addItem(guestCartId, item(1L, "10.00", 3));
+        cartRepository.addItem(guestCartId, item(2L, "5.00", 4));
+
+        Cart cart = cartRepository.merge(userId, guestCartId, List.of(
+                new MergeLine(1L, item(1L, "10.00", 0), 100),
+                new MergeLine(2L, item(2L, "5.00", 0), 3)));
+
+        assertThat(cart.getItems()).extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactly(tuple(1L, 5), tuple(2L, 3));
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("65.00"));
+    }
+
+    @Test
+    void guestLinesFollowTheUserLinesWithRevalidatedPrices() {
+        cartRepository.addItem(userId, item(7L, "3.00", 1));
+        cartRepository.addItem(guestCartId, item(9L, "20.00", 1));
+        cartRepository.addItem(guestCartId, item(8L, "4.00", 2));
+
+        Cart cart = cartRepository.merge(userId, guestCartId, List.of(
+                new MergeLine(9L, item(9L, "18.50", 0), 10),
+                new MergeLine(8L, item(8L, "4.00", 0), 10)));
+
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(7L, 9L, 8L);
+        assertThat(cart.getItems().get(1).getPrice()).isEqualTo(new BigDecimal("18.50"));
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("29.50"));
+    }
+
+    @Test
+    void vanishedOrSoldOutProductsAreDropped() {
+        cartRepository.addItem(userId, item(1L, "10.00", 1));
+        cartRepository.addItem(guestCartId, item(2L, "6.00", 1));
+        cartRepository.addItem(guestCartId, item(3L, "7.00", 1));
+
+        Cart cart = cartRepository.merge(userId, guestCartId, List.of(
+                new MergeLine(1L, item(1L, "10.00", 0), 5),
+                new MergeLine(2L, null, 0),
+                new MergeLine(3L, item(3L, "7.00", 0), 0)));
+
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(1L);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(cartRepository.find(userId).getItems()).extracting(CartItem::getProductId).containsExactly(1L);
+    }
+
+    @Test
+    void guestCartIsDeletedAndLeavesTheActivityIndex() {
+        cartRepository.addItem(guestCartId, item(1L, "10.00", 1));
+        assertThat(stringRedisTemplate.opsForZSet().score("cart:activity", guestCartId)).isNotNull();
+
+        cartRepository.merge(userId, guestCartId, List.of(new MergeLine(1L, item(1L, "10.00", 0), 5)));
+
+        assertThat(cartRepository.find(guestCartId)).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score("cart:activity", guestCartId)).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score("cart:activity", userId)).isNotNull();
+    }
+
+    @Test
+    void userPromoCodesWinOverTheGuestOnes() {
+        cartRepository.addItem(guestCartId, item(1L, "10.00", 1));
+        cartRepository.setPromoCodes(guestCartId, List.of("GUEST5"));
+
+        Cart cart = cartRepository.merge(userId, guestCartId, List.of(new MergeLine(1L, item(1L, "10.00", 0), 5)));
+        assertThat(cart.getPromoCodes()).containsExactly("GUEST5");
+
+        String otherGuest = CartRepository.guestCartId(UUID.randomUUID().toString());
+        cartRepository.setPromoCodes(userId, List.of("MEMBER10"));
+        cartRepository.setPromoCodes(otherGuest, List.of("GUEST5"));
+
+        cart = cartRepository.merge(userId, otherGuest, List.of());
+        assertThat(cart.getPromoCodes()).containsExactly("MEMBER10");
+    }
+
+    private static CartItem item(Long productId, String price, int quantity) {
+        return CartItem.builder()
+                .productId(productId)
+                .categoryId(3L)
+                .productName("Produit " + productId)
+                .price(new BigDecimal(price))
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.entity.Cart;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Mutations du panier par cart-mutate.lua : lignes, sous-total en centimes, ordre d'ajout, codes promo, index d'activité.
+ */
+class CartRepositoryIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        // Utilisateur propre au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void addAccumulatesQuantitiesAndKeepsTheSubtotalInCents() {
+        cartRepository.addItem(userId, item(1L, "19.99", 2));
+        cartRepository.addItem(userId, item(2L, "0.10", 7));
+        Cart cart = cartRepository.addItem(userId, item(1L, "19.99", 1));
+
+        assertThat(cart.getItems()).extracting(CartItem::getProductId, CartItem::getQuantity)
+                .containsExactly(tuple(1L, 3), tuple(2L, 7));
+        // 3 × 19,99 + 7 × 0,10 : aucun arrondi binaire
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("60.67"));
+        assertThat(cartRepository.find(userId)).usingRecursiveComparison()
+                .ignoringFields("createdAt", "updatedAt").isEqualTo(cart);
+    }
+
+    @Test
+    void linesKeepTheirInsertionOrder() {
+        cartRepository.addItem(userId, item(30L, "5.00", 1));
+        cartRepository.addItem(userId, item(10L, "5.00", 1));
+        cartRepository.addItem(userId, item(20L, "5.00", 1));
+        cartRepository.removeItem(userId, 10L);
+        cartRepository.addItem(userId, item(30L, "5.00", 1));
+        Cart cart = cartRepository.addItem(userId, item(10L, "5.00", 1));
+
+        // Une ligne re-ajoutée après suppression passe en dernier ; une ligne existante garde sa place
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(30L, 20L, 10L);
+        assertThat(cart.getItems().get(0).getProductName()).isEqualTo("Produit 30");
+        assertThat(cart.getItems().get(0).getImages()).containsExactly("/api/files/products/30.jpg");
+    }
+
+    @Test
+    void setUpdatesOrRemovesALine() {
+        cartRepository.addItem(userId, item(1L, "12.50", 1));
+        cartRepository.addItem(userId, item(2L, "3.35", 2));
+
+        Cart cart = cartRepository.updateQuantity(userId, 1L, 4);
+        assertThat(cart.getItems()).filteredOn(line -> line.getProductId() == 1L)
+                .singleElement().extracting(CartItem::getQuantity).isEqualTo(4);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("56.70"));
+
+        cart = cartRepository.updateQuantity(userId, 2L, 0);
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(1L);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("50.00"));
+
+        // Produit absent du panier : rien ne change
+        cart = cartRepository.updateQuantity(userId, 99L, 3);
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(1L);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("50.00"));
+    }
+
+    @Test
+    void removeSubtractsTheLine() {
+        cartRepository.addItem(userId, item(1L, "8.99", 3));
+        cartRepository.addItem(userId, item(2L, "1.01", 1));
+
+        Cart cart = cartRepository.removeItem(userId, 1L);
+
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(2L);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("1.01"));
+    }
+
+    @Test
+    void syncRefreshesPriceAndCapsQuantityToStock() {
+        cartRepository.addItem(userId, item(1L, "10.00", 5));
+        cartRepository.addItem(userId, item(2L, "4.00", 2));
+
+        // La quantité passée est ignorée : seule la quantité stockée est plafonnée
+        Cart cart = cartRepository.syncItem(userId, item(1L, "9.50", 1), 3);
+        assertThat(cart.getItems()).filteredOn(line -> line.getProductId() == 1L).singleElement()
+                .satisfies(line -> {
+                    assertThat(line.getQuantity()).isEqualTo(3);
+                    assertThat(line.getPrice()).isEqualTo(new BigDecimal("9.50"));
+                });
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("36.50"));
+
+        cart = cartRepository.syncItem(userId, item(2L, "4.00", 2), 0);
+        assertThat(cart.getItems()).extracting(CartItem::getProductId).containsExactly(1L);
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("28.50"));
+    }
+
+    @Test
+    void promoCodesAreReplacedAndCleared() {
+        cartRepository.addItem(userId, item(1L, "20.00", 1));
+
+        Cart cart = cartRepository.setPromoCodes(userId, List.of("WELCOME10", "FREESHIP"));
+        assertThat(cart.getPromoCodes()).containsExactly("WELCOME10", "FREESHIP");
+
+        cart = cartRepository.setPromoCodes(userId, List.of());
+        assertThat(cart.getPromoCodes()).isEmpty();
+        // Les codes ne touchent pas au sous-total : la réduction est calculée côté service
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("20.00"));
+    }
+
+    @Test
+    void clearEmptiesTheCartAndLeavesTheActivityIndex() {
+        cartRepository.addItem(userId, item(1L, "20.00", 2));
+        cartRepository.setPromoCodes(userId, List.of("WELCOME10"));
+        assertThat(stringRedisTemplate.opsForZSet().score("cart:activity", userId)).isNotNull();
+
+        Cart cart = cartRepository.clear(userId);
+
+        assertThat(cart.getItems()).isEmpty();
+        assertThat(cart.getSubtotal()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(cart.getPromoCodes()).isEmpty();
+        assertThat(stringRedisTemplate.opsForZSet().score("cart:activity", userId)).isNull();
+        assertThat(stringRedisTemplate.getExpire("cart:v2:" + userId)).isPositive();
+    }
+
+    private static CartItem item(Long productId, String price, int quantity) {
+        return CartItem.builder()
+                .productId(productId)
+                .categoryId(3L)
+                .productName("Produit " + productId)
+                .price(new BigDecimal(price))
+                .quantity(quantity)
+                .images(List.of("/api/files/products/" + productId + ".jpg"))
+                .build();
+    }
+}
@@ -0,0 +1,266 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.dto.OrderResponse;
+import com.ecommerce.cart.saga.CheckoutSaga;
+import com.ecommerce.cart.saga.CheckoutSagaRepository;
+import com.ecommerce.cart.saga.CheckoutSagaStatus;
+import com.ecommerce.cart.service.CheckoutIdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Idempotency-Key du checkout : rejeu, 409 pendant un doublon en cours, 422 pour une autre requête,
+ * et issue inconnue tranchée par la saga.
+ */
+class CheckoutIdempotencyIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String OPERATION = "checkout";
+
+    @Autowired
+    private CheckoutIdempotencyService idempotencyService;
+
+    @Autowired
+    private CheckoutSagaRepository sagaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Ids de saga reçus par le checkout, dans l'ordre des exécutions
+    private final List<String> runs = new CopyOnWriteArrayList<>();
+
+    private String userId;
+    private String key;
+    private Object waitMs;
+
+    @BeforeEach
+    void setUp() {
+        // Utilisateur et clé propres au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+        key = UUID.randomUUID().toString();
+        waitMs = ReflectionTestUtils.getField(idempotencyService, "waitMs");
+    }
+
+    @AfterEach
+    void restoreWait() {
+        ReflectionTestUtils.setField(idempotencyService, "waitMs", waitMs);
+    }
+
+    @Test
+    void duplicateReplaysTheStoredResponse() {
+        ResponseEntity<?> first = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(runs).hasSize(1);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(second.getBody()).isEqualTo(objectMapper.valueToTree(first.getBody()));
+    }
+
+    @Test
+    void sameKeyWithAnotherRequestIsRejected() {
+        execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        ResponseEntity<?> response = execute(request("1 place Bellecour"), respond(HttpStatus.CREATED));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                execute(request("12 rue de la Paix"), sagaId -> {
+                    started.countDown();
+                    sleep(300);
+                    return respond(HttpStatus.CREATED).apply(sagaId);
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void concurrentDuplicateGivesUpWithConflict() throws Exception {
+        ReflectionTestUtils.setField(idempotencyService, "waitMs", 300L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                execute(request("12 rue de la Paix"), sagaId -> {
+                    started.countDown();
+                    await(release);
+                    return respond(HttpStatus.CREATED).apply(sagaId);
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+        release.countDown();
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void rejectedValidationReleasesTheKey() {
+        ResponseEntity<?> first = execute(request("12 rue de la Paix"), respond(HttpStatus.SERVICE_UNAVAILABLE));
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getHeaders().getFirst("Idempotent-Replayed")).isNull();
+        assertThat(runs).hasSize(2);
+    }
+
+    @Test
+    void unknownOutcomeWithACompletedSagaReplaysItsOrder() {
+        // Le checkout a abouti mais sa réponse s'est perdue (5xx) : la saga porte la commande
+        execute(request("12 rue de la Paix"), sagaId -> {
+            runs.add(sagaId);
+            sagaRepository.save(saga(sagaId, CheckoutSagaStatus.COMPLETED));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "timeout"));
+        });
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(runs).hasSize(1);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(objectMapper.valueToTree(second.getBody()).path("order").path("orderNumber").asText())
+                .isEqualTo("ORD-" + runs.get(0));
+    }
+
+    @Test
+    void pendingResponseIsNotReplayedOnceTheSagaCompletes() {
+        // 202 : commande créée, stock pas encore validé ; le balayage des sagas termine ensuite le checkout
+        ResponseEntity<?> first = execute(request("12 rue de la Paix"), sagaId -> {
+            runs.add(sagaId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("pending", true));
+        });
+        sagaRepository.save(saga(runs.get(0), CheckoutSagaStatus.COMPLETED));
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void unknownOutcomeWithADeadLetteredSagaIsNotRunAgain() {
+        execute(request("12 rue de la Paix"), sagaId -> {
+            runs.add(sagaId);
+            sagaRepository.save(saga(sagaId, CheckoutSagaStatus.DEAD_LETTERED));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "timeout"));
+        });
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(runs).hasSize(1);
+    }
+
+    @Test
+    void unknownOutcomeWithoutAnOrderRunsAgainWithANewSaga() {
+        execute(request("12 rue de la Paix"), sagaId -> {
+            runs.add(sagaId);
+            sagaRepository.save(saga(sagaId, CheckoutSagaStatus.COMPENSATED));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "timeout"));
+        });
+
+        ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(runs).hasSize(2);
+        assertThat(runs.get(1)).isNotEqualTo(runs.get(0));
+    }
+
+    @Test
+    void unknownOutcomeWithAnActiveSagaKeepsTheDuplicateWaiting() {
+        ReflectionTestUtils.setField(idempotencyService, "waitMs", 300L);
+        execute(request("12 rue de la Paix"), sagaId -> {
+            runs.add(sagaId);
+            sagaRepository.save(saga(sagaId, CheckoutSagaStatus.STOCK_RESERVED));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "timeout"));
+        });
+
+        try {
+            ResponseEntity<?> second = execute(request("12 rue de la Paix"), respond(HttpStatus.CREATED));
+
+            assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+            assertThat(runs).hasSize(1);
+        } finally {
+            // Saga fictive : le balayage des sagas ne doit pas tenter de la reprendre
+            sagaRepository.removeActive(runs.get(0));
+        }
+    }
+
+    private ResponseEntity<?> execute(Map<String, String> request, Function<String, ResponseEntity<?>> checkout) {
+        return idempotencyService.execute(userId, key, OPERATION, request, checkout);
+    }
+
+    private Function<String, ResponseEntity<?>> respond(HttpStatus status) {
+        return sagaId -> {
+            runs.add(sagaId);
+            return ResponseEntity.status(status).body(Map.of("sagaId", sagaId, "run", runs.size()));
+        };
+    }
+
+    private static Map<String, String> request(String shippingAddress) {
+        return Map.of("shippingAddress", shippingAddress, "paymentMethod", "CREDIT_CARD");
+    }
+
+    private CheckoutSaga saga(String sagaId, CheckoutSagaStatus status) {
+        return CheckoutSaga.builder()
+                .id(sagaId)
+                .userId(userId)
+                .status(status)
+                .order(OrderResponse.builder()
+                        .id(1L)
+                        .userId(userId)
+                        .orderNumber("ORD-" + sagaId)
+                        .status("PENDING")
+                        .totalAmount(new BigDecimal("25.00"))
+                        .build())
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.dto.CreateOrderRequest;
+import com.ecommerce.cart.dto.OrderItemDto;
+import com.ecommerce.cart.dto.OrderResponse;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartRepository;
+import com.ecommerce.cart.saga.CheckoutPendingException;
+import com.ecommerce.cart.saga.CheckoutSaga;
+import com.ecommerce.cart.saga.CheckoutSagaOrchestrator;
+import com.ecommerce.cart.saga.CheckoutSagaRepository;
+import com.ecommerce.cart.saga.CheckoutSagaStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withResourceNotFound;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Saga du checkout contre product-service et order-service simulés : chemin nominal, compensations
+ * et reprise des sagas interrompues par le balayage.
+ */
+class CheckoutSagaIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String ACTIVE_KEY = "checkout:sagas:active";
+    private static final String DEAD_LETTER_KEY = "checkout:sagas:dead-letter";
+
+    @Autowired
+    private CheckoutSagaOrchestrator orchestrator;
+
+    @Autowired
+    private CheckoutSagaRepository sagaRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${product-service.url}")
+    private String productServiceUrl;
+
+    @Value("${order-service.url}")
+    private String orderServiceUrl;
+
+    private ClientHttpRequestFactory requestFactory;
+    private MockRestServiceServer server;
+
+    private String userId;
+    private String sagaId;
+    private String reservationId;
+
+    @BeforeEach
+    void setUp() {
+        // Utilisateur et saga propres au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+        sagaId = UUID.randomUUID().toString();
+        reservationId = UUID.randomUUID().toString();
+
+        // Le RestTemplate est partagé par le contexte : on rend sa fabrique d'origine après le test
+        requestFactory = (ClientHttpRequestFactory) ReflectionTestUtils.getField(restTemplate, "requestFactory");
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        restTemplate.setRequestFactory(requestFactory);
+    }
+
+    @Test
+    void completedSagaCommitsTheStockAndClearsTheCart() {
+        cartRepository.addItem(userId, CartItem.builder()
+                .productId(1L).productName("Produit 1").price(new BigDecimal("25.00")).quantity(2).build());
+        expectReservation();
+        expectOrderCreation(42L);
+        expectCommit(withSuccess());
+
+        OrderResponse order = orchestrator.start(sagaId, userId, orderRequest(), true);
+
+        server.verify();
+        assertThat(order.getId()).isEqualTo(42L);
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+        assertThat(saga.getReservationId()).isEqualTo(reservationId);
+        assertThat(saga.getOrderId()).isEqualTo(42L);
+        assertThat(cartRepository.find(userId).getItems()).isEmpty();
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVE_KEY, sagaId)).isNull();
+    }
+
+    @Test
+    void refusedReservationFailsWithoutCompensation() {
+        server.expect(requestTo(productServiceUrl + "/reservations"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"error\":\"Insufficient stock for product 1\"}"));
+
+        assertThatThrownBy(() -> orchestrator.start(sagaId, userId, orderRequest(), false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient stock for product 1");
+
+        server.verify();
+        assertThat(sagaRepository.find(sagaId).getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+    }
+
+    @Test
+    void failedOrderCreationReleasesTheReservation() {
+        expectReservation();
+        server.expect(requestTo(orderServiceUrl + "/api/orders"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.BAD_REQUEST));
+        // Sans réponse de création, la commande est d'abord cherchée par la clé de la saga
+        server.expect(requestTo(orderServiceUrl + "/api/orders/idempotency/" + sagaId))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withResourceNotFound());
+        expectRelease();
+
+        assertThatThrownBy(() -> orchestrator.start(sagaId, userId, orderRequest(), false))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageStartingWith("Failed to create order");
+
+        server.verify();
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPENSATED);
+        assertThat(saga.getOrderId()).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVE_KEY, sagaId)).isNull();
+    }
+
+    @Test
+    void refusedCommitCancelsTheOrderAndReleasesTheReservation() {
+        expectReservation();
+        expectOrderCreation(43L);
+        expectCommit(withStatus(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON)
+                .body("{\"error\":\"Reservation expired\"}"));
+        expectCancel(43L);
+        expectRelease();
+
+        assertThatThrownBy(() -> orchestrator.start(sagaId, userId, orderRequest(), false))
+                .hasMessageContaining("Reservation expired");
+
+        server.verify();
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPENSATED);
+        assertThat(saga.getError()).contains("Reservation expired");
+    }
+
+    @Test
+    void pendingCommitIsRetriedWhenTheSagaIsResumed() {
+        expectReservation();
+        expectOrderCreation(44L);
+        expectCommit(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        // Commande créée, commit en échec transitoire : en attente, pas de succès annoncé, la saga reste à reprendre
+        assertThatThrownBy(() -> orchestrator.start(sagaId, userId, orderRequest(), false))
+                .isInstanceOfSatisfying(CheckoutPendingException.class,
+                        e -> assertThat(e.getOrder().getId()).isEqualTo(44L));
+
+        server.verify();
+        assertThat(sagaRepository.find(sagaId).getStatus()).isEqualTo(CheckoutSagaStatus.ORDER_CREATED);
+
+        server.reset();
+        expectCommit(withSuccess());
+        resume();
+
+        server.verify();
+        assertThat(sagaRepository.find(sagaId).getStatus()).isEqualTo(CheckoutSagaStatus.COMPLETED);
+    }
+
+    @Test
+    void sagaInterruptedDuringOrderCreationIsCompensatedOnResume() {
+        // Instance morte pendant la création : la commande a pu être créée sans que la saga le sache
+        sagaRepository.save(saga(CheckoutSagaStatus.STOCK_RESERVED));
+        server.expect(requestTo(orderServiceUrl + "/api/orders/idempotency/" + sagaId))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("{\"id\":45,\"status\":\"PENDING\"}", MediaType.APPLICATION_JSON));
+        expectCancel(45L);
+        expectRelease();
+
+        resume();
+
+        server.verify();
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.COMPENSATED);
+        assertThat(saga.getOrderId()).isEqualTo(45L);
+        assertThat(saga.getError()).isEqualTo("Interrupted during order creation");
+    }
+
+    @Test
+    void nonTransientCancelFailureDeadLettersTheSaga() {
+        CheckoutSaga compensating = saga(CheckoutSagaStatus.COMPENSATING);
+        compensating.setOrderId(46L);
+        sagaRepository.save(compensating);
+        server.expect(requestTo(orderServiceUrl + "/api/orders/46/status?status=CANCELLED"))
+                .andExpect(method(HttpMethod.PATCH))
+                .andRespond(withStatus(HttpStatus.BAD_REQUEST));
+
+        resume();
+
+        server.verify();
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.DEAD_LETTERED);
+        assertThat(saga.getCompensationAttempts()).isEqualTo(1);
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVE_KEY, sagaId)).isNull();
+        assertThat(stringRedisTemplate.opsForZSet().score(DEAD_LETTER_KEY, sagaId)).isNotNull();
+    }
+
+    @Test
+    void transientCancelFailuresAreRetriedUpToTheLimit() {
+        Object maxAttempts = ReflectionTestUtils.getField(orchestrator, "maxCompensationAttempts");
+        ReflectionTestUtils.setField(orchestrator, "maxCompensationAttempts", 2);
+        try {
+            CheckoutSaga compensating = saga(CheckoutSagaStatus.COMPENSATING);
+            compensating.setOrderId(47L);
+            sagaRepository.save(compensating);
+            expectCancelFailure(47L);
+            expectCancelFailure(47L);
+
+            // Premier échec transitoire : la saga reste à compenser
+            resume();
+            assertThat(sagaRepository.find(sagaId).getStatus()).isEqualTo(CheckoutSagaStatus.COMPENSATING);
+
+            resume();
+
+            server.verify();
+            CheckoutSaga saga = sagaRepository.find(sagaId);
+            assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.DEAD_LETTERED);
+            assertThat(saga.getCompensationAttempts()).isEqualTo(2);
+        } finally {
+            ReflectionTestUtils.setField(orchestrator, "maxCompensationAttempts", maxAttempts);
+        }
+    }
+
+    @Test
+    void sagaInterruptedBeforeReservationFailsOnResume() {
+        sagaRepository.save(saga(CheckoutSagaStatus.STARTED));
+
+        resume();
+
+        server.verify();
+        CheckoutSaga saga = sagaRepository.find(sagaId);
+        assertThat(saga.getStatus()).isEqualTo(CheckoutSagaStatus.FAILED);
+        assertThat(stringRedisTemplate.opsForZSet().score(ACTIVE_KEY, sagaId)).isNull();
+    }
+
+    // La saga paraît interrompue (dernière transition antérieure au bail) puis le balayage passe
+    private void resume() {
+        stringRedisTemplate.opsForZSet().add(ACTIVE_KEY, sagaId, System.currentTimeMillis() - 3_600_000);
+        orchestrator.resumeStalledSagas();
+    }
+
+    private void expectReservation() {
+        server.expect(requestTo(productServiceUrl + "/reservations"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("Authorization", startsWith("Bearer ")))
+                .andRespond(withSuccess("{\"reservationId\":\"" + reservationId + "\"}", MediaType.APPLICATION_JSON));
+    }
+
+    private void expectOrderCreation(Long orderId) {
+        server.expect(requestTo(orderServiceUrl + "/api/orders"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("Idempotency-Key", sagaId))
+                .andRespond(withStatus(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"id\":" + orderId + ",\"userId\":\"" + userId + "\",\"status\":\"PENDING\",\"totalAmount\":50.00}"));
+    }
+
+    private void expectCommit(ResponseCreator response) {
+        server.expect(requestTo(productServiceUrl + "/reservations/" + reservationId + "/commit?owner=" + sagaId))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(response);
+    }
+
+    private void expectCancel(Long orderId) {
+        server.expect(requestTo(orderServiceUrl + "/api/orders/" + orderId + "/status?status=CANCELLED"))
+                .andExpect(method(HttpMethod.PATCH))
+                .andRespond(withSuccess());
+    }
+
+    private void expectCancelFailure(Long orderId) {
+        server.expect(requestTo(orderServiceUrl + "/api/orders/" + orderId + "/status?status=CANCELLED"))
+                .andExpect(method(HttpMethod.PATCH))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    private void expectRelease() {
+        server.expect(requestTo(productServiceUrl + "/reservations/" + reservationId + "?owner=" + sagaId))
+                .andExpect(method(HttpMethod.DELETE))
+                .andRespond(withStatus(HttpStatus.NO_CONTENT));
+    }
+
+    private CheckoutSaga saga(CheckoutSagaStatus status) {
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+        return CheckoutSaga.builder()
+                .id(sagaId)
+                .userId(userId)
+                .status(status)
+                .orderRequest(orderRequest())
+                .reservationId(status == CheckoutSagaStatus.STARTED ? null : reservationId)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+
+    private CreateOrderRequest orderRequest() {
+        return CreateOrderRequest.builder()
+                .userId(userId)
+                .items(List.of(OrderItemDto.builder()
+                        .productId(1L)
+                        .productName("Produit 1")
+                        .quantity(2)
+                        .price(new BigDecimal("25.00"))
+                        .build()))
+                .totalAmount(new BigDecimal("50.00"))
+                .shippingAddress("12 rue de la Paix, 75002 Paris")
+                .paymentMethod("CREDIT_CARD")
+                .build();
+    }
+}
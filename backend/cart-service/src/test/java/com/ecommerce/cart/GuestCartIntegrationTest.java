@@ -0,0 +1,72 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.controller.GuestCartController;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.repository.CartRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Panier invité : l'en-tête de session doit être un UUID, qui ne donne accès qu'au panier de cette session.
+ */
+class GuestCartIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Test
+    void sessionThatIsNotAUuidIsRejected() {
+        // Un identifiant libre pourrait viser la clé Redis d'un autre panier
+        for (String session : new String[] {"not-a-uuid", "../" + UUID.randomUUID(), "user-42"}) {
+            ResponseEntity<Map> response = exchange(HttpMethod.GET, session);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+            assertThat(response.getBody()).containsEntry("error", "Invalid cart session");
+        }
+        assertThat(exchange(HttpMethod.DELETE, "not-a-uuid").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void missingSessionIsRejected() {
+        ResponseEntity<Map> response = restTemplate.getForEntity("/api/cart/guest", Map.class);
+
+        // Aucun panier servi sans session
+        assertThat(response.getStatusCode().is4xxClientError()).isTrue();
+    }
+
+    @Test
+    void sessionOnlyReachesItsOwnCart() {
+        String session = UUID.randomUUID().toString();
+        String cartId = CartRepository.guestCartId(session);
+        cartRepository.addItem(cartId, CartItem.builder()
+                .productId(7L).productName("Produit 7").price(new BigDecimal("12.00")).quantity(1).build());
+
+        assertThat(exchange(HttpMethod.DELETE, UUID.randomUUID().toString()).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(cartRepository.find(cartId)).isNotNull();
+
+        // Même session, écrite en majuscules : même panier
+        assertThat(exchange(HttpMethod.DELETE, session.toUpperCase()).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(cartRepository.find(cartId)).isNull();
+    }
+
+    private ResponseEntity<Map> exchange(HttpMethod method, String session) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(GuestCartController.SESSION_HEADER, session);
+        return restTemplate.exchange("/api/cart/guest", method, new HttpEntity<>(headers), Map.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.client.ProductSnapshotCache;
+import com.ecommerce.cart.dto.ProductDto;
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Copie locale des fiches produits : lectures servies sans appel, événements product-events
+ * appliqués par version, et événement reçu pendant un chargement prioritaire sur la réponse.
+ */
+class ProductSnapshotCacheIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProductSnapshotCache snapshotCache;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${product-service.url}")
+    private String productServiceUrl;
+
+    private ClientHttpRequestFactory requestFactory;
+    private MockRestServiceServer server;
+
+    private Long productId;
+    private Long otherId;
+
+    @BeforeEach
+    void setUp() {
+        // Produits propres au test : le cache est partagé par le contexte
+        productId = System.nanoTime();
+        otherId = productId + 1;
+
+        // Le RestTemplate est partagé par le contexte : on rend sa fabrique d'origine après le test
+        requestFactory = (ClientHttpRequestFactory) ReflectionTestUtils.getField(restTemplate, "requestFactory");
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        restTemplate.setRequestFactory(requestFactory);
+    }
+
+    @Test
+    void missingProductsAreLoadedOnceInABatch() throws Exception {
+        expectBatch(product(productId, "Lampe"), product(otherId, "Chaise"));
+
+        Map<Long, ProductDto> first = snapshotCache.getProducts(List.of(productId, otherId));
+        Map<Long, ProductDto> second = snapshotCache.getProducts(List.of(productId, otherId));
+
+        server.verify();
+        assertThat(first).containsOnlyKeys(productId, otherId);
+        assertThat(second.get(productId).getName()).isEqualTo("Lampe");
+        assertThat(second.get(otherId).getName()).isEqualTo("Chaise");
+    }
+
+    @Test
+    void updateEventReplacesTheSnapshotUnlessItIsOlder() {
+        snapshotCache.apply(updated(productId, "Lampe v2", 200L));
+        // Livré en retard : plus ancien que l'instantané, ignoré
+        snapshotCache.apply(updated(productId, "Lampe v1", 100L));
+
+        // Aucun appel attendu : servi par l'instantané
+        assertThat(snapshotCache.getProduct(productId).getName()).isEqualTo("Lampe v2");
+        server.verify();
+    }
+
+    @Test
+    void stockChangeDropsTheSnapshotUntilTheNextLoad() throws Exception {
+        snapshotCache.apply(updated(productId, "Lampe", 100L));
+        snapshotCache.apply(ProductChangedEvent.builder()
+                .eventType(ProductChangedEvent.STOCK_CHANGED).productId(productId).version(200L).build());
+        expectBatch(product(productId, "Lampe rechargée"));
+
+        Map<Long, ProductDto> products = snapshotCache.getProducts(List.of(productId));
+
+        server.verify();
+        assertThat(products.get(productId).getName()).isEqualTo("Lampe rechargée");
+    }
+
+    @Test
+    void eventReceivedDuringALoadWinsOverTheResponse() throws Exception {
+        String body = objectMapper.writeValueAsString(List.of(product(productId, "Lampe périmée"), product(otherId, "Chaise")));
+        server.expect(requestTo(productServiceUrl + "/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(request -> {
+                    // Mise à jour publiée pendant que product-service répondait avec l'ancienne fiche
+                    snapshotCache.apply(updated(productId, "Lampe à jour", 300L));
+                    return withSuccess(body, MediaType.APPLICATION_JSON).createResponse(request);
+                });
+
+        snapshotCache.getProducts(List.of(productId, otherId));
+        Map<Long, ProductDto> products = snapshotCache.getProducts(List.of(productId, otherId));
+
+        server.verify();
+        assertThat(products.get(productId).getName()).isEqualTo("Lampe à jour");
+        // L'événement ne concernait qu'un produit : l'autre est bien mis en cache
+        assertThat(products.get(otherId).getName()).isEqualTo("Chaise");
+    }
+
+    private void expectBatch(ProductDto... products) throws Exception {
+        server.expect(requestTo(productServiceUrl + "/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(List.of(products)), MediaType.APPLICATION_JSON));
+    }
+
+    private static ProductDto product(Long id, String name) {
+        return ProductDto.builder().id(id).name(name).price(new BigDecimal("20.00")).stockQuantity(5).build();
+    }
+
+    private static ProductChangedEvent updated(Long id, String name, long version) {
+        return ProductChangedEvent.builder()
+                .eventType(ProductChangedEvent.UPDATED)
+                .productId(id)
+                .version(version)
+                .name(name)
+                .price(new BigDecimal("20.00"))
+                .stockQuantity(5)
+                .build();
+    }
+}
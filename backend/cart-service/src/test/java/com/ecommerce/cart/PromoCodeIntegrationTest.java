@@ -0,0 +1,167 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.dto.CreatePromoCodeRequest;
+import com.ecommerce.cart.dto.UpdatePromoCodeRequest;
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.promo.CompiledPromoRule;
+import com.ecommerce.cart.promo.PromoEvaluation;
+import com.ecommerce.cart.promo.PromoRuleEngine;
+import com.ecommerce.cart.service.PromoCodeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Codes promo : évaluation d'un panier depuis l'instantané en mémoire (catégories, cumul, plafond de réduction)
+ * et plafond par utilisateur compté atomiquement au checkout, une fois par saga.
+ */
+class PromoCodeIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private PromoCodeService promoCodeService;
+
+    @Autowired
+    private PromoRuleEngine promoRuleEngine;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final List<String> codes = new ArrayList<>();
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        // Utilisateur propre au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        codes.forEach(promoCodeService::deletePromoCode);
+    }
+
+    @Test
+    void stackableCodesAddUpOnTheirEligibleLines() {
+        String books = create(CreatePromoCodeRequest.builder()
+                .discountPercent(new BigDecimal("10")).categoryIds(Set.of(1L)).stackable(true));
+        String capped = create(CreatePromoCodeRequest.builder()
+                .discountPercent(new BigDecimal("20")).maxDiscount(new BigDecimal("15.00")).stackable(true));
+
+        PromoEvaluation evaluation = evaluate(List.of(books, capped));
+
+        // 10 % des 100,00 de la catégorie 1, puis 20 % de 200,00 plafonnés à 15,00
+        assertThat(evaluation.discountCents()).isEqualTo(1000 + 1500);
+        assertThat(evaluation.appliedRules()).extracting(CompiledPromoRule::code).containsExactly(books, capped);
+    }
+
+    @Test
+    void withoutStackingOnlyTheLastCodeCounts() {
+        String first = create(CreatePromoCodeRequest.builder().discountPercent(new BigDecimal("10")));
+        String last = create(CreatePromoCodeRequest.builder().discountPercent(new BigDecimal("5")));
+
+        PromoEvaluation evaluation = evaluate(List.of(first, last));
+
+        assertThat(evaluation.discountCents()).isEqualTo(1000);
+        assertThat(evaluation.appliedRules()).extracting(CompiledPromoRule::code).containsExactly(last);
+    }
+
+    @Test
+    void deactivatedOrBelowMinimumCodeGivesNoDiscount() {
+        String inactive = create(CreatePromoCodeRequest.builder().discountPercent(new BigDecimal("10")));
+        String minimum = create(CreatePromoCodeRequest.builder()
+                .discountPercent(new BigDecimal("10")).minAmount(new BigDecimal("500.00")));
+
+        UpdatePromoCodeRequest update = new UpdatePromoCodeRequest();
+        update.setActive(false);
+        promoCodeService.updatePromoCode(inactive, update);
+
+        assertThat(evaluate(List.of(inactive)).appliedRules()).isEmpty();
+        assertThat(evaluate(List.of(minimum)).discountCents()).isZero();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverExceedTheUsageCap() throws Exception {
+        String code = create(CreatePromoCodeRequest.builder().discountPercent(new BigDecimal("10")).maxUsesPerUser(3));
+
+        List<Callable<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(() -> {
+                try {
+                    promoCodeService.claimUsage(UUID.randomUUID().toString(), userId, code);
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(calls.size());
+        int claimed = 0;
+        try {
+            for (Future<Boolean> call : executor.invokeAll(calls, 30, TimeUnit.SECONDS)) {
+                claimed += call.get() ? 1 : 0;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(claimed).isEqualTo(3);
+        assertThat(uses(code)).isEqualTo("3");
+    }
+
+    @Test
+    void usageIsClaimedAndReleasedOncePerSaga() {
+        String code = create(CreatePromoCodeRequest.builder().discountPercent(new BigDecimal("10")).maxUsesPerUser(1));
+        String sagaId = UUID.randomUUID().toString();
+
+        // Saga reprise : la seconde réclamation ne compte pas
+        promoCodeService.claimUsage(sagaId, userId, code);
+        promoCodeService.claimUsage(sagaId, userId, code);
+        assertThat(uses(code)).isEqualTo("1");
+        assertThatThrownBy(() -> promoCodeService.claimUsage(UUID.randomUUID().toString(), userId, code))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Promo code usage limit reached");
+
+        // Compensation rejouée : rendu une seule fois
+        promoCodeService.releaseUsage(sagaId, userId);
+        promoCodeService.releaseUsage(sagaId, userId);
+        assertThat(uses(code)).isNull();
+        promoCodeService.claimUsage(UUID.randomUUID().toString(), userId, code);
+        assertThat(uses(code)).isEqualTo("1");
+    }
+
+    private String create(CreatePromoCodeRequest.CreatePromoCodeRequestBuilder request) {
+        String code = "T" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
+        promoCodeService.createPromoCode(request.code(code).expiresAt(LocalDateTime.now().plusDays(1)).build());
+        codes.add(code);
+        return code;
+    }
+
+    // Panier de 200,00 : 100,00 en catégorie 1, 2 x 50,00 en catégorie 2
+    private PromoEvaluation evaluate(List<String> appliedCodes) {
+        List<CartItem> items = List.of(
+                CartItem.builder().productId(1L).categoryId(1L).price(new BigDecimal("100.00")).quantity(1).build(),
+                CartItem.builder().productId(2L).categoryId(2L).price(new BigDecimal("50.00")).quantity(2).build());
+        return promoRuleEngine.current().evaluate(appliedCodes, items, System.currentTimeMillis());
+    }
+
+    private Object uses(String code) {
+        return stringRedisTemplate.opsForHash().get("promo:usage:" + code, userId);
+    }
+}
@@ -0,0 +1,178 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.cart.entity.CartItem;
+import com.ecommerce.cart.service.CheckoutService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Validation du stock du checkout : découpage en lots interrogés en parallèle, échec à la première rupture
+ * ou au premier produit disparu, et délai global de la validation.
+ */
+class StockValidationIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${product-service.url}")
+    private String productServiceUrl;
+
+    private ClientHttpRequestFactory requestFactory;
+    private MockRestServiceServer server;
+    private Object batchSize;
+    private Object deadlineMs;
+
+    // Lots reçus par product-service simulé, dans un ordre quelconque
+    private final Set<List<Long>> batches = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        batchSize = ReflectionTestUtils.getField(checkoutService, "validationBatchSize");
+        deadlineMs = ReflectionTestUtils.getField(checkoutService, "validationDeadlineMs");
+
+        // Le RestTemplate est partagé par le contexte : on rend sa fabrique d'origine après le test
+        requestFactory = (ClientHttpRequestFactory) ReflectionTestUtils.getField(restTemplate, "requestFactory");
+        // Lots en parallèle : l'ordre d'arrivée des appels n'est pas fixé
+        server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        restTemplate.setRequestFactory(requestFactory);
+        ReflectionTestUtils.setField(checkoutService, "validationBatchSize", batchSize);
+        ReflectionTestUtils.setField(checkoutService, "validationDeadlineMs", deadlineMs);
+    }
+
+    @Test
+    void largeCartIsValidatedInBatches() {
+        ReflectionTestUtils.setField(checkoutService, "validationBatchSize", 2);
+        expectBatches(3, stock(Map.of(), 0));
+
+        validate(items(1, 2, 3, 4, 5));
+
+        server.verify();
+        assertThat(batches).containsExactlyInAnyOrder(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+    }
+
+    @Test
+    void shortfallFailsTheValidation() {
+        expectBatches(1, stock(Map.of(2L, 1), 0));
+
+        assertThatThrownBy(() -> validate(items(1, 2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Stock insuffisant pour : Produit 2");
+    }
+
+    @Test
+    void productMissingFromTheResponseFailsTheValidation() {
+        expectBatches(1, request -> {
+            // Produit 2 supprimé entre-temps : absent de la réponse
+            List<Long> ids = ids(request);
+            batches.add(ids);
+            return withSuccess(json(List.of(Map.of("id", 1L, "stockQuantity", 10))), MediaType.APPLICATION_JSON)
+                    .createResponse(request);
+        });
+
+        assertThatThrownBy(() -> validate(items(1, 2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Produit introuvable : Produit 2");
+    }
+
+    @Test
+    void slowBatchFailsAtTheDeadline() {
+        ReflectionTestUtils.setField(checkoutService, "validationDeadlineMs", 200L);
+        expectBatches(1, stock(Map.of(), 1_000));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> validate(items(1)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("timed out");
+        assertThat(System.nanoTime() - start).isLessThan(900_000_000L);
+    }
+
+    private void validate(List<CartItem> items) {
+        ReflectionTestUtils.invokeMethod(checkoutService, "validateStock", items, "Bearer token");
+    }
+
+    private void expectBatches(int count, ResponseCreator response) {
+        server.expect(ExpectedCount.times(count), requestTo(productServiceUrl + "/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(response);
+    }
+
+    // Répond 10 en stock pour chaque produit demandé, sauf exceptions, après un délai éventuel
+    private ResponseCreator stock(Map<Long, Integer> overrides, long delayMs) {
+        return request -> {
+            List<Long> ids = ids(request);
+            batches.add(ids);
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Map<String, Object>> products = new ArrayList<>();
+            ids.forEach(id -> products.add(Map.of("id", id, "stockQuantity", overrides.getOrDefault(id, 10))));
+            return withSuccess(json(products), MediaType.APPLICATION_JSON).createResponse(request);
+        };
+    }
+
+    private List<Long> ids(ClientHttpRequest request) {
+        try {
+            return objectMapper.readValue(((MockClientHttpRequest) request).getBodyAsString(), new TypeReference<>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<CartItem> items(long... productIds) {
+        return LongStream.of(productIds)
+                .mapToObj(id -> CartItem.builder()
+                        .productId(id).productName("Produit " + id).price(new BigDecimal("10.00")).quantity(2).build())
+                .toList();
+    }
+}
@@ -0,0 +1,34 @@
+package com.ecommerce.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AbandonedCartEvent {
+    private String userId;
+    private long lastActivityAt; // Dernière modification du panier (ms)
+    private long detectedAt;
+    private BigDecimal subtotal;
+    private List<String> promoCodes;
+    private List<Item> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long productId;
+        private String productName;
+        private Integer quantity;
+        private BigDecimal price;
+        private String imageUrl;
+    }
+}
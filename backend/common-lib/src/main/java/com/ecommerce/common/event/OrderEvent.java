@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -20,4 +21,5 @@ public class OrderEvent {
     private String userId;       // Changed from UUID to String
     private BigDecimal totalAmount;
     private String status;
+    private List<OrderEventItem> items; // Lignes de la commande (classement des ventes côté product-service)
 }
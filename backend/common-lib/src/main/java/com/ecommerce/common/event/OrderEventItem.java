@@ -0,0 +1,15 @@
+package com.ecommerce.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEventItem {
+    private Long productId;
+    private Integer quantity;
+}
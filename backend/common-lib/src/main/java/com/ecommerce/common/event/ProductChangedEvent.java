@@ -0,0 +1,32 @@
+package com.ecommerce.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    public static final String UPDATED = "ProductUpdated";       // Instantané complet ci-dessous
+    public static final String STOCK_CHANGED = "StockChanged";   // Stock modifié : instantané à recharger
+    public static final String DELETED = "ProductDeleted";
+
+    private String eventType;
+    private Long productId;
+    private long version; // Instant de l'écriture (ms) : un événement plus ancien que l'instantané est ignoré
+
+    private String name;
+    private String description; // Indexé par la recherche de chaque réplica de product-service
+    private BigDecimal price;
+    private Integer stockQuantity;
+    private Long categoryId;
+    private String categoryName;
+    private List<String> images;
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.common.http;
+
+import java.io.IOException;
+
+/**
+ * Appel refusé sans toucher au réseau : le circuit de la cible est ouvert.
+ * IOException pour que RestTemplate la remonte en ResourceAccessException, comme une cible injoignable.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String target) {
+        super("Circuit open for " + target);
+    }
+}
@@ -0,0 +1,59 @@
+package com.ecommerce.common.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Réglages du client HTTP partagé par les appels inter-services (préfixe ecommerce.http-client).
+ */
+@Data
+@ConfigurationProperties(prefix = "ecommerce.http-client")
+public class HttpClientProperties {
+
+    private int maxConnections = 200;
+    private int maxConnectionsPerTarget = 50;
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration responseTimeout = Duration.ofSeconds(10);
+    // Attente d'une connexion libre quand le pool du service cible est saturé
+    private Duration poolTimeout = Duration.ofSeconds(1);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Duration connectionTimeToLive = Duration.ofMinutes(5);
+
+    private Retry retry = new Retry();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    // Surcharges par service cible, ex. targets.product-service.url=http://product-service:8082
+    private Map<String, Target> targets = new HashMap<>();
+
+    @Data
+    public static class Retry {
+        // Tentatives au total, méthodes idempotentes seulement
+        private int maxAttempts = 2;
+        private Duration backoff = Duration.ofMillis(50);
+        // Budget : au plus une relance pour 10 requêtes, pour ne pas amplifier une panne
+        private double budgetRatio = 0.1;
+        private int budgetCap = 20;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        // Fenêtre glissante des derniers appels vers une même cible
+        private int windowSize = 50;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Target {
+        private String url;
+        private Integer maxConnections;
+        private Duration responseTimeout;
+    }
+}
@@ -0,0 +1,156 @@
+package com.ecommerce.common.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client HTTP commun à tous les services : un pool de connexions keep-alive (Apache HttpClient 5)
+ * au lieu d'une connexion par appel, des limites et timeouts par service cible, un circuit breaker
+ * et des relances bornées. Chaque RestTemplate construit par le RestTemplateBuilder en profite ;
+ * un bean RestTemplate est fourni si le service n'en déclare pas.
+ *
+ * Un appelant soumis à un délai global l'impose à ses appels avec {@link RequestDeadline}.
+ *
+ * Métriques : http.client.requests (Spring Boot), httpcomponents.httpclient.pool.* (pool),
+ * http.client.retries, http.client.circuit.rejected et http.client.circuit.state (par cible).
+ */
+@AutoConfiguration(after = RestTemplateAutoConfiguration.class)
+@ConditionalOnClass({RestTemplate.class, CloseableHttpClient.class})
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class PooledHttpClientAutoConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public PoolingHttpClientConnectionManager pooledConnectionManager(HttpClientProperties properties,
+                                                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerTarget())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(timeout(properties.getConnectTimeout()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(properties.getConnectionTimeToLive().toMillis()))
+                        .build())
+                .build();
+
+        properties.getTargets().values().stream()
+                .filter(target -> target.getUrl() != null && target.getMaxConnections() != null)
+                .forEach(target -> manager.setMaxPerRoute(new HttpRoute(httpHost(target.getUrl())), target.getMaxConnections()));
+
+        meterRegistry.ifAvailable(registry ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(manager, "default").bindTo(registry));
+        return manager;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public CloseableHttpClient pooledHttpClient(PoolingHttpClientConnectionManager pooledConnectionManager,
+                                                HttpClientProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(pooledConnectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig(properties))
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getIdleTimeout().toMillis()))
+                .evictExpiredConnections()
+                // Les relances passent par le budget de ResilientHttpInterceptor
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ResilientHttpInterceptor resilientHttpInterceptor(HttpClientProperties properties,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ResilientHttpInterceptor(properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public RestTemplateCustomizer pooledHttpClientRestTemplateCustomizer(CloseableHttpClient pooledHttpClient,
+                                                                        ResilientHttpInterceptor resilientHttpInterceptor,
+                                                                        HttpClientProperties properties) {
+        RequestConfig defaults = defaultRequestConfig(properties);
+        Map<String, RequestConfig> perTarget = new HashMap<>();
+        properties.getTargets().values().stream()
+                .filter(target -> target.getUrl() != null && target.getResponseTimeout() != null)
+                .forEach(target -> perTarget.put(ResilientHttpInterceptor.target(URI.create(target.getUrl())),
+                        RequestConfig.copy(defaults).setResponseTimeout(timeout(target.getResponseTimeout())).build()));
+
+        return restTemplate -> {
+            HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(pooledHttpClient);
+            factory.setHttpContextFactory((method, uri) -> {
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(withDeadline(perTarget.getOrDefault(ResilientHttpInterceptor.target(uri), defaults)));
+                return context;
+            });
+            restTemplate.setRequestFactory(factory);
+            // Dernier de la chaîne : une relance rejoue la requête à partir de lui
+            restTemplate.getInterceptors().add(resilientHttpInterceptor);
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
+        return restTemplateBuilder.build();
+    }
+
+    private static RequestConfig defaultRequestConfig(HttpClientProperties properties) {
+        return RequestConfig.custom()
+                .setResponseTimeout(timeout(properties.getResponseTimeout()))
+                .setConnectionRequestTimeout(timeout(properties.getPoolTimeout()))
+                .build();
+    }
+
+    // Appel fait sous RequestDeadline : timeouts de réponse et d'attente du pool ramenés au temps restant
+    private static RequestConfig withDeadline(RequestConfig config) {
+        Duration remaining = RequestDeadline.remaining();
+        if (remaining == null) {
+            return config;
+        }
+        Timeout timeout = timeout(remaining);
+        RequestConfig.Builder builder = RequestConfig.copy(config);
+        if (config.getResponseTimeout() == null || config.getResponseTimeout().compareTo(timeout) > 0) {
+            builder.setResponseTimeout(timeout);
+        }
+        if (config.getConnectionRequestTimeout() == null || config.getConnectionRequestTimeout().compareTo(timeout) > 0) {
+            builder.setConnectionRequestTimeout(timeout);
+        }
+        return builder.build();
+    }
+
+    private static HttpHost httpHost(String url) {
+        URI uri = URI.create(url);
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80);
+        return new HttpHost(uri.getScheme(), uri.getHost(), port);
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+}
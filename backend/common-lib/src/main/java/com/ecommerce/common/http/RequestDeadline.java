@@ -0,0 +1,48 @@
+package com.ecommerce.common.http;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Échéance des appels HTTP faits par le thread courant.
+ *
+ * Le timeout de réponse de chaque appel est ramené au temps restant avant l'échéance : un appel
+ * qui dépasse le délai global de l'appelant est coupé par le client HTTP lui-même. Future.cancel(true)
+ * n'interrompt pas une lecture de socket bloquée ; sans échéance, le thread resterait occupé jusqu'au
+ * timeout de la cible.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Exécute {@code call} sur le thread courant, ses appels HTTP bornés par {@code deadlineNanos} (System.nanoTime()).
+     */
+    public static <T> T callBefore(long deadlineNanos, Supplier<T> call) {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(previous != null ? Math.min(previous, deadlineNanos) : deadlineNanos);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                DEADLINE.set(previous);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    /**
+     * Temps restant avant l'échéance du thread courant (au moins 1 ms), ou null s'il n'en a pas.
+     */
+    static Duration remaining() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(deadline - System.nanoTime(), Duration.ofMillis(1).toNanos()));
+    }
+}
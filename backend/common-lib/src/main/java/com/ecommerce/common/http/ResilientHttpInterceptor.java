@@ -0,0 +1,116 @@
+package com.ecommerce.common.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Circuit breaker par service cible (hôte:port) et relances bornées par un budget global.
+ *
+ * Seules les méthodes idempotentes sont relancées, sur erreur réseau ou 502/503/504.
+ * Doit rester le dernier intercepteur : une relance réexécute la requête à partir de lui.
+ */
+@Slf4j
+public class ResilientHttpInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS =
+            Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(502, 503, 504);
+
+    private final HttpClientProperties properties;
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, TargetCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public ResilientHttpInterceptor(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.retryBudget = new RetryBudget(properties.getRetry().getBudgetRatio(), properties.getRetry().getBudgetCap());
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String target = target(request.getURI());
+        TargetCircuitBreaker breaker = properties.getCircuitBreaker().isEnabled()
+                ? breakers.computeIfAbsent(target, this::newBreaker)
+                : null;
+        int maxAttempts = IDEMPOTENT_METHODS.contains(request.getMethod())
+                ? Math.max(1, properties.getRetry().getMaxAttempts())
+                : 1;
+
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            TargetCircuitBreaker.Permit permit = breaker != null ? breaker.tryAcquire() : null;
+            if (breaker != null && permit == null) {
+                meterRegistry.counter("http.client.circuit.rejected", "target", target).increment();
+                throw new CircuitOpenException(target);
+            }
+
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                record(breaker, permit, false);
+                if (attempt < maxAttempts && retryBudget.tryWithdraw()) {
+                    retrying(target, attempt, e.getMessage());
+                    continue;
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                record(breaker, permit, false);
+                throw e;
+            }
+
+            int status = response.getStatusCode().value();
+            record(breaker, permit, status < 500);
+            if (RETRYABLE_STATUSES.contains(status) && attempt < maxAttempts && retryBudget.tryWithdraw()) {
+                response.close();
+                retrying(target, attempt, "HTTP " + status);
+                continue;
+            }
+            return response;
+        }
+    }
+
+    private void retrying(String target, int attempt, String reason) throws IOException {
+        log.debug("Retrying call to {} after attempt {}: {}", target, attempt, reason);
+        meterRegistry.counter("http.client.retries", "target", target).increment();
+        try {
+            Thread.sleep(properties.getRetry().getBackoff().toMillis() * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted before retrying " + target, e);
+        }
+    }
+
+    private void record(TargetCircuitBreaker breaker, TargetCircuitBreaker.Permit permit, boolean success) {
+        if (breaker != null) {
+            breaker.record(permit, success);
+        }
+    }
+
+    private TargetCircuitBreaker newBreaker(String target) {
+        TargetCircuitBreaker breaker = new TargetCircuitBreaker(properties.getCircuitBreaker());
+        // 0 = fermé, 1 = ouvert, 2 = demi-ouvert
+        Gauge.builder("http.client.circuit.state", breaker, b -> b.state().ordinal())
+                .tag("target", target)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    static String target(URI uri) {
+        return uri.getPort() != -1 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.common.http;
+
+/**
+ * Seau de jetons partagé : chaque requête crédite {@code ratio} jeton, chaque relance en consomme un.
+ * Quand une cible tombe, les relances s'épuisent vite au lieu de multiplier la charge.
+ */
+class RetryBudget {
+
+    private final double ratio;
+    private final double cap;
+    private double balance;
+
+    RetryBudget(double ratio, int cap) {
+        this.ratio = ratio;
+        this.cap = cap;
+        this.balance = cap;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(cap, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+}
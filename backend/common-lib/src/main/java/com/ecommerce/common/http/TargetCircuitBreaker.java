@@ -0,0 +1,112 @@
+package com.ecommerce.common.http;
+
+/**
+ * Circuit breaker d'un service cible, sur une fenêtre glissante des N derniers appels.
+ * Ouvert, il refuse les appels pendant openDuration, puis laisse passer un seul appel d'essai.
+ *
+ * Chaque changement d'état ouvre une génération ; un appel n'est compté que dans la génération où il a été
+ * admis. Demi-ouvert, seule l'issue de l'appel d'essai décide : un appel lancé avant l'ouverture et terminé
+ * pendant l'essai est ignoré.
+ */
+class TargetCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // Autorisation d'appel, à rendre à record() avec son issue
+    record Permit(long generation) {
+    }
+
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long generation;
+
+    TargetCircuitBreaker(HttpClientProperties.CircuitBreaker config) {
+        this.outcomes = new boolean[Math.max(1, config.getWindowSize())];
+        this.minimumCalls = Math.max(1, config.getMinimumCalls());
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.openMillis = config.getOpenDuration().toMillis();
+    }
+
+    /**
+     * Autorisation pour un appel, ou null si le circuit le refuse.
+     */
+    synchronized Permit tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return null;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            generation++;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return null;
+            }
+            probeInFlight = true;
+        }
+        return new Permit(generation);
+    }
+
+    synchronized void record(Permit permit, boolean success) {
+        if (permit.generation() != generation) {
+            // Admis avant le dernier changement d'état : son issue ne concerne plus le circuit
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (success) {
+                reset();
+            } else {
+                open();
+            }
+            return;
+        }
+
+        // outcomes[i] = true si l'appel a échoué
+        if (calls == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = !success;
+        if (!success) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+
+        if (state == State.CLOSED && calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+            open();
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probeInFlight = false;
+        generation++;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        generation++;
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
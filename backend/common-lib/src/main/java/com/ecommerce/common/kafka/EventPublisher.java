@@ -0,0 +1,112 @@
+package com.ecommerce.common.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.Tag;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Publication des événements : toujours avec une clé (l'identifiant de l'agrégat, pour l'ordre par partition),
+ * sur un producteur dont compression, linger et taille de lot sont réglés par topic.
+ * Les topics aux réglages identiques partagent le même producteur.
+ *
+ * Métriques : kafka.producer.send (latence jusqu'à l'accusé du broker, par topic et issue, histogramme)
+ * et les métriques client kafka.producer.* de chaque producteur.
+ */
+public class EventPublisher implements DisposableBean {
+
+    private final Map<String, Object> baseConfig;
+    private final KafkaProducerProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Tuning, DefaultKafkaProducerFactory<String, Object>> factories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Tuning, KafkaTemplate<String, Object>> templates = new ConcurrentHashMap<>();
+
+    public EventPublisher(Map<String, Object> baseConfig, KafkaProducerProperties properties, MeterRegistry meterRegistry) {
+        this.baseConfig = baseConfig;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Envoie {@code event} sur {@code topic} ; le futur se termine à l'accusé du broker.
+     */
+    public CompletableFuture<SendResult<String, Object>> publish(String topic, String key, Object event) {
+        if (key == null) {
+            throw new IllegalArgumentException("A key is required to publish on " + topic);
+        }
+
+        KafkaTemplate<String, Object> template = templates.computeIfAbsent(tuning(topic), this::createTemplate);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<SendResult<String, Object>> future;
+        try {
+            future = template.send(topic, key, event);
+        } catch (RuntimeException e) {
+            sample.stop(sendTimer(topic, "failure"));
+            throw e;
+        }
+        return future.whenComplete((result, e) -> sample.stop(sendTimer(topic, e == null ? "success" : "failure")));
+    }
+
+    private Timer sendTimer(String topic, String outcome) {
+        return Timer.builder("kafka.producer.send")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Tuning tuning(String topic) {
+        KafkaProducerProperties.Topic overrides = properties.getTopics().get(topic);
+        String compressionType = properties.getCompressionType();
+        long lingerMs = properties.getLinger().toMillis();
+        int batchSize = properties.getBatchSize();
+        if (overrides != null) {
+            if (overrides.getCompressionType() != null) {
+                compressionType = overrides.getCompressionType();
+            }
+            if (overrides.getLinger() != null) {
+                lingerMs = overrides.getLinger().toMillis();
+            }
+            if (overrides.getBatchSize() != null) {
+                batchSize = overrides.getBatchSize();
+            }
+        }
+        return new Tuning(compressionType, lingerMs, batchSize);
+    }
+
+    private KafkaTemplate<String, Object> createTemplate(Tuning tuning) {
+        Map<String, Object> config = new HashMap<>(baseConfig);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, tuning.compressionType());
+        config.put(ProducerConfig.LINGER_MS_CONFIG, (int) tuning.lingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, tuning.batchSize());
+
+        DefaultKafkaProducerFactory<String, Object> factory =
+                new DefaultKafkaProducerFactory<>(config, new StringSerializer(), new JsonSerializer<>());
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry,
+                List.of(Tag.of("tuning", tuning.compressionType() + "-" + tuning.lingerMs() + "ms-" + tuning.batchSize()))));
+        factories.put(tuning, factory);
+        return new KafkaTemplate<>(factory);
+    }
+
+    @Override
+    public void destroy() {
+        factories.values().forEach(DefaultKafkaProducerFactory::destroy);
+    }
+
+    private record Tuning(String compressionType, long lingerMs, int batchSize) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.common.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Producteur Kafka commun à tous les services : un EventPublisher (envois avec clé, réglages par topic,
+ * latence d'envoi par topic) et les mêmes réglages par défaut appliqués au KafkaTemplate de Spring Boot.
+ * Adresse du broker et sécurité viennent de spring.kafka.*.
+ */
+@AutoConfiguration(after = KafkaAutoConfiguration.class)
+@ConditionalOnClass(KafkaTemplate.class)
+@EnableConfigurationProperties(KafkaProducerProperties.class)
+public class EventPublisherAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public EventPublisher eventPublisher(KafkaProperties kafkaProperties,
+                                         KafkaProducerProperties producerProperties,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<String, Object> baseConfig = new HashMap<>(kafkaProperties.buildProducerProperties(null));
+        // Sérialiseurs fournis par EventPublisher
+        baseConfig.remove(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG);
+        baseConfig.remove(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG);
+        baseConfig.putAll(reliabilityConfig(producerProperties));
+        return new EventPublisher(baseConfig, producerProperties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer sharedProducerDefaultsCustomizer(KafkaProducerProperties producerProperties) {
+        return factory -> {
+            Map<String, Object> config = reliabilityConfig(producerProperties);
+            config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, producerProperties.getCompressionType());
+            config.put(ProducerConfig.LINGER_MS_CONFIG, (int) producerProperties.getLinger().toMillis());
+            config.put(ProducerConfig.BATCH_SIZE_CONFIG, producerProperties.getBatchSize());
+            factory.updateConfigs(config);
+        };
+    }
+
+    private static Map<String, Object> reliabilityConfig(KafkaProducerProperties producerProperties) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, producerProperties.isIdempotence());
+        config.put(ProducerConfig.ACKS_CONFIG, producerProperties.getAcks());
+        return config;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.common.kafka;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Réglages des producteurs Kafka (préfixe ecommerce.kafka.producer), surchargeables par topic.
+ */
+@Data
+@ConfigurationProperties(prefix = "ecommerce.kafka.producer")
+public class KafkaProducerProperties {
+
+    // Pas de doublon ni de réordonnancement par clé quand le producteur relance un envoi
+    private boolean idempotence = true;
+    private String acks = "all";
+
+    private String compressionType = "lz4";
+    // Attente avant l'envoi d'un lot : quelques ms suffisent à regrouper les rafales
+    private Duration linger = Duration.ofMillis(5);
+    private int batchSize = 32 * 1024;
+
+    // Surcharges par topic, ex. topics.product-events.linger=20ms
+    private Map<String, Topic> topics = new HashMap<>();
+
+    @Data
+    public static class Topic {
+        private String compressionType;
+        private Duration linger;
+        private Integer batchSize;
+    }
+}
@@ -0,0 +1,163 @@
+package com.ecommerce.common.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientHttpInterceptorTest {
+
+    private static final URI PRODUCT_URI = URI.create("http://product-service:8082/api/products/1");
+
+    private HttpClientProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new HttpClientProperties();
+        properties.getRetry().setMaxAttempts(2);
+        properties.getRetry().setBackoff(Duration.ZERO);
+        properties.getCircuitBreaker().setWindowSize(4);
+        properties.getCircuitBreaker().setMinimumCalls(4);
+        properties.getCircuitBreaker().setOpenDuration(Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void retriesIdempotentCallOnRetryableStatus() throws IOException {
+        ScriptedExecution execution = new ScriptedExecution(status(HttpStatus.SERVICE_UNAVAILABLE), status(HttpStatus.OK));
+
+        ClientHttpResponse response = interceptor().intercept(request(HttpMethod.GET), new byte[0], execution);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(execution.calls).isEqualTo(2);
+        assertThat(meterRegistry.counter("http.client.retries", "target", "product-service:8082").count()).isEqualTo(1);
+    }
+
+    @Test
+    void retriesIdempotentCallOnNetworkError() throws IOException {
+        ScriptedExecution execution = new ScriptedExecution(new ConnectException("refused"), status(HttpStatus.OK));
+
+        ClientHttpResponse response = interceptor().intercept(request(HttpMethod.GET), new byte[0], execution);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(execution.calls).isEqualTo(2);
+    }
+
+    @Test
+    void neverRetriesNonIdempotentCall() throws IOException {
+        ScriptedExecution execution = new ScriptedExecution(status(HttpStatus.SERVICE_UNAVAILABLE), status(HttpStatus.OK));
+
+        ClientHttpResponse response = interceptor().intercept(request(HttpMethod.POST), new byte[0], execution);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(execution.calls).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotRetryServerErrorThatIsNotTransient() throws IOException {
+        ScriptedExecution execution = new ScriptedExecution(status(HttpStatus.INTERNAL_SERVER_ERROR), status(HttpStatus.OK));
+
+        ClientHttpResponse response = interceptor().intercept(request(HttpMethod.GET), new byte[0], execution);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(execution.calls).isEqualTo(1);
+    }
+
+    @Test
+    void stopsRetryingOnceTheBudgetIsSpent() throws IOException {
+        properties.getRetry().setBudgetRatio(0);
+        properties.getRetry().setBudgetCap(1);
+        properties.getCircuitBreaker().setEnabled(false);
+        ResilientHttpInterceptor interceptor = interceptor();
+
+        ScriptedExecution first = new ScriptedExecution(status(HttpStatus.BAD_GATEWAY), status(HttpStatus.OK));
+        ScriptedExecution second = new ScriptedExecution(status(HttpStatus.BAD_GATEWAY), status(HttpStatus.OK));
+
+        assertThat(interceptor.intercept(request(HttpMethod.GET), new byte[0], first).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(interceptor.intercept(request(HttpMethod.GET), new byte[0], second).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_GATEWAY);
+        assertThat(second.calls).isEqualTo(1);
+    }
+
+    @Test
+    void openCircuitRejectsCallsWithoutTouchingTheNetwork() throws IOException {
+        properties.getRetry().setMaxAttempts(1);
+        ResilientHttpInterceptor interceptor = interceptor();
+        for (int i = 0; i < 4; i++) {
+            interceptor.intercept(request(HttpMethod.GET), new byte[0], new ScriptedExecution(status(HttpStatus.BAD_GATEWAY)));
+        }
+
+        ScriptedExecution execution = new ScriptedExecution(status(HttpStatus.OK));
+
+        assertThatThrownBy(() -> interceptor.intercept(request(HttpMethod.GET), new byte[0], execution))
+                .isInstanceOf(CircuitOpenException.class);
+        assertThat(execution.calls).isZero();
+        assertThat(meterRegistry.counter("http.client.circuit.rejected", "target", "product-service:8082").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void circuitIsTrackedPerTarget() throws IOException {
+        properties.getRetry().setMaxAttempts(1);
+        ResilientHttpInterceptor interceptor = interceptor();
+        for (int i = 0; i < 4; i++) {
+            interceptor.intercept(request(HttpMethod.GET), new byte[0], new ScriptedExecution(status(HttpStatus.BAD_GATEWAY)));
+        }
+
+        MockClientHttpRequest orderRequest = new MockClientHttpRequest(HttpMethod.GET, URI.create("http://order-service:8083/api/orders"));
+        ClientHttpResponse response = interceptor.intercept(orderRequest, new byte[0], new ScriptedExecution(status(HttpStatus.OK)));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private ResilientHttpInterceptor interceptor() {
+        return new ResilientHttpInterceptor(properties, meterRegistry);
+    }
+
+    private static MockClientHttpRequest request(HttpMethod method) {
+        return new MockClientHttpRequest(method, PRODUCT_URI);
+    }
+
+    private static MockClientHttpResponse status(HttpStatus status) {
+        return new MockClientHttpResponse(new byte[0], status);
+    }
+
+    // Renvoie les réponses (ou lève les erreurs) prévues, dans l'ordre
+    private static class ScriptedExecution implements ClientHttpRequestExecution {
+
+        private final Deque<Object> outcomes;
+        private int calls;
+
+        ScriptedExecution(Object... outcomes) {
+            this.outcomes = new ArrayDeque<>(List.of(outcomes));
+        }
+
+        @Override
+        public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+            calls++;
+            Object outcome = outcomes.pop();
+            if (outcome instanceof IOException e) {
+                throw e;
+            }
+            return (ClientHttpResponse) outcome;
+        }
+    }
+}
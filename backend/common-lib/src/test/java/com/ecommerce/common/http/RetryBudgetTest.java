@@ -0,0 +1,45 @@
+package com.ecommerce.common.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsFullAndRunsDry() {
+        RetryBudget budget = new RetryBudget(0.1, 3);
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    void requestsRefillOneRetryPerRatio() {
+        RetryBudget budget = new RetryBudget(0.25, 1);
+        budget.tryWithdraw();
+
+        for (int i = 0; i < 3; i++) {
+            budget.deposit();
+        }
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+    }
+
+    @Test
+    void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(1, 2);
+
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+}
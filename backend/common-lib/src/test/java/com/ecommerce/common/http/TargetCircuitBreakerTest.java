@@ -0,0 +1,135 @@
+package com.ecommerce.common.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TargetCircuitBreakerTest {
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        TargetCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAtFailureRateAndRejectsCalls() {
+        TargetCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        breaker.record(breaker.tryAcquire(), true);
+        breaker.record(breaker.tryAcquire(), true);
+        breaker.record(breaker.tryAcquire(), false);
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    @Test
+    void slidingWindowForgetsOldFailures() {
+        TargetCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        breaker.record(breaker.tryAcquire(), false);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), true);
+        }
+        // Fenêtre de 4 : le premier échec en est sorti
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenAdmitsASingleProbe() {
+        TargetCircuitBreaker breaker = openBreaker();
+
+        TargetCircuitBreaker.Permit probe = breaker.tryAcquire();
+
+        assertThat(probe).isNotNull();
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() {
+        TargetCircuitBreaker breaker = openBreaker();
+
+        breaker.record(breaker.tryAcquire(), true);
+
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void failedProbeReopensTheCircuit() {
+        TargetCircuitBreaker breaker = openBreaker();
+
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void callsAdmittedBeforeOpeningDoNotDecideTheProbe() {
+        TargetCircuitBreaker breaker = breaker(Duration.ZERO);
+        TargetCircuitBreaker.Permit slowSuccess = breaker.tryAcquire();
+        TargetCircuitBreaker.Permit slowFailure = breaker.tryAcquire();
+        trip(breaker);
+
+        TargetCircuitBreaker.Permit probe = breaker.tryAcquire();
+        breaker.record(slowSuccess, true);
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.HALF_OPEN);
+        breaker.record(slowFailure, false);
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.HALF_OPEN);
+
+        breaker.record(probe, true);
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void callsAdmittedBeforeClosingAreNotCountedAfterwards() {
+        TargetCircuitBreaker breaker = breaker(Duration.ZERO);
+        TargetCircuitBreaker.Permit stale = breaker.tryAcquire();
+        trip(breaker);
+        breaker.record(breaker.tryAcquire(), true);
+
+        breaker.record(stale, false);
+        for (int i = 0; i < 2; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+        breaker.record(breaker.tryAcquire(), true);
+
+        // 2 échecs sur 3 appels comptés : sous le minimum de 4, l'échec périmé n'est pas compté
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+
+    private static TargetCircuitBreaker openBreaker() {
+        TargetCircuitBreaker breaker = breaker(Duration.ZERO);
+        trip(breaker);
+        assertThat(breaker.state()).isEqualTo(TargetCircuitBreaker.State.OPEN);
+        return breaker;
+    }
+
+    private static void trip(TargetCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+    }
+
+    // Fenêtre de 4 appels, ouverture à partir de 4 appels et 50 % d'échecs
+    private static TargetCircuitBreaker breaker(Duration openDuration) {
+        HttpClientProperties.CircuitBreaker config = new HttpClientProperties.CircuitBreaker();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setOpenDuration(openDuration);
+        return new TargetCircuitBreaker(config);
+    }
+}
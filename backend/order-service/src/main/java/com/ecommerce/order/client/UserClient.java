@@ -0,0 +1,101 @@
+package com.ecommerce.order.client;
+
+import com.ecommerce.order.security.JwtService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fiches utilisateur (nom, e-mail, téléphone) pour l'affichage des commandes.
+ *
+ * Les identifiants d'une page sont dédoublonnés puis résolus d'abord dans un cache local (TTL court),
+ * les absents par lots via POST /internal/users/batch : une liste de commandes coûte au plus un appel par lot.
+ * Un utilisateur introuvable ou un auth-service indisponible laisse simplement la fiche vide.
+ * Le lot est réservé aux services : chaque appel porte un jeton de service.
+ */
+@Component
+@Slf4j
+public class UserClient {
+
+    private final RestTemplate restTemplate;
+    private final JwtService jwtService;
+    private final Cache<String, UserDto> users;
+
+    @Value("${services.auth-url}")
+    private String authServiceUrl;
+
+    @Value("${order.user-cache.batch-size:500}")
+    private int batchSize;
+
+    public UserClient(RestTemplate restTemplate,
+                      JwtService jwtService,
+                      @Value("${order.user-cache.max-size:10000}") long maxSize,
+                      @Value("${order.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.restTemplate = restTemplate;
+        this.jwtService = jwtService;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public Map<String, UserDto> getUsers(Collection<String> userIds) {
+        Map<String, UserDto> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            if (userId == null) {
+                continue;
+            }
+            UserDto user = users.getIfPresent(userId);
+            if (user != null) {
+                found.put(userId, user);
+            } else {
+                missing.add(userId);
+            }
+        }
+
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> chunk = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            try {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setBearerAuth(jwtService.generateServiceToken());
+                List<UserDto> loaded = restTemplate.exchange(authServiceUrl + "/internal/users/batch", HttpMethod.POST,
+                        new HttpEntity<>(chunk, headers), new ParameterizedTypeReference<List<UserDto>>() {
+                        }).getBody();
+                if (loaded != null) {
+                    for (UserDto user : loaded) {
+                        users.put(user.getId(), user);
+                        found.put(user.getId(), user);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error fetching {} users from auth-service: {}", chunk.size(), e.getMessage());
+            }
+        }
+        return found;
+    }
+
+    @Data
+    public static class UserDto {
+        private String id;
+        private String email;
+        private String name;
+        private String phoneNumber;
+    }
+}
@@ -1,39 +0,0 @@
-package com.ecommerce.order.config;
-
-//import com.ecommerce.order.event.OrderEvent;
-import com.ecommerce.common.event.OrderEvent;
-
-import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.StringSerializer;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
-
-import java.util.HashMap;
-import java.util.Map;
-
-@Configuration
-public class KafkaProducerConfig {
-    
-    @Value("${spring.kafka.bootstrap-servers}")
-    private String bootstrapServers;
-    
-    @Bean
-    public ProducerFactory<String, OrderEvent> producerFactory() {
-        Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(config);
-    }
-    
-    @Bean
-    public KafkaTemplate<String, OrderEvent> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
-    }
-}
-
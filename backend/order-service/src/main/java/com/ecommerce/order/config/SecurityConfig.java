@@ -39,7 +39,7 @@ public class SecurityConfig {
                         // ✅ ADMIN ENDPOINTS (Must be BEFORE general /api/orders/** patterns)
                         .requestMatchers("/api/orders/stats/**").hasRole("ADMIN") // Include sub-paths like top-products
                         .requestMatchers("/api/orders/recent").hasRole("ADMIN")
-                        .requestMatchers("/api/orders/all").hasRole("ADMIN")
+                        .requestMatchers("/api/orders/admin", "/api/orders/admin/**").hasRole("ADMIN")
 
                         // ✅ ROUTES COMMANDES (Accessibles aux authentifiés : Customer & Admin)
                         .requestMatchers(HttpMethod.POST, "/api/orders").authenticated() // Créer commande
@@ -2,16 +2,24 @@ package com.ecommerce.order.controller;
 
 import com.ecommerce.order.dto.CreateOrderRequest;
 import com.ecommerce.order.dto.OrderDto;
+import com.ecommerce.order.dto.OrderSearchCriteria;
+import com.ecommerce.order.enums.OrderStatus;
+import com.ecommerce.order.service.OrderExportWriter;
 import com.ecommerce.order.service.OrderService;
 import com.ecommerce.order.security.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -58,6 +66,20 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getUserShippingAddresses(userId));
     }
 
+    // Commande de l'utilisateur du jeton créée avec cette clé : résout une création dont l'issue est inconnue
+    @GetMapping("/idempotency/{idempotencyKey}")
+    public ResponseEntity<?> getOrderByIdempotencyKey(
+            @PathVariable String idempotencyKey,
+            @RequestHeader("Authorization") String authHeader) {
+        String userId = jwtService.extractUserId(authHeader.replace("Bearer ", ""));
+        OrderDto order = orderService.findByIdempotencyKey(userId, idempotencyKey);
+        if (order == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "No order for this idempotency key"));
+        }
+        return ResponseEntity.ok(order);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getOrderById(@PathVariable Long id) {
         try {
@@ -70,19 +92,37 @@ public class OrderController {
         }
     }
 
+    // Idempotency-Key (id de la saga de checkout) : une création rejouée renvoie la commande déjà créée
     @PostMapping
     public ResponseEntity<?> createOrder(
             @RequestBody CreateOrderRequest request,
             @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
+        String userId = null;
         try {
             String token = authHeader.replace("Bearer ", "");
-            String userId = jwtService.extractUserId(token);
+            userId = jwtService.extractUserId(token);
 
             log.info("Creating order for userId: {}", userId);
 
-            OrderDto order = orderService.createOrder(request, userId);
+            OrderDto existing = orderService.findByIdempotencyKey(userId, idempotencyKey);
+            if (existing != null) {
+                log.info("Order {} already created for idempotency key {}", existing.getId(), idempotencyKey);
+                return ResponseEntity.status(HttpStatus.CREATED).body(existing);
+            }
+
+            OrderDto order = orderService.createOrder(request, userId, idempotencyKey);
             return ResponseEntity.status(HttpStatus.CREATED).body(order);
+        } catch (DataIntegrityViolationException e) {
+            // Même clé créée en parallèle : la première commande fait foi
+            OrderDto existing = orderService.findByIdempotencyKey(userId, idempotencyKey);
+            if (existing != null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(existing);
+            }
+            log.error("Error creating order: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Order could not be created"));
         } catch (RuntimeException e) {
             log.error("Error creating order: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -95,9 +135,45 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getAdminStats());
     }
 
-    @GetMapping("/all")
-    public ResponseEntity<List<OrderDto>> getAllOrders() {
-        return ResponseEntity.ok(orderService.getAllOrders());
+    // Liste admin paginée : ?cursor=<nextCursor de la page précédente>
+    @GetMapping("/admin")
+    public ResponseEntity<?> searchOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(orderService.searchOrders(criteria(status, userId, from, to), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Export complet (mêmes filtres), écrit en flux
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "NDJSON") OrderExportWriter.Format format,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        OrderSearchCriteria criteria = criteria(status, userId, from, to);
+        StreamingResponseBody body = out -> orderService.exportOrders(criteria, format, out);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + format.getExtension() + "\"")
+                .body(body);
+    }
+
+    private OrderSearchCriteria criteria(OrderStatus status, String userId, LocalDateTime from, LocalDateTime to) {
+        return OrderSearchCriteria.builder()
+                .status(status)
+                .userId(userId == null || userId.isBlank() ? null : userId)
+                .from(from)
+                .to(to)
+                .build();
     }
 
     @PatchMapping("/{id}/status")
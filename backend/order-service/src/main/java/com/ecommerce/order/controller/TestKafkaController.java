@@ -1,8 +1,8 @@
 package com.ecommerce.order.controller;
 
 import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.common.kafka.EventPublisher;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -17,7 +17,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class TestKafkaController {
 
-    private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
+    private final EventPublisher eventPublisher;
 
     @PostMapping("/test-kafka")
     public Map<String, String> testKafka() {
@@ -34,7 +34,7 @@ public class TestKafkaController {
                 .status("PENDING")
                 .build();
 
-        kafkaTemplate.send("order-events", event);
+        eventPublisher.publish("order-events", orderId, event);
 
         return Map.of(
                 "status", "SUCCESS",
@@ -43,7 +43,11 @@ public class OrderDto {
                                                 .map(OrderItemDto::fromEntity) // Assurez-vous que OrderItemDto a cette
                                                                                // méthode
                                                 .collect(Collectors.toList());
+                return fromEntity(order, mappedItems);
+        }
 
+        // Items déjà chargés à part (export en flux) : la collection order.items n'est pas touchée
+        public static OrderDto fromEntity(Order order, List<OrderItemDto> mappedItems) {
                 // 2. Calculer le nombre total d'articles
                 int totalItemsCount = mappedItems.stream()
                                 .mapToInt(OrderItemDto::getQuantity)
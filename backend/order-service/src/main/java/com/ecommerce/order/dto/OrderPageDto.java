@@ -0,0 +1,18 @@
+package com.ecommerce.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageDto {
+    private List<OrderDto> orders;
+    // À renvoyer en paramètre cursor pour la page suivante ; null sur la dernière page
+    private String nextCursor;
+}
@@ -0,0 +1,25 @@
+package com.ecommerce.order.dto;
+
+import com.ecommerce.order.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtres de la liste admin des commandes ; un champ null n'est pas filtré.
+ * Sans statut, les commandes PENDING (paiement non abouti) sont exclues.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSearchCriteria {
+    private OrderStatus status;
+    private String userId;
+    // Création dans [from, to[
+    private LocalDateTime from;
+    private LocalDateTime to;
+}
@@ -58,6 +58,14 @@ public class Order {
     @Column(precision = 10, scale = 2)
     private BigDecimal discount;
 
+    // Clé d'idempotence de l'appelant (id de la saga de checkout), unique par utilisateur
+    @Column(name = "idempotency_key", length = 128)
+    private String idempotencyKey;
+
+    // Incrémentée à chaque écriture : identifie chaque transition de statut (ids des événements émis)
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<OrderItem> items = new ArrayList<>();
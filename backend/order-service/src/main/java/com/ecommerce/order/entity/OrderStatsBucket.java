@@ -0,0 +1,54 @@
+package com.ecommerce.order.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Compteur pré-agrégé du tableau de bord admin (nombre de commandes et chiffre d'affaires d'un bucket).
+ * Chaque bucket est réparti sur plusieurs lignes (shard) : sa valeur est la somme de ses lignes.
+ */
+@Entity
+@Table(name = "order_stats")
+@IdClass(OrderStatsBucket.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatsBucket {
+
+    // Toutes les commandes, bucket = statut
+    public static final String STATUS = "STATUS";
+    // Commandes comptées dans le CA, par date de création : bucket = yyyy-MM-dd / yyyy-MM
+    public static final String DAY = "DAY";
+    public static final String MONTH = "MONTH";
+
+    @Id
+    @Column(length = 16)
+    private String scope;
+
+    @Id
+    @Column(length = 32)
+    private String bucket;
+
+    @Id
+    private short shard;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String scope;
+        private String bucket;
+        private short shard;
+    }
+}
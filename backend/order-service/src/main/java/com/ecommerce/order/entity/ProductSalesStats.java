@@ -0,0 +1,46 @@
+package com.ecommerce.order.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Ventes cumulées d'un produit (commandes comptées dans le CA), pour le top produits.
+ * Réparties sur plusieurs lignes (shard) comme OrderStatsBucket : les ventes du produit sont la somme de ses lignes.
+ */
+@Entity
+@Table(name = "order_product_stats")
+@IdClass(ProductSalesStats.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSalesStats {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    private short shard;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    @Column(name = "quantity_sold", nullable = false)
+    private long quantitySold;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long productId;
+        private short shard;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.order.repository;
+
+import com.ecommerce.order.entity.OrderOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+        // Verrou de transaction : un seul réplica vide l'outbox à la fois (ordre de publication préservé)
+        @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+        boolean tryRelayLock(@Param("key") long key);
+
+        // Événements à publier, dans l'ordre d'écriture. Une commande dont un événement attend un nouvel essai
+        // est entièrement écartée : ses événements suivants ne doivent pas le doubler. Les événements mis à l'écart
+        // (dead letter) ne sont plus publiés et ne bloquent plus leur commande
+        @Query(value = "SELECT * FROM order_outbox o WHERE o.published_at IS NULL AND o.dead_lettered_at IS NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM order_outbox b WHERE b.aggregate_id = o.aggregate_id " +
+                        "AND b.published_at IS NULL AND b.dead_lettered_at IS NULL AND b.next_attempt_at > :now) " +
+                        "ORDER BY o.id LIMIT :limit", nativeQuery = true)
+        List<OrderOutboxEvent> findPublishable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+        @Modifying
+        @Query("UPDATE OrderOutboxEvent e SET e.publishedAt = :publishedAt, e.lastError = null WHERE e.id IN :ids")
+        int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+        @Query(value = "SELECT COUNT(*) FROM order_outbox WHERE published_at IS NULL AND dead_lettered_at IS NULL",
+                        nativeQuery = true)
+        long countPending();
+
+        @Query(value = "SELECT COUNT(*) FROM order_outbox WHERE dead_lettered_at IS NOT NULL", nativeQuery = true)
+        long countDeadLettered();
+
+        @Modifying
+        @Query("DELETE FROM OrderOutboxEvent e WHERE e.publishedAt < :before")
+        int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
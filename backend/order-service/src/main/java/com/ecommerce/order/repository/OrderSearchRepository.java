@@ -0,0 +1,98 @@
+package com.ecommerce.order.repository;
+
+import com.ecommerce.order.dto.OrderCursor;
+import com.ecommerce.order.dto.OrderSearchCriteria;
+import com.ecommerce.order.entity.Order;
+import com.ecommerce.order.enums.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Liste admin des commandes, triée par (createdAt, id) décroissants : pagination par curseur
+ * (idx_order_*_created_id) et export en flux. Seuls les filtres renseignés entrent dans la requête.
+ */
+@Repository
+public class OrderSearchRepository {
+
+        private static final int EXPORT_FETCH_SIZE = 500;
+
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        // Ids de la page (pas de fetch join ici : la limite reste appliquée par la base)
+        public List<Long> findPageIds(OrderSearchCriteria criteria, OrderCursor after, int limit) {
+                Map<String, Object> params = new HashMap<>();
+                StringBuilder jpql = new StringBuilder("SELECT o.id FROM Order o WHERE ");
+                appendFilters(jpql, params, criteria);
+                if (after != null) {
+                        jpql.append(" AND (o.createdAt < :afterCreatedAt OR (o.createdAt = :afterCreatedAt AND o.id < :afterId))");
+                        params.put("afterCreatedAt", after.createdAt());
+                        params.put("afterId", after.id());
+                }
+                jpql.append(" ORDER BY o.createdAt DESC, o.id DESC");
+
+                TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+                params.forEach(query::setParameter);
+                return query.setMaxResults(limit).getResultList();
+        }
+
+        public List<Order> findWithItems(List<Long> ids) {
+                return entityManager.createQuery(
+                                "SELECT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id IN :ids ORDER BY o.createdAt DESC, o.id DESC",
+                                Order.class)
+                                .setParameter("ids", ids)
+                                .getResultList();
+        }
+
+        /**
+         * Une ligne [Order, OrderItem] par article (item null si la commande n'en a pas), les lignes d'une commande
+         * consécutives. Curseur JDBC : à consommer dans une transaction, en vidant régulièrement le contexte.
+         */
+        public Stream<Object[]> streamWithItems(OrderSearchCriteria criteria) {
+                Map<String, Object> params = new HashMap<>();
+                StringBuilder jpql = new StringBuilder("SELECT o, i FROM Order o LEFT JOIN o.items i WHERE ");
+                appendFilters(jpql, params, criteria);
+                jpql.append(" ORDER BY o.createdAt DESC, o.id DESC, i.id");
+
+                TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+                params.forEach(query::setParameter);
+                return query.setHint(AvailableHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+                                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                                .getResultStream();
+        }
+
+        // Libère les entités déjà exportées
+        public void clear() {
+                entityManager.clear();
+        }
+
+        private void appendFilters(StringBuilder jpql, Map<String, Object> params, OrderSearchCriteria criteria) {
+                if (criteria.getStatus() != null) {
+                        jpql.append("o.status = :status");
+                        params.put("status", criteria.getStatus());
+                } else {
+                        jpql.append("o.status <> :excludedStatus");
+                        params.put("excludedStatus", OrderStatus.PENDING);
+                }
+                if (criteria.getUserId() != null) {
+                        jpql.append(" AND o.userId = :userId");
+                        params.put("userId", criteria.getUserId());
+                }
+                if (criteria.getFrom() != null) {
+                        jpql.append(" AND o.createdAt >= :from");
+                        params.put("from", criteria.getFrom());
+                }
+                if (criteria.getTo() != null) {
+                        jpql.append(" AND o.createdAt < :to");
+                        params.put("to", criteria.getTo());
+                }
+        }
+}
@@ -0,0 +1,43 @@
+package com.ecommerce.order.repository;
+
+import com.ecommerce.order.entity.OrderStatsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface OrderStatsRepository extends JpaRepository<OrderStatsBucket, OrderStatsBucket.Key> {
+
+        // Incrément atomique d'une ligne du bucket (deltas négatifs acceptés), crée la ligne au besoin
+        @Modifying
+        @Query(value = "INSERT INTO order_stats (scope, bucket, shard, order_count, revenue) " +
+                        "VALUES (:scope, :bucket, :shard, :count, :revenue) " +
+                        "ON CONFLICT (scope, bucket, shard) DO UPDATE SET order_count = order_stats.order_count + EXCLUDED.order_count, " +
+                        "revenue = order_stats.revenue + EXCLUDED.revenue", nativeQuery = true)
+        void increment(@Param("scope") String scope, @Param("bucket") String bucket, @Param("shard") int shard,
+                        @Param("count") long count, @Param("revenue") BigDecimal revenue);
+
+        // Lectures : somme des lignes de chaque bucket
+        @Query(value = "SELECT bucket AS bucket, CAST(SUM(order_count) AS BIGINT) AS orderCount, SUM(revenue) AS revenue " +
+                        "FROM order_stats WHERE scope = :scope GROUP BY bucket", nativeQuery = true)
+        List<BucketTotal> sumByScope(@Param("scope") String scope);
+
+        @Query(value = "SELECT bucket AS bucket, CAST(SUM(order_count) AS BIGINT) AS orderCount, SUM(revenue) AS revenue " +
+                        "FROM order_stats WHERE scope = :scope AND bucket BETWEEN :from AND :to " +
+                        "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+        List<BucketTotal> sumByScopeAndBucketBetween(@Param("scope") String scope,
+                        @Param("from") String from, @Param("to") String to);
+
+        interface BucketTotal {
+                String getBucket();
+
+                long getOrderCount();
+
+                BigDecimal getRevenue();
+        }
+}
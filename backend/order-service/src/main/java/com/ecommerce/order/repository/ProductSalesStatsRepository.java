@@ -0,0 +1,42 @@
+package com.ecommerce.order.repository;
+
+import com.ecommerce.order.entity.ProductSalesStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface ProductSalesStatsRepository extends JpaRepository<ProductSalesStats, ProductSalesStats.Key> {
+
+        // Incrément atomique d'une ligne du produit (deltas négatifs acceptés), crée la ligne au besoin
+        @Modifying
+        @Query(value = "INSERT INTO order_product_stats (product_id, shard, product_name, quantity_sold, revenue) " +
+                        "VALUES (:productId, :shard, :productName, :quantity, :revenue) " +
+                        "ON CONFLICT (product_id, shard) DO UPDATE SET quantity_sold = order_product_stats.quantity_sold + EXCLUDED.quantity_sold, " +
+                        "revenue = order_product_stats.revenue + EXCLUDED.revenue, " +
+                        "product_name = COALESCE(EXCLUDED.product_name, order_product_stats.product_name)", nativeQuery = true)
+        void increment(@Param("productId") Long productId, @Param("shard") int shard, @Param("productName") String productName,
+                        @Param("quantity") long quantity, @Param("revenue") BigDecimal revenue);
+
+        // Somme des lignes de chaque produit, les plus vendus d'abord
+        @Query(value = "SELECT product_id AS productId, MAX(product_name) AS productName, " +
+                        "CAST(SUM(quantity_sold) AS BIGINT) AS quantitySold, SUM(revenue) AS revenue " +
+                        "FROM order_product_stats GROUP BY product_id HAVING SUM(quantity_sold) > 0 " +
+                        "ORDER BY quantitySold DESC, product_id LIMIT :limit", nativeQuery = true)
+        List<ProductTotal> findTopSelling(@Param("limit") int limit);
+
+        interface ProductTotal {
+                Long getProductId();
+
+                String getProductName();
+
+                long getQuantitySold();
+
+                BigDecimal getRevenue();
+        }
+}
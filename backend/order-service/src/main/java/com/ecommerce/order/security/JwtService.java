@@ -9,14 +9,35 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 
 @Service
 @Slf4j
 public class JwtService {
 
+    private static final String SERVICE_SUBJECT = "order-service";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
+    // Jetons de service : courts, ils ne servent qu'à un appel sortant
+    @Value("${jwt.service-token-ttl-ms:60000}")
+    private long serviceTokenTtlMs;
+
+    /**
+     * Jeton d'appel service à service (rôle SERVICE), signé avec le secret partagé.
+     */
+    public String generateServiceToken() {
+        Date now = new Date();
+        return Jwts.builder()
+                .subject(SERVICE_SUBJECT)
+                .claim("role", "SERVICE")
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + serviceTokenTtlMs))
+                .signWith(signingKey())
+                .compact();
+    }
+
     public String extractUserId(String token) {
         Claims claims = extractAllClaims(token);
         return claims.get("userId", String.class);
@@ -28,12 +49,14 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
         return Jwts.parser()
-                .verifyWith(key)
+                .verifyWith(signingKey())
                 .build()
                 .parseSignedClaims(token)
                 .getPayload();
     }
+
+    private SecretKey signingKey() {
+        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,45 @@
+package com.ecommerce.order.service;
+
+import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.order.entity.OrderOutboxEvent;
+import com.ecommerce.order.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Écriture des événements de commande dans l'outbox, dans la transaction de l'appelant :
+ * un événement n'existe que si la commande est commitée. OrderOutboxRelay les publie ensuite.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderEventOutbox {
+
+    public static final String ORDER_EVENTS_TOPIC = "order-events";
+
+    private final OrderOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(OrderEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + event.getEventType() + " for order " + event.getOrderId(), e);
+        }
+
+        outboxRepository.save(OrderOutboxEvent.builder()
+                .aggregateId(event.getOrderId())
+                .topic(ORDER_EVENTS_TOPIC)
+                .eventType(event.getEventType())
+                .payload(payload)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+}
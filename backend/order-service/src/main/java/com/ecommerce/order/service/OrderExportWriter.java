@@ -0,0 +1,95 @@
+package com.ecommerce.order.service;
+
+import com.ecommerce.order.dto.OrderDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+/**
+ * Écrit l'export admin des commandes ligne par ligne : NDJSON (un OrderDto JSON par ligne) ou CSV
+ * (une ligne par commande, articles résumés en "productId x quantité").
+ */
+public class OrderExportWriter {
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String CSV_HEADER = "id,orderNumber,createdAt,status,userId,clientName,clientEmail,"
+            + "totalAmount,discount,promoCode,paymentMethod,totalItems,items";
+
+    private final Format format;
+    private final Writer writer;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportWriter(Format format, OutputStream out, ObjectMapper objectMapper) {
+        this.format = format;
+        this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.objectMapper = objectMapper;
+    }
+
+    public void start() throws IOException {
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+    }
+
+    public void write(OrderDto order) throws IOException {
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(order));
+        } else {
+            String items = order.getItems().stream()
+                    .map(item -> item.getProductId() + " x " + item.getQuantity())
+                    .collect(Collectors.joining("; "));
+            writer.write(String.join(",",
+                    csv(order.getId()), csv(order.getOrderNumber()), csv(order.getCreatedAt()), csv(order.getStatus()),
+                    csv(order.getUserId()), csv(order.getClientName()), csv(order.getClientEmail()),
+                    csv(order.getTotalAmount()), csv(order.getDiscount()), csv(order.getPromoCode()),
+                    csv(order.getPaymentMethod()), csv(order.getTotalItems()), csv(items)));
+        }
+        writer.write('\n');
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // Texte saisi par les clients : pas de formule interprétée à l'ouverture dans un tableur
+        if (value instanceof String && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,210 @@
+package com.ecommerce.order.service;
+
+import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.common.kafka.EventPublisher;
+import com.ecommerce.order.entity.OrderOutboxEvent;
+import com.ecommerce.order.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publie l'outbox des commandes sur Kafka, hors du chemin des requêtes.
+ *
+ * Un seul réplica à la fois (verrou consultatif Postgres). Les événements sont lus par lots dans l'ordre
+ * d'écriture ; ceux d'une même commande partent l'un après l'autre (clé = orderId), les commandes en parallèle.
+ * Un échec bloque la suite de sa commande jusqu'au prochain essai, avec un délai croissant. Après max-attempts
+ * échecs, l'événement est mis à l'écart (dead_lettered_at, métrique order.outbox.dead_lettered) : il reste dans
+ * la table pour analyse et la suite de sa commande repart.
+ */
+@Service
+@Slf4j
+public class OrderOutboxRelay {
+
+    private static final long RELAY_LOCK_KEY = 0x6f72646572L; // "order"
+
+    private final OrderOutboxRepository outboxRepository;
+    private final EventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer publishLag;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    @Value("${order.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${order.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${order.outbox.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    // Au-delà, l'événement est mis à l'écart au lieu d'être retenté indéfiniment
+    @Value("${order.outbox.max-attempts:15}")
+    private int maxAttempts;
+
+    @Value("${order.outbox.retention-hours:72}")
+    private long retentionHours;
+
+    public OrderOutboxRelay(OrderOutboxRepository outboxRepository,
+                            EventPublisher eventPublisher,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        // Délai entre l'écriture de l'événement (commit de la commande) et sa publication
+        this.publishLag = Timer.builder("order.outbox.lag")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("order.outbox.dead_letter.size", deadLettered, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published >= batchSize);
+            pending.set(outboxRepository.countPending());
+            deadLettered.set(outboxRepository.countDeadLettered());
+        } catch (Exception e) {
+            log.warn("Order outbox relay failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.purge-interval-ms:3600000}")
+    public void purgePublished() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                    outboxRepository.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours)));
+            if (deleted != null && deleted > 0) {
+                log.info("🧹 {} published order events purged from the outbox", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Order outbox purge failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publie un lot et retourne le nombre d'événements publiés (0 si un autre réplica tient le verrou).
+     */
+    private int publishBatch() {
+        if (!outboxRepository.tryRelayLock(RELAY_LOCK_KEY)) {
+            return 0;
+        }
+        List<OrderOutboxEvent> batch = outboxRepository.findPublishable(LocalDateTime.now(), batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<OrderOutboxEvent>> byOrder = new LinkedHashMap<>();
+        for (OrderOutboxEvent event : batch) {
+            byOrder.computeIfAbsent(event.getAggregateId(), id -> new ArrayList<>()).add(event);
+        }
+
+        Set<Long> published = ConcurrentHashMap.newKeySet();
+        Map<Long, Throwable> failed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> chains = new ArrayList<>(byOrder.size());
+        for (List<OrderOutboxEvent> events : byOrder.values()) {
+            // Chaque envoi attend l'accusé du précédent : un échec arrête la suite de la commande
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (OrderOutboxEvent event : events) {
+                chain = chain.thenCompose(previous -> send(event)
+                        .<Void>handle((result, e) -> {
+                            if (e != null) {
+                                failed.put(event.getId(), e);
+                                throw new IllegalStateException("Order event " + event.getId() + " not published");
+                            }
+                            published.add(event.getId());
+                            publishLag.record(Duration.between(event.getCreatedAt(), LocalDateTime.now()));
+                            return null;
+                        }));
+            }
+            chains.add(chain);
+        }
+
+        try {
+            CompletableFuture.allOf(chains.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Échecs individuels déjà relevés ; un envoi encore en cours sera retenté
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (!published.isEmpty()) {
+            outboxRepository.markPublished(published, now);
+            meterRegistry.counter("order.outbox.published").increment(published.size());
+        }
+        for (OrderOutboxEvent event : batch) {
+            Throwable error = failed.get(event.getId());
+            if (error != null) {
+                retryLater(event, error, now);
+            }
+        }
+        return published.size();
+    }
+
+    private CompletableFuture<?> send(OrderOutboxEvent event) {
+        try {
+            OrderEvent payload = objectMapper.readValue(event.getPayload(), OrderEvent.class);
+            return eventPublisher.publish(event.getTopic(), event.getAggregateId(), payload);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void retryLater(OrderOutboxEvent event, Throwable error, LocalDateTime now) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        int attempts = event.getAttempts() + 1;
+        long backoffMs = Math.min(maxBackoffMs, 1000L << Math.min(attempts - 1, 16));
+
+        event.setAttempts(attempts);
+        event.setLastError(truncate(cause.getMessage()));
+        meterRegistry.counter("order.outbox.failed", "event_type", event.getEventType()).increment();
+
+        if (attempts >= maxAttempts) {
+            event.setNextAttemptAt(null);
+            event.setDeadLetteredAt(now);
+            outboxRepository.save(event);
+            meterRegistry.counter("order.outbox.dead_lettered", "event_type", event.getEventType()).increment();
+            log.error("☠️ Order event {} ({} for order {}) dead-lettered after {} attempts: {}",
+                    event.getId(), event.getEventType(), event.getAggregateId(), attempts, cause.getMessage());
+            return;
+        }
+
+        event.setNextAttemptAt(now.plus(Duration.ofMillis(backoffMs)));
+        outboxRepository.save(event);
+        log.warn("⏳ Order event {} ({} for order {}) not published, attempt {}: {}",
+                event.getId(), event.getEventType(), event.getAggregateId(), attempts, cause.getMessage());
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -1,21 +1,36 @@
 package com.ecommerce.order.service;
 
 import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.common.event.OrderEventItem;
+import com.ecommerce.order.client.UserClient;
 import com.ecommerce.order.dto.*;
 import com.ecommerce.order.entity.Order;
 import com.ecommerce.order.entity.OrderItem;
+import com.ecommerce.order.entity.OrderStatsBucket;
 import com.ecommerce.order.enums.OrderStatus;
 import com.ecommerce.order.repository.OrderRepository;
+import com.ecommerce.order.repository.OrderSearchRepository;
+import com.ecommerce.order.repository.OrderStatsRepository;
+import com.ecommerce.order.repository.ProductSalesStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.math.BigDecimal;
 
 @Service
@@ -23,15 +38,31 @@ import java.math.BigDecimal;
 @Slf4j
 public class OrderService {
 
+    // Liste admin : pages par curseur et export en flux
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private final OrderRepository orderRepository;
-    private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
+    private final OrderSearchRepository orderSearchRepository;
+    private final ObjectMapper objectMapper;
+    // Événements écrits dans la transaction de la commande, publiés par OrderOutboxRelay
+    private final OrderEventOutbox orderEventOutbox;
+    // Statistiques admin pré-agrégées, mises à jour dans la même transaction que la commande
+    private final OrderStatsProjection orderStatsProjection;
+    private final OrderStatsRepository orderStatsRepository;
+    private final ProductSalesStatsRepository productSalesStatsRepository;
     private final org.springframework.web.client.RestTemplate restTemplate;
+    private final UserClient userClient;
 
     @org.springframework.beans.factory.annotation.Value("${services.product-url}")
     private String productServiceUrl;
 
-    @org.springframework.beans.factory.annotation.Value("${services.auth-url}")
-    private String authServiceUrl;
+    // Nombre de produits du tableau de bord : redemandé à product-service au plus une fois par intervalle
+    @org.springframework.beans.factory.annotation.Value("${order.stats.product-count-ttl-ms:60000}")
+    private long productCountTtlMs;
+
+    private volatile int productCount;
+    private volatile long productCountFetchedAt;
 
     @Transactional(readOnly = true)
     public List<OrderDto> getOrdersByUserId(String userId) {
@@ -51,13 +82,30 @@ public class OrderService {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
         OrderDto dto = convertToDto(order);
-        enrichWithUserInfo(dto);
+        enrichWithUserInfo(List.of(dto));
         enrichWithProductInfo(dto);
         return dto;
     }
 
+    /**
+     * Commande créée pour cette clé d'idempotence, ou null (clé absente ou inconnue).
+     */
+    @Transactional(readOnly = true)
+    public OrderDto findByIdempotencyKey(String userId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        return orderRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .map(this::convertToDto)
+                .orElse(null);
+    }
+
+    /**
+     * Crée une commande. Avec une clé d'idempotence déjà utilisée par cet utilisateur, aucune commande
+     * n'est créée : l'appelant retrouve la première avec findByIdempotencyKey (index unique (user_id, clé)).
+     */
     @Transactional
-    public OrderDto createOrder(CreateOrderRequest request, String userId) {
+    public OrderDto createOrder(CreateOrderRequest request, String userId, String idempotencyKey) {
         log.info("Creating order for user: {}", userId);
         String orderNumber = "ORD-" + System.currentTimeMillis();
 
@@ -102,6 +150,7 @@ public class OrderService {
                 .paymentMethod(request.getPaymentMethod())
                 .promoCode(request.getPromoCode())
                 .discount(discount)
+                .idempotencyKey(idempotencyKey == null || idempotencyKey.isBlank() ? null : idempotencyKey)
                 .build();
 
         for (OrderItem item : orderItems) {
@@ -110,6 +159,7 @@ public class OrderService {
 
         Order savedOrder = orderRepository.save(order);
         log.info("Order created successfully: {}", savedOrder.getOrderNumber());
+        orderStatsProjection.orderCreated(savedOrder);
 
         // Emit Initiated event (ignored by notification service)
         publishOrderEvent(savedOrder, "OrderInitiated");
@@ -119,21 +169,24 @@ public class OrderService {
 
     @Transactional
     public void deleteOrder(Long id) {
-        if (!orderRepository.existsById(id)) {
-            throw new RuntimeException("Order not found");
-        }
-        orderRepository.deleteById(id);
+        Order order = orderRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        orderStatsProjection.orderDeleted(order);
+        orderRepository.delete(order);
         log.info("Order deleted: {}", id);
     }
 
     @Transactional
     public void confirmOrderPayment(Long orderId) {
-        Order order = orderRepository.findById(orderId)
+        // Verrou : une confirmation concurrente attend, puis voit CONFIRMED et ne compte ni ne publie rien
+        Order order = orderRepository.findByIdForUpdate(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         if (order.getStatus() != OrderStatus.CONFIRMED && order.getStatus() != OrderStatus.SHIPPED) {
+            OrderStatus previous = order.getStatus();
             order.setStatus(OrderStatus.CONFIRMED);
-            Order saved = orderRepository.save(order);
+            Order saved = orderRepository.saveAndFlush(order);
+            orderStatsProjection.statusChanged(saved, previous);
             log.info("Order {} confirmed via payment (Service method)", order.getId());
 
             // Emit OrderCreated now to trigger the confirmation email
@@ -143,16 +196,29 @@ public class OrderService {
 
     private void publishOrderEvent(Order order, String eventType) {
         OrderEvent event = OrderEvent.builder()
-                .eventId(UUID.randomUUID().toString())
+                .eventId(eventId(order, eventType))
                 .eventType(eventType)
                 .timestamp(LocalDateTime.now())
                 .orderId(order.getId().toString())
                 .userId(order.getUserId())
                 .totalAmount(order.getTotalAmount())
                 .status(order.getStatus().name())
+                .items(order.getItems().stream()
+                        .map(item -> OrderEventItem.builder()
+                                .productId(item.getProductId())
+                                .quantity(item.getQuantity())
+                                .build())
+                        .collect(Collectors.toList()))
                 .build();
 
-        kafkaTemplate.send("order-events", event);
+        orderEventOutbox.append(event);
+    }
+
+    // Id stable par (commande, transition) : la version identifie la transition, un doublon garde le même id
+    // et les consommateurs qui dédoublonnent par eventId (popularité) ne le comptent qu'une fois
+    private static String eventId(Order order, String eventType) {
+        return UUID.nameUUIDFromBytes((order.getId() + ":" + eventType + ":" + order.getVersion())
+                .getBytes(StandardCharsets.UTF_8)).toString();
     }
 
     // Méthode utilitaire convertToDto rendue publique ou utilisée en interne
@@ -162,69 +228,171 @@ public class OrderService {
 
     // --- Admin Methods ---
 
+    @Transactional(readOnly = true)
     public AdminStatsDto getAdminStats() {
-        LocalDateTime startOfMonth = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0);
+        Map<String, OrderStatsRepository.BucketTotal> byStatus = orderStatsRepository.sumByScope(OrderStatsBucket.STATUS).stream()
+                .collect(Collectors.toMap(OrderStatsRepository.BucketTotal::getBucket, b -> b));
+
+        long totalOrders = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        for (OrderStatus status : OrderStatsProjection.REVENUE_STATUSES) {
+            OrderStatsRepository.BucketTotal bucket = byStatus.get(status.name());
+            if (bucket != null) {
+                totalOrders += bucket.getOrderCount();
+                totalRevenue = totalRevenue.add(bucket.getRevenue());
+            }
+        }
+
+        String currentMonth = OrderStatsProjection.monthBucket(YearMonth.now());
+        OrderStatsRepository.BucketTotal thisMonth = orderStatsRepository
+                .sumByScopeAndBucketBetween(OrderStatsBucket.MONTH, currentMonth, currentMonth).stream()
+                .findFirst().orElse(null);
+
+        return AdminStatsDto.builder()
+                .totalOrders((int) totalOrders)
+                .totalRevenue(totalRevenue)
+                .pendingOrders(countByStatus(byStatus, OrderStatus.PENDING))
+                .confirmedOrders(countByStatus(byStatus, OrderStatus.CONFIRMED))
+                .processingOrders(countByStatus(byStatus, OrderStatus.PROCESSING))
+                .shippedOrders(countByStatus(byStatus, OrderStatus.SHIPPED))
+                .deliveredOrders(countByStatus(byStatus, OrderStatus.DELIVERED))
+                .ordersThisMonth(thisMonth != null ? (int) thisMonth.getOrderCount() : 0)
+                .revenueThisMonth(thisMonth != null ? thisMonth.getRevenue() : BigDecimal.ZERO)
+                .totalProducts(productCount())
+                .totalUsers(0)
+                .build();
+    }
+
+    private int countByStatus(Map<String, OrderStatsRepository.BucketTotal> byStatus, OrderStatus status) {
+        OrderStatsRepository.BucketTotal bucket = byStatus.get(status.name());
+        return bucket != null ? (int) bucket.getOrderCount() : 0;
+    }
 
-        int totalProducts = 0;
+    private int productCount() {
+        long now = System.currentTimeMillis();
+        if (now - productCountFetchedAt < productCountTtlMs) {
+            return productCount;
+        }
         try {
             Long count = restTemplate.getForObject(productServiceUrl + "/count", Long.class);
             if (count != null) {
-                totalProducts = count.intValue();
+                productCount = count.intValue();
             }
         } catch (Exception e) {
             log.error("Error fetching product count: {}", e.getMessage());
         }
+        // Même en cas d'échec : product-service n'est pas relancé à chaque rafraîchissement
+        productCountFetchedAt = now;
+        return productCount;
+    }
 
-        return AdminStatsDto.builder()
-                .totalOrders((int) orderRepository.countValidOrders())
-                .totalRevenue(orderRepository.sumTotalRevenue())
-                .pendingOrders((int) orderRepository.countByStatus(OrderStatus.PENDING))
-                .confirmedOrders((int) orderRepository.countByStatus(OrderStatus.CONFIRMED))
-                .processingOrders((int) orderRepository.countByStatus(OrderStatus.PROCESSING))
-                .shippedOrders((int) orderRepository.countByStatus(OrderStatus.SHIPPED))
-                .deliveredOrders((int) orderRepository.countByStatus(OrderStatus.DELIVERED))
-                .ordersThisMonth((int) orderRepository.countOrdersSince(startOfMonth))
-                .revenueThisMonth(orderRepository.sumRevenueSince(startOfMonth))
-                .totalProducts(totalProducts)
-                .totalUsers(0)
+    @Transactional(readOnly = true)
+    public OrderPageDto searchOrders(OrderSearchCriteria criteria, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        OrderCursor after = (cursor == null || cursor.isBlank()) ? null : OrderCursor.decode(cursor);
+
+        // Un id de plus que demandé : indique s'il existe une page suivante
+        List<Long> ids = orderSearchRepository.findPageIds(criteria, after, size + 1);
+        boolean hasMore = ids.size() > size;
+        if (hasMore) {
+            ids = ids.subList(0, size);
+        }
+
+        List<OrderDto> dtos = ids.isEmpty() ? new ArrayList<>()
+                : orderSearchRepository.findWithItems(ids).stream()
+                        .map(this::convertToDto)
+                        .collect(Collectors.toList());
+        enrichWithUserInfo(dtos);
+
+        String nextCursor = null;
+        if (hasMore && !dtos.isEmpty()) {
+            OrderDto last = dtos.get(dtos.size() - 1);
+            nextCursor = new OrderCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return OrderPageDto.builder()
+                .orders(dtos)
+                .nextCursor(nextCursor)
                 .build();
     }
 
-    public List<OrderDto> getAllOrders() {
-        List<Order> orders = orderRepository.findAllValidOrders();
-        return orders.stream()
-                .filter(o -> o.getStatus() != OrderStatus.PENDING)
-                .map(order -> {
-                    OrderDto dto = convertToDto(order);
-                    enrichWithUserInfo(dto);
-                    return dto;
-                }).collect(Collectors.toList());
+    /**
+     * Export de toutes les commandes filtrées, lues par curseur et écrites au fil de l'eau :
+     * la mémoire utilisée ne dépend que de EXPORT_CHUNK_SIZE.
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(OrderSearchCriteria criteria, OrderExportWriter.Format format, OutputStream out) throws IOException {
+        OrderExportWriter writer = new OrderExportWriter(format, out, objectMapper);
+        writer.start();
+
+        List<OrderDto> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<Object[]> rows = orderSearchRepository.streamWithItems(criteria)) {
+            Order current = null;
+            List<OrderItemDto> currentItems = new ArrayList<>();
+            Iterator<Object[]> it = rows.iterator();
+            while (it.hasNext()) {
+                Object[] row = it.next();
+                Order order = (Order) row[0];
+                OrderItem item = (OrderItem) row[1];
+
+                if (current != null && !current.getId().equals(order.getId())) {
+                    chunk.add(OrderDto.fromEntity(current, currentItems));
+                    currentItems = new ArrayList<>();
+                    if (chunk.size() >= EXPORT_CHUNK_SIZE) {
+                        writeChunk(writer, chunk);
+                    }
+                }
+                current = order;
+                if (item != null) {
+                    currentItems.add(OrderItemDto.fromEntity(item));
+                }
+            }
+            if (current != null) {
+                chunk.add(OrderDto.fromEntity(current, currentItems));
+            }
+        }
+        writeChunk(writer, chunk);
+    }
+
+    private void writeChunk(OrderExportWriter writer, List<OrderDto> chunk) throws IOException {
+        enrichWithUserInfo(chunk);
+        for (OrderDto dto : chunk) {
+            writer.write(dto);
+        }
+        writer.flush();
+        chunk.clear();
+        // Les entités déjà écrites ne restent pas dans le contexte de persistance
+        orderSearchRepository.clear();
     }
 
     @Transactional
     public OrderDto updateOrderStatus(Long id, OrderStatus status) {
-        Order order = orderRepository.findById(id)
+        // Verrou : deux transitions concurrentes s'appliquent l'une après l'autre, chacune depuis le statut réel
+        Order order = orderRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
+        OrderStatus previous = order.getStatus();
+        if (previous == status) {
+            // Aucune transition : ni compteurs ni événement
+            return convertToDto(order);
+        }
         order.setStatus(status);
-        Order saved = orderRepository.save(order);
+        Order saved = orderRepository.saveAndFlush(order);
+        orderStatsProjection.statusChanged(saved, previous);
         // Maybe publish event?
         publishOrderEvent(saved, "OrderStatusUpdated");
         return convertToDto(saved);
     }
 
-    private void enrichWithUserInfo(OrderDto dto) {
-        if (dto.getUserId() != null) {
-            try {
-                // Fetch user from Auth Service
-                java.util.Map user = restTemplate.getForObject(authServiceUrl + "/internal/users/" + dto.getUserId(),
-                        java.util.Map.class);
-                if (user != null) {
-                    dto.setClientName((String) user.get("name"));
-                    dto.setClientEmail((String) user.get("email"));
-                    dto.setClientPhone((String) user.get("phoneNumber"));
-                }
-            } catch (Exception e) {
-                log.error("Error fetching user info for order {}: {}", dto.getId(), e.getMessage());
+    // Un seul passage par liste : utilisateurs dédoublonnés, résolus par UserClient (cache puis lots)
+    private void enrichWithUserInfo(List<OrderDto> dtos) {
+        Map<String, UserClient.UserDto> users = userClient.getUsers(dtos.stream()
+                .map(OrderDto::getUserId)
+                .collect(Collectors.toList()));
+        for (OrderDto dto : dtos) {
+            UserClient.UserDto user = users.get(dto.getUserId());
+            if (user != null) {
+                dto.setClientName(user.getName());
+                dto.setClientEmail(user.getEmail());
+                dto.setClientPhone(user.getPhoneNumber());
             }
         }
     }
@@ -280,7 +448,9 @@ public class OrderService {
 
     @Transactional(readOnly = true)
     public List<TopProductDto> getTopSellingProducts(int limit) {
-        return orderRepository.findTopSellingProducts(org.springframework.data.domain.PageRequest.of(0, limit));
+        return productSalesStatsRepository.findTopSelling(limit).stream()
+                .map(p -> new TopProductDto(p.getProductId(), p.getProductName(), p.getQuantitySold(), p.getRevenue()))
+                .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
@@ -291,12 +461,28 @@ public class OrderService {
             if (startDate == null)
                 startDate = endDate.minusDays(7);
 
-            return new java.util.ArrayList<>(orderRepository.findDailyRevenueBetween(startDate, endDate));
+            return orderStatsRepository.sumByScopeAndBucketBetween(OrderStatsBucket.DAY,
+                            OrderStatsProjection.dayBucket(startDate.toLocalDate()),
+                            OrderStatsProjection.dayBucket(endDate.toLocalDate())).stream()
+                    .filter(b -> b.getOrderCount() > 0)
+                    .map(b -> {
+                        LocalDate day = LocalDate.parse(b.getBucket(), OrderStatsProjection.DAY_FORMAT);
+                        return (Object) new DailyRevenueDto(day.getYear(), day.getMonthValue(), day.getDayOfMonth(), b.getRevenue());
+                    })
+                    .collect(Collectors.toList());
         } else {
-            // Default MONTHLY
+            // Default MONTHLY (au mois près)
             if (startDate == null)
                 startDate = LocalDateTime.now().minusMonths(12).withDayOfMonth(1);
-            return new java.util.ArrayList<>(orderRepository.findMonthlyRevenueSince(startDate));
+            return orderStatsRepository.sumByScopeAndBucketBetween(OrderStatsBucket.MONTH,
+                            OrderStatsProjection.monthBucket(YearMonth.from(startDate)),
+                            OrderStatsProjection.monthBucket(YearMonth.now())).stream()
+                    .filter(b -> b.getOrderCount() > 0)
+                    .map(b -> {
+                        YearMonth month = YearMonth.parse(b.getBucket(), OrderStatsProjection.MONTH_FORMAT);
+                        return (Object) new MonthlyRevenueDto(month.getYear(), month.getMonthValue(), b.getRevenue());
+                    })
+                    .collect(Collectors.toList());
         }
     }
 
@@ -304,10 +490,10 @@ public class OrderService {
     public List<OrderDto> getRecentOrders(int limit) {
         org.springframework.data.domain.Page<Order> page = orderRepository.findRecentValidOrders(
                 org.springframework.data.domain.PageRequest.of(0, limit));
-        return page.getContent().stream().map(order -> {
-            OrderDto dto = convertToDto(order);
-            enrichWithUserInfo(dto);
-            return dto;
-        }).collect(Collectors.toList());
+        List<OrderDto> dtos = page.getContent().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+        enrichWithUserInfo(dtos);
+        return dtos;
     }
 }
@@ -0,0 +1,121 @@
+package com.ecommerce.order.service;
+
+import com.ecommerce.order.entity.Order;
+import com.ecommerce.order.entity.OrderItem;
+import com.ecommerce.order.entity.OrderStatsBucket;
+import com.ecommerce.order.enums.OrderStatus;
+import com.ecommerce.order.repository.OrderStatsRepository;
+import com.ecommerce.order.repository.ProductSalesStatsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tient à jour les statistiques admin (order_stats, order_product_stats) dans la transaction de la commande :
+ * le tableau de bord lit des compteurs au lieu d'agréger toute la table orders.
+ *
+ * Les lignes sont toujours modifiées dans le même ordre (statuts triés, jour, mois, produits par id)
+ * pour que deux transactions concurrentes ne s'interbloquent pas. Chaque compteur (order_stats et
+ * order_product_stats) est réparti sur order.stats.shards lignes : une transaction en tire une au hasard,
+ * ce qui évite que toutes les créations attendent le verrou de ('STATUS', 'PENDING'), du jour courant
+ * ou d'un produit très vendu. Les lectures font la somme.
+ *
+ * statusChanged suppose que l'appelant a verrouillé la commande avant de lire son statut précédent
+ * (OrderRepository.findByIdForUpdate) : sinon deux transitions concurrentes décrémentent le même statut.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderStatsProjection {
+
+    // Statuts comptés dans le chiffre d'affaires
+    public static final Set<OrderStatus> REVENUE_STATUSES = EnumSet.of(
+            OrderStatus.CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED, OrderStatus.DELIVERED, OrderStatus.REFUNDED);
+
+    public static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    public static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final OrderStatsRepository statsRepository;
+    private final ProductSalesStatsRepository productSalesRepository;
+
+    @Value("${order.stats.shards:8}")
+    private int shards;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderCreated(Order order) {
+        apply(order, null, order.getStatus());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void statusChanged(Order order, OrderStatus previous) {
+        if (previous != order.getStatus()) {
+            apply(order, previous, order.getStatus());
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderDeleted(Order order) {
+        apply(order, order.getStatus(), null);
+    }
+
+    public static String dayBucket(LocalDate day) {
+        return day.format(DAY_FORMAT);
+    }
+
+    public static String monthBucket(YearMonth month) {
+        return month.format(MONTH_FORMAT);
+    }
+
+    private void apply(Order order, OrderStatus from, OrderStatus to) {
+        BigDecimal amount = order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+        // Une seule ligne par compteur et par transaction : l'ordre des verrous reste celui des compteurs
+        int shard = ThreadLocalRandom.current().nextInt(Math.max(shards, 1));
+
+        Map<String, Integer> statusDeltas = new TreeMap<>();
+        if (from != null) {
+            statusDeltas.merge(from.name(), -1, Integer::sum);
+        }
+        if (to != null) {
+            statusDeltas.merge(to.name(), 1, Integer::sum);
+        }
+        statusDeltas.forEach((status, delta) -> {
+            if (delta != 0) {
+                statsRepository.increment(OrderStatsBucket.STATUS, status, shard, delta, amount.multiply(BigDecimal.valueOf(delta)));
+            }
+        });
+
+        // L'entrée ou la sortie du chiffre d'affaires fait bouger jour, mois et produits
+        int revenueDelta = (to != null && REVENUE_STATUSES.contains(to) ? 1 : 0)
+                - (from != null && REVENUE_STATUSES.contains(from) ? 1 : 0);
+        if (revenueDelta == 0) {
+            return;
+        }
+
+        BigDecimal signedAmount = amount.multiply(BigDecimal.valueOf(revenueDelta));
+        statsRepository.increment(OrderStatsBucket.DAY, dayBucket(order.getCreatedAt().toLocalDate()), shard, revenueDelta, signedAmount);
+        statsRepository.increment(OrderStatsBucket.MONTH, monthBucket(YearMonth.from(order.getCreatedAt())), shard, revenueDelta, signedAmount);
+
+        Map<Long, ProductLine> lines = new TreeMap<>();
+        for (OrderItem item : order.getItems()) {
+            BigDecimal lineTotal = item.getPriceAtPurchase().multiply(BigDecimal.valueOf(item.getQuantity()));
+            lines.merge(item.getProductId(), new ProductLine(item.getProductName(), item.getQuantity(), lineTotal),
+                    (a, b) -> new ProductLine(a.name(), a.quantity() + b.quantity(), a.revenue().add(b.revenue())));
+        }
+        lines.forEach((productId, line) -> productSalesRepository.increment(productId, shard, line.name(),
+                revenueDelta * line.quantity(), line.revenue().multiply(BigDecimal.valueOf(revenueDelta))));
+    }
+
+    private record ProductLine(String name, long quantity, BigDecimal revenue) {
+    }
+}
@@ -0,0 +1,9 @@
+-- Sharded per-product counters, like order_stats (V8): confirmations of a best seller increment different rows
+-- instead of queueing on its single row. Top products are summed per product on read
+ALTER TABLE order_product_stats ADD COLUMN IF NOT EXISTS shard SMALLINT NOT NULL DEFAULT 0;
+
+ALTER TABLE order_product_stats DROP CONSTRAINT IF EXISTS order_product_stats_pkey;
+ALTER TABLE order_product_stats ADD PRIMARY KEY (product_id, shard);
+
+-- Per-row quantities no longer give the ranking
+DROP INDEX IF EXISTS idx_order_product_stats_sold;
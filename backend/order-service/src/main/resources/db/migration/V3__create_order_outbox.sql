@@ -0,0 +1,19 @@
+-- Transactional outbox for order events: written in the order's transaction, published by OrderOutboxRelay
+CREATE TABLE IF NOT EXISTS order_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    aggregate_id VARCHAR(64) NOT NULL,
+    topic VARCHAR(255) NOT NULL,
+    event_type VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    published_at TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP,
+    last_error VARCHAR(1000)
+);
+
+-- Pending events, in publication order
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending ON order_outbox(id) WHERE published_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending_aggregate ON order_outbox(aggregate_id) WHERE published_at IS NULL;
+-- Purge of published events
+CREATE INDEX IF NOT EXISTS idx_order_outbox_published_at ON order_outbox(published_at);
@@ -0,0 +1,44 @@
+-- Admin dashboard read model, maintained in the order's transaction by OrderStatsProjection
+-- scope STATUS: every order, bucket = status; scopes DAY (yyyy-MM-dd) / MONTH (yyyy-MM): revenue-bearing orders by creation date
+CREATE TABLE IF NOT EXISTS order_stats (
+    scope VARCHAR(16) NOT NULL,
+    bucket VARCHAR(32) NOT NULL,
+    order_count BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (scope, bucket)
+);
+
+-- Units sold and revenue per product, revenue-bearing orders only
+CREATE TABLE IF NOT EXISTS order_product_stats (
+    product_id BIGINT PRIMARY KEY,
+    product_name VARCHAR(255),
+    quantity_sold BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(19, 2) NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_product_stats_sold ON order_product_stats(quantity_sold DESC);
+
+-- Backfill from existing orders
+INSERT INTO order_stats (scope, bucket, order_count, revenue)
+SELECT 'STATUS', status, COUNT(*), COALESCE(SUM(total_amount), 0)
+FROM orders
+GROUP BY status;
+
+INSERT INTO order_stats (scope, bucket, order_count, revenue)
+SELECT 'DAY', to_char(created_at, 'YYYY-MM-DD'), COUNT(*), COALESCE(SUM(total_amount), 0)
+FROM orders
+WHERE status IN ('CONFIRMED', 'PROCESSING', 'SHIPPED', 'DELIVERED', 'REFUNDED')
+GROUP BY to_char(created_at, 'YYYY-MM-DD');
+
+INSERT INTO order_stats (scope, bucket, order_count, revenue)
+SELECT 'MONTH', to_char(created_at, 'YYYY-MM'), COUNT(*), COALESCE(SUM(total_amount), 0)
+FROM orders
+WHERE status IN ('CONFIRMED', 'PROCESSING', 'SHIPPED', 'DELIVERED', 'REFUNDED')
+GROUP BY to_char(created_at, 'YYYY-MM');
+
+INSERT INTO order_product_stats (product_id, product_name, quantity_sold, revenue)
+SELECT oi.product_id, MAX(oi.product_name), SUM(oi.quantity), SUM(oi.price_at_purchase * oi.quantity)
+FROM order_items oi
+JOIN orders o ON o.id = oi.order_id
+WHERE o.status IN ('CONFIRMED', 'PROCESSING', 'SHIPPED', 'DELIVERED', 'REFUNDED')
+GROUP BY oi.product_id;
@@ -0,0 +1,8 @@
+-- Admin listing paginated by (created_at, id) descending, optionally filtered by status or user
+CREATE INDEX IF NOT EXISTS idx_order_created_id ON orders(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_order_status_created_id ON orders(status, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_order_user_created_id ON orders(user_id, created_at DESC, id DESC);
+
+-- Covered by the indexes above
+DROP INDEX IF EXISTS idx_order_created_at;
+DROP INDEX IF EXISTS idx_order_user_created;
@@ -0,0 +1,7 @@
+-- Caller-supplied idempotency key (checkout saga id): a replayed create returns the existing order,
+-- and a create with an unknown outcome is resolved by looking the order up by its key
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(128);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_order_user_idempotency_key
+    ON orders(user_id, idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
@@ -0,0 +1,9 @@
+-- Events that exhausted their publication attempts are parked (dead-lettered) instead of being retried forever.
+-- Parked events stay in the table for inspection: clearing dead_lettered_at and attempts queues them again
+ALTER TABLE order_outbox ADD COLUMN IF NOT EXISTS dead_lettered_at TIMESTAMP;
+
+DROP INDEX IF EXISTS idx_order_outbox_pending;
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending ON order_outbox(id)
+    WHERE published_at IS NULL AND dead_lettered_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_order_outbox_dead_lettered ON order_outbox(dead_lettered_at)
+    WHERE dead_lettered_at IS NOT NULL;
@@ -0,0 +1,6 @@
+-- Sharded counters: every bucket is spread over several rows (shard), summed on read.
+-- Concurrent orders increment different rows instead of queueing on ('STATUS', 'PENDING') and today's DAY/MONTH rows
+ALTER TABLE order_stats ADD COLUMN IF NOT EXISTS shard SMALLINT NOT NULL DEFAULT 0;
+
+ALTER TABLE order_stats DROP CONSTRAINT IF EXISTS order_stats_pkey;
+ALTER TABLE order_stats ADD PRIMARY KEY (scope, bucket, shard);
@@ -0,0 +1,3 @@
+-- Optimistic version of an order, bumped by every write. Status transitions lock the row, and the version
+-- identifies each transition: the ids of the events it emits are derived from it
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -13,7 +13,7 @@ import org.testcontainers.utility.DockerImageName;
 public abstract class AbstractIntegrationTest {
 
         @org.springframework.test.context.bean.override.mockito.MockitoBean
-        protected org.springframework.kafka.core.KafkaTemplate<String, Object> kafkaTemplate;
+        protected com.ecommerce.common.kafka.EventPublisher eventPublisher;
 
         static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:15"))
                         .withDatabaseName("order_db_test")
@@ -42,7 +42,7 @@ public abstract class AbstractIntegrationTest {
                 registry.add("spring.data.redis.host", redis::getHost);
                 registry.add("spring.data.redis.port", redis::getFirstMappedPort);
 
-                // Kafka properties (Dummy value for injection, Template is mocked)
+                // Kafka properties (Dummy value for injection, EventPublisher is mocked)
                 registry.add("spring.kafka.bootstrap-servers", () -> "localhost:9092");
 
                 // Env Vars / Properties replacement
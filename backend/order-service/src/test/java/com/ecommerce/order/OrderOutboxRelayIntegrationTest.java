@@ -0,0 +1,167 @@
+package com.ecommerce.order;
+
+import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.order.dto.CreateOrderRequest;
+import com.ecommerce.order.dto.OrderDto;
+import com.ecommerce.order.dto.OrderItemDto;
+import com.ecommerce.order.entity.OrderOutboxEvent;
+import com.ecommerce.order.enums.OrderStatus;
+import com.ecommerce.order.repository.OrderOutboxRepository;
+import com.ecommerce.order.service.OrderOutboxRelay;
+import com.ecommerce.order.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class OrderOutboxRelayIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderOutboxRelay outboxRelay;
+
+    @Autowired
+    private OrderOutboxRepository outboxRepository;
+
+    // Événements acceptés par le broker (simulé), dans l'ordre d'envoi
+    private final List<OrderEvent> published = new CopyOnWriteArrayList<>();
+    // Utilisateurs dont les événements sont refusés ; fixés avant la création, le relais planifié tournant en parallèle
+    private final Set<String> failingUsers = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        when(eventPublisher.publish(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            OrderEvent event = invocation.getArgument(2);
+            if (failingUsers.contains(event.getUserId())) {
+                return CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"));
+            }
+            published.add(event);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void eventsOfAnOrderArePublishedInWriteOrder() throws InterruptedException {
+        OrderDto order = order(UUID.randomUUID().toString());
+        orderService.confirmOrderPayment(order.getId());
+        orderService.updateOrderStatus(order.getId(), OrderStatus.SHIPPED);
+        orderService.updateOrderStatus(order.getId(), OrderStatus.DELIVERED);
+
+        relayUntil(() -> eventsOf(order).stream().allMatch(event -> event.getPublishedAt() != null));
+
+        assertThat(publishedFor(order)).extracting(OrderEvent::getEventType)
+                .containsExactly("OrderInitiated", "OrderCreated", "OrderStatusUpdated", "OrderStatusUpdated");
+        assertThat(publishedFor(order)).extracting(OrderEvent::getStatus)
+                .containsExactly("PENDING", "CONFIRMED", "SHIPPED", "DELIVERED");
+        assertThat(eventsOf(order)).hasSize(4).allSatisfy(event -> assertThat(event.getPublishedAt()).isNotNull());
+    }
+
+    @Test
+    void failedEventHoldsBackTheRestOfItsOrderOnly() throws InterruptedException {
+        String blockedUser = UUID.randomUUID().toString();
+        failingUsers.add(blockedUser);
+        OrderDto blocked = order(blockedUser);
+        orderService.confirmOrderPayment(blocked.getId());
+        OrderDto other = order(UUID.randomUUID().toString());
+
+        relayUntil(() -> !publishedFor(other).isEmpty() && eventsOf(blocked).get(0).getAttempts() > 0);
+
+        assertThat(publishedFor(blocked)).isEmpty();
+        assertThat(publishedFor(other)).extracting(OrderEvent::getEventType).containsExactly("OrderInitiated");
+        List<OrderOutboxEvent> blockedEvents = eventsOf(blocked);
+        assertThat(blockedEvents.get(0).getAttempts()).isPositive();
+        assertThat(blockedEvents.get(0).getNextAttemptAt()).isNotNull();
+        // Le second événement n'a pas été tenté : il attend le premier
+        assertThat(blockedEvents.get(1).getAttempts()).isZero();
+
+        // Broker rétabli : après le délai, la commande repart dans l'ordre
+        failingUsers.clear();
+        outboxRelay.relay();
+        assertThat(publishedFor(blocked)).isEmpty();
+
+        Thread.sleep(1_100);
+        relayUntil(() -> publishedFor(blocked).size() >= 2);
+        assertThat(publishedFor(blocked)).extracting(OrderEvent::getEventType)
+                .containsExactly("OrderInitiated", "OrderCreated");
+    }
+
+    @Test
+    void deadLetteredEventStopsBlockingItsOrder() throws InterruptedException {
+        String userId = UUID.randomUUID().toString();
+        failingUsers.add(userId);
+        OrderDto order = order(userId);
+        orderService.confirmOrderPayment(order.getId());
+
+        // Premier événement à un essai de la limite (order.outbox.max-attempts, 15 par défaut)
+        OrderOutboxEvent first = eventsOf(order).get(0);
+        first.setAttempts(14);
+        first.setNextAttemptAt(null);
+        outboxRepository.save(first);
+
+        relayUntil(() -> eventsOf(order).get(0).getDeadLetteredAt() != null);
+
+        first = eventsOf(order).get(0);
+        assertThat(first.getDeadLetteredAt()).isNotNull();
+        assertThat(first.getPublishedAt()).isNull();
+        assertThat(first.getNextAttemptAt()).isNull();
+
+        failingUsers.clear();
+        relayUntil(() -> !publishedFor(order).isEmpty());
+        assertThat(publishedFor(order)).extracting(OrderEvent::getEventType).containsExactly("OrderCreated");
+    }
+
+    // Le relais planifié peut tenir le verrou au même moment : on relance jusqu'à la condition (5 s au plus)
+    private void relayUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        outboxRelay.relay();
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            outboxRelay.relay();
+        }
+    }
+
+    private List<OrderEvent> publishedFor(OrderDto order) {
+        String orderId = String.valueOf(order.getId());
+        return published.stream().filter(event -> orderId.equals(event.getOrderId())).toList();
+    }
+
+    private List<OrderOutboxEvent> eventsOf(OrderDto order) {
+        String orderId = String.valueOf(order.getId());
+        return outboxRepository.findAll().stream()
+                .filter(event -> orderId.equals(event.getAggregateId()))
+                .sorted(Comparator.comparing(OrderOutboxEvent::getId))
+                .toList();
+    }
+
+    private OrderDto order(String userId) throws InterruptedException {
+        // order_number est dérivé de la milliseconde courante : deux créations ne doivent pas la partager
+        Thread.sleep(2);
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .items(List.of(OrderItemDto.builder()
+                        .productId(1L)
+                        .productName("Produit 1")
+                        .quantity(1)
+                        .price(new BigDecimal("25.00"))
+                        .build()))
+                .shippingAddress("12 rue de la Paix, 75002 Paris")
+                .paymentMethod("CREDIT_CARD")
+                .build();
+        return orderService.createOrder(request, userId, null);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecommerce.order;
+
+import com.ecommerce.order.dto.CreateOrderRequest;
+import com.ecommerce.order.dto.OrderDto;
+import com.ecommerce.order.dto.OrderItemDto;
+import com.ecommerce.order.dto.OrderPageDto;
+import com.ecommerce.order.dto.OrderSearchCriteria;
+import com.ecommerce.order.enums.OrderStatus;
+import com.ecommerce.order.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderSearchIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userId;
+    private List<Long> confirmed;
+    private Long pending;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Utilisateur propre au test : les conteneurs sont partagés entre les classes
+        userId = UUID.randomUUID().toString();
+        confirmed = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Long id = order().getId();
+            orderService.confirmOrderPayment(id);
+            confirmed.add(id);
+        }
+        pending = order().getId();
+
+        // Trois commandes créées au même instant, à cheval sur deux pages : l'id départage
+        jdbcTemplate.update("UPDATE orders SET created_at = (SELECT created_at FROM orders WHERE id = ?) WHERE id IN (?, ?)",
+                confirmed.get(2), confirmed.get(3), confirmed.get(4));
+    }
+
+    @Test
+    void walksAllPagesNewestFirstWithoutGapsOrDuplicates() {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OrderPageDto page = orderService.searchOrders(criteria(null), cursor, 3);
+            assertThat(page.getOrders()).hasSizeLessThanOrEqualTo(3);
+            page.getOrders().stream().map(OrderDto::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Ordre (createdAt, id) décroissant ; la commande PENDING est exclue sans filtre de statut
+        List<Long> expected = new ArrayList<>(confirmed);
+        Collections.reverse(expected);
+        assertThat(ids).containsExactlyElementsOf(expected);
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    void statusFilterSelectsPendingOrders() {
+        OrderPageDto page = orderService.searchOrders(criteria(OrderStatus.PENDING), null, 3);
+
+        assertThat(page.getOrders()).extracting(OrderDto::getId).containsExactly(pending);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void lastFullPageHasNoCursor() {
+        OrderPageDto page = orderService.searchOrders(criteria(null), null, confirmed.size());
+
+        assertThat(page.getOrders()).hasSize(confirmed.size());
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThatThrownBy(() -> orderService.searchOrders(criteria(null), "not-a-cursor", 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private OrderSearchCriteria criteria(OrderStatus status) {
+        return OrderSearchCriteria.builder().userId(userId).status(status).build();
+    }
+
+    private OrderDto order() throws InterruptedException {
+        // order_number est dérivé de la milliseconde courante : deux créations ne doivent pas la partager
+        Thread.sleep(2);
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .items(List.of(OrderItemDto.builder()
+                        .productId(1L)
+                        .productName("Produit 1")
+                        .quantity(1)
+                        .price(new BigDecimal("25.00"))
+                        .build()))
+                .shippingAddress("12 rue de la Paix, 75002 Paris")
+                .paymentMethod("CREDIT_CARD")
+                .build();
+        return orderService.createOrder(request, userId, null);
+    }
+}
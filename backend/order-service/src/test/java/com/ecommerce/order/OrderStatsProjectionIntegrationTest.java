@@ -0,0 +1,239 @@
+package com.ecommerce.order;
+
+import com.ecommerce.order.dto.AdminStatsDto;
+import com.ecommerce.order.dto.CreateOrderRequest;
+import com.ecommerce.order.dto.DailyRevenueDto;
+import com.ecommerce.order.dto.MonthlyRevenueDto;
+import com.ecommerce.order.dto.OrderDto;
+import com.ecommerce.order.dto.OrderItemDto;
+import com.ecommerce.order.dto.TopProductDto;
+import com.ecommerce.order.enums.OrderStatus;
+import com.ecommerce.order.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compare les compteurs pré-agrégés (order_stats, order_product_stats) aux agrégats calculés sur la table
+ * orders, comme le faisaient les anciennes requêtes du tableau de bord.
+ */
+class OrderStatsProjectionIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String REVENUE_STATUSES = "('CONFIRMED', 'PROCESSING', 'SHIPPED', 'DELIVERED', 'REFUNDED')";
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long productBase;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Produits propres au test : les conteneurs sont partagés entre les classes
+        productBase = System.nanoTime() % 1_000_000_000L * 10;
+        String userId = UUID.randomUUID().toString();
+
+        OrderDto pending = order(userId, productBase + 1, 2, "15.50");
+        OrderDto confirmed = order(userId, productBase + 1, 1, "15.50");
+        OrderDto shipped = order(userId, productBase + 2, 3, "9.99");
+        OrderDto delivered = order(userId, productBase + 3, 1, "120.00");
+        OrderDto cancelled = order(userId, productBase + 2, 5, "9.99");
+        OrderDto refunded = order(userId, productBase + 3, 2, "120.00");
+        OrderDto deleted = order(userId, productBase + 1, 4, "15.50");
+
+        orderService.confirmOrderPayment(confirmed.getId());
+        orderService.confirmOrderPayment(shipped.getId());
+        orderService.updateOrderStatus(shipped.getId(), OrderStatus.SHIPPED);
+        orderService.updateOrderStatus(delivered.getId(), OrderStatus.PROCESSING);
+        orderService.updateOrderStatus(delivered.getId(), OrderStatus.DELIVERED);
+        orderService.confirmOrderPayment(cancelled.getId());
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        orderService.confirmOrderPayment(refunded.getId());
+        orderService.updateOrderStatus(refunded.getId(), OrderStatus.REFUNDED);
+        orderService.confirmOrderPayment(deleted.getId());
+        orderService.deleteOrder(deleted.getId());
+        assertThat(pending.getStatus()).isEqualTo(OrderStatus.PENDING.name());
+    }
+
+    @Test
+    void adminStatsMatchTheOrdersTable() {
+        AdminStatsDto stats = orderService.getAdminStats();
+
+        assertThat(stats.getPendingOrders()).isEqualTo(countByStatus(OrderStatus.PENDING));
+        assertThat(stats.getConfirmedOrders()).isEqualTo(countByStatus(OrderStatus.CONFIRMED));
+        assertThat(stats.getProcessingOrders()).isEqualTo(countByStatus(OrderStatus.PROCESSING));
+        assertThat(stats.getShippedOrders()).isEqualTo(countByStatus(OrderStatus.SHIPPED));
+        assertThat(stats.getDeliveredOrders()).isEqualTo(countByStatus(OrderStatus.DELIVERED));
+
+        assertThat(stats.getTotalOrders()).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders WHERE status IN " + REVENUE_STATUSES, Integer.class));
+        assertThat(stats.getTotalRevenue()).isEqualByComparingTo(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(total_amount), 0) FROM orders WHERE status IN " + REVENUE_STATUSES, BigDecimal.class));
+
+        Timestamp startOfMonth = Timestamp.valueOf(YearMonth.now().atDay(1).atStartOfDay());
+        assertThat(stats.getOrdersThisMonth()).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders WHERE created_at >= ? AND status IN " + REVENUE_STATUSES,
+                Integer.class, startOfMonth));
+        assertThat(stats.getRevenueThisMonth()).isEqualByComparingTo(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(total_amount), 0) FROM orders WHERE created_at >= ? AND status IN " + REVENUE_STATUSES,
+                BigDecimal.class, startOfMonth));
+    }
+
+    @Test
+    void dailyRevenueMatchesTheOrdersTable() {
+        LocalDateTime end = LocalDateTime.now();
+        LocalDateTime start = end.minusDays(7);
+
+        Map<LocalDate, BigDecimal> projected = new HashMap<>();
+        for (Object row : orderService.getRevenueStats("DAILY", start, end)) {
+            DailyRevenueDto day = (DailyRevenueDto) row;
+            projected.put(LocalDate.of(day.getYear(), day.getMonth(), day.getDay()), day.getRevenue());
+        }
+
+        Map<LocalDate, BigDecimal> expected = new HashMap<>();
+        jdbcTemplate.query("SELECT CAST(created_at AS DATE) AS day, SUM(total_amount) AS revenue FROM orders " +
+                        "WHERE created_at >= ? AND created_at < ? AND status IN " + REVENUE_STATUSES + " GROUP BY 1",
+                rs -> {
+                    expected.put(rs.getDate("day").toLocalDate(), rs.getBigDecimal("revenue"));
+                },
+                Timestamp.valueOf(start.toLocalDate().atStartOfDay()),
+                Timestamp.valueOf(end.toLocalDate().plusDays(1).atStartOfDay()));
+
+        assertThat(projected.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+        expected.forEach((day, revenue) -> assertThat(projected.get(day)).isEqualByComparingTo(revenue));
+    }
+
+    @Test
+    void monthlyRevenueMatchesTheOrdersTable() {
+        LocalDateTime start = LocalDateTime.now().minusMonths(12).withDayOfMonth(1);
+
+        Map<YearMonth, BigDecimal> projected = new HashMap<>();
+        for (Object row : orderService.getRevenueStats("MONTHLY", start, null)) {
+            MonthlyRevenueDto month = (MonthlyRevenueDto) row;
+            projected.put(YearMonth.of(month.getYear(), month.getMonth()), month.getRevenue());
+        }
+
+        Map<YearMonth, BigDecimal> expected = new HashMap<>();
+        jdbcTemplate.query("SELECT EXTRACT(YEAR FROM created_at) AS y, EXTRACT(MONTH FROM created_at) AS m, " +
+                        "SUM(total_amount) AS revenue FROM orders WHERE created_at >= ? AND status IN " + REVENUE_STATUSES +
+                        " GROUP BY 1, 2",
+                rs -> {
+                    expected.put(YearMonth.of(rs.getInt("y"), rs.getInt("m")), rs.getBigDecimal("revenue"));
+                },
+                Timestamp.valueOf(start.toLocalDate().atStartOfDay()));
+
+        assertThat(projected.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+        expected.forEach((month, revenue) -> assertThat(projected.get(month)).isEqualByComparingTo(revenue));
+    }
+
+    @Test
+    void topProductsMatchTheOrderItems() {
+        Map<Long, TopProductDto> projected = new HashMap<>();
+        for (TopProductDto product : orderService.getTopSellingProducts(10_000)) {
+            projected.put(product.getProductId(), product);
+        }
+
+        for (long productId = productBase + 1; productId <= productBase + 3; productId++) {
+            Map<String, Object> expected = jdbcTemplate.queryForMap(
+                    "SELECT COALESCE(SUM(i.quantity), 0) AS sold, COALESCE(SUM(i.price_at_purchase * i.quantity), 0) AS revenue " +
+                            "FROM order_items i JOIN orders o ON o.id = i.order_id " +
+                            "WHERE i.product_id = ? AND o.status IN " + REVENUE_STATUSES, productId);
+
+            TopProductDto product = projected.get(productId);
+            assertThat(product).as("product %d", productId).isNotNull();
+            assertThat(product.getTotalSold()).isEqualTo(((Number) expected.get("sold")).longValue());
+            assertThat(product.getTotalRevenue()).isEqualByComparingTo((BigDecimal) expected.get("revenue"));
+        }
+    }
+
+    @Test
+    void concurrentTransitionsOfOneOrderAreCountedOnce() throws Exception {
+        long productId = productBase + 4;
+        Long orderId = order(UUID.randomUUID().toString(), productId, 1, "42.00").getId();
+
+        // Trois confirmations de paiement (livraisons en double) et une transition admin, en même temps
+        List<Callable<Object>> calls = List.of(
+                () -> { orderService.confirmOrderPayment(orderId); return null; },
+                () -> { orderService.confirmOrderPayment(orderId); return null; },
+                () -> { orderService.confirmOrderPayment(orderId); return null; },
+                () -> orderService.updateOrderStatus(orderId, OrderStatus.PROCESSING));
+        ExecutorService executor = Executors.newFixedThreadPool(calls.size());
+        try {
+            for (Future<Object> call : executor.invokeAll(calls, 30, TimeUnit.SECONDS)) {
+                call.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        AdminStatsDto stats = orderService.getAdminStats();
+        assertThat(stats.getPendingOrders()).isEqualTo(countByStatus(OrderStatus.PENDING));
+        assertThat(stats.getConfirmedOrders()).isEqualTo(countByStatus(OrderStatus.CONFIRMED));
+        assertThat(stats.getProcessingOrders()).isEqualTo(countByStatus(OrderStatus.PROCESSING));
+
+        // Le paiement n'est confirmé (et l'e-mail déclenché) qu'une fois, les ventes du produit aussi
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_outbox WHERE aggregate_id = ? AND event_type = 'OrderCreated'",
+                Integer.class, orderId.toString())).isEqualTo(1);
+        assertThat(orderService.getTopSellingProducts(10_000)).filteredOn(p -> p.getProductId() == productId)
+                .singleElement().extracting(TopProductDto::getTotalSold).isEqualTo(1L);
+
+        // Un id d'événement par transition
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT CAST(payload AS jsonb) ->> 'eventId') FROM order_outbox " +
+                "WHERE aggregate_id = ?", Integer.class, orderId.toString()))
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_outbox WHERE aggregate_id = ?",
+                        Integer.class, orderId.toString()));
+    }
+
+    @Test
+    void transitionToTheCurrentStatusChangesNothing() throws InterruptedException {
+        Long orderId = order(UUID.randomUUID().toString(), productBase + 5, 1, "10.00").getId();
+        orderService.confirmOrderPayment(orderId);
+        AdminStatsDto before = orderService.getAdminStats();
+
+        orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED);
+
+        assertThat(orderService.getAdminStats().getConfirmedOrders()).isEqualTo(before.getConfirmedOrders());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_outbox WHERE aggregate_id = ? AND event_type = 'OrderStatusUpdated'",
+                Integer.class, orderId.toString())).isZero();
+    }
+
+    private int countByStatus(OrderStatus status) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE status = ?", Integer.class, status.name());
+    }
+
+    private OrderDto order(String userId, long productId, int quantity, String price) throws InterruptedException {
+        // order_number est dérivé de la milliseconde courante : deux créations ne doivent pas la partager
+        Thread.sleep(2);
+        CreateOrderRequest request = CreateOrderRequest.builder()
+                .items(List.of(OrderItemDto.builder()
+                        .productId(productId)
+                        .productName("Produit " + productId)
+                        .quantity(quantity)
+                        .price(new BigDecimal(price))
+                        .build()))
+                .shippingAddress("12 rue de la Paix, 75002 Paris")
+                .paymentMethod("CREDIT_CARD")
+                .build();
+        return orderService.createOrder(request, userId, null);
+    }
+}
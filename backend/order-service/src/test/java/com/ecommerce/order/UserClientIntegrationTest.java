@@ -0,0 +1,138 @@
+package com.ecommerce.order;
+
+import com.ecommerce.order.client.UserClient;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Fiches utilisateur des listes de commandes : identifiants dédoublonnés, chargés par lots avec un jeton
+ * de service, puis servis par le cache local.
+ */
+class UserClientIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserClient userClient;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${services.auth-url}")
+    private String authServiceUrl;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private ClientHttpRequestFactory requestFactory;
+    private MockRestServiceServer server;
+    private Object batchSize;
+
+    // Lots reçus par auth-service simulé, et le rôle du jeton de chacun
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private final List<String> roles = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        batchSize = ReflectionTestUtils.getField(userClient, "batchSize");
+        ReflectionTestUtils.setField(userClient, "batchSize", 2);
+
+        // Le RestTemplate est partagé par le contexte : on rend sa fabrique d'origine après le test
+        requestFactory = (ClientHttpRequestFactory) ReflectionTestUtils.getField(restTemplate, "requestFactory");
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        restTemplate.setRequestFactory(requestFactory);
+        ReflectionTestUtils.setField(userClient, "batchSize", batchSize);
+    }
+
+    @Test
+    void pageUsersAreLoadedInBatchesThenServedFromTheCache() {
+        // Identifiants propres au test : le cache est partagé par le contexte
+        String alice = UUID.randomUUID().toString();
+        String bob = UUID.randomUUID().toString();
+        String unknown = UUID.randomUUID().toString();
+        server.expect(ExpectedCount.times(2), requestTo(authServiceUrl + "/internal/users/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(request -> {
+                    List<String> ids = ids(request);
+                    batches.add(ids);
+                    roles.add(role(request));
+                    List<Map<String, String>> users = new ArrayList<>();
+                    ids.stream().filter(id -> !id.equals(unknown))
+                            .forEach(id -> users.add(Map.of("id", id, "email", id + "@example.com")));
+                    return withSuccess(json(users), MediaType.APPLICATION_JSON).createResponse(request);
+                });
+
+        // Une page de commandes : un même client plusieurs fois, une commande sans client
+        Map<String, UserClient.UserDto> first = userClient.getUsers(Arrays.asList(alice, bob, alice, null, unknown));
+        Map<String, UserClient.UserDto> second = userClient.getUsers(List.of(bob, alice));
+
+        server.verify();
+        assertThat(batches).containsExactly(List.of(alice, bob), List.of(unknown));
+        assertThat(roles).containsOnly("SERVICE");
+        assertThat(first).containsOnlyKeys(alice, bob);
+        assertThat(second.get(alice).getEmail()).isEqualTo(alice + "@example.com");
+        assertThat(second.get(bob).getEmail()).isEqualTo(bob + "@example.com");
+    }
+
+    private List<String> ids(ClientHttpRequest request) {
+        try {
+            return objectMapper.readValue(((MockClientHttpRequest) request).getBodyAsString(), new TypeReference<>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String role(ClientHttpRequest request) {
+        String token = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION).substring("Bearer ".length());
+        Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        return claims.get("role", String.class);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
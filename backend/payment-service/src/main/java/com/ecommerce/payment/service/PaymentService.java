@@ -2,6 +2,7 @@ package com.ecommerce.payment.service;
 
 import com.ecommerce.common.event.PaymentCapturedEvent;
 import com.ecommerce.common.event.PaymentFailedEvent;
+import com.ecommerce.common.kafka.EventPublisher;
 import com.ecommerce.payment.entity.Payment;
 import com.ecommerce.payment.entity.PaymentStatus;
 import com.ecommerce.payment.repository.PaymentRepository;
@@ -13,7 +14,6 @@ import com.stripe.param.PaymentIntentCreateParams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,7 +26,7 @@ import java.util.Optional;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final EventPublisher eventPublisher;
 
     @Value("${stripe.webhook.secret}")
     private String endpointSecret;
@@ -161,7 +161,8 @@ public class PaymentService {
                 payment.getAmount(),
                 payment.getCurrency(),
                 payment.getStripePaymentIntentId());
-        kafkaTemplate.send("payment-captured", eventData); // Key, Value
+        // Clé = orderId : les événements d'une même commande restent ordonnés
+        eventPublisher.publish("payment-captured", String.valueOf(payment.getOrderId()), eventData);
         log.info("Published PaymentCapturedEvent for Order: {}", payment.getOrderId());
     }
 
@@ -179,7 +180,7 @@ public class PaymentService {
                     paymentRepository.save(payment);
 
                     // Publish Failed Event
-                    kafkaTemplate.send("payment-failed", new PaymentFailedEvent(payment.getOrderId(),
+                    eventPublisher.publish("payment-failed", String.valueOf(payment.getOrderId()), new PaymentFailedEvent(payment.getOrderId(),
                             payment.getId().toString(), payment.getErrorMessage()));
                 });
     }
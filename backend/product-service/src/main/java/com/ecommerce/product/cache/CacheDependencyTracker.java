@@ -0,0 +1,269 @@
+package com.ecommerce.product.cache;
+
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.search.SearchTokenizer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Invalidation ciblée des caches produits.
+ *
+ * Chaque entrée mise en cache (recherche, liste populaire, fiche produit) enregistre dans Redis
+ * les produits et catégories qu'elle contient. Une écriture n'évince alors que les entrées
+ * qui référencent le produit ou la catégorie modifiés, au lieu de vider tout le cache.
+ * Les index sont des sorted sets dont le score est l'expiration de l'entrée : les membres
+ * périmés sont purgés au fil des enregistrements.
+ *
+ * Les dépendances sont enregistrées après l'écriture dans le cache (notification du
+ * TwoLevelCacheManager). Chaque invalidation laisse aussi une marque horodatée : une entrée
+ * dont le chargement a commencé avant une invalidation de l'une de ses dépendances est
+ * évincée aussitôt écrite, elle a pu être calculée à partir de données périmées.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheDependencyTracker {
+
+    public static final String SEARCH_RESULTS = "searchResults";
+    public static final String POPULAR_PRODUCTS = "popularProducts";
+    public static final String PRODUCT_DETAILS = "productDetails";
+
+    private static final String PRODUCT_DEPS = "cache:deps:product:";
+    private static final String CATEGORY_DEPS = "cache:deps:category:";
+    // Recherches en cache, réparties par les deux premiers caractères de leur premier terme
+    private static final String SEARCH_KEYS = "cache:deps:search-keys:";
+    // Listes populaires : complétées par les nouveautés, toute création peut les modifier
+    private static final String POPULAR_DEPS = "cache:deps:popular";
+    private static final String SEARCH_EVICTED = "cache:deps:search-keys:evicted";
+    private static final String EVICTED_SUFFIX = ":evicted";
+    private static final String SEPARATOR = "::";
+    private static final int SEARCH_HEAD_LENGTH = 2;
+    // Tolérance au décalage d'horloge entre réplicas pour comparer chargements et invalidations
+    private static final long CLOCK_SKEW_MS = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CacheManager cacheManager;
+
+    // Doit couvrir le TTL le plus long des caches suivis
+    @Value("${cache.dependencies.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @PostConstruct
+    void registerPutListener() {
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            twoLevelCacheManager.addPutListener(this::afterPut);
+        } else {
+            log.warn("Cache dependencies are not tracked: {} does not notify writes", cacheManager.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Enregistre les dépendances d'une entrée qui vient d'être écrite, puis l'évince si l'une
+     * d'elles a été invalidée depuis le début de son chargement.
+     */
+    void afterPut(String cacheName, Object key, Object value, long loadStartedAt) {
+        String member = cacheName + SEPARATOR + key;
+        Set<String> dependencyKeys = new HashSet<>();
+        Set<String> evictionMarkers = new HashSet<>();
+
+        if (PRODUCT_DETAILS.equals(cacheName) && value instanceof ProductDto product) {
+            // Déjà évincée par sa clé, la fiche ne dépend que du nom de sa catégorie
+            if (product.getCategoryId() != null) {
+                dependencyKeys.add(CATEGORY_DEPS + product.getCategoryId());
+            }
+            evictionMarkers.add(PRODUCT_DEPS + product.getId() + EVICTED_SUFFIX);
+        } else if ((SEARCH_RESULTS.equals(cacheName) || POPULAR_PRODUCTS.equals(cacheName))
+                && value instanceof Collection<?> listing) {
+            for (Object item : listing) {
+                if (item instanceof ProductDto product) {
+                    dependencyKeys.add(PRODUCT_DEPS + product.getId());
+                    if (product.getCategoryId() != null) {
+                        dependencyKeys.add(CATEGORY_DEPS + product.getCategoryId());
+                    }
+                }
+            }
+            if (POPULAR_PRODUCTS.equals(cacheName)) {
+                dependencyKeys.add(POPULAR_DEPS);
+            }
+        } else {
+            return;
+        }
+
+        record(dependencyKeys, member);
+        if (SEARCH_RESULTS.equals(cacheName)) {
+            // Permet d'évincer une recherche qu'un nouveau produit viendrait satisfaire
+            String head = searchHead(String.valueOf(key));
+            if (head != null) {
+                record(Set.of(SEARCH_KEYS + head), String.valueOf(key));
+            }
+            evictionMarkers.add(SEARCH_EVICTED);
+        }
+
+        dependencyKeys.forEach(dependencyKey -> evictionMarkers.add(dependencyKey + EVICTED_SUFFIX));
+        if (evictedSince(evictionMarkers, loadStartedAt)) {
+            log.debug("Dependencies of {} changed while it was loading, evicting it", member);
+            evict(cacheName, key);
+        }
+    }
+
+    public void evictProduct(Long productId) {
+        evictDependents(PRODUCT_DEPS + productId);
+    }
+
+    public void evictCategory(Long categoryId) {
+        evictDependents(CATEGORY_DEPS + categoryId);
+    }
+
+    /**
+     * Un nouveau produit peut compléter les listes populaires (nouveautés) : toutes sont évincées.
+     */
+    public void evictPopularListings() {
+        evictDependents(POPULAR_DEPS);
+    }
+
+    public void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    /**
+     * Évince les recherches en cache que le texte d'un produit (créé ou renommé) satisferait désormais.
+     * Même règle que l'index : chaque terme de la requête doit être un terme ou un préfixe du produit.
+     * Seules les recherches dont le premier terme commence comme l'un des termes du produit sont examinées.
+     */
+    public void evictMatchingSearches(String... texts) {
+        Set<String> productTokens = new HashSet<>();
+        for (String text : texts) {
+            productTokens.addAll(SearchTokenizer.tokenize(text));
+        }
+        if (productTokens.isEmpty()) {
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            // Une recherche en cours de chargement n'est pas encore indexée : elle verra cette marque
+            stringRedisTemplate.opsForValue().set(SEARCH_EVICTED, String.valueOf(now), Duration.ofSeconds(ttlSeconds));
+
+            List<String> heads = new ArrayList<>(new LinkedHashSet<>(productTokens.stream()
+                    .map(token -> token.length() > SEARCH_HEAD_LENGTH ? token.substring(0, SEARCH_HEAD_LENGTH) : token)
+                    .toList()));
+            List<Object> candidates = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String head : heads) {
+                    redis.zRangeByScore(SEARCH_KEYS + head, now, Double.POSITIVE_INFINITY);
+                }
+                return null;
+            });
+
+            for (int i = 0; i < heads.size(); i++) {
+                if (!(candidates.get(i) instanceof Collection<?> keywords)) {
+                    continue;
+                }
+                for (Object keyword : keywords) {
+                    if (matches(keyword.toString(), productTokens)) {
+                        evict(SEARCH_RESULTS, keyword.toString());
+                        stringRedisTemplate.opsForZSet().remove(SEARCH_KEYS + heads.get(i), keyword.toString());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not evict matching search results: {}", e.getMessage());
+        }
+    }
+
+    // Clé de répartition d'une recherche : un produit qui la satisfait a un terme qui commence pareil
+    private static String searchHead(String keyword) {
+        List<String> queryTokens = SearchTokenizer.tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return null;
+        }
+        String first = queryTokens.get(0);
+        return first.length() > SEARCH_HEAD_LENGTH ? first.substring(0, SEARCH_HEAD_LENGTH) : first;
+    }
+
+    private boolean matches(String keyword, Set<String> productTokens) {
+        List<String> queryTokens = SearchTokenizer.tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return false;
+        }
+        return queryTokens.stream().allMatch(queryToken -> productTokens.stream()
+                .anyMatch(token -> token.equals(queryToken) || (queryToken.length() >= 2 && token.startsWith(queryToken))));
+    }
+
+    private boolean evictedSince(Set<String> markers, long loadStartedAt) {
+        if (markers.isEmpty()) {
+            return false;
+        }
+        try {
+            List<String> evictedAt = stringRedisTemplate.opsForValue().multiGet(markers);
+            return evictedAt != null && evictedAt.stream()
+                    .anyMatch(value -> value != null && Long.parseLong(value) >= loadStartedAt - CLOCK_SKEW_MS);
+        } catch (Exception e) {
+            // Dans le doute, l'entrée vivra jusqu'à son TTL comme avant
+            log.warn("Could not check cache invalidations: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void record(Set<String> dependencyKeys, String member) {
+        if (dependencyKeys.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double expiresAt = now + ttlSeconds * 1000;
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String dependencyKey : dependencyKeys) {
+                    redis.zAdd(dependencyKey, expiresAt, member);
+                    redis.zRemRangeByScore(dependencyKey, 0, now);
+                    redis.expire(dependencyKey, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Sans dépendance enregistrée, l'entrée vivra jusqu'à son TTL
+            log.warn("Could not record cache dependencies for {}: {}", member, e.getMessage());
+        }
+    }
+
+    private void evictDependents(String dependencyKey) {
+        try {
+            // Marque lue par les chargements en cours, qui n'ont pas encore enregistré leurs dépendances
+            stringRedisTemplate.opsForValue().set(dependencyKey + EVICTED_SUFFIX,
+                    String.valueOf(System.currentTimeMillis()), Duration.ofSeconds(ttlSeconds));
+            Set<String> members = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(dependencyKey, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            stringRedisTemplate.delete(dependencyKey);
+            if (members == null) {
+                return;
+            }
+            members.stream()
+                    .map(member -> member.split(SEPARATOR, 2))
+                    .filter(parts -> parts.length == 2)
+                    .forEach(parts -> evict(parts[0], parts[1]));
+            log.debug("Evicted {} cache entries depending on {}", members.size(), dependencyKey);
+        } catch (Exception e) {
+            log.warn("Could not evict cache entries depending on {}: {}", dependencyKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.ecommerce.product.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache à deux niveaux : un near cache en mémoire (L1, borné en taille et en durée)
+ * devant le cache Redis partagé (L2). Les écritures passent par Redis puis sont
+ * diffusées aux autres réplicas pour qu'ils invalident leur L1.
+ *
+ * Les lectures avec loader (@Cacheable(sync = true)) sont protégées contre l'effet de meute :
+ * un seul chargement par clé et par réplica, les requêtes concurrentes attendent son résultat.
+ * Avant l'expiration Redis, une requête peut aussi rafraîchir l'entrée par anticipation
+ * (XFetch : probabilité croissante à l'approche de l'expiration, pondérée par le temps de chargement).
+ *
+ * Un chargement pendant lequel sa clé est invalidée (écriture ou éviction, locale ou venue d'un autre réplica)
+ * rend sa valeur à l'appelant sans l'écrire dans Redis ni dans le L1 : elle a pu être calculée avant le changement.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    // Plancher du temps de chargement estimé, tant qu'aucun chargement n'a été mesuré
+    private static final double MIN_LOAD_MILLIS = 10;
+
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, LocalEntry> local;
+    private final TwoLevelCacheManager manager;
+    private final double earlyRefreshBeta;
+    // Attente maximale du chargement mené par une autre requête
+    private final Duration loadWaitTimeout;
+
+    // Incrémenté à chaque invalidation : une lecture Redis commencée avant
+    // une invalidation ne doit pas repeupler le L1 avec une valeur périmée
+    private final AtomicLong generation = new AtomicLong();
+
+    // Chargements en cours, par clé
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    // Moyenne glissante du temps de chargement (le "delta" de XFetch) ; approximative, pas besoin d'atomicité
+    private volatile double averageLoadMillis = MIN_LOAD_MILLIS;
+
+    TwoLevelCache(Cache remote, TwoLevelCacheManager manager, long maxSize, Duration ttl, double earlyRefreshBeta,
+                  Duration loadWaitTimeout) {
+        this.remote = remote;
+        this.manager = manager;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.loadWaitTimeout = loadWaitTimeout;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        LocalEntry cached = getLocal(localKey);
+        if (cached == null) {
+            cached = getRemote(key, localKey);
+        }
+        return cached != null ? cached.value() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null || value.get() == null) {
+            return null;
+        }
+        if (type != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value.get());
+        }
+        return (T) value.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        LocalEntry cached = getLocal(localKey);
+        if (cached == null) {
+            cached = getRemote(key, localKey);
+        }
+
+        if (cached == null) {
+            return (T) loadOnce(key, localKey, valueLoader);
+        }
+        if (!shouldRefreshEarly(cached)) {
+            return (T) cached.value().get();
+        }
+
+        // Rafraîchissement anticipé : un seul appelant recharge, les autres gardent la valeur courante
+        Flight refresh = new Flight();
+        if (inFlight.putIfAbsent(localKey, refresh) != null) {
+            return (T) cached.value().get();
+        }
+        try {
+            log.debug("Early refresh of {}::{}", getName(), localKey);
+            return (T) load(key, localKey, valueLoader, refresh);
+        } catch (ValueRetrievalException e) {
+            // L'entrée n'a pas encore expiré : mieux vaut la servir que propager l'échec
+            log.warn("Early refresh of {}::{} failed: {}", getName(), localKey, e.getMessage());
+            return (T) cached.value().get();
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long startedAt = System.currentTimeMillis();
+        String localKey = localKey(key);
+        invalidateFlight(localKey);
+        remote.put(key, value);
+        invalidateLocal(localKey);
+        manager.publishEvict(getName(), localKey);
+        manager.notifyPut(getName(), key, value, startedAt);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        long startedAt = System.currentTimeMillis();
+        String localKey = localKey(key);
+        invalidateFlight(localKey);
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        invalidateLocal(localKey);
+        manager.publishEvict(getName(), localKey);
+        if (existing == null) {
+            manager.notifyPut(getName(), key, value, startedAt);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        // Marque d'abord le chargement en cours : il voit l'éviction ou passe avant elle dans Redis
+        String localKey = localKey(key);
+        invalidateFlight(localKey);
+        remote.evict(key);
+        invalidateLocal(localKey);
+        manager.publishEvict(getName(), localKey);
+    }
+
+    @Override
+    public void clear() {
+        inFlight.values().forEach(Flight::invalidate);
+        remote.clear();
+        clearLocal();
+        manager.publishClear(getName());
+    }
+
+    void invalidateLocal(String localKey) {
+        invalidateFlight(localKey);
+        generation.incrementAndGet();
+        local.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        inFlight.values().forEach(Flight::invalidate);
+        generation.incrementAndGet();
+        local.invalidateAll();
+    }
+
+    private void invalidateFlight(String localKey) {
+        Flight flight = inFlight.get(localKey);
+        if (flight != null) {
+            flight.invalidate();
+        }
+    }
+
+    // Une entrée L1 ne survit pas à son expiration dans Redis
+    private LocalEntry getLocal(String localKey) {
+        LocalEntry cached = local.getIfPresent(localKey);
+        if (cached != null && System.currentTimeMillis() >= cached.remoteExpiresAt()) {
+            local.invalidate(localKey);
+            return null;
+        }
+        return cached;
+    }
+
+    private LocalEntry getRemote(Object key, String localKey) {
+        long observed = generation.get();
+        TwoLevelCacheManager.RemoteRead read = manager.read(remote, key);
+        if (read == null) {
+            return null;
+        }
+        LocalEntry entry = new LocalEntry(read.value(), read.expiresAt());
+        putLocal(localKey, entry, observed);
+        return entry;
+    }
+
+    /**
+     * Single-flight : le premier appelant charge, les suivants attendent le même résultat (ou la même erreur).
+     */
+    private Object loadOnce(Object key, String localKey, Callable<?> valueLoader) {
+        Flight mine = new Flight();
+        Flight existing = inFlight.putIfAbsent(localKey, mine);
+        if (existing == null) {
+            return load(key, localKey, valueLoader, mine);
+        }
+        try {
+            return existing.get(loadWaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        } catch (TimeoutException e) {
+            // Le chargement en cours continue pour les autres ; cette requête échoue au lieu de bloquer son thread
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private Object load(Object key, String localKey, Callable<?> valueLoader, Flight flight) {
+        long observed = generation.get();
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            Object value = valueLoader.call();
+            recordLoadTime(System.nanoTime() - start);
+            if (value != null && !flight.isInvalidated()) {
+                remote.put(key, value);
+                if (flight.isInvalidated()) {
+                    // Invalidée pendant l'écriture : notre valeur ne doit pas survivre à l'éviction
+                    remote.evict(key);
+                } else {
+                    // Les autres réplicas abandonnent leur copie L1
+                    manager.publishEvict(getName(), localKey);
+                    putLocal(localKey, new LocalEntry(new SimpleValueWrapper(value),
+                            manager.expiresAfterWrite(remote, key, value)), observed);
+                    manager.notifyPut(getName(), key, value, startedAt);
+                }
+            } else if (value != null) {
+                log.debug("{}::{} invalidated while loading, not cached", getName(), localKey);
+            }
+            flight.complete(value);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            inFlight.remove(localKey, flight);
+        }
+    }
+
+    /**
+     * XFetch : rafraîchir si now - delta * beta * ln(rand) >= expiration.
+     * Plus le chargement est long et l'expiration proche, plus la probabilité est forte.
+     */
+    private boolean shouldRefreshEarly(LocalEntry entry) {
+        if (earlyRefreshBeta <= 0 || entry.remoteExpiresAt() == NO_EXPIRY) {
+            return false;
+        }
+        double gap = -averageLoadMillis * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.remoteExpiresAt();
+    }
+
+    private void recordLoadTime(long nanos) {
+        double millis = Math.max(nanos / 1_000_000.0, MIN_LOAD_MILLIS);
+        averageLoadMillis = averageLoadMillis * 0.8 + millis * 0.2;
+    }
+
+    private void putLocal(String localKey, LocalEntry entry, long observedGeneration) {
+        if (generation.get() == observedGeneration) {
+            local.put(localKey, entry);
+        }
+    }
+
+    // Les clés circulent en texte sur le canal d'invalidation : même normalisation partout
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private record LocalEntry(ValueWrapper value, long remoteExpiresAt) {
+    }
+
+    // Chargement en cours d'une clé, marqué si la clé est invalidée avant qu'il ne se termine
+    private static final class Flight extends CompletableFuture<Object> {
+
+        private volatile boolean invalidated;
+
+        void invalidate() {
+            invalidated = true;
+        }
+
+        boolean isInvalidated() {
+            return invalidated;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.ecommerce.product.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Enveloppe le RedisCacheManager avec un near cache par réplica.
+ * Chaque écriture est publiée sur un canal Redis pub/sub ; les autres réplicas
+ * invalident alors leur L1 en quelques millisecondes.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "product-service:cache-invalidation";
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final CacheManager remote;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long localMaxSize;
+    private final Duration localTtl;
+    private final double earlyRefreshBeta;
+    private final Duration loadWaitTimeout;
+
+    // Identifie ce réplica pour ignorer ses propres messages
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final List<PutListener> putListeners = new CopyOnWriteArrayList<>();
+
+    public TwoLevelCacheManager(CacheManager remote, StringRedisTemplate stringRedisTemplate,
+                                long localMaxSize, Duration localTtl, double earlyRefreshBeta,
+                                Duration loadWaitTimeout) {
+        this.remote = remote;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.loadWaitTimeout = loadWaitTimeout;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache remoteCache = remote.getCache(cacheName);
+            return remoteCache != null
+                    ? new TwoLevelCache(remoteCache, this, localMaxSize, localTtl, earlyRefreshBeta, loadWaitTimeout)
+                    : null;
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * Appelé après chaque écriture d'une valeur dans Redis, une fois l'entrée visible des autres lecteurs.
+     * {@code loadStartedAt} est l'instant (epoch ms) où le calcul de la valeur a commencé.
+     */
+    @FunctionalInterface
+    public interface PutListener {
+        void afterPut(String cacheName, Object key, Object value, long loadStartedAt);
+    }
+
+    public void addPutListener(PutListener listener) {
+        putListeners.add(listener);
+    }
+
+    void notifyPut(String cacheName, Object key, Object value, long loadStartedAt) {
+        for (PutListener listener : putListeners) {
+            try {
+                listener.afterPut(cacheName, key, value, loadStartedAt);
+            } catch (Exception e) {
+                log.warn("Cache put listener failed for {}::{}: {}", cacheName, key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lecture Redis et TTL restant en un seul aller-retour (GET et PTTL pipelinés).
+     * Retourne null si l'entrée est absente.
+     */
+    RemoteRead read(Cache cache, Object key) {
+        if (!(cache instanceof RedisCache redisCache)) {
+            Cache.ValueWrapper value = cache.get(key);
+            return value != null ? new RemoteRead(value, remoteExpiresAt(cache.getName(), TwoLevelCache.localKey(key))) : null;
+        }
+
+        byte[] redisKey = redisKey(redisCache, key);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(redisKey);
+            connection.keyCommands().pTtl(redisKey);
+            return null;
+        }, RedisSerializer.byteArray());
+
+        if (results.isEmpty() || !(results.get(0) instanceof byte[] bytes)) {
+            return null;
+        }
+        Object value = redisCache.getCacheConfiguration().getValueSerializationPair().read(ByteBuffer.wrap(bytes));
+        if (value == null) {
+            return null;
+        }
+        long expiresAt = results.size() > 1 && results.get(1) instanceof Long ttl && ttl > 0
+                ? System.currentTimeMillis() + ttl
+                : TwoLevelCache.NO_EXPIRY;
+        return new RemoteRead(new SimpleValueWrapper(value), expiresAt);
+    }
+
+    /**
+     * Expiration d'une entrée qui vient d'être écrite : le TTL configuré du cache, sans aller-retour Redis.
+     */
+    long expiresAfterWrite(Cache cache, Object key, Object value) {
+        if (cache instanceof RedisCache redisCache) {
+            Duration ttl = redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value);
+            return ttl != null && !ttl.isZero() && !ttl.isNegative()
+                    ? System.currentTimeMillis() + ttl.toMillis()
+                    : TwoLevelCache.NO_EXPIRY;
+        }
+        return remoteExpiresAt(cache.getName(), TwoLevelCache.localKey(key));
+    }
+
+    record RemoteRead(Cache.ValueWrapper value, long expiresAt) {
+    }
+
+    // Même clé que le RedisCache : préfixe du cache ("cacheName::" par défaut) puis clé convertie en texte
+    private static byte[] redisKey(RedisCache cache, Object key) {
+        String prefix = cache.getCacheConfiguration().getKeyPrefixFor(cache.getName());
+        return (prefix + TwoLevelCache.localKey(key)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Instant d'expiration de l'entrée dans Redis (préfixe par défaut du RedisCacheManager : "cacheName::").
+     * Repli pour les caches distants autres que Redis.
+     */
+    private long remoteExpiresAt(String cacheName, String key) {
+        try {
+            Long ttl = stringRedisTemplate.getExpire(cacheName + "::" + key, TimeUnit.MILLISECONDS);
+            return ttl != null && ttl > 0 ? System.currentTimeMillis() + ttl : TwoLevelCache.NO_EXPIRY;
+        } catch (Exception e) {
+            // Sans TTL connu : pas de rafraîchissement anticipé, le TTL du L1 s'applique seul
+            return TwoLevelCache.NO_EXPIRY;
+        }
+    }
+
+    // Message : instanceId|type|cacheName|clé
+    void publishEvict(String cacheName, String key) {
+        publish(String.join("|", instanceId, EVICT, cacheName, key));
+    }
+
+    void publishClear(String cacheName) {
+        publish(String.join("|", instanceId, CLEAR, cacheName, ""));
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // Le TTL du L1 borne la durée de vie d'une entrée périmée sur les autres réplicas
+            log.warn("Could not publish cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length < 4 || instanceId.equals(parts[0])) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(parts[2]);
+        if (cache == null) {
+            return;
+        }
+        if (CLEAR.equals(parts[1])) {
+            cache.clearLocal();
+        } else {
+            cache.invalidateLocal(parts[3]);
+        }
+        log.debug("Near cache invalidated: {} {}", parts[2], parts[3]);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ecommerce.product.cache.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sérialiseur des valeurs de cache : binaire compact pour les types qui ont un codec
+ * (et leurs listes), JSON pour le reste.
+ *
+ * En-tête : MAGIC | tag (bit de poids fort = liste) | version du codec.
+ * Une entrée sans MAGIC a été écrite en JSON (avant le codec binaire) et reste lisible.
+ * Une entrée d'un tag inconnu ou d'une version plus récente que le codec est traitée
+ * comme un cache miss : la valeur est recalculée au lieu de faire échouer la requête.
+ */
+@Slf4j
+public class BinaryCacheSerializer implements RedisSerializer<Object> {
+
+    static final int MAGIC = 0xB7;
+    private static final int LIST_FLAG = 0x80;
+
+    private final Map<Class<?>, CacheValueCodec<?>> codecsByType = new HashMap<>();
+    private final Map<Integer, CacheValueCodec<?>> codecsByTag = new HashMap<>();
+    private final RedisSerializer<Object> fallback;
+
+    public BinaryCacheSerializer(List<CacheValueCodec<?>> codecs, RedisSerializer<Object> fallback) {
+        for (CacheValueCodec<?> codec : codecs) {
+            if (codec.tag() <= 0 || codec.tag() >= LIST_FLAG || codecsByTag.containsKey(codec.tag())) {
+                throw new IllegalArgumentException("Invalid or duplicate codec tag " + codec.tag() + " for " + codec.type());
+            }
+            codecsByType.put(codec.type(), codec);
+            codecsByTag.put(codec.tag(), codec);
+        }
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        CacheValueCodec<?> codec = codecFor(value);
+        if (codec == null) {
+            return fallback.serialize(value);
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(MAGIC);
+            if (value instanceof List<?> list) {
+                out.writeByte(codec.tag() | LIST_FLAG);
+                out.writeByte(codec.version());
+                CodecIO.writeVarLong(out, list.size());
+                for (Object element : list) {
+                    write(codec, element, out);
+                }
+            } else {
+                out.writeByte(codec.tag());
+                out.writeByte(codec.version());
+                write(codec, value, out);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not serialize cache value", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if ((bytes[0] & 0xFF) != MAGIC) {
+            // Entrée écrite en JSON
+            return fallback.deserialize(bytes);
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            int header = in.readUnsignedByte();
+            int version = in.readUnsignedByte();
+            CacheValueCodec<?> codec = codecsByTag.get(header & ~LIST_FLAG);
+            if (codec == null || version > codec.version()) {
+                log.debug("Unreadable cache entry (tag {}, version {}), treating as a miss", header & ~LIST_FLAG, version);
+                return null;
+            }
+
+            if ((header & LIST_FLAG) == 0) {
+                return codec.read(in, version);
+            }
+            int size = CodecIO.readLength(in);
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(codec.read(in, version));
+            }
+            return list;
+        } catch (IOException e) {
+            throw new SerializationException("Could not deserialize cache value", e);
+        }
+    }
+
+    /**
+     * Codec applicable à la valeur, ou null : liste non vide dont tous les éléments sont du même type connu.
+     */
+    private CacheValueCodec<?> codecFor(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof List<?> list)) {
+            return codecsByType.get(value.getClass());
+        }
+        if (list.isEmpty() || list.get(0) == null) {
+            return null;
+        }
+        Class<?> elementType = list.get(0).getClass();
+        CacheValueCodec<?> codec = codecsByType.get(elementType);
+        if (codec == null) {
+            return null;
+        }
+        for (Object element : list) {
+            if (element == null || element.getClass() != elementType) {
+                return null;
+            }
+        }
+        return codec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(CacheValueCodec<T> codec, Object value, DataOutputStream out) throws IOException {
+        codec.write((T) value, out);
+    }
+}
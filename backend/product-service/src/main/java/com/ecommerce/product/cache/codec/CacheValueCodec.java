@@ -0,0 +1,25 @@
+package com.ecommerce.product.cache.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodage binaire d'un type mis en cache.
+ *
+ * Le tag identifie le type dans l'en-tête de l'entrée et ne doit jamais être réutilisé.
+ * La version est écrite avec chaque entrée : un codec doit savoir relire toutes les versions
+ * antérieures à la sienne (déploiement progressif, entrées encore vivantes dans Redis).
+ */
+public interface CacheValueCodec<T> {
+
+    int tag();
+
+    int version();
+
+    Class<T> type();
+
+    void write(T value, DataOutputStream out) throws IOException;
+
+    T read(DataInputStream in, int version) throws IOException;
+}
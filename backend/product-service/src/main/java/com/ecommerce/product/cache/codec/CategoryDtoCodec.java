@@ -0,0 +1,61 @@
+package com.ecommerce.product.cache.codec;
+
+import com.ecommerce.product.dto.CategoryDto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static com.ecommerce.product.cache.codec.CodecIO.*;
+
+/**
+ * v1 : un octet de présence (un bit par champ nullable) puis les champs présents, dans l'ordre.
+ */
+public class CategoryDtoCodec implements CacheValueCodec<CategoryDto> {
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int DESCRIPTION = 1 << 2;
+    private static final int PARENT_ID = 1 << 3;
+
+    @Override
+    public int tag() {
+        return 2;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public Class<CategoryDto> type() {
+        return CategoryDto.class;
+    }
+
+    @Override
+    public void write(CategoryDto category, DataOutputStream out) throws IOException {
+        int flags = (category.getId() != null ? ID : 0)
+                | (category.getName() != null ? NAME : 0)
+                | (category.getDescription() != null ? DESCRIPTION : 0)
+                | (category.getParentId() != null ? PARENT_ID : 0);
+        out.writeByte(flags);
+
+        if (isSet(flags, ID)) writeVarLong(out, category.getId());
+        if (isSet(flags, NAME)) writeString(out, category.getName());
+        if (isSet(flags, DESCRIPTION)) writeString(out, category.getDescription());
+        if (isSet(flags, PARENT_ID)) writeVarLong(out, category.getParentId());
+    }
+
+    @Override
+    public CategoryDto read(DataInputStream in, int version) throws IOException {
+        int flags = in.readUnsignedByte();
+        CategoryDto category = new CategoryDto();
+
+        if (isSet(flags, ID)) category.setId(readVarLong(in));
+        if (isSet(flags, NAME)) category.setName(readString(in));
+        if (isSet(flags, DESCRIPTION)) category.setDescription(readString(in));
+        if (isSet(flags, PARENT_ID)) category.setParentId(readVarLong(in));
+        return category;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.product.cache.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitives d'encodage partagées par les codecs : entiers variables (zigzag), chaînes UTF-8 préfixées.
+ */
+final class CodecIO {
+
+    private CodecIO() {
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeVarLong(out, value.scale());
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        writeVarLong(out, unscaled.length);
+        out.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = (int) readVarLong(in);
+        byte[] unscaled = new byte[readLength(in)];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    static boolean isSet(int flags, int bit) {
+        return (flags & bit) != 0;
+    }
+}
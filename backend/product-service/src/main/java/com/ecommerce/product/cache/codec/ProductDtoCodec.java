@@ -0,0 +1,91 @@
+package com.ecommerce.product.cache.codec;
+
+import com.ecommerce.product.dto.ProductDto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ecommerce.product.cache.codec.CodecIO.*;
+
+/**
+ * v1 : un octet de présence (un bit par champ nullable) puis les champs présents, dans l'ordre.
+ */
+public class ProductDtoCodec implements CacheValueCodec<ProductDto> {
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int DESCRIPTION = 1 << 2;
+    private static final int PRICE = 1 << 3;
+    private static final int STOCK = 1 << 4;
+    private static final int CATEGORY_ID = 1 << 5;
+    private static final int CATEGORY_NAME = 1 << 6;
+    private static final int IMAGES = 1 << 7;
+
+    @Override
+    public int tag() {
+        return 1;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public Class<ProductDto> type() {
+        return ProductDto.class;
+    }
+
+    @Override
+    public void write(ProductDto product, DataOutputStream out) throws IOException {
+        int flags = (product.getId() != null ? ID : 0)
+                | (product.getName() != null ? NAME : 0)
+                | (product.getDescription() != null ? DESCRIPTION : 0)
+                | (product.getPrice() != null ? PRICE : 0)
+                | (product.getStockQuantity() != null ? STOCK : 0)
+                | (product.getCategoryId() != null ? CATEGORY_ID : 0)
+                | (product.getCategoryName() != null ? CATEGORY_NAME : 0)
+                | (product.getImages() != null ? IMAGES : 0);
+        out.writeByte(flags);
+
+        if (isSet(flags, ID)) writeVarLong(out, product.getId());
+        if (isSet(flags, NAME)) writeString(out, product.getName());
+        if (isSet(flags, DESCRIPTION)) writeString(out, product.getDescription());
+        if (isSet(flags, PRICE)) writeDecimal(out, product.getPrice());
+        if (isSet(flags, STOCK)) writeVarLong(out, product.getStockQuantity());
+        if (isSet(flags, CATEGORY_ID)) writeVarLong(out, product.getCategoryId());
+        if (isSet(flags, CATEGORY_NAME)) writeString(out, product.getCategoryName());
+        if (isSet(flags, IMAGES)) {
+            writeVarLong(out, product.getImages().size());
+            for (String image : product.getImages()) {
+                writeString(out, image);
+            }
+        }
+    }
+
+    @Override
+    public ProductDto read(DataInputStream in, int version) throws IOException {
+        int flags = in.readUnsignedByte();
+        ProductDto product = new ProductDto();
+
+        if (isSet(flags, ID)) product.setId(readVarLong(in));
+        if (isSet(flags, NAME)) product.setName(readString(in));
+        if (isSet(flags, DESCRIPTION)) product.setDescription(readString(in));
+        if (isSet(flags, PRICE)) product.setPrice(readDecimal(in));
+        if (isSet(flags, STOCK)) product.setStockQuantity((int) readVarLong(in));
+        if (isSet(flags, CATEGORY_ID)) product.setCategoryId(readVarLong(in));
+        if (isSet(flags, CATEGORY_NAME)) product.setCategoryName(readString(in));
+        if (isSet(flags, IMAGES)) {
+            int count = readLength(in);
+            List<String> images = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                images.add(readString(in));
+            }
+            product.setImages(images);
+        }
+        return product;
+    }
+}
@@ -1,10 +1,14 @@
 package com.ecommerce.product.config;
 
+import com.ecommerce.product.cache.TwoLevelCacheManager;
+import com.ecommerce.product.cache.codec.BinaryCacheSerializer;
+import com.ecommerce.product.cache.codec.CategoryDtoCodec;
+import com.ecommerce.product.cache.codec.ProductDtoCodec;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.springframework.cache.CacheManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,11 +16,16 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @EnableCaching
@@ -40,18 +49,20 @@ public class RedisConfig {
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        // Configuration ObjectMapper pour la sérialisation JSON
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.activateDefaultTyping(
-            BasicPolymorphicTypeValidator.builder().allowIfBaseType(Object.class).build(),
-            ObjectMapper.DefaultTyping.NON_FINAL,
-            JsonTypeInfo.As.PROPERTY
-        );
-
-        GenericJackson2JsonRedisSerializer serializer = 
-            new GenericJackson2JsonRedisSerializer(objectMapper);
+    public TwoLevelCacheManager cacheManager(
+            RedisConnectionFactory connectionFactory,
+            StringRedisTemplate stringRedisTemplate,
+            @Value("${cache.near.max-size:10000}") long nearCacheMaxSize,
+            @Value("${cache.near.ttl-seconds:60}") long nearCacheTtlSeconds,
+            @Value("${cache.early-refresh.beta:1.0}") double earlyRefreshBeta,
+            @Value("${cache.load-wait-timeout-ms:5000}") long loadWaitTimeoutMs,
+            @Value("${cache.serializer.format:json}") String serializerFormat) {
+        // "json" : écrit l'ancien format, lisible par toutes les versions, et relit déjà les entrées binaires.
+        // "binary" : codecs compacts pour ProductDto/CategoryDto (et leurs listes), JSON pour le reste.
+        // Ne passer à "binary" qu'une fois tous les réplicas déployés avec ce lecteur : une version plus
+        // ancienne échouerait sur chaque entrée binaire
+        RedisSerializer<Object> serializer =
+            cacheValueSerializer(jsonCacheSerializer(), "binary".equalsIgnoreCase(serializerFormat));
 
         // Configuration du cache par défaut
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
@@ -71,13 +82,69 @@ public class RedisConfig {
         RedisCacheConfiguration searchConfig = defaultConfig
             .entryTtl(Duration.ofMinutes(15));  // Expire après 15 minutes
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
             .cacheDefaults(defaultConfig)
             .withCacheConfiguration("products", defaultConfig)
             .withCacheConfiguration("popularProducts", popularProductsConfig)
             .withCacheConfiguration("searchResults", searchConfig)
             .withCacheConfiguration("productDetails", defaultConfig)
             .build();
+        redisCacheManager.afterPropertiesSet();
+
+        // Near cache en mémoire devant Redis : évite aller-retour réseau + désérialisation sur les hits.
+        // Les @Cacheable(sync = true) y gagnent le single-flight et le rafraîchissement anticipé (0 = désactivé)
+        return new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate,
+            nearCacheMaxSize, Duration.ofSeconds(nearCacheTtlSeconds), earlyRefreshBeta,
+            Duration.ofMillis(loadWaitTimeoutMs));
+    }
+
+    /**
+     * Sérialiseur JSON historique des caches (avec informations de type)
+     */
+    public static GenericJackson2JsonRedisSerializer jsonCacheSerializer() {
+        // Configuration ObjectMapper pour la sérialisation JSON
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.activateDefaultTyping(
+            BasicPolymorphicTypeValidator.builder().allowIfBaseType(Object.class).build(),
+            ObjectMapper.DefaultTyping.NON_FINAL,
+            JsonTypeInfo.As.PROPERTY
+        );
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    public static BinaryCacheSerializer binaryCacheSerializer(RedisSerializer<Object> json) {
+        return new BinaryCacheSerializer(List.of(new ProductDtoCodec(), new CategoryDtoCodec()), json);
+    }
+
+    private static RedisSerializer<Object> cacheValueSerializer(GenericJackson2JsonRedisSerializer json, boolean binaryWrites) {
+        BinaryCacheSerializer binary = binaryCacheSerializer(json);
+        if (binaryWrites) {
+            return binary;
+        }
+        // Écrit en JSON mais sait relire les entrées binaires
+        return new RedisSerializer<>() {
+            @Override
+            public byte[] serialize(Object value) {
+                return json.serialize(value);
+            }
+
+            @Override
+            public Object deserialize(byte[] bytes) {
+                return binary.deserialize(bytes);
+            }
+        };
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            TwoLevelCacheManager cacheManager) {
+        // Invalidation des near caches des autres réplicas
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
 }
 
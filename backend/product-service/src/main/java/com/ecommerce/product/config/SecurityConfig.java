@@ -40,6 +40,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/products/uploads/**").permitAll() // Allow serving images
                         .requestMatchers("/api/products/batch").permitAll() // Allow batch retrieval
                         .requestMatchers(HttpMethod.GET, "/api/products/**").permitAll()
+                        .requestMatchers("/api/products/reservations/**").hasRole("SERVICE") // Checkout (jeton de service)
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/products/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/categories/**").hasRole("ADMIN")
@@ -38,8 +38,10 @@ public class ProductController {
     }
 
     @GetMapping("/popular")
-    public ResponseEntity<List<ProductDto>> getPopularProducts() {
-        List<ProductDto> products = productService.getPopularProducts();
+    public ResponseEntity<List<ProductDto>> getPopularProducts(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<ProductDto> products = productService.getPopularProducts(categoryId, Math.min(Math.max(limit, 1), 50));
         return ResponseEntity.ok(products);
     }
 
@@ -49,14 +51,32 @@ public class ProductController {
     }
 
     @GetMapping
-    public ResponseEntity<Page<ProductDto>> getAllProducts(
+    public ResponseEntity<?> getAllProducts(
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) java.math.BigDecimal minPrice,
             @RequestParam(required = false) java.math.BigDecimal maxPrice,
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String pagination,
+            @RequestParam(required = false) String cursor,
             @org.springframework.data.web.PageableDefault(size = 20) Pageable pageable) {
-        Page<ProductDto> products = productService.getAllProducts(categoryId, minPrice, maxPrice, search, pageable);
-        return ResponseEntity.ok(products);
+        // Mode curseur (opt-in) : ?pagination=cursor puis ?cursor=<nextCursor>
+        if ("cursor".equalsIgnoreCase(pagination) || cursor != null) {
+            try {
+                return ResponseEntity.ok(productService.getProductsAfter(
+                        categoryId, minPrice, maxPrice, search, cursor, pageable.getSort(), pageable.getPageSize()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", e.getMessage()));
+            }
+        }
+
+        try {
+            Page<ProductDto> products = productService.getAllProducts(categoryId, minPrice, maxPrice, search, pageable);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
@@ -72,12 +92,24 @@ public class ProductController {
     }
 
     @PatchMapping("/{id}/stock/reduce")
-    public ResponseEntity<Void> reduceStock(
+    public ResponseEntity<?> reduceStock(
             @PathVariable Long id,
             @RequestParam Integer quantity) {
-
-        productService.reduceStock(id, quantity);
-        return ResponseEntity.ok().build();
+        try {
+            productService.reduceStock(id, quantity);
+            return ResponseEntity.ok().build();
+        } catch (IllegalStateException e) {
+            log.warn("Stock reduction rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Error reducing stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/category/{categoryId}")
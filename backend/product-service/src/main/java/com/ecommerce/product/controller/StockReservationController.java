@@ -0,0 +1,79 @@
+package com.ecommerce.product.controller;
+
+import com.ecommerce.product.dto.StockReservationDto;
+import com.ecommerce.product.dto.StockReservationRequest;
+import com.ecommerce.product.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/products/reservations")
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationController {
+
+    private final StockReservationService stockReservationService;
+
+    @PostMapping
+    public ResponseEntity<?> reserve(@RequestBody StockReservationRequest request) {
+        try {
+            StockReservationDto reservation = stockReservationService.reserve(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+        } catch (IllegalStateException e) {
+            log.warn("Stock reservation rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Error reserving stock: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{reservationId}/commit")
+    public ResponseEntity<?> commit(@PathVariable String reservationId, @RequestParam String owner) {
+        try {
+            if (!stockReservationService.commit(reservationId, owner)) {
+                // Un commit de cette réservation est déjà en cours : l'appelant retentera
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", "Reservation commit already in progress"));
+            }
+            return ResponseEntity.ok(Map.of("message", "Reservation committed"));
+        } catch (AccessDeniedException e) {
+            log.warn("Stock reservation commit refused: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.warn("Stock reservation commit rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{reservationId}")
+    public ResponseEntity<?> release(@PathVariable String reservationId, @RequestParam String owner) {
+        try {
+            if (!stockReservationService.release(reservationId, owner)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Reservation not found or already closed"));
+            }
+            return ResponseEntity.ok(Map.of("message", "Reservation released"));
+        } catch (AccessDeniedException e) {
+            log.warn("Stock reservation release refused: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCursorPage {
+    private List<ProductDto> content;
+    private String nextCursor; // null sur la dernière page
+    private boolean hasNext;
+    private int size;
+}
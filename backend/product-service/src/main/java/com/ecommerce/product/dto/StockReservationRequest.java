@@ -0,0 +1,12 @@
+package com.ecommerce.product.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockReservationRequest {
+    private List<StockItemRequest> items;
+    private Long ttlSeconds; // Optionnel, sinon durée par défaut
+    private String owner; // Identifiant du checkout appelant, exigé au commit et à la libération
+}
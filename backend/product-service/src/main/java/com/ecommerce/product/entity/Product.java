@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -17,6 +18,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@DynamicUpdate // N'écrit que les colonnes modifiées : une édition admin n'écrase pas un décrément de stock concurrent
 public class Product {
     
     @Id
@@ -35,13 +37,15 @@ public class Product {
     @Column(name = "stock_quantity")
     private Integer stockQuantity;
     
-    @ManyToOne
+    // LAZY : les listes joignent la catégorie explicitement et chargent les images par lot
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "product_images", joinColumns = @JoinColumn(name = "product_id"))
     @Column(name = "image_url")
+    @OrderColumn(name = "position") // Ordre de la liste conservé en base, trié par le chargement par lot
     private List<String> images = new ArrayList<>();
     
     @Column(name = "created_at")
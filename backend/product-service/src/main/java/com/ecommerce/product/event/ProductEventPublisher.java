@@ -0,0 +1,75 @@
+package com.ecommerce.product.event;
+
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.ecommerce.common.kafka.EventPublisher;
+import com.ecommerce.product.dto.ProductDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Diffuse les changements de produits (topic product-events, clé = productId : ordre garanti par produit).
+ * Les services qui gardent une copie locale des produits (cart-service, index de recherche de chaque
+ * réplica de product-service) s'en servent pour la mettre à jour ou l'invalider.
+ * À appeler après commit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductEventPublisher {
+
+    public static final String TOPIC = "product-events";
+
+    private final EventPublisher eventPublisher;
+
+    // version : celle déjà appliquée à l'index local, pour que les autres réplicas l'appliquent à l'identique
+    public void productUpdated(ProductDto product, long version) {
+        send(ProductChangedEvent.builder()
+                .eventType(ProductChangedEvent.UPDATED)
+                .productId(product.getId())
+                .version(version)
+                .name(product.getName())
+                .description(product.getDescription())
+                .price(product.getPrice())
+                .stockQuantity(product.getStockQuantity())
+                .categoryId(product.getCategoryId())
+                .categoryName(product.getCategoryName())
+                .images(product.getImages())
+                .build());
+    }
+
+    public void stockChanged(Collection<Long> productIds) {
+        long version = System.currentTimeMillis();
+        for (Long productId : productIds) {
+            send(ProductChangedEvent.builder()
+                    .eventType(ProductChangedEvent.STOCK_CHANGED)
+                    .productId(productId)
+                    .version(version)
+                    .build());
+        }
+    }
+
+    public void productDeleted(Long productId, long version) {
+        send(ProductChangedEvent.builder()
+                .eventType(ProductChangedEvent.DELETED)
+                .productId(productId)
+                .version(version)
+                .build());
+    }
+
+    private void send(ProductChangedEvent event) {
+        try {
+            eventPublisher.publish(TOPIC, String.valueOf(event.getProductId()), event)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            // Les copies distantes expirent d'elles-mêmes (TTL côté consommateur)
+                            log.warn("Could not publish {} for product {}: {}", event.getEventType(), event.getProductId(), e.getMessage());
+                        }
+                    });
+        } catch (Exception e) {
+            log.warn("Could not publish {} for product {}: {}", event.getEventType(), event.getProductId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.product.listener;
+
+import com.ecommerce.common.event.OrderEvent;
+import com.ecommerce.common.event.OrderEventItem;
+import com.ecommerce.product.service.ProductPopularityService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Alimente le classement de popularité à partir des commandes confirmées.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderEventListener {
+
+    // Émis par order-service quand le paiement confirme la commande
+    private static final String ORDER_CREATED = "OrderCreated";
+
+    private final ProductPopularityService popularityService;
+
+    @KafkaListener(topics = "order-events", groupId = "product-service-popularity", containerFactory = "orderEventKafkaListenerContainerFactory")
+    public void handleOrderEvent(OrderEvent event) {
+        if (!ORDER_CREATED.equals(event.getEventType()) || event.getItems() == null) {
+            return;
+        }
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderEventItem item : event.getItems()) {
+            if (item.getProductId() != null && item.getQuantity() != null && item.getQuantity() > 0) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+
+        popularityService.recordSale(event.getEventId(),
+                event.getTimestamp() != null ? event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant() : null,
+                quantities);
+    }
+}
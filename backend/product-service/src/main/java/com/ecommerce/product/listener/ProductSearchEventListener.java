@@ -0,0 +1,46 @@
+package com.ecommerce.product.listener;
+
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.ecommerce.product.cache.CacheDependencyTracker;
+import com.ecommerce.product.search.ProductSearchDocument;
+import com.ecommerce.product.search.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applique à l'index de recherche de ce réplica les écritures faites sur les autres.
+ * Les événements émis par ce réplica portent la version déjà appliquée localement et sont ignorés.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchEventListener {
+
+    private final ProductSearchIndex searchIndex;
+    private final CacheDependencyTracker cacheDependencies;
+
+    @KafkaListener(topics = "product-events", containerFactory = "productEventKafkaListenerContainerFactory")
+    public void handleProductEvent(ProductChangedEvent event) {
+        if (event.getProductId() == null) {
+            return;
+        }
+
+        if (ProductChangedEvent.UPDATED.equals(event.getEventType())) {
+            ProductSearchDocument document = new ProductSearchDocument(event.getProductId(), event.getName(),
+                    event.getDescription(), event.getCategoryId(), event.getPrice());
+            if (searchIndex.index(document, event.getVersion())) {
+                // Une recherche servie par ce réplica avant l'événement a pu remettre l'ancien résultat en cache
+                cacheDependencies.evictProduct(event.getProductId());
+                cacheDependencies.evictMatchingSearches(event.getName(), event.getDescription());
+            }
+        } else if (ProductChangedEvent.DELETED.equals(event.getEventType())) {
+            if (searchIndex.remove(event.getProductId(), event.getVersion())) {
+                cacheDependencies.evictProduct(event.getProductId());
+            }
+        }
+        // STOCK_CHANGED : le stock n'est pas indexé
+        log.debug("Product event {} for product {}", event.getEventType(), event.getProductId());
+    }
+}
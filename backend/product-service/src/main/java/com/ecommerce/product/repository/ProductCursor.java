@@ -0,0 +1,47 @@
+package com.ecommerce.product.repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Jeton de continuation opaque pour la pagination keyset : clé de tri et id du dernier produit renvoyé.
+ * Format encodé en base64 url : v1|champ|a/d|id|valeur
+ */
+public record ProductCursor(String sortField, boolean descending, Long lastId, String lastValue) {
+
+    public static final Set<String> SORT_FIELDS = Set.of("id", "price", "name");
+
+    private static final String VERSION = "v1";
+
+    public String encode() {
+        String raw = String.join("|", VERSION, sortField, descending ? "d" : "a",
+                String.valueOf(lastId), lastValue != null ? lastValue : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 5);
+            if (parts.length != 5 || !VERSION.equals(parts[0]) || !SORT_FIELDS.contains(parts[1])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new ProductCursor(parts[1], "d".equals(parts[2]), Long.valueOf(parts[3]), parts[4]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Valeur de la clé de tri, typée comme l'attribut de l'entité
+     */
+    public Object typedLastValue() {
+        return switch (sortField) {
+            case "price" -> new BigDecimal(lastValue);
+            case "name" -> lastValue;
+            default -> lastId;
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.product.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+@Value
+@Builder
+public class ProductKeysetQuery {
+    Long categoryId;
+    BigDecimal minPrice;
+    BigDecimal maxPrice;
+    String nameContains;     // Repli LIKE si l'index de recherche n'est pas disponible
+    String sortField;
+    boolean descending;
+    ProductCursor after;     // null pour la première page
+    int limit;
+}
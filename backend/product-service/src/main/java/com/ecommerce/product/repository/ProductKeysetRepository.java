@@ -0,0 +1,13 @@
+package com.ecommerce.product.repository;
+
+import com.ecommerce.product.entity.Product;
+
+import java.util.List;
+
+public interface ProductKeysetRepository {
+
+    /**
+     * Page suivante en pagination keyset : WHERE (clé, id) > (dernière clé, dernier id), sans OFFSET ni COUNT
+     */
+    List<Product> findKeysetPage(ProductKeysetQuery query);
+}
@@ -0,0 +1,75 @@
+package com.ecommerce.product.repository;
+
+import com.ecommerce.product.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProductKeysetRepositoryImpl implements ProductKeysetRepository {
+
+    private static final Map<String, String> SORT_PATHS = Map.of(
+            "id", "p.id",
+            "price", "p.price",
+            "name", "p.name");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Product> findKeysetPage(ProductKeysetQuery query) {
+        String sortPath = SORT_PATHS.get(query.getSortField());
+        if (sortPath == null) {
+            throw new IllegalArgumentException("Unsupported sort field: " + query.getSortField());
+        }
+
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (query.getCategoryId() != null) {
+            jpql.append(" AND p.category.id = :categoryId");
+            params.put("categoryId", query.getCategoryId());
+        }
+        if (query.getMinPrice() != null) {
+            jpql.append(" AND p.price >= :minPrice");
+            params.put("minPrice", query.getMinPrice());
+        }
+        if (query.getMaxPrice() != null) {
+            jpql.append(" AND p.price <= :maxPrice");
+            params.put("maxPrice", query.getMaxPrice());
+        }
+        if (StringUtils.hasText(query.getNameContains())) {
+            jpql.append(" AND LOWER(p.name) LIKE :nameContains");
+            params.put("nameContains", "%" + query.getNameContains().toLowerCase() + "%");
+        }
+
+        String comparator = query.isDescending() ? "<" : ">";
+        ProductCursor after = query.getAfter();
+        if (after != null) {
+            if ("id".equals(query.getSortField())) {
+                jpql.append(" AND p.id ").append(comparator).append(" :lastId");
+            } else {
+                // Comparaison de tuples : utilisable directement par l'index (clé, id)
+                jpql.append(" AND (").append(sortPath).append(", p.id) ").append(comparator)
+                        .append(" (:lastValue, :lastId)");
+                params.put("lastValue", after.typedLastValue());
+            }
+            params.put("lastId", after.lastId());
+        }
+
+        String direction = query.isDescending() ? " DESC" : " ASC";
+        jpql.append(" ORDER BY ").append(sortPath).append(direction);
+        if (!"id".equals(query.getSortField())) {
+            jpql.append(", p.id").append(direction);
+        }
+
+        TypedQuery<Product> typedQuery = entityManager.createQuery(jpql.toString(), Product.class);
+        params.forEach(typedQuery::setParameter);
+        typedQuery.setMaxResults(query.getLimit());
+        return typedQuery.getResultList();
+    }
+}
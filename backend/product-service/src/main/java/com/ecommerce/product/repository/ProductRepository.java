@@ -1,25 +1,108 @@
 package com.ecommerce.product.repository;
 
 import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.search.ProductSearchDocument;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long>,
-        org.springframework.data.jpa.repository.JpaSpecificationExecutor<Product> {
+        org.springframework.data.jpa.repository.JpaSpecificationExecutor<Product>, ProductKeysetRepository {
     Page<Product> findAll(Pageable pageable);
 
+    // Listes : la catégorie est jointe dans la même requête, les images sont chargées à part en un lot
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Page<Product> findAll(Specification<Product> spec, Pageable pageable);
+
     // Version avec List (sans pagination)
+    @EntityGraph(attributePaths = "category")
     List<Product> findByCategoryId(Long categoryId);
 
     // Version avec Page (avec pagination)
     Page<Product> findByCategoryId(Long categoryId, Pageable pageable);
 
+    @EntityGraph(attributePaths = "category")
     List<Product> findByNameContainingIgnoreCase(String keyword);
 
-    List<Product> findTop10ByOrderByCreatedAtDesc();
+    @EntityGraph(attributePaths = "category")
+    List<Product> findByIdIn(Collection<Long> ids);
+
+    // Nouveautés, en complément du classement des ventes (List + Pageable : pas de requête count)
+    @EntityGraph(attributePaths = "category")
+    List<Product> findByOrderByCreatedAtDesc(Pageable pageable);
+
+    @EntityGraph(attributePaths = "category")
+    List<Product> findByCategoryIdOrderByCreatedAtDesc(Long categoryId, Pageable pageable);
+
+    @Query("SELECT p.id, c.id FROM Product p LEFT JOIN p.category c WHERE p.id IN :ids")
+    List<Object[]> findCategoryIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Images de plusieurs produits en une requête (au lieu d'un SELECT par produit),
+     * dans l'ordre de chaque liste
+     */
+    @Query("SELECT p.id, i FROM Product p JOIN p.images i WHERE p.id IN :ids ORDER BY p.id, INDEX(i)")
+    List<Object[]> findImagesByProductIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Chargement par lots (keyset sur l'id) pour construire l'index de recherche
+     */
+    @Query("SELECT new com.ecommerce.product.search.ProductSearchDocument(p.id, p.name, p.description, c.id, p.price) "
+            + "FROM Product p LEFT JOIN p.category c WHERE p.id > :afterId ORDER BY p.id")
+    List<ProductSearchDocument> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Lecture verrouillée jusqu'au commit : un stock absolu fixé par l'admin se traduit en un delta exact,
+     * les décréments et variations concurrents (UPDATE conditionnels) attendent le verrou
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Décrément atomique : échoue (0 ligne) si le stock est insuffisant, sans lecture préalable
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity "
+            + "WHERE p.id = :id AND p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Variation atomique du stock (positive ou négative), refusée si le résultat serait négatif
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = COALESCE(p.stockQuantity, 0) + :delta "
+            + "WHERE p.id = :id AND COALESCE(p.stockQuantity, 0) + :delta >= 0")
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta);
+
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockQuantities(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Marque la réservation comme validée dans la transaction du décrément.
+     * 0 ligne : elle l'est déjà (reprise ou commit concurrent), le stock ne doit pas être décrémenté à nouveau
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stock_reservation_commits (reservation_id) VALUES (:reservationId) "
+            + "ON CONFLICT (reservation_id) DO NOTHING", nativeQuery = true)
+    int recordReservationCommit(@Param("reservationId") String reservationId);
+
+    @Modifying
+    @Query(value = "DELETE FROM stock_reservation_commits WHERE committed_at < :before", nativeQuery = true)
+    int deleteReservationCommitsBefore(@Param("before") LocalDateTime before);
 }
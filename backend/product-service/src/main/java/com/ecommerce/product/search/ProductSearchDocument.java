@@ -0,0 +1,14 @@
+package com.ecommerce.product.search;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection légère d'un produit pour l'indexation (pas d'images, pas de jointure EAGER)
+ */
+public record ProductSearchDocument(
+        Long id,
+        String name,
+        String description,
+        Long categoryId,
+        BigDecimal price) {
+}
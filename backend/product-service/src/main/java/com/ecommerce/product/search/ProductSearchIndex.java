@@ -0,0 +1,367 @@
+package com.ecommerce.product.search;
+
+import com.ecommerce.product.repository.ProductCursor;
+import com.ecommerce.product.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index inversé en mémoire sur le nom et la description des produits.
+ * Remplace les scans LIKE '%term%' : chaque terme pointe vers les produits qui le contiennent,
+ * et le dictionnaire trié permet la recherche par préfixe.
+ *
+ * Chaque réplica tient son propre index : l'écriture l'applique localement après commit,
+ * les autres réplicas la reçoivent par product-events (ProductSearchEventListener).
+ * Une version par produit écarte les écritures plus anciennes que celle déjà appliquée.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    // Saturation de la fréquence des termes (façon BM25)
+    private static final double TF_SATURATION = 1.2;
+    // Un match par préfixe compte moins qu'un match exact
+    private static final double PREFIX_FACTOR = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    // terme -> (productId -> poids du terme dans le produit)
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+    // Dernière version appliquée par produit, conservée après suppression pour écarter une mise à jour en retard
+    private final Map<Long, Long> versions = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Produits modifiés pendant la reconstruction : le chargement ne doit pas les écraser
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    private volatile boolean rebuilding = false;
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            ready = false;
+            postings.clear();
+            documents.clear();
+            touchedDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            long afterId = 0L;
+            List<ProductSearchDocument> batch;
+            do {
+                batch = productRepository.findSearchDocumentsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                lock.writeLock().lock();
+                try {
+                    for (ProductSearchDocument doc : batch) {
+                        if (!touchedDuringRebuild.contains(doc.id())) {
+                            add(doc);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+
+            ready = true;
+            log.info("🔎 Search index built: {} products, {} terms in {} ms",
+                    documents.size(), postings.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Failed to build search index, falling back to database search: {}", e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                touchedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexe le produit, sauf si une version plus récente (ou la même) est déjà appliquée.
+     * @return true si l'index a changé
+     */
+    public boolean index(ProductSearchDocument doc, long version) {
+        lock.writeLock().lock();
+        try {
+            if (!advance(doc.id(), version)) {
+                return false;
+            }
+            markTouched(doc.id());
+            removeInternal(doc.id());
+            add(doc);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire le produit, sauf si une version plus récente (ou la même) est déjà appliquée.
+     * @return true si l'index a changé
+     */
+    public boolean remove(Long productId, long version) {
+        lock.writeLock().lock();
+        try {
+            if (!advance(productId, version)) {
+                return false;
+            }
+            markTouched(productId);
+            removeInternal(productId);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> search(String query) {
+        return search(query, null, null, null);
+    }
+
+    /**
+     * Retourne les IDs des produits correspondant à tous les termes de la requête,
+     * triés par pertinence décroissante.
+     */
+    public List<Long> search(String query, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenize(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = score(terms);
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+
+            List<Map.Entry<Long, Double>> matches = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                IndexedProduct product = documents.get(entry.getKey());
+                if (product != null && product.matches(categoryId, minPrice, maxPrice)) {
+                    matches.add(entry);
+                }
+            }
+
+            matches.sort(Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Long, Double>comparingByKey()));
+
+            return matches.stream().map(Map.Entry::getKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Variante triée sur une clé indexée (id, price, name) au lieu de la pertinence.
+     * Seuls les {@code limit} premiers IDs situés après {@code after} (null = début) sont retenus,
+     * par un tas borné : le coût ne dépend pas d'un tri complet des résultats.
+     */
+    public SortedPage searchSorted(String query, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                   String sortField, boolean descending, ProductCursor after, int limit) {
+        Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenize(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return new SortedPage(List.of(), 0);
+        }
+
+        Comparator<SortKey> order = sortOrder(sortField, descending);
+        SortKey cursor = after != null
+                ? new SortKey(after.lastId(),
+                        "price".equals(sortField) ? (BigDecimal) after.typedLastValue() : null,
+                        "name".equals(sortField) ? after.lastValue() : null)
+                : null;
+
+        lock.readLock().lock();
+        try {
+            // Tas inversé : la pire clé retenue est en tête et cède sa place
+            PriorityQueue<SortKey> kept = new PriorityQueue<>(order.reversed());
+            int total = 0;
+            for (Long id : score(terms).keySet()) {
+                IndexedProduct product = documents.get(id);
+                if (product == null || !product.matches(categoryId, minPrice, maxPrice)) {
+                    continue;
+                }
+                total++;
+                SortKey key = new SortKey(id, product.price(), product.name());
+                if (cursor != null && order.compare(key, cursor) <= 0) {
+                    continue;
+                }
+                kept.add(key);
+                if (kept.size() > limit) {
+                    kept.poll();
+                }
+            }
+
+            List<SortKey> page = new ArrayList<>(kept);
+            page.sort(order);
+            return new SortedPage(page.stream().map(SortKey::id).toList(), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Une page d'IDs triés et le nombre total de produits correspondant à la recherche
+     */
+    public record SortedPage(List<Long> ids, int totalMatches) {
+    }
+
+    // Ordre (clé, id) comme la pagination keyset en base ; valeurs nulles en dernier en ordre croissant
+    private static Comparator<SortKey> sortOrder(String sortField, boolean descending) {
+        Comparator<SortKey> byId = Comparator.comparing(SortKey::id);
+        Comparator<SortKey> order = switch (sortField) {
+            case "price" -> Comparator.comparing(SortKey::price, Comparator.nullsLast(Comparator.<BigDecimal>naturalOrder()))
+                    .thenComparing(byId);
+            case "name" -> Comparator.comparing(SortKey::name, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                    .thenComparing(byId);
+            case "id" -> byId;
+            default -> throw new IllegalArgumentException("Unsupported sort field: " + sortField);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    // Intersection des termes de la requête, avec le score cumulé de chaque produit
+    private Map<Long, Double> score(Set<String> terms) {
+        Map<Long, Double> scores = null;
+        for (String term : terms) {
+            Map<Long, Double> termScores = scoreTerm(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores != null ? scores : new HashMap<>();
+    }
+
+    private Map<Long, Double> scoreTerm(String term) {
+        Map<Long, Double> scores = new HashMap<>();
+
+        Map<Long, Integer> exact = postings.get(term);
+        if (exact != null) {
+            accumulate(scores, exact, 1.0);
+        }
+
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            for (Map<Long, Integer> prefixed : postings
+                    .subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+                accumulate(scores, prefixed, PREFIX_FACTOR);
+            }
+        }
+        return scores;
+    }
+
+    private void accumulate(Map<Long, Double> scores, Map<Long, Integer> termPostings, double factor) {
+        double idf = Math.log(1 + (double) documents.size() / termPostings.size());
+        for (Map.Entry<Long, Integer> posting : termPostings.entrySet()) {
+            double tf = posting.getValue();
+            double score = factor * idf * (tf * (TF_SATURATION + 1)) / (tf + TF_SATURATION);
+            // Un produit ne compte qu'une fois par terme de requête : on garde son meilleur match
+            scores.merge(posting.getKey(), score, Math::max);
+        }
+    }
+
+    private void add(ProductSearchDocument doc) {
+        Map<String, Integer> termWeights = new HashMap<>();
+        for (String token : SearchTokenizer.tokenize(doc.name())) {
+            termWeights.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : SearchTokenizer.tokenize(doc.description())) {
+            termWeights.merge(token, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+
+        for (Map.Entry<String, Integer> entry : termWeights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(doc.id(), entry.getValue());
+        }
+        documents.put(doc.id(), new IndexedProduct(doc.name(), doc.categoryId(), doc.price(), termWeights.keySet()));
+    }
+
+    private void removeInternal(Long productId) {
+        IndexedProduct previous = documents.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.terms()) {
+            Map<Long, Integer> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private boolean advance(Long productId, long version) {
+        Long applied = versions.get(productId);
+        if (applied != null && applied >= version) {
+            return false;
+        }
+        versions.put(productId, version);
+        return true;
+    }
+
+    private void markTouched(Long productId) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(productId);
+        }
+    }
+
+    private record SortKey(Long id, BigDecimal price, String name) {
+    }
+
+    private record IndexedProduct(String name, Long categoryId, BigDecimal price, Set<String> terms) {
+
+        boolean matches(Long categoryFilter, BigDecimal minPrice, BigDecimal maxPrice) {
+            if (categoryFilter != null && !categoryFilter.equals(categoryId)) {
+                return false;
+            }
+            if (minPrice != null && (price == null || price.compareTo(minPrice) < 0)) {
+                return false;
+            }
+            return maxPrice == null || (price != null && price.compareTo(maxPrice) <= 0);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecommerce.product.service;
 
+import com.ecommerce.product.cache.CacheDependencyTracker;
 import com.ecommerce.product.dto.CategoryDto;
 import com.ecommerce.product.dto.CreateCategoryRequest;
 import com.ecommerce.product.entity.Category;
@@ -10,6 +11,8 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -20,6 +23,7 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CacheDependencyTracker cacheDependencies;
 
     @Transactional(readOnly = true)
     @Cacheable(value = "categories")
@@ -80,6 +84,8 @@ public class CategoryService {
         }
 
         category = categoryRepository.save(category);
+        // Fiches et listes produits qui affichent le nom de cette catégorie, une fois le nouveau nom visible
+        afterCommit(() -> cacheDependencies.evictCategory(id));
         log.info("Category updated: {}", category.getName());
         return convertToDto(category);
     }
@@ -91,9 +97,24 @@ public class CategoryService {
             throw new RuntimeException("Category not found");
         }
         categoryRepository.deleteById(id);
+        afterCommit(() -> cacheDependencies.evictCategory(id));
         log.info("Category deleted: {}", id);
     }
 
+    // Évincer avant le commit laisserait une lecture concurrente remettre l'ancienne version en cache
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     private CategoryDto convertToDto(Category category) {
         return CategoryDto.builder()
                 .id(category.getId())
@@ -0,0 +1,211 @@
+package com.ecommerce.product.service;
+
+import com.ecommerce.product.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Popularité des produits d'après les ventes, avec décroissance dans le temps.
+ *
+ * Un sorted set Redis global et un par catégorie : ZINCRBY à chaque vente, ZREVRANGE pour le top N,
+ * tous deux en O(log n). La décroissance est "vers l'avant" : une vente pèse 2^((t - origine) / demi-vie),
+ * ce qui revient à diviser par deux le poids des ventes passées à chaque demi-vie, sans réécrire
+ * les scores à chaque vente.
+ *
+ * L'origine est conservée dans Redis, fixée à l'instant de la première vente comptée : les premiers poids
+ * valent 1. Ils croissent ensuite exponentiellement : une tâche planifiée avance l'origine d'un nombre entier
+ * de demi-vies et divise tous les scores d'autant, dans un script qui garde le classement inchangé.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductPopularityService {
+
+    private static final String GLOBAL_KEY = "popularity:global";
+    private static final String CATEGORY_PREFIX = "popularity:category:";
+    private static final String PROCESSED_PREFIX = "popularity:event:";
+    private static final Duration PROCESSED_TTL = Duration.ofDays(7);
+    // Origine courante des poids (epoch ms) et ensemble des classements, parcourus par la renormalisation
+    private static final String ORIGIN_KEY = "popularity:origin";
+    private static final String RANKINGS_KEY = "popularity:rankings";
+    // Facteur 2^32 : loin des limites d'un double, et une renormalisation tous les 32 demi-vies seulement
+    private static final long RENORMALIZE_AFTER_HALF_LIVES = 32;
+
+    private static final RedisScript<Long> RECORD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/popularity-record.lua"), Long.class);
+    private static final RedisScript<Long> RENORMALIZE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/popularity-renormalize.lua"), Long.class);
+    private static final RedisScript<Long> MOVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/popularity-move.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ProductRepository productRepository;
+
+    @Value("${popularity.half-life-hours:168}")
+    private double halfLifeHours;
+
+    /**
+     * Comptabilise une commande. Idempotent par eventId (Kafka peut livrer deux fois) :
+     * le marqueur de l'événement est posé dans le même script que les incréments.
+     */
+    public void recordSale(String eventId, Instant soldAt, Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> categories = findCategories(quantities.keySet());
+        List<String> keys = new ArrayList<>(List.of(PROCESSED_PREFIX + (eventId != null ? eventId : ""), ORIGIN_KEY, RANKINGS_KEY));
+        List<String> args = new ArrayList<>(List.of(
+                String.valueOf(eventId != null ? PROCESSED_TTL.toSeconds() : 0),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf((soldAt != null ? soldAt : Instant.now()).toEpochMilli()),
+                String.valueOf(halfLifeMillis())));
+        quantities.forEach((productId, quantity) -> {
+            if (!categories.containsKey(productId)) {
+                return; // Produit supprimé depuis
+            }
+            String member = String.valueOf(productId);
+            keys.add(GLOBAL_KEY);
+            args.add(member);
+            args.add(String.valueOf(quantity));
+            Long categoryId = categories.get(productId);
+            if (categoryId != null) {
+                keys.add(CATEGORY_PREFIX + categoryId);
+                args.add(member);
+                args.add(String.valueOf(quantity));
+            }
+        });
+
+        Long counted = stringRedisTemplate.execute(RECORD_SCRIPT, keys, args.toArray());
+        if (counted == null || counted == 0) {
+            log.debug("Sale event {} already counted", eventId);
+            return;
+        }
+        log.info("📈 Popularity updated for {} products (event {})", quantities.size(), eventId);
+    }
+
+    /**
+     * Avance l'origine des poids et divise les scores d'autant, dès qu'elle a plus de
+     * RENORMALIZE_AFTER_HALF_LIVES demi-vies de retard. Sans effet si une autre instance l'a fait.
+     */
+    @Scheduled(fixedDelayString = "${popularity.renormalize-interval-ms:3600000}",
+            initialDelayString = "${popularity.renormalize-interval-ms:3600000}")
+    public void renormalizeScores() {
+        try {
+            long halfLifeMillis = halfLifeMillis();
+            String origin = stringRedisTemplate.opsForValue().get(ORIGIN_KEY);
+            if (origin == null) {
+                return;
+            }
+            long halfLives = (System.currentTimeMillis() - Long.parseLong(origin)) / halfLifeMillis;
+            if (halfLives < RENORMALIZE_AFTER_HALF_LIVES) {
+                return;
+            }
+
+            registerExistingRankings();
+            Set<String> rankings = stringRedisTemplate.opsForSet().members(RANKINGS_KEY);
+            List<String> keys = new ArrayList<>(List.of(ORIGIN_KEY, RANKINGS_KEY));
+            if (rankings != null) {
+                keys.addAll(rankings);
+            }
+            long newOrigin = Long.parseLong(origin) + halfLives * halfLifeMillis;
+            Long done = stringRedisTemplate.execute(RENORMALIZE_SCRIPT, keys,
+                    origin, String.valueOf(newOrigin), String.valueOf(Math.pow(2, -halfLives)));
+            if (done != null && done == 1) {
+                log.info("📉 Popularity scores of {} rankings divided by 2^{}", keys.size() - 2, halfLives);
+            }
+        } catch (Exception e) {
+            log.warn("Could not renormalize popularity scores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * IDs des produits les plus vendus, du plus au moins populaire (toutes catégories si categoryId est null).
+     */
+    public List<Long> topProducts(Long categoryId, int limit) {
+        try {
+            Set<String> members = stringRedisTemplate.opsForZSet()
+                    .reverseRange(categoryId != null ? CATEGORY_PREFIX + categoryId : GLOBAL_KEY, 0, limit - 1);
+            return members == null ? List.of() : members.stream().map(Long::valueOf).toList();
+        } catch (Exception e) {
+            log.warn("Could not read popularity ranking: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Le produit change de catégorie : son score le suit.
+     */
+    public void moveCategory(Long productId, Long previousCategoryId, Long newCategoryId) {
+        if (previousCategoryId == null || previousCategoryId.equals(newCategoryId)) {
+            return;
+        }
+        String member = String.valueOf(productId);
+        try {
+            if (newCategoryId == null) {
+                stringRedisTemplate.opsForZSet().remove(CATEGORY_PREFIX + previousCategoryId, member);
+                return;
+            }
+            stringRedisTemplate.execute(MOVE_SCRIPT,
+                    List.of(CATEGORY_PREFIX + previousCategoryId, CATEGORY_PREFIX + newCategoryId, RANKINGS_KEY), member);
+        } catch (Exception e) {
+            log.warn("Could not move popularity of product {} to category {}: {}", productId, newCategoryId, e.getMessage());
+        }
+    }
+
+    public void remove(Long productId, Long categoryId) {
+        String member = String.valueOf(productId);
+        try {
+            stringRedisTemplate.opsForZSet().remove(GLOBAL_KEY, member);
+            if (categoryId != null) {
+                stringRedisTemplate.opsForZSet().remove(CATEGORY_PREFIX + categoryId, member);
+            }
+        } catch (Exception e) {
+            log.warn("Could not remove product {} from popularity ranking: {}", productId, e.getMessage());
+        }
+    }
+
+    private long halfLifeMillis() {
+        return Math.max(1, Math.round(halfLifeHours * 3_600_000));
+    }
+
+    // Classements écrits avant le registre : ajoutés au fil des renormalisations
+    private void registerExistingRankings() {
+        List<String> rankings = new ArrayList<>();
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(GLOBAL_KEY))) {
+            rankings.add(GLOBAL_KEY);
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(CATEGORY_PREFIX + "*").count(500).build();
+        try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+            keys.forEachRemaining(rankings::add);
+        }
+        if (!rankings.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(RANKINGS_KEY, rankings.toArray(new String[0]));
+        }
+    }
+
+    // Produits existants -> catégorie (null si sans catégorie)
+    private Map<Long, Long> findCategories(Set<Long> productIds) {
+        Map<Long, Long> categories = new HashMap<>();
+        for (Object[] row : productRepository.findCategoryIds(productIds)) {
+            categories.put((Long) row[0], (Long) row[1]);
+        }
+        return categories;
+    }
+}
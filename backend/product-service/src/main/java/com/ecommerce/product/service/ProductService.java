@@ -1,24 +1,41 @@
 package com.ecommerce.product.service;
 
+import com.ecommerce.product.cache.CacheDependencyTracker;
 import com.ecommerce.product.dto.CreateProductRequest;
+import com.ecommerce.product.dto.ProductCursorPage;
 import com.ecommerce.product.dto.ProductDto;
 import com.ecommerce.product.dto.UpdateProductRequest;
 import com.ecommerce.product.entity.Category;
 import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.event.ProductEventPublisher;
 import com.ecommerce.product.repository.CategoryRepository;
+import com.ecommerce.product.repository.ProductCursor;
+import com.ecommerce.product.repository.ProductKeysetQuery;
 import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.repository.ProductSpecification;
+import com.ecommerce.product.search.ProductSearchDocument;
+import com.ecommerce.product.search.ProductSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.math.BigDecimal;
 
@@ -29,6 +46,15 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductSearchIndex searchIndex;
+    private final StockReservationService stockReservationService;
+    private final CacheDependencyTracker cacheDependencies;
+    private final ProductPopularityService popularityService;
+    private final ProductEventPublisher eventPublisher;
+
+    // Tri sur une clé non indexée : nombre d'IDs triés par une seule requête "id IN (...)"
+    @Value("${search.max-sorted-ids:10000}")
+    private int maxSortedSearchIds = 10_000;
 
     @Transactional(readOnly = true)
     // @Cacheable(value = "products", key = "#pageable.pageNumber + '-' +
@@ -41,11 +67,122 @@ public class ProductService {
             Pageable pageable) {
         log.info("Fetching products from database (not cached) with filters");
 
+        if (StringUtils.hasText(search) && searchIndex.isReady()) {
+            Sort.Order indexedOrder = indexedSortOrder(pageable.getSort());
+            if (pageable.isPaged() && indexedOrder != null) {
+                // Tri sur une clé indexée : l'index ne retient que les IDs de la page, quel que soit le nombre de résultats
+                int end = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+                ProductSearchIndex.SortedPage sorted = searchIndex.searchSorted(search, categoryId, minPrice, maxPrice,
+                        indexedOrder.getProperty(), indexedOrder.isDescending(), null, end);
+                int from = (int) Math.min(pageable.getOffset(), sorted.ids().size());
+                return new PageImpl<>(findAllInOrder(sorted.ids().subList(from, sorted.ids().size())),
+                        pageable, sorted.totalMatches());
+            }
+
+            List<Long> matchingIds = searchIndex.search(search, categoryId, minPrice, maxPrice);
+            if (matchingIds.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            if (pageable.isUnpaged()) {
+                return new PageImpl<>(findAllInOrder(matchingIds), pageable, matchingIds.size());
+            }
+            if (pageable.getSort().isUnsorted()) {
+                // Pas de tri explicite : ordre de pertinence, pagination sur la liste de l'index
+                int from = (int) Math.min(pageable.getOffset(), matchingIds.size());
+                int to = Math.min(from + pageable.getPageSize(), matchingIds.size());
+                return new PageImpl<>(findAllInOrder(matchingIds.subList(from, to)), pageable, matchingIds.size());
+            }
+            if (matchingIds.size() <= maxSortedSearchIds) {
+                // Tri explicite : la base trie et pagine les IDs déjà filtrés par l'index
+                return convertToDtoPage(productRepository.findAll(ProductSpecification.hasIdIn(matchingIds), pageable));
+            }
+            return sortInChunks(matchingIds, pageable);
+        }
+
         org.springframework.data.jpa.domain.Specification<Product> spec = com.ecommerce.product.repository.ProductSpecification
                 .getProductsByFilter(categoryId, minPrice, maxPrice, search);
 
-        return productRepository.findAll(spec, pageable)
-                .map(this::convertToDto);
+        return convertToDtoPage(productRepository.findAll(spec, pageable));
+    }
+
+    /**
+     * Pagination par curseur (opt-in) : pas de COUNT(*), pas d'OFFSET.
+     * Le coût d'une page ne dépend plus de sa profondeur.
+     */
+    @Transactional(readOnly = true)
+    public ProductCursorPage getProductsAfter(
+            Long categoryId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            String search,
+            String cursorToken,
+            Sort sort,
+            int size) {
+        ProductCursor after = StringUtils.hasText(cursorToken) ? ProductCursor.decode(cursorToken) : null;
+
+        String sortField = "id";
+        boolean descending = false;
+        Sort.Order order = sort.stream().findFirst().orElse(null);
+        if (order != null) {
+            sortField = order.getProperty();
+            descending = order.isDescending();
+            if (!ProductCursor.SORT_FIELDS.contains(sortField)) {
+                throw new IllegalArgumentException("Cursor pagination supports sort by " + ProductCursor.SORT_FIELDS);
+            }
+        } else if (after != null) {
+            sortField = after.sortField();
+            descending = after.descending();
+        }
+        if (after != null && (!after.sortField().equals(sortField) || after.descending() != descending)) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+
+        ProductKeysetQuery.ProductKeysetQueryBuilder query = ProductKeysetQuery.builder()
+                .categoryId(categoryId)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .sortField(sortField)
+                .descending(descending)
+                .after(after)
+                .limit(size + 1); // Une ligne de plus pour savoir s'il reste une page
+
+        List<Product> products;
+        boolean hasNext;
+        if (StringUtils.hasText(search) && searchIndex.isReady()) {
+            // L'index trie sur la clé du curseur et ne renvoie qu'une page d'IDs
+            List<Long> pageIds = searchIndex.searchSorted(
+                    search, categoryId, minPrice, maxPrice, sortField, descending, after, size + 1).ids();
+            hasNext = pageIds.size() > size;
+            products = findProductsInOrder(hasNext ? pageIds.subList(0, size) : pageIds);
+        } else {
+            if (StringUtils.hasText(search)) {
+                query.nameContains(search);
+            }
+            products = productRepository.findKeysetPage(query.build());
+            hasNext = products.size() > size;
+        }
+        if (products.size() > size) {
+            products = products.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasNext && !products.isEmpty()) {
+            Product last = products.get(products.size() - 1);
+            String lastValue = switch (sortField) {
+                case "price" -> last.getPrice().toPlainString();
+                case "name" -> last.getName();
+                default -> String.valueOf(last.getId());
+            };
+            nextCursor = new ProductCursor(sortField, descending, last.getId(), lastValue).encode();
+        }
+
+        List<ProductDto> content = convertToDtos(products);
+        return ProductCursorPage.builder()
+                .content(content)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .size(content.size())
+                .build();
     }
 
     @Transactional(readOnly = true)
@@ -55,22 +192,20 @@ public class ProductService {
 
     @Transactional(readOnly = true)
     public List<ProductDto> getProductsByCategory(Long categoryId) {
-        return productRepository.findByCategoryId(categoryId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(productRepository.findByCategoryId(categoryId));
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "searchResults", key = "#keyword")
+    @Cacheable(value = "searchResults", key = "#keyword", sync = true)
     public List<ProductDto> searchProducts(String keyword) {
         log.info("Searching products for keyword: {} (not cached)", keyword);
-        return productRepository.findByNameContainingIgnoreCase(keyword).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return searchIndex.isReady()
+                ? findAllInOrder(searchIndex.search(keyword))
+                : convertToDtos(productRepository.findByNameContainingIgnoreCase(keyword));
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "productDetails", key = "#id")
+    @Cacheable(value = "productDetails", key = "#id", sync = true)
     public ProductDto getProductById(Long id) {
         log.info("Fetching product {} from database (not cached)", id);
         Product product = productRepository.findById(id)
@@ -80,7 +215,6 @@ public class ProductService {
     }
 
     @Transactional
-    @CacheEvict(value = { "products", "popularProducts", "searchResults" }, allEntries = true)
     public ProductDto createProduct(CreateProductRequest request) {
         Category category = null;
         if (request.getCategoryId() != null) {
@@ -98,15 +232,25 @@ public class ProductService {
                 .build();
 
         product = productRepository.save(product);
-        log.info("Product created and cache cleared: {}", product.getName());
-        return convertToDto(product);
+        ProductDto dto = convertToDto(product);
+        indexAndPublishAfterCommit(product, dto);
+        // Un nouveau produit n'apparaît dans aucune entrée existante, sauf les recherches qu'il satisferait
+        // et les listes populaires complétées par les nouveautés
+        String name = product.getName();
+        String description = product.getDescription();
+        afterCommit(() -> {
+            cacheDependencies.evictMatchingSearches(name, description);
+            cacheDependencies.evictPopularListings();
+        });
+        log.info("Product created and dependent cache entries evicted: {}", product.getName());
+        return dto;
     }
 
     @Transactional
     @CachePut(value = "productDetails", key = "#id")
-    @CacheEvict(value = { "products", "searchResults", "popularProducts" }, allEntries = true)
     public ProductDto updateProduct(Long id, UpdateProductRequest request) {
-        Product product = productRepository.findById(id)
+        // Nouveau stock absolu : ligne verrouillée, le delta propagé aux compteurs de réservation est celui écrit en base
+        Product product = (request.getStockQuantity() != null ? productRepository.findByIdForUpdate(id) : productRepository.findById(id))
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         if (request.getName() != null) {
@@ -118,81 +262,232 @@ public class ProductService {
         if (request.getPrice() != null) {
             product.setPrice(request.getPrice());
         }
+        int stockDelta = 0;
         if (request.getStockQuantity() != null) {
+            int previousStock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+            stockDelta = request.getStockQuantity() - previousStock;
             product.setStockQuantity(request.getStockQuantity());
         }
         if (request.getCategoryId() != null) {
             Category category = categoryRepository.findById(request.getCategoryId())
                     .orElseThrow(() -> new RuntimeException("Category not found"));
+            Long previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
             product.setCategory(category);
+            afterCommit(() -> popularityService.moveCategory(id, previousCategoryId, category.getId()));
         }
         if (request.getImages() != null) {
             product.setImages(request.getImages());
         }
 
         product = productRepository.save(product);
+        if (stockDelta != 0) {
+            int delta = stockDelta;
+            afterCommit(() -> stockReservationService.adjustAvailable(id, delta));
+        }
+
+        // Entrées qui listaient l'ancienne version + recherches que la nouvelle version satisferait
+        String name = product.getName();
+        String description = product.getDescription();
+        afterCommit(() -> {
+            cacheDependencies.evictProduct(id);
+            cacheDependencies.evictMatchingSearches(name, description);
+        });
+
+        ProductDto dto = convertToDto(product);
+        indexAndPublishAfterCommit(product, dto);
         log.info("Product updated and cache refreshed: {}", product.getName());
-        return convertToDto(product);
+        return dto;
     }
 
     @Transactional
-    @CacheEvict(value = { "products", "productDetails", "popularProducts", "searchResults" }, allEntries = true)
+    @CacheEvict(value = "productDetails", key = "#id")
     public void deleteProduct(Long id) {
-        if (!productRepository.existsById(id)) {
-            throw new RuntimeException("Product not found");
-        }
-        productRepository.deleteById(id);
-        log.info("Product deleted and cache cleared: {}", id);
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        productRepository.delete(product);
+        afterCommit(() -> {
+            long version = System.currentTimeMillis();
+            searchIndex.remove(id, version);
+            cacheDependencies.evictProduct(id);
+            popularityService.remove(id, categoryId);
+            eventPublisher.productDeleted(id, version);
+        });
+        log.info("Product deleted and dependent cache entries evicted: {}", id);
     }
 
     @Transactional
-    @CachePut(value = "productDetails", key = "#productId")
+    @CacheEvict(value = "productDetails", key = "#productId")
     public void updateStock(Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        int newStock = product.getStockQuantity() + quantity;
-        if (newStock < 0) {
+        // UPDATE conditionnel : pas de lecture-modification-écriture, donc pas de mise à jour perdue
+        if (productRepository.adjustStock(productId, quantity) == 0) {
+            if (!productRepository.existsById(productId)) {
+                throw new RuntimeException("Product not found");
+            }
             throw new RuntimeException("Insufficient stock");
         }
 
-        product.setStockQuantity(newStock);
-        productRepository.save(product);
-        log.info("Stock updated for product {}: new quantity = {}", productId, newStock);
+        afterCommit(() -> {
+            stockReservationService.adjustAvailable(productId, quantity);
+            eventPublisher.stockChanged(List.of(productId));
+        });
+        log.info("Stock updated for product {}: delta = {}", productId, quantity);
     }
 
-    // Nouvelle méthode: Produits populaires (cachés 30 min)
+    // Produits populaires : classement des ventes (décroissant dans le temps), cachés 30 min
     @Transactional(readOnly = true)
-    @Cacheable(value = "popularProducts")
-    public List<ProductDto> getPopularProducts() {
-        log.info("Fetching popular products from database (not cached)");
-        return productRepository.findTop10ByOrderByCreatedAtDesc().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    @Cacheable(value = "popularProducts", key = "(#categoryId != null ? 'category:' + #categoryId : 'top') + ':' + #limit", sync = true)
+    public List<ProductDto> getPopularProducts(Long categoryId, int limit) {
+        log.info("Fetching popular products for category {} (not cached)", categoryId);
+        List<ProductDto> products = findAllInOrder(popularityService.topProducts(categoryId, limit));
+
+        if (products.size() < limit) {
+            // Pas encore assez de ventes : on complète avec les nouveautés
+            List<Product> newest = categoryId != null
+                    ? productRepository.findByCategoryIdOrderByCreatedAtDesc(categoryId, PageRequest.of(0, limit))
+                    : productRepository.findByOrderByCreatedAtDesc(PageRequest.of(0, limit));
+            java.util.Set<Long> ranked = products.stream().map(ProductDto::getId).collect(Collectors.toSet());
+            convertToDtos(newest.stream().filter(p -> !ranked.contains(p.getId())).toList()).stream()
+                    .limit(limit - products.size())
+                    .forEach(products::add);
+        }
+        return products;
     }
 
-    @Transactional
+    /**
+     * Vente directe : passe par le moteur de réservation (réservation puis commit immédiat),
+     * le stock déjà réservé par des checkouts en cours n'est donc pas revendu.
+     */
+    @CacheEvict(value = "productDetails", key = "#productId")
     public void reduceStock(Long productId, Integer quantity) {
-        // CORRECTION : Utiliser findById directement pour avoir l'Entité, pas le DTO
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+        stockReservationService.consume(productId, quantity);
+        log.info("📉 Stock reduced for product {} by {}", productId, quantity);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductDto> getProductsByIds(List<Long> ids) {
+        return convertToDtos(productRepository.findByIdIn(ids));
+    }
+
+    private List<Product> findProductsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Product> productsById = productRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(productsById::get)
+                .filter(java.util.Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        if (product.getStockQuantity() < quantity) {
-            throw new IllegalArgumentException("Stock insuffisant pour le produit " + product.getName());
+    /**
+     * Tri explicite sur une clé non indexée, pour plus d'IDs qu'une seule requête n'en trie :
+     * chaque tranche ne garde que ses (offset + taille) premiers produits, qui contiennent forcément
+     * ceux de la page, et on recommence sur ces candidats jusqu'à tenir en une requête.
+     * Les résultats restent ceux de l'index : pas de repli sur LIKE.
+     */
+    private Page<ProductDto> sortInChunks(List<Long> matchingIds, Pageable pageable) {
+        long window = pageable.getOffset() + pageable.getPageSize();
+        if (window >= maxSortedSearchIds) {
+            // Une tranche ne se réduirait plus : au-delà, pagination par curseur sur une clé indexée
+            throw new IllegalArgumentException("Sorted search results are limited to the first " + maxSortedSearchIds
+                    + "; use cursor pagination or sort by " + ProductCursor.SORT_FIELDS);
         }
+        // L'id départage les égalités : les tranches et la requête finale suivent le même ordre total
+        Sort sort = pageable.getSort().getOrderFor("id") != null ? pageable.getSort() : pageable.getSort().and(Sort.by("id"));
 
-        int newStock = product.getStockQuantity() - quantity;
-        product.setStockQuantity(newStock);
+        List<Long> candidates = matchingIds;
+        boolean singleQuery;
+        do {
+            // Seule une passe en une requête donne les candidats dans l'ordre demandé
+            singleQuery = candidates.size() <= maxSortedSearchIds;
+            List<Long> kept = new ArrayList<>();
+            for (int from = 0; from < candidates.size(); from += maxSortedSearchIds) {
+                List<Long> chunk = candidates.subList(from, Math.min(from + maxSortedSearchIds, candidates.size()));
+                productRepository.findBy(ProductSpecification.hasIdIn(chunk),
+                                query -> query.sortBy(sort).limit((int) window).all())
+                        .forEach(product -> kept.add(product.getId()));
+            }
+            candidates = kept;
+        } while (!singleQuery);
 
-        productRepository.save(product);
-        log.info("📉 Stock reduced for product {}: {} -> {}", productId, product.getStockQuantity() + quantity,
-                newStock);
+        int from = (int) Math.min(pageable.getOffset(), candidates.size());
+        return new PageImpl<>(findAllInOrder(candidates.subList(from, candidates.size())), pageable, matchingIds.size());
     }
 
-    @Transactional(readOnly = true)
-    public List<ProductDto> getProductsByIds(List<Long> ids) {
-        return productRepository.findAllById(ids).stream()
-                .map(this::convertToDto)
+    // Tri unique sur une clé que l'index sait ordonner (celles de la pagination keyset), sinon null
+    private static Sort.Order indexedSortOrder(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.size() == 1 && ProductCursor.SORT_FIELDS.contains(orders.get(0).getProperty())) {
+            return orders.get(0);
+        }
+        return null;
+    }
+
+    // Charge les produits en conservant l'ordre des IDs (ordre de pertinence de l'index)
+    private List<ProductDto> findAllInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductDto> productsById = convertToDtos(productRepository.findByIdIn(ids)).stream()
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+        return ids.stream()
+                .map(productsById::get)
+                .filter(java.util.Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Une seule version par écriture : l'index local l'applique tout de suite, les autres réplicas via product-events
+    private void indexAndPublishAfterCommit(Product product, ProductDto dto) {
+        ProductSearchDocument document = new ProductSearchDocument(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getPrice());
+        afterCommit(() -> {
+            long version = System.currentTimeMillis();
+            searchIndex.index(document, version);
+            eventPublisher.productUpdated(dto, version);
+        });
+    }
+
+    // L'index ne doit refléter que des écritures validées en base
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private Page<ProductDto> convertToDtoPage(Page<Product> page) {
+        return new PageImpl<>(convertToDtos(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    /**
+     * Conversion d'une liste : les images de tous les produits sont chargées en une seule requête
+     * (la catégorie est déjà jointe par la requête de liste), soit 2 requêtes quel que soit N.
+     */
+    private List<ProductDto> convertToDtos(List<Product> products) {
+        if (products.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> ids = products.stream().map(Product::getId).collect(Collectors.toList());
+        Map<Long, List<String>> imagesByProduct = new java.util.HashMap<>();
+        for (Object[] row : productRepository.findImagesByProductIds(ids)) {
+            imagesByProduct.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        return products.stream()
+                .map(product -> buildDto(product, imagesByProduct.getOrDefault(product.getId(), new ArrayList<>())))
                 .collect(Collectors.toList());
     }
 
@@ -207,6 +502,10 @@ public class ProductService {
             log.warn("Could not load images for product {}: {}", product.getId(), e.getMessage());
         }
 
+        return buildDto(product, imagesList);
+    }
+
+    private ProductDto buildDto(Product product, List<String> imagesList) {
         return ProductDto.builder()
                 .id(product.getId())
                 .name(product.getName())
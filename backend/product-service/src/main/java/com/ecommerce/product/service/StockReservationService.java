@@ -0,0 +1,459 @@
+package com.ecommerce.product.service;
+
+import com.ecommerce.product.dto.StockItemRequest;
+import com.ecommerce.product.dto.StockReservationDto;
+import com.ecommerce.product.dto.StockReservationRequest;
+import com.ecommerce.product.event.ProductEventPublisher;
+import com.ecommerce.product.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Réservation de stock en trois temps : reserve (avec TTL) → commit (commande confirmée) ou release.
+ *
+ * Les réservations vivent dans Redis : un compteur "disponible" par produit (stock en base moins
+ * les réservations actives) est décrémenté atomiquement par script Lua, sans verrou sur la ligne
+ * products. La base n'est touchée qu'au commit, par un UPDATE conditionnel.
+ *
+ * Une réservation prise en charge par un commit reste tracée jusqu'à sa clôture : après un crash entre
+ * la base et Redis, le balayage achève le commit (la base sait s'il a déjà été appliqué). Les compteurs
+ * sont en outre réconciliés périodiquement avec la base pour corriger les dérives restantes.
+ *
+ * Toutes les clés touchées par les scripts leur sont passées dans KEYS (aucune n'est construite côté Lua) :
+ * le contenu d'une réservation ne change pas après sa création, il est lu avant la clôture.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+
+    private static final String AVAILABLE_PREFIX = "stock:available:";
+    private static final String RESERVED_PREFIX = "stock:reserved:";
+    private static final String RESERVATION_PREFIX = "stock:reservation:";
+    private static final String VERSION_PREFIX = "stock:version:";
+    private static final String COMMITTING_PREFIX = "stock:committing:";
+    private static final String EXPIRY_KEY = "stock:reservations:expiry";
+    private static final String CLAIMED_KEY = "stock:reservations:claimed";
+    private static final int SWEEP_BATCH_SIZE = 200;
+    private static final int RECONCILE_BATCH_SIZE = 200;
+
+    private static final RedisScript<String> RESERVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/stock-reserve.lua"), String.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/stock-claim.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/stock-release.lua"), Long.class);
+    private static final RedisScript<Long> ADJUST_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/stock-adjust.lua"), Long.class);
+    private static final RedisScript<Long> RECONCILE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/stock-reconcile.lua"), Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ProductEventPublisher eventPublisher;
+
+    @Value("${stock.reservation.default-ttl-seconds:600}")
+    private long defaultTtlSeconds;
+
+    @Value("${stock.reservation.max-ttl-seconds:3600}")
+    private long maxTtlSeconds;
+
+    // Au-delà, un commit pris en charge sans être clôturé est considéré comme interrompu
+    @Value("${stock.reservation.claim-timeout-ms:60000}")
+    private long claimTimeoutMs;
+
+    public StockReservationDto reserve(StockReservationRequest request) {
+        Map<Long, Integer> items = mergeItems(request.getItems());
+        String owner = requireOwner(request.getOwner());
+        long ttlSeconds = request.getTtlSeconds() != null
+                ? Math.min(Math.max(request.getTtlSeconds(), 1), maxTtlSeconds)
+                : defaultTtlSeconds;
+
+        String reservationId = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+
+        List<String> keys = new ArrayList<>();
+        keys.addAll(reservationKeys(reservationId));
+        keys.add(EXPIRY_KEY);
+        for (Long productId : items.keySet()) {
+            keys.add(AVAILABLE_PREFIX + productId);
+            keys.add(RESERVED_PREFIX + productId);
+        }
+
+        String result = executeReserve(keys, reservationId, expiresAt, owner, items, null);
+        if (result != null && result.startsWith("UNINITIALIZED:")) {
+            // Premier accès à ces produits : le script initialise les compteurs depuis la base
+            result = executeReserve(keys, reservationId, expiresAt, owner, items, loadDatabaseStock(items));
+        }
+
+        if (result == null) {
+            throw new IllegalStateException("Stock reservation failed for " + reservationId);
+        }
+        if (result.startsWith("INSUFFICIENT:")) {
+            throw new IllegalStateException("Stock insuffisant pour le produit " + result.substring(13));
+        }
+        if (!"OK".equals(result)) {
+            throw new IllegalStateException("Stock reservation failed: " + result);
+        }
+
+        log.info("🔒 Stock reserved {} for {} products (ttl {}s)", reservationId, items.size(), ttlSeconds);
+        return StockReservationDto.builder()
+                .reservationId(reservationId)
+                .items(toItemList(items))
+                .expiresAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault()))
+                .build();
+    }
+
+    /**
+     * Valide la réservation : le stock est décrémenté en base pour de bon.
+     * Idempotent : un second commit de la même réservation ne fait rien.
+     * Seul le propriétaire déclaré à la réservation peut la valider.
+     *
+     * @return false si un autre commit de cette réservation est en cours (à retenter)
+     */
+    public boolean commit(String reservationId, String owner) {
+        // Tri par productId : ordre de verrouillage constant entre commits concurrents
+        Map<Long, Integer> items = items(reservationId);
+        List<String> keys = new ArrayList<>(reservationKeys(reservationId));
+        keys.add(EXPIRY_KEY);
+        keys.add(CLAIMED_KEY);
+        for (Long productId : items.keySet()) {
+            keys.add(COMMITTING_PREFIX + productId);
+        }
+        List<?> claim = stringRedisTemplate.execute(CLAIM_SCRIPT, keys,
+                reservationId, String.valueOf(System.currentTimeMillis()), requireOwner(owner));
+
+        String status = claim == null || claim.isEmpty() ? "NOT_FOUND" : String.valueOf(claim.get(0));
+        if ("FORBIDDEN".equals(status)) {
+            throw new AccessDeniedException("Reservation " + reservationId + " belongs to another checkout");
+        }
+        if ("COMMITTED".equals(status)) {
+            log.info("Reservation {} already committed", reservationId);
+            return true;
+        }
+        if ("IN_PROGRESS".equals(status)) {
+            log.info("Reservation {} is already being committed", reservationId);
+            return false;
+        }
+        if (!"OK".equals(status)) {
+            throw new IllegalStateException("Reservation not found or expired: " + reservationId);
+        }
+
+        applyCommit(reservationId, items);
+        return true;
+    }
+
+    /**
+     * Décrément en base puis clôture Redis. La ligne stock_reservation_commits, écrite dans la même
+     * transaction, rend l'opération rejouable : un second passage ne décrémente pas.
+     */
+    private void applyCommit(String reservationId, Map<Long, Integer> items) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (productRepository.recordReservationCommit(reservationId) == 0) {
+                    log.info("Reservation {} already applied in database", reservationId);
+                    return;
+                }
+                items.forEach((productId, quantity) -> {
+                    if (productRepository.decrementStock(productId, quantity) == 0) {
+                        throw new IllegalStateException("Stock insuffisant en base pour le produit " + productId);
+                    }
+                });
+            });
+        } catch (RuntimeException e) {
+            log.error("❌ Commit failed for reservation {}, releasing stock: {}", reservationId, e.getMessage());
+            close(reservationId, "rollback", "", items);
+            throw e;
+        }
+
+        close(reservationId, "commit", "", items);
+        evictProductDetails(items.keySet());
+        eventPublisher.stockChanged(items.keySet());
+        log.info("✅ Reservation {} committed", reservationId);
+    }
+
+    /**
+     * Décrément direct (hors checkout) soumis aux mêmes règles qu'un checkout : réservation
+     * contre le compteur disponible puis commit immédiat.
+     */
+    public void consume(Long productId, int quantity) {
+        String owner = "direct:" + UUID.randomUUID();
+        StockReservationRequest request = new StockReservationRequest();
+        request.setItems(List.of(new StockItemRequest(productId, quantity)));
+        request.setOwner(owner);
+        commit(reserve(request).getReservationId(), owner);
+    }
+
+    /**
+     * Annule la réservation et rend le stock. Retourne false si elle n'existe plus
+     * (déjà validée, expirée et libérée, ou inconnue).
+     */
+    public boolean release(String reservationId, String owner) {
+        long result = close(reservationId, "release", requireOwner(owner), items(reservationId));
+        if (result < 0) {
+            throw new AccessDeniedException("Reservation " + reservationId + " belongs to another checkout");
+        }
+        boolean released = result > 0;
+        if (released) {
+            log.info("🔓 Reservation {} released", reservationId);
+        }
+        return released;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:5000}")
+    public void releaseExpiredReservations() {
+        recoverInterruptedCommits();
+        try {
+            Set<String> expired = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(EXPIRY_KEY, 0, System.currentTimeMillis(), 0, SWEEP_BATCH_SIZE);
+            if (expired == null || expired.isEmpty()) {
+                return;
+            }
+
+            long released = 0;
+            for (String reservationId : expired) {
+                released += Math.max(close(reservationId, "release", "", items(reservationId)), 0);
+            }
+            log.info("⏱️ Released {} expired stock reservations", released);
+        } catch (Exception e) {
+            log.warn("Failed to sweep expired stock reservations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Achève les commits pris en charge puis interrompus (crash entre la prise en charge et la clôture).
+     * Le commit a été demandé : on le rejoue, la base refusant un second décrément.
+     */
+    void recoverInterruptedCommits() {
+        try {
+            Set<String> stalled = stringRedisTemplate.opsForZSet().rangeByScore(
+                    CLAIMED_KEY, 0, System.currentTimeMillis() - claimTimeoutMs, 0, SWEEP_BATCH_SIZE);
+            if (stalled == null || stalled.isEmpty()) {
+                return;
+            }
+
+            for (String reservationId : stalled) {
+                Map<Long, Integer> items = items(reservationId);
+                if (items.isEmpty()) {
+                    // Clôturée entre-temps
+                    stringRedisTemplate.opsForZSet().remove(CLAIMED_KEY, reservationId);
+                    continue;
+                }
+                try {
+                    applyCommit(reservationId, items);
+                    log.warn("🩹 Interrupted commit of reservation {} completed", reservationId);
+                } catch (RuntimeException e) {
+                    log.warn("Interrupted commit of reservation {} rolled back: {}", reservationId, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to recover interrupted stock commits: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcule les compteurs initialisés depuis la base : disponible = stock en base - réservé.
+     * Le compteur réservé de chaque produit tient lieu d'index des réservations actives : le script ne lit
+     * que les clés des produits du lot, sans parcourir les réservations. L'UPDATE conditionnel du commit reste le dernier rempart ; la réconciliation corrige les dérives
+     * laissées par un crash entre la base et Redis.
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.reconcile-interval-ms:300000}",
+            initialDelayString = "${stock.reservation.reconcile-interval-ms:300000}")
+    public void reconcileAvailableCounters() {
+        try {
+            long corrected = 0;
+            List<Long> batch = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(AVAILABLE_PREFIX + "*").count(RECONCILE_BATCH_SIZE).build();
+            try (Cursor<String> keys = stringRedisTemplate.scan(options)) {
+                while (keys.hasNext()) {
+                    batch.add(Long.valueOf(keys.next().substring(AVAILABLE_PREFIX.length())));
+                    if (batch.size() == RECONCILE_BATCH_SIZE) {
+                        corrected += reconcile(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                corrected += reconcile(batch);
+            }
+            if (corrected > 0) {
+                log.warn("🧮 Reconciled {} stock counters with the database", corrected);
+            }
+
+            // Les marques de commit ne servent qu'à la reprise : un jour suffit largement
+            transactionTemplate.executeWithoutResult(tx ->
+                    productRepository.deleteReservationCommitsBefore(LocalDateTime.now().minusDays(1)));
+        } catch (Exception e) {
+            log.warn("Failed to reconcile stock counters: {}", e.getMessage());
+        }
+    }
+
+    private long reconcile(List<Long> productIds) {
+        // Versions lues avant la base : un commit ou un ajustement intercalé écarte le produit
+        List<String> versions = stringRedisTemplate.opsForValue()
+                .multiGet(productIds.stream().map(id -> VERSION_PREFIX + id).toList());
+        Map<Long, Integer> databaseStock = new HashMap<>();
+        for (Object[] row : productRepository.findStockQuantities(productIds)) {
+            databaseStock.put((Long) row[0], row[1] != null ? (Integer) row[1] : 0);
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            Long productId = productIds.get(i);
+            Integer stock = databaseStock.get(productId);
+            if (stock == null) {
+                continue; // Produit supprimé
+            }
+            keys.addAll(productKeys(productId));
+            String version = versions != null ? versions.get(i) : null;
+            args.add(String.valueOf(stock));
+            args.add(version != null ? version : "0");
+        }
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long corrected = stringRedisTemplate.execute(RECONCILE_SCRIPT, keys, args.toArray());
+        return corrected != null ? corrected : 0;
+    }
+
+    /**
+     * Répercute une variation directe du stock en base (admin, reduceStock) sur le compteur
+     * disponible. Sans effet tant que le compteur n'a pas été initialisé par une réservation.
+     */
+    public void adjustAvailable(Long productId, int delta) {
+        try {
+            stringRedisTemplate.execute(ADJUST_SCRIPT,
+                    List.of(AVAILABLE_PREFIX + productId, VERSION_PREFIX + productId), String.valueOf(delta));
+        } catch (Exception e) {
+            log.warn("Could not adjust available stock counter for product {}: {}", productId, e.getMessage());
+        }
+    }
+
+    private String executeReserve(List<String> keys, String reservationId, long expiresAt, String owner,
+                                  Map<Long, Integer> items, Map<Long, Integer> databaseStock) {
+        List<String> args = new ArrayList<>();
+        args.add(reservationId);
+        args.add(String.valueOf(expiresAt));
+        args.add(owner);
+        items.forEach((productId, quantity) -> {
+            args.add(String.valueOf(productId));
+            args.add(String.valueOf(quantity));
+            args.add(databaseStock != null ? String.valueOf(databaseStock.get(productId)) : "-1");
+        });
+        return stringRedisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+    }
+
+    private Map<Long, Integer> loadDatabaseStock(Map<Long, Integer> items) {
+        Map<Long, Integer> stock = new HashMap<>();
+        for (Object[] row : productRepository.findStockQuantities(items.keySet())) {
+            stock.put((Long) row[0], row[1] != null ? (Integer) row[1] : 0);
+        }
+        for (Long productId : items.keySet()) {
+            if (!stock.containsKey(productId)) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+        }
+        return stock;
+    }
+
+    // owner vide : clôture interne (balayage, issue du commit), sans contrôle du propriétaire
+    private long close(String reservationId, String mode, String owner, Map<Long, Integer> items) {
+        List<String> keys = new ArrayList<>(reservationKeys(reservationId));
+        keys.add(EXPIRY_KEY);
+        keys.add(CLAIMED_KEY);
+        List<String> args = new ArrayList<>(List.of(reservationId, mode, owner));
+        for (Long productId : items.keySet()) {
+            keys.addAll(productKeys(productId));
+            args.add(String.valueOf(productId));
+        }
+        Long result = stringRedisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray());
+        return result != null ? result : 0;
+    }
+
+    /**
+     * Contenu de la réservation, trié par productId. Vide si elle n'existe plus.
+     */
+    private Map<Long, Integer> items(String reservationId) {
+        Map<Long, Integer> items = new TreeMap<>();
+        stringRedisTemplate.opsForHash().entries(RESERVATION_PREFIX + reservationId).forEach((productId, quantity) ->
+                items.put(Long.valueOf(productId.toString()), Integer.valueOf(quantity.toString())));
+        return items;
+    }
+
+    // Hash, propriétaire et marque de commit de la réservation
+    private static List<String> reservationKeys(String reservationId) {
+        String key = RESERVATION_PREFIX + reservationId;
+        return List.of(key, key + ":owner", key + ":committed");
+    }
+
+    // Disponible, réservé, version du stock en base et commits en cours d'un produit
+    private static List<String> productKeys(Long productId) {
+        return List.of(AVAILABLE_PREFIX + productId, RESERVED_PREFIX + productId,
+                VERSION_PREFIX + productId, COMMITTING_PREFIX + productId);
+    }
+
+    private static String requireOwner(String owner) {
+        if (!StringUtils.hasText(owner)) {
+            throw new IllegalArgumentException("A reservation owner is required");
+        }
+        return owner;
+    }
+
+    /**
+     * Regroupe les lignes par produit, triées par productId (ordre de verrouillage constant)
+     */
+    static Map<Long, Integer> mergeItems(List<StockItemRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one item is required");
+        }
+        Map<Long, Integer> merged = new TreeMap<>();
+        for (StockItemRequest item : items) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Each item requires a productId and a positive quantity");
+            }
+            merged.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return merged;
+    }
+
+    private List<StockItemRequest> toItemList(Map<Long, Integer> items) {
+        List<StockItemRequest> list = new ArrayList<>();
+        items.forEach((productId, quantity) -> list.add(new StockItemRequest(productId, quantity)));
+        return list;
+    }
+
+    private void evictProductDetails(Set<Long> productIds) {
+        Cache cache = cacheManager.getCache("productDetails");
+        if (cache != null) {
+            productIds.forEach(cache::evict);
+        }
+    }
+}
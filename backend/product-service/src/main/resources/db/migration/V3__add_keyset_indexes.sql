@@ -0,0 +1,16 @@
+-- ===================================
+-- PRODUCT SERVICE - KEYSET PAGINATION INDEXES
+-- ===================================
+-- Pagination par curseur : WHERE (clé, id) > (:clé, :id) ORDER BY clé, id
+
+CREATE INDEX IF NOT EXISTS idx_product_price_id
+ON products(price, id);
+
+CREATE INDEX IF NOT EXISTS idx_product_name_id
+ON products(name, id);
+
+CREATE INDEX IF NOT EXISTS idx_product_category_price_id
+ON products(category_id, price, id);
+
+CREATE INDEX IF NOT EXISTS idx_product_category_id_id
+ON products(category_id, id);
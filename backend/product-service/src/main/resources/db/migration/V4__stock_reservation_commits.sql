@@ -0,0 +1,13 @@
+-- ===================================
+-- PRODUCT SERVICE - STOCK RESERVATION COMMITS
+-- ===================================
+-- Une ligne par réservation validée, écrite dans la transaction du décrément :
+-- rejouer la validation (reprise après crash, commit concurrent) ne décrémente jamais deux fois
+
+CREATE TABLE IF NOT EXISTS stock_reservation_commits (
+    reservation_id VARCHAR(64) PRIMARY KEY,
+    committed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_commits_committed_at
+ON stock_reservation_commits(committed_at);
@@ -0,0 +1,21 @@
+-- ===================================
+-- PRODUCT SERVICE - PRODUCT IMAGES POSITION
+-- ===================================
+-- Rang de l'image dans la liste du produit : le chargement par lot des images
+-- peut les trier, au lieu de dépendre de l'ordre physique des lignes
+
+ALTER TABLE product_images ADD COLUMN IF NOT EXISTS position INTEGER;
+
+-- Lignes existantes : ordre d'insertion, le seul connu jusqu'ici
+UPDATE product_images pi
+SET position = ranked.position
+FROM (
+    SELECT ctid, ROW_NUMBER() OVER (PARTITION BY product_id ORDER BY ctid) - 1 AS position
+    FROM product_images
+) ranked
+WHERE pi.ctid = ranked.ctid;
+
+ALTER TABLE product_images ALTER COLUMN position SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_product_images_product_position
+ON product_images(product_id, position);
@@ -0,0 +1,12 @@
+-- Déplace le score d'un produit d'un classement de catégorie à un autre
+-- KEYS[1] = ancien classement, KEYS[2] = nouveau classement, KEYS[3] = registre des classements
+-- ARGV[1] = produit
+-- Atomique : une renormalisation ne peut pas s'intercaler entre la lecture et l'écriture du score.
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+if not score then
+    return 0
+end
+redis.call('ZREM', KEYS[1], ARGV[1])
+redis.call('ZINCRBY', KEYS[2], score, ARGV[1])
+redis.call('SADD', KEYS[3], KEYS[2])
+return 1
@@ -0,0 +1,30 @@
+-- Comptabilise une vente dans les classements de popularité, une seule fois par événement
+-- KEYS[1] = marqueur de l'événement, KEYS[2] = origine des poids, KEYS[3] = registre des classements
+-- KEYS[3 + i] = classement à incrémenter
+-- ARGV[1] = TTL du marqueur en secondes (0 = pas de déduplication)
+-- ARGV[2] = maintenant (ms), origine des poids si aucune n'est encore fixée
+-- ARGV[3] = date de la vente (ms), ARGV[4] = demi-vie (ms)
+-- ARGV[3 + 2i] / ARGV[4 + 2i] = produit / quantité pour KEYS[3 + i]
+-- Le marqueur et les incréments sont écrits ensemble : un crash ne peut plus perdre une vente
+-- dont l'événement serait déjà marqué. Retourne 1 si la vente est comptée, 0 si déjà vue.
+local ttl = tonumber(ARGV[1])
+if ttl > 0 and not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ttl) then
+    return 0
+end
+
+local origin = redis.call('GET', KEYS[2])
+if not origin then
+    origin = ARGV[2]
+    redis.call('SET', KEYS[2], origin)
+end
+
+-- Poids relatif à l'origine courante, que la renormalisation déplace vers l'avant
+local weight = 2 ^ ((tonumber(ARGV[3]) - tonumber(origin)) / tonumber(ARGV[4]))
+
+for i = 4, #KEYS do
+    local member = ARGV[2 * i - 3]
+    local quantity = tonumber(ARGV[2 * i - 2])
+    redis.call('ZINCRBY', KEYS[i], string.format('%.17g', quantity * weight), member)
+    redis.call('SADD', KEYS[3], KEYS[i])
+end
+return 1
@@ -0,0 +1,27 @@
+-- Ramène les scores de popularité à une échelle raisonnable : les poids croissent comme 2^(t / demi-vie)
+-- KEYS[1] = origine des poids, KEYS[2] = registre des classements, KEYS[3..] = tous les classements du registre
+-- ARGV[1] = origine lue (ms), ARGV[2] = nouvelle origine (ms), ARGV[3] = facteur appliqué aux scores
+-- Ne fait rien si l'origine a changé ou si un classement a été créé depuis la lecture du registre.
+-- Retourne 1 si les scores ont été ramenés, 0 sinon.
+if redis.call('GET', KEYS[1]) ~= ARGV[1] or redis.call('SCARD', KEYS[2]) ~= #KEYS - 2 then
+    return 0
+end
+
+local factor = tonumber(ARGV[3])
+local BATCH = 500
+for i = 3, #KEYS do
+    -- Lecture complète avant réécriture : les scores qui tombent à 0 changeraient de rang en cours de route
+    local entries = redis.call('ZRANGE', KEYS[i], 0, -1, 'WITHSCORES')
+    local args = {}
+    for j = 1, #entries, 2 do
+        args[#args + 1] = string.format('%.17g', tonumber(entries[j + 1]) * factor)
+        args[#args + 1] = entries[j]
+        if #args == 2 * BATCH or j + 1 == #entries then
+            redis.call('ZADD', KEYS[i], unpack(args))
+            args = {}
+        end
+    end
+end
+
+redis.call('SET', KEYS[1], ARGV[2])
+return 1
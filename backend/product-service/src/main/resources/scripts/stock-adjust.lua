@@ -0,0 +1,7 @@
+-- Répercute une variation du stock en base sur le compteur disponible, s'il est déjà initialisé
+-- KEYS[1] = stock disponible, KEYS[2] = version du stock en base, ARGV[1] = variation
+redis.call('INCR', KEYS[2])
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return redis.call('INCRBY', KEYS[1], ARGV[1])
+end
+return 0
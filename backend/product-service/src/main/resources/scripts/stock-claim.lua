@@ -0,0 +1,45 @@
+-- Prise en charge d'une réservation avant sa validation en base : elle passe du zset des expirations
+-- (le balayage ne la libère plus) à celui des réservations prises en charge, repris après un crash,
+-- et compte comme commit en cours pour chacun de ses produits (la réconciliation les écarte)
+-- KEYS[1] = hash de la réservation, KEYS[2] / KEYS[3] = propriétaire / marque de commit de la réservation
+-- KEYS[4] = zset des expirations, KEYS[5] = zset des prises en charge
+-- KEYS[5 + i] = commits en cours du produit i (produits du hash, lus avant l'appel : il ne change pas)
+-- ARGV[1] = id de réservation, ARGV[2] = maintenant (epoch ms), ARGV[3] = propriétaire
+-- Les réservations antérieures au suivi du propriétaire (sans clé :owner) restent acceptées
+local committed = redis.call('GET', KEYS[3])
+if committed then
+    if committed ~= '1' and committed ~= ARGV[3] then
+        return { 'FORBIDDEN' }
+    end
+    return { 'COMMITTED' }
+end
+
+local owner = redis.call('GET', KEYS[2])
+if owner and owner ~= ARGV[3] then
+    return { 'FORBIDDEN' }
+end
+
+if redis.call('ZSCORE', KEYS[5], ARGV[1]) then
+    return { 'IN_PROGRESS' }
+end
+
+local expiresAt = redis.call('ZSCORE', KEYS[4], ARGV[1])
+if not expiresAt or tonumber(expiresAt) < tonumber(ARGV[2]) then
+    return { 'NOT_FOUND' }
+end
+
+local items = redis.call('HGETALL', KEYS[1])
+if #items ~= 2 * (#KEYS - 5) then
+    return { 'NOT_FOUND' }
+end
+
+redis.call('ZREM', KEYS[4], ARGV[1])
+redis.call('ZADD', KEYS[5], ARGV[2], ARGV[1])
+for i = 6, #KEYS do
+    redis.call('INCR', KEYS[i])
+end
+local result = { 'OK' }
+for _, value in ipairs(items) do
+    result[#result + 1] = value
+end
+return result
@@ -0,0 +1,21 @@
+-- Réconciliation des compteurs avec la base : disponible = stock en base - réservé
+-- (le compteur réservé est tenu par reserve / claim / release dans les mêmes scripts que le disponible ;
+-- les dérives viennent des crashs entre la base et Redis)
+-- KEYS[4i - 3 .. 4i] = disponible / réservé / version du stock en base / commits en cours du produit i
+-- ARGV[2i - 1] / ARGV[2i] = stock en base / version lue avant la base
+-- Un produit est ignoré si sa version a changé depuis la lecture en base (commit, ajustement)
+-- ou si un commit est en cours (base décrémentée, réservé pas encore). Retourne le nombre de compteurs corrigés.
+local corrected = 0
+for i = 1, #KEYS / 4 do
+    local available = KEYS[4 * i - 3]
+    if redis.call('EXISTS', available) == 1
+            and tonumber(redis.call('GET', KEYS[4 * i]) or '0') <= 0
+            and (redis.call('GET', KEYS[4 * i - 1]) or '0') == ARGV[2 * i] then
+        local expected = tonumber(ARGV[2 * i - 1]) - tonumber(redis.call('GET', KEYS[4 * i - 2]) or '0')
+        if tonumber(redis.call('GET', available)) ~= expected then
+            redis.call('SET', available, expected)
+            corrected = corrected + 1
+        end
+    end
+end
+return corrected
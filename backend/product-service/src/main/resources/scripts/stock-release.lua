@@ -0,0 +1,54 @@
+-- Clôture d'une réservation
+-- mode 'release'  : annulation ou expiration, ignorée si la réservation a déjà été prise en charge
+-- mode 'rollback' : la validation en base a échoué, le stock est rendu
+-- mode 'commit'   : la validation en base a réussi, le stock reste consommé
+-- KEYS[1] = hash de la réservation, KEYS[2] / KEYS[3] = propriétaire / marque de commit de la réservation
+-- KEYS[4] = zset des expirations, KEYS[5] = zset des prises en charge
+-- KEYS[5 + 4i - 3 .. 5 + 4i] = disponible / réservé / version du stock en base / commits en cours du produit i
+-- ARGV[1] = id de réservation, ARGV[2] = mode
+-- ARGV[3] = propriétaire attendu ('' pour les clôtures internes : balayage, issue du commit)
+-- ARGV[3 + i] = productId i (produits du hash, lus avant l'appel : il ne change pas)
+-- Retourne 1 si clôturée, 0 si introuvable ou déjà prise en charge, -1 si le propriétaire diffère
+local mode = ARGV[2]
+if mode == 'release' and not redis.call('ZSCORE', KEYS[4], ARGV[1]) then
+    return 0
+end
+
+local owner = redis.call('GET', KEYS[2])
+if ARGV[3] ~= '' and owner and owner ~= ARGV[3] then
+    return -1
+end
+
+local items = redis.call('HGETALL', KEYS[1])
+redis.call('ZREM', KEYS[4], ARGV[1])
+local claimed = redis.call('ZREM', KEYS[5], ARGV[1]) == 1
+if #items == 0 then
+    return 0
+end
+
+local quantities = {}
+for i = 1, #items, 2 do
+    quantities[items[i]] = tonumber(items[i + 1])
+end
+
+for i = 1, #ARGV - 3 do
+    local quantity = quantities[ARGV[3 + i]] or 0
+    local base = 5 + 4 * (i - 1)
+    if mode ~= 'commit' and redis.call('EXISTS', KEYS[base + 1]) == 1 then
+        redis.call('INCRBY', KEYS[base + 1], quantity)
+    end
+    redis.call('DECRBY', KEYS[base + 2], quantity)
+    if mode == 'commit' then
+        redis.call('INCR', KEYS[base + 3])
+    end
+    -- Prise en charge terminée ; un compteur absent (prise en charge antérieure à son suivi) reste absent
+    if claimed and tonumber(redis.call('DECR', KEYS[base + 4])) <= 0 then
+        redis.call('DEL', KEYS[base + 4])
+    end
+end
+redis.call('DEL', KEYS[1], KEYS[2])
+
+if mode == 'commit' then
+    redis.call('SET', KEYS[3], owner or '1', 'EX', 86400)
+end
+return 1
@@ -0,0 +1,37 @@
+-- Réservation atomique (tout ou rien) de plusieurs produits
+-- KEYS[1] = hash de la réservation, KEYS[2] / KEYS[3] = propriétaire / marque de commit de la réservation
+-- KEYS[4] = zset des expirations
+-- KEYS[4 + 2i - 1] / KEYS[4 + 2i] = stock disponible / stock réservé du produit i
+-- ARGV[1] = id de réservation, ARGV[2] = expiration (epoch ms), ARGV[3] = propriétaire
+-- ARGV[3i + 1] / ARGV[3i + 2] / ARGV[3i + 3] = productId / quantité / stock en base (-1 si non chargé)
+if redis.call('EXISTS', KEYS[1]) == 1 or redis.call('EXISTS', KEYS[3]) == 1 then
+    return 'DUPLICATE'
+end
+
+local count = (#KEYS - 4) / 2
+
+for i = 1, count do
+    local available = KEYS[3 + 2 * i]
+    local current = redis.call('GET', available)
+    if not current then
+        local dbStock = tonumber(ARGV[3 * i + 3])
+        if dbStock < 0 then
+            return 'UNINITIALIZED:' .. ARGV[3 * i + 1]
+        end
+        current = dbStock - tonumber(redis.call('GET', KEYS[4 + 2 * i]) or '0')
+        redis.call('SET', available, current)
+    end
+    if tonumber(current) < tonumber(ARGV[3 * i + 2]) then
+        return 'INSUFFICIENT:' .. ARGV[3 * i + 1]
+    end
+end
+
+for i = 1, count do
+    local quantity = tonumber(ARGV[3 * i + 2])
+    redis.call('DECRBY', KEYS[3 + 2 * i], quantity)
+    redis.call('INCRBY', KEYS[4 + 2 * i], quantity)
+    redis.call('HSET', KEYS[1], ARGV[3 * i + 1], quantity)
+end
+redis.call('SET', KEYS[2], ARGV[3])
+redis.call('ZADD', KEYS[4], ARGV[2], ARGV[1])
+return 'OK'
@@ -0,0 +1,132 @@
+package com.ecommerce.product;
+
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.ecommerce.common.kafka.EventPublisher;
+import com.ecommerce.common.kafka.KafkaProducerProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Producteur commun : envois avec clé et en-tête de type, réglages par topic, producteur idempotent
+ * et latence d'envoi mesurée par topic.
+ */
+class EventPublisherIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private EventPublisher eventPublisher;
+
+    @Autowired
+    private KafkaProducerProperties producerProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void eventsAreSentWithTheirKeyAndTypeHeader() throws Exception {
+        String topic = "publisher-test-" + UUID.randomUUID();
+        for (long version = 1; version <= 3; version++) {
+            eventPublisher.publish(topic, "42", event(42L, version)).get(30, TimeUnit.SECONDS);
+        }
+
+        List<ConsumerRecord<String, String>> records = consume(topic, 3);
+
+        assertThat(records).extracting(ConsumerRecord::key).containsOnly("42");
+        // Même clé, même partition : les versions arrivent dans l'ordre d'envoi
+        assertThat(records).extracting(ConsumerRecord::partition).containsOnly(records.get(0).partition());
+        List<Long> versions = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            JsonNode value = objectMapper.readTree(record.value());
+            versions.add(value.path("version").asLong());
+            assertThat(value.path("productId").asLong()).isEqualTo(42L);
+            Header type = record.headers().lastHeader("__TypeId__");
+            assertThat(new String(type.value(), StandardCharsets.UTF_8)).isEqualTo(ProductChangedEvent.class.getName());
+        }
+        assertThat(versions).containsExactly(1L, 2L, 3L);
+
+        assertThat(meterRegistry.get("kafka.producer.send").tag("topic", topic).tag("outcome", "success").timer().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void eventWithoutAKeyIsRefused() {
+        assertThatThrownBy(() -> eventPublisher.publish("publisher-test-" + UUID.randomUUID(), null, event(1L, 1L)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void topicOverridesGetTheirOwnIdempotentProducer() throws Exception {
+        String topic = "publisher-test-" + UUID.randomUUID();
+        KafkaProducerProperties.Topic overrides = new KafkaProducerProperties.Topic();
+        overrides.setCompressionType("zstd");
+        overrides.setLinger(Duration.ofMillis(37));
+        producerProperties.getTopics().put(topic, overrides);
+        try {
+            eventPublisher.publish(topic, "7", event(7L, 1L)).get(30, TimeUnit.SECONDS);
+        } finally {
+            producerProperties.getTopics().remove(topic);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Object, DefaultKafkaProducerFactory<String, Object>> factories =
+                (Map<Object, DefaultKafkaProducerFactory<String, Object>>) ReflectionTestUtils.getField(eventPublisher, "factories");
+        Map<String, Object> config = factories.values().stream()
+                .map(DefaultKafkaProducerFactory::getConfigurationProperties)
+                .filter(properties -> Integer.valueOf(37).equals(properties.get(ProducerConfig.LINGER_MS_CONFIG)))
+                .findFirst()
+                .orElseThrow();
+        assertThat(config)
+                .containsEntry(ProducerConfig.COMPRESSION_TYPE_CONFIG, "zstd")
+                .containsEntry(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true)
+                .containsEntry(ProducerConfig.ACKS_CONFIG, "all");
+    }
+
+    private List<ConsumerRecord<String, String>> consume(String topic, int count) {
+        Map<String, Object> config = Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBootstrapServers(),
+                ConsumerConfig.GROUP_ID_CONFIG, "publisher-test-" + UUID.randomUUID(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        try (KafkaConsumer<String, String> consumer =
+                     new KafkaConsumer<>(config, new StringDeserializer(), new StringDeserializer())) {
+            consumer.subscribe(List.of(topic));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (records.size() < count && System.currentTimeMillis() < deadline) {
+                consumer.poll(Duration.ofMillis(500)).forEach(records::add);
+            }
+        }
+        return records;
+    }
+
+    private static ProductChangedEvent event(Long productId, long version) {
+        return ProductChangedEvent.builder()
+                .eventType(ProductChangedEvent.STOCK_CHANGED)
+                .productId(productId)
+                .version(version)
+                .build();
+    }
+}
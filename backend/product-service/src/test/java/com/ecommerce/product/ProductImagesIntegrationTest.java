@@ -0,0 +1,57 @@
+package com.ecommerce.product;
+
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Images des listes de produits : chargées par lot en une requête, dans l'ordre de chaque liste.
+ */
+class ProductImagesIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void listLoadsTheImagesOfAllProductsInOneQueryAndInOrder() {
+        // Ordre volontairement non alphabétique : seul le rang stocké peut le restituer
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(productRepository.save(Product.builder()
+                    .name("Produit illustré " + i)
+                    .price(new BigDecimal("9.90"))
+                    .stockQuantity(1)
+                    .images(new ArrayList<>(List.of("c-" + i + ".jpg", "a-" + i + ".jpg", "b-" + i + ".jpg")))
+                    .build()).getId());
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<ProductDto> products = productService.getProductsByIds(ids);
+
+        // Les produits, puis leurs images : 2 requêtes quel que soit leur nombre
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(products).hasSize(5).allSatisfy(product -> {
+            int i = ids.indexOf(product.getId());
+            assertThat(product.getImages()).containsExactly("c-" + i + ".jpg", "a-" + i + ".jpg", "b-" + i + ".jpg");
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecommerce.product;
+
+import com.ecommerce.product.dto.ProductCursorPage;
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.entity.Category;
+import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.repository.CategoryRepository;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductKeysetPaginationIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private Long categoryId;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        // Catégorie propre au test : les conteneurs sont partagés entre les classes
+        Category category = categoryRepository.save(Category.builder().name("Keyset " + System.nanoTime()).build());
+        categoryId = category.getId();
+
+        // Prix en double : l'id départage les égalités
+        products = new ArrayList<>();
+        String[] prices = {"10.00", "5.00", "10.00", "7.50", "5.00", "12.00", "10.00"};
+        for (int i = 0; i < prices.length; i++) {
+            products.add(productRepository.save(Product.builder()
+                    .name("Produit " + (char) ('A' + i))
+                    .price(new BigDecimal(prices[i]))
+                    .stockQuantity(1)
+                    .category(category)
+                    .build()));
+        }
+    }
+
+    @Test
+    void walksAllPagesByPriceWithoutGapsOrDuplicates() {
+        List<Long> expected = products.stream()
+                .sorted(Comparator.comparing(Product::getPrice).thenComparing(Product::getId))
+                .map(Product::getId)
+                .toList();
+
+        assertThat(walk(Sort.by("price"), 2)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void walksAllPagesByPriceDescending() {
+        List<Long> expected = products.stream()
+                .sorted(Comparator.comparing(Product::getPrice).thenComparing(Product::getId).reversed())
+                .map(Product::getId)
+                .toList();
+
+        assertThat(walk(Sort.by(Sort.Direction.DESC, "price"), 3)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void walksAllPagesByName() {
+        List<Long> expected = products.stream()
+                .sorted(Comparator.comparing(Product::getName).thenComparing(Product::getId))
+                .map(Product::getId)
+                .toList();
+
+        assertThat(walk(Sort.by("name"), 4)).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        ProductCursorPage page = productService.getProductsAfter(
+                categoryId, null, null, null, null, Sort.by("id"), products.size());
+
+        assertThat(page.getSize()).isEqualTo(products.size());
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void rejectsCursorForAnotherSort() {
+        ProductCursorPage first = productService.getProductsAfter(
+                categoryId, null, null, null, null, Sort.by("price"), 2);
+
+        assertThatThrownBy(() -> productService.getProductsAfter(
+                categoryId, null, null, null, first.getNextCursor(), Sort.by("name"), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductsAfter(
+                categoryId, null, null, null, "not-a-cursor", Sort.unsorted(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Long> walk(Sort sort, int size) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductCursorPage page = productService.getProductsAfter(categoryId, null, null, null, cursor, sort, size);
+            page.getContent().stream().map(ProductDto::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+}
@@ -0,0 +1,139 @@
+package com.ecommerce.product;
+
+import com.ecommerce.product.entity.Category;
+import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.repository.CategoryRepository;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.ProductPopularityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Classements de popularité : décroissance vers l'avant, déduplication par événement,
+ * renormalisation relative à l'origine stockée dans Redis et changement de catégorie.
+ */
+class ProductPopularityIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String ORIGIN_KEY = "popularity:origin";
+
+    @Autowired
+    private ProductPopularityService popularityService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private long halfLifeMillis;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        halfLifeMillis = Math.round((double) ReflectionTestUtils.getField(popularityService, "halfLifeHours") * 3_600_000);
+        // Catégorie propre au test : les conteneurs sont partagés entre les classes
+        category = categoryRepository.save(Category.builder().name("Popularité " + System.nanoTime()).build());
+    }
+
+    @Test
+    void firstSaleSetsTheOriginToNow() {
+        stringRedisTemplate.delete(ORIGIN_KEY);
+        Long productId = product(category);
+        long before = System.currentTimeMillis();
+
+        popularityService.recordSale(UUID.randomUUID().toString(), Instant.now(), Map.of(productId, 3));
+
+        long origin = Long.parseLong(stringRedisTemplate.opsForValue().get(ORIGIN_KEY));
+        assertThat(origin).isBetween(before, System.currentTimeMillis());
+        // Vente à l'origine : poids 1, le score est la quantité
+        assertThat(score(category, productId)).isCloseTo(3.0, within(0.01));
+    }
+
+    @Test
+    void recentSaleWeighsTwiceASaleOneHalfLifeOlder() {
+        Long recent = product(category);
+        Long older = product(category);
+        Instant now = Instant.now();
+
+        popularityService.recordSale(UUID.randomUUID().toString(), now, Map.of(recent, 1));
+        popularityService.recordSale(UUID.randomUUID().toString(), now.minusMillis(halfLifeMillis), Map.of(older, 1));
+
+        assertThat(score(category, recent) / score(category, older)).isCloseTo(2.0, within(1e-9));
+        assertThat(popularityService.topProducts(category.getId(), 10)).containsExactly(recent, older);
+    }
+
+    @Test
+    void redeliveredEventIsCountedOnce() {
+        Long productId = product(category);
+        String eventId = UUID.randomUUID().toString();
+        Instant soldAt = Instant.now();
+
+        popularityService.recordSale(eventId, soldAt, Map.of(productId, 2));
+        double counted = score(category, productId);
+        popularityService.recordSale(eventId, soldAt, Map.of(productId, 2));
+
+        assertThat(score(category, productId)).isEqualTo(counted);
+    }
+
+    @Test
+    void renormalizationAdvancesTheOriginAndKeepsTheRanking() {
+        Long best = product(category);
+        Long second = product(category);
+        // Origine vieille de 40 demi-vies : les poids des nouvelles ventes valent environ 2^40
+        long origin = System.currentTimeMillis() - 40 * halfLifeMillis;
+        stringRedisTemplate.opsForValue().set(ORIGIN_KEY, String.valueOf(origin));
+        Instant now = Instant.now();
+        popularityService.recordSale(UUID.randomUUID().toString(), now, Map.of(best, 5));
+        popularityService.recordSale(UUID.randomUUID().toString(), now, Map.of(second, 2));
+        assertThat(score(category, best)).isGreaterThan(Math.pow(2, 39));
+
+        popularityService.renormalizeScores();
+
+        assertThat(Long.parseLong(stringRedisTemplate.opsForValue().get(ORIGIN_KEY)))
+                .isEqualTo(origin + 40 * halfLifeMillis);
+        assertThat(score(category, best)).isCloseTo(5.0, within(0.01));
+        assertThat(score(category, second)).isCloseTo(2.0, within(0.01));
+        assertThat(popularityService.topProducts(category.getId(), 10)).containsExactly(best, second);
+    }
+
+    @Test
+    void movedProductTakesItsScoreToTheNewCategory() {
+        Category target = categoryRepository.save(Category.builder().name("Popularité " + System.nanoTime()).build());
+        Long productId = product(category);
+        popularityService.recordSale(UUID.randomUUID().toString(), Instant.now(), Map.of(productId, 4));
+        double counted = score(category, productId);
+
+        popularityService.moveCategory(productId, category.getId(), target.getId());
+
+        assertThat(popularityService.topProducts(category.getId(), 10)).isEmpty();
+        assertThat(score(target, productId)).isEqualTo(counted);
+    }
+
+    private Long product(Category category) {
+        return productRepository.save(Product.builder()
+                .name("Produit populaire")
+                .price(new BigDecimal("15.00"))
+                .stockQuantity(10)
+                .category(category)
+                .build()).getId();
+    }
+
+    private double score(Category category, Long productId) {
+        return stringRedisTemplate.opsForZSet()
+                .score("popularity:category:" + category.getId(), String.valueOf(productId));
+    }
+}
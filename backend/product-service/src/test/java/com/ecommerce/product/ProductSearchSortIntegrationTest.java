@@ -0,0 +1,116 @@
+package com.ecommerce.product;
+
+import com.ecommerce.product.dto.CreateProductRequest;
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Recherche triée sur une clé que l'index ne sait pas ordonner : la base trie les IDs de l'index,
+ * par tranches quand ils sont trop nombreux pour une seule requête, sans repli sur LIKE.
+ */
+class ProductSearchSortIntegrationTest extends AbstractIntegrationTest {
+
+    // Tranches de 5 IDs pour 7 résultats : deux tranches, puis une requête sur leurs candidats
+    private static final int CHUNK = 5;
+
+    @Autowired
+    private ProductService productService;
+
+    private Object maxSortedSearchIds;
+    private String term;
+    private List<ProductDto> products;
+
+    @BeforeEach
+    void setUp() {
+        maxSortedSearchIds = ReflectionTestUtils.getField(target(), "maxSortedSearchIds");
+
+        // Terme propre au test : les conteneurs sont partagés entre les classes
+        term = "tri" + System.nanoTime();
+        products = new ArrayList<>();
+        int[] stocks = {4, 9, 4, 1, 9, 6, 12};
+        for (int i = 0; i < stocks.length; i++) {
+            // Le dernier produit ne porte le terme que dans sa description
+            boolean last = i == stocks.length - 1;
+            CreateProductRequest request = new CreateProductRequest();
+            request.setName(last ? "Produit " + i : "Produit " + term + " " + i);
+            request.setDescription(last ? "Description " + term : "Description " + i);
+            request.setPrice(new BigDecimal("10.00"));
+            request.setStockQuantity(stocks[i]);
+            request.setImages(List.of());
+            products.add(productService.createProduct(request));
+        }
+    }
+
+    @AfterEach
+    void restoreChunkSize() {
+        ReflectionTestUtils.setField(target(), "maxSortedSearchIds", maxSortedSearchIds);
+    }
+
+    @Test
+    void chunkedSortMatchesASingleQuerySort() {
+        Sort sort = Sort.by(Sort.Direction.DESC, "stockQuantity");
+        // Stock en double : l'id départage les égalités
+        List<Long> expected = products.stream()
+                .sorted(Comparator.comparing(ProductDto::getStockQuantity).reversed().thenComparing(ProductDto::getId))
+                .map(ProductDto::getId)
+                .toList();
+
+        List<Long> unchunked = ids(productService.getAllProducts(null, null, null, term, PageRequest.of(0, 7, sort)));
+        assertThat(unchunked).containsExactlyElementsOf(expected);
+
+        ReflectionTestUtils.setField(target(), "maxSortedSearchIds", CHUNK);
+        Page<ProductDto> first = productService.getAllProducts(null, null, null, term, PageRequest.of(0, 2, sort));
+        Page<ProductDto> second = productService.getAllProducts(null, null, null, term, PageRequest.of(1, 2, sort));
+
+        assertThat(ids(first)).containsExactlyElementsOf(expected.subList(0, 2));
+        assertThat(ids(second)).containsExactlyElementsOf(expected.subList(2, 4));
+        assertThat(second.getTotalElements()).isEqualTo(products.size());
+    }
+
+    @Test
+    void chunkedSortKeepsTheIndexSemantics() {
+        // Le LIKE de repli ne cherchait que dans le nom : le produit trouvé par sa description disparaissait
+        ReflectionTestUtils.setField(target(), "maxSortedSearchIds", CHUNK);
+        Sort sort = Sort.by(Sort.Direction.DESC, "stockQuantity").and(Sort.by("createdAt"));
+
+        Page<ProductDto> page = productService.getAllProducts(null, null, null, term, PageRequest.of(0, 2, sort));
+
+        assertThat(ids(page)).first().isEqualTo(products.get(products.size() - 1).getId());
+        assertThat(page.getTotalElements()).isEqualTo(products.size());
+    }
+
+    @Test
+    void pagesBeyondTheChunkSizeAreRejected() {
+        ReflectionTestUtils.setField(target(), "maxSortedSearchIds", CHUNK);
+
+        assertThatThrownBy(() -> productService.getAllProducts(null, null, null, term,
+                PageRequest.of(2, 2, Sort.by("stockQuantity"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Le service est proxifié (@Transactional) : le champ est sur l'instance cible
+    private Object target() {
+        return AopTestUtils.getTargetObject(productService);
+    }
+
+    private static List<Long> ids(Page<ProductDto> page) {
+        return page.getContent().stream().map(ProductDto::getId).toList();
+    }
+}
@@ -0,0 +1,191 @@
+package com.ecommerce.product;
+
+import com.ecommerce.product.dto.StockItemRequest;
+import com.ecommerce.product.dto.StockReservationDto;
+import com.ecommerce.product.dto.StockReservationRequest;
+import com.ecommerce.product.dto.UpdateProductRequest;
+import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.ProductService;
+import com.ecommerce.product.service.StockReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockReservationIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    void commitDecrementsDatabaseStockOnce() {
+        Long productId = product(10);
+        StockReservationDto reservation = reserve("checkout-1", null, productId, 3);
+
+        assertThat(reservationService.commit(reservation.getReservationId(), "checkout-1")).isTrue();
+        assertThat(reservationService.commit(reservation.getReservationId(), "checkout-1")).isTrue();
+
+        assertThat(databaseStock(productId)).isEqualTo(7);
+    }
+
+    @Test
+    void reservationHoldsStockUntilReleased() {
+        Long productId = product(5);
+        StockReservationDto reservation = reserve("checkout-1", null, productId, 4);
+
+        assertThatThrownBy(() -> reserve("checkout-2", null, productId, 2))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Stock insuffisant");
+
+        assertThat(reservationService.release(reservation.getReservationId(), "checkout-1")).isTrue();
+        assertThat(reservationService.release(reservation.getReservationId(), "checkout-1")).isFalse();
+
+        reserve("checkout-2", null, productId, 5);
+        assertThat(databaseStock(productId)).isEqualTo(5);
+    }
+
+    @Test
+    void reservationIsMultiProductAllOrNothing() {
+        Long plenty = product(10);
+        Long scarce = product(1);
+
+        StockReservationRequest request = new StockReservationRequest();
+        request.setItems(List.of(new StockItemRequest(plenty, 5), new StockItemRequest(scarce, 2)));
+        request.setOwner("checkout-1");
+        assertThatThrownBy(() -> reservationService.reserve(request)).isInstanceOf(IllegalStateException.class);
+
+        // Rien n'a été retenu sur le premier produit
+        reserve("checkout-2", null, plenty, 10);
+    }
+
+    @Test
+    void onlyTheOwnerCanCommitOrRelease() {
+        Long productId = product(3);
+        StockReservationDto reservation = reserve("checkout-1", null, productId, 1);
+
+        assertThatThrownBy(() -> reservationService.commit(reservation.getReservationId(), "checkout-2"))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> reservationService.release(reservation.getReservationId(), "checkout-2"))
+                .isInstanceOf(AccessDeniedException.class);
+
+        assertThat(reservationService.release(reservation.getReservationId(), "checkout-1")).isTrue();
+    }
+
+    @Test
+    void expiredReservationIsReleasedAndCannotBeCommitted() throws InterruptedException {
+        Long productId = product(2);
+        StockReservationDto reservation = reserve("checkout-1", 1L, productId, 2);
+
+        Thread.sleep(1_100);
+        reservationService.releaseExpiredReservations();
+
+        assertThatThrownBy(() -> reservationService.commit(reservation.getReservationId(), "checkout-1"))
+                .isInstanceOf(IllegalStateException.class);
+        reserve("checkout-2", null, productId, 2);
+        assertThat(databaseStock(productId)).isEqualTo(2);
+    }
+
+    @Test
+    void adminStockUpdateRacingWithStockChangesKeepsTheCounterInSync() throws Exception {
+        Long productId = product(20);
+        // Compteur disponible initialisé depuis la base
+        StockReservationDto reservation = reserve("checkout-1", null, productId, 1);
+        reservationService.release(reservation.getReservationId(), "checkout-1");
+
+        UpdateProductRequest update = new UpdateProductRequest();
+        update.setStockQuantity(50);
+        List<Callable<Object>> calls = new ArrayList<>();
+        calls.add(() -> productService.updateProduct(productId, update));
+        for (int i = 0; i < 10; i++) {
+            calls.add(() -> { productService.updateStock(productId, 1); return null; });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(calls.size());
+        try {
+            for (Future<Object> call : executor.invokeAll(calls, 30, TimeUnit.SECONDS)) {
+                call.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Sans réservation en cours, le disponible est le stock en base : aucun delta calculé sur une lecture périmée
+        int stock = databaseStock(productId);
+        assertThat(stock).isBetween(50, 60);
+        assertThat(stringRedisTemplate.opsForValue().get("stock:available:" + productId)).isEqualTo(String.valueOf(stock));
+    }
+
+    @Test
+    void reconciliationRestoresTheAvailableCounterFromTheReservedOne() {
+        Long productId = product(10);
+        StockReservationDto reservation = reserve("checkout-1", null, productId, 3);
+        // Dérive laissée par un crash entre la base et Redis
+        stringRedisTemplate.opsForValue().set("stock:available:" + productId, "2");
+
+        reservationService.reconcileAvailableCounters();
+
+        assertThat(stringRedisTemplate.opsForValue().get("stock:available:" + productId)).isEqualTo("7");
+        assertThat(reservationService.commit(reservation.getReservationId(), "checkout-1")).isTrue();
+        // Commit clôturé : plus compté comme en cours, le compteur suit la base
+        assertThat(stringRedisTemplate.hasKey("stock:committing:" + productId)).isFalse();
+        assertThat(stringRedisTemplate.opsForValue().get("stock:available:" + productId)).isEqualTo("7");
+        assertThat(databaseStock(productId)).isEqualTo(7);
+    }
+
+    @Test
+    void reconciliationSkipsProductsWithACommitInProgress() {
+        Long productId = product(10);
+        reserve("checkout-1", null, productId, 3);
+        stringRedisTemplate.opsForValue().set("stock:available:" + productId, "2");
+        // Commit pris en charge, base décrémentée mais compteur réservé pas encore clôturé
+        stringRedisTemplate.opsForValue().set("stock:committing:" + productId, "1");
+        try {
+            reservationService.reconcileAvailableCounters();
+
+            assertThat(stringRedisTemplate.opsForValue().get("stock:available:" + productId)).isEqualTo("2");
+        } finally {
+            stringRedisTemplate.delete("stock:committing:" + productId);
+        }
+    }
+
+    private StockReservationDto reserve(String owner, Long ttlSeconds, Long productId, int quantity) {
+        StockReservationRequest request = new StockReservationRequest();
+        request.setItems(List.of(new StockItemRequest(productId, quantity)));
+        request.setTtlSeconds(ttlSeconds);
+        request.setOwner(owner);
+        return reservationService.reserve(request);
+    }
+
+    private Long product(int stock) {
+        return productRepository.save(Product.builder()
+                .name("Produit réservé")
+                .price(new BigDecimal("19.90"))
+                .stockQuantity(stock)
+                .build()).getId();
+    }
+
+    private int databaseStock(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getStockQuantity();
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecommerce.product.cache;
+
+import com.ecommerce.product.AbstractIntegrationTest;
+import com.ecommerce.product.dto.CreateCategoryRequest;
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.dto.UpdateProductRequest;
+import com.ecommerce.product.entity.Category;
+import com.ecommerce.product.entity.Product;
+import com.ecommerce.product.repository.CategoryRepository;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.CategoryService;
+import com.ecommerce.product.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Invalidation ciblée : la mise à jour d'un produit ou d'une catégorie évince les entrées qui les contiennent,
+ * et seulement elles. Les entités sont écrites par les repositories : une création par les services pose
+ * des marques d'invalidation qui évinceraient aussitôt les entrées du test.
+ */
+class CacheDependencyTrackerIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CacheDependencyTracker cacheDependencies;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private String term;
+    private Category category;
+    private ProductDto product;
+    private ProductDto other;
+
+    @BeforeEach
+    void setUp() {
+        // Marque globale des recherches, laissée par les créations des autres classes de test
+        stringRedisTemplate.delete("cache:deps:search-keys:evicted");
+
+        term = "dep" + System.nanoTime();
+        category = categoryRepository.save(Category.builder().name("Catégorie " + term).build());
+        product = dto(productRepository.save(Product.builder()
+                .name("Lampe " + term).price(new BigDecimal("10.00")).stockQuantity(5).category(category).build()));
+        other = dto(productRepository.save(Product.builder()
+                .name("Autre " + term).price(new BigDecimal("10.00")).stockQuantity(5).build()));
+    }
+
+    @Test
+    void productUpdateEvictsTheEntriesThatContainIt() {
+        searchResults().put(term, List.of(product, other));
+        searchResults().put("autre " + term, List.of(other));
+
+        UpdateProductRequest update = new UpdateProductRequest();
+        update.setPrice(new BigDecimal("12.00"));
+        productService.updateProduct(product.getId(), update);
+
+        assertThat(searchResults().get(term)).isNull();
+        assertThat(searchResults().get("autre " + term)).isNotNull();
+    }
+
+    @Test
+    void categoryUpdateEvictsTheProductsThatDisplayItsName() {
+        productDetails().put(product.getId(), product);
+        searchResults().put(term, List.of(product));
+        productDetails().put(other.getId(), other);
+
+        categoryService.updateCategory(category.getId(), new CreateCategoryRequest("Renommée " + term, null, null));
+
+        assertThat(productDetails().get(product.getId())).isNull();
+        assertThat(searchResults().get(term)).isNull();
+        assertThat(productDetails().get(other.getId())).isNotNull();
+    }
+
+    @Test
+    void entryLoadedBeforeAnEvictionOfItsDependenciesIsDropped() {
+        long loadStartedAt = System.currentTimeMillis() - 5_000;
+        cacheDependencies.evictProduct(other.getId());
+
+        // Écrite après l'éviction mais calculée avant : évincée dès son enregistrement
+        searchResults().put("autre " + term, List.of(other));
+        cacheDependencies.afterPut(CacheDependencyTracker.SEARCH_RESULTS, "autre " + term, List.of(other), loadStartedAt);
+
+        assertThat(searchResults().get("autre " + term)).isNull();
+    }
+
+    private Cache searchResults() {
+        return cacheManager.getCache(CacheDependencyTracker.SEARCH_RESULTS);
+    }
+
+    private Cache productDetails() {
+        return cacheManager.getCache(CacheDependencyTracker.PRODUCT_DETAILS);
+    }
+
+    private static ProductDto dto(Product product) {
+        return ProductDto.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .price(product.getPrice())
+                .stockQuantity(product.getStockQuantity())
+                .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
+                .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+                .images(List.of())
+                .build();
+    }
+}
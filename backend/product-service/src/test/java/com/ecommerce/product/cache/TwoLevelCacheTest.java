@@ -0,0 +1,147 @@
+package com.ecommerce.product.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Near cache devant un cache distant partagé (ConcurrentMapCache à la place de Redis) :
+ * single-flight, chargements invalidés en cours de route, invalidation entre réplicas et rafraîchissement anticipé.
+ */
+class TwoLevelCacheTest {
+
+    private static final String CACHE = "productDetails";
+
+    // Cache distant partagé par les réplicas simulés
+    private final ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLoadsOfOneKeyCallTheLoaderOnce() throws Exception {
+        Cache cache = manager(mock(StringRedisTemplate.class), 0).getCache(CACHE);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "valeur";
+        };
+
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            calls.add(executor.submit(() -> cache.get(1L, loader)));
+        }
+        // Laisse les appelants rejoindre le chargement en cours
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> call : calls) {
+            assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo("valeur");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void loadStartedBeforeAnEvictDoesNotRepopulateEitherLevel() throws Exception {
+        Cache cache = manager(mock(StringRedisTemplate.class), 0).getCache(CACHE);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> stale = executor.submit(() -> cache.get(2L, () -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "ancienne";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        cache.evict(2L);
+        release.countDown();
+
+        // L'appelant reçoit sa valeur, mais elle n'est mise en cache ni en L2 ni en L1
+        assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo("ancienne");
+        assertThat(remote.getCache(CACHE).get(2L)).isNull();
+        assertThat(cache.get(2L, () -> "nouvelle")).isEqualTo("nouvelle");
+    }
+
+    @Test
+    void evictOnOneReplicaDropsTheNearCacheOfTheOther() {
+        StringRedisTemplate channelA = mock(StringRedisTemplate.class);
+        StringRedisTemplate channelB = mock(StringRedisTemplate.class);
+        TwoLevelCacheManager replicaA = manager(channelA, 0);
+        TwoLevelCacheManager replicaB = manager(channelB, 0);
+        // Le canal pub/sub : chaque publication est remise à l'autre réplica
+        forward(channelA, replicaB);
+        forward(channelB, replicaA);
+
+        Cache cacheA = replicaA.getCache(CACHE);
+        Cache cacheB = replicaB.getCache(CACHE);
+        cacheA.put(3L, "v1");
+        assertThat(cacheB.get(3L).get()).isEqualTo("v1");
+
+        // Écriture hors des réplicas : B sert encore sa copie L1
+        remote.getCache(CACHE).put(3L, "v2");
+        assertThat(cacheB.get(3L).get()).isEqualTo("v1");
+
+        cacheA.evict(3L);
+
+        assertThat(cacheB.get(3L)).isNull();
+    }
+
+    @Test
+    void failedEarlyRefreshServesTheCurrentValue() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        // Entrée à une minute de son expiration ; beta énorme : chaque lecture tente un rafraîchissement
+        when(redis.getExpire(anyString(), eq(TimeUnit.MILLISECONDS))).thenReturn(60_000L);
+        Cache cache = manager(redis, 1e9).getCache(CACHE);
+        assertThat(cache.get(4L, () -> "courante")).isEqualTo("courante");
+
+        AtomicInteger refreshes = new AtomicInteger();
+        String served = cache.get(4L, () -> {
+            refreshes.incrementAndGet();
+            throw new IllegalStateException("base indisponible");
+        });
+
+        assertThat(refreshes.get()).isEqualTo(1);
+        assertThat(served).isEqualTo("courante");
+        assertThat(remote.getCache(CACHE).get(4L).get()).isEqualTo("courante");
+    }
+
+    private TwoLevelCacheManager manager(StringRedisTemplate redis, double earlyRefreshBeta) {
+        return new TwoLevelCacheManager(remote, redis, 100, Duration.ofMinutes(1), earlyRefreshBeta, Duration.ofSeconds(5));
+    }
+
+    private static void forward(StringRedisTemplate channel, TwoLevelCacheManager subscriber) {
+        doAnswer(invocation -> {
+            subscriber.onMessage(new DefaultMessage(
+                    TwoLevelCacheManager.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    invocation.<String>getArgument(1).getBytes(StandardCharsets.UTF_8)), null);
+            return 1L;
+        }).when(channel).convertAndSend(eq(TwoLevelCacheManager.INVALIDATION_CHANNEL), anyString());
+    }
+}
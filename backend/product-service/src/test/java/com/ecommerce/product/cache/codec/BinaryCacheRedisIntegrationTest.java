@@ -0,0 +1,101 @@
+package com.ecommerce.product.cache.codec;
+
+import com.ecommerce.product.AbstractIntegrationTest;
+import com.ecommerce.product.config.RedisConfig;
+import com.ecommerce.product.dto.ProductDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryCacheRedisIntegrationTest extends AbstractIntegrationTest {
+
+    private static final AtomicLong IDS = new AtomicLong(System.currentTimeMillis());
+
+    private final GenericJackson2JsonRedisSerializer json = RedisConfig.jsonCacheSerializer();
+    private final BinaryCacheSerializer binary = RedisConfig.binaryCacheSerializer(json);
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void binaryEntriesSurviveTheRoundTripThroughRedis() {
+        ProductDto product = product(IDS.incrementAndGet());
+        List<ProductDto> products = new ArrayList<>(List.of(product, product(IDS.incrementAndGet())));
+
+        byte[] productBytes = binary.serialize(product);
+        byte[] listBytes = binary.serialize(products);
+        write("codec-test::product", productBytes);
+        write("codec-test::list", listBytes);
+
+        byte[] storedProduct = read("codec-test::product");
+        assertThat(storedProduct[0] & 0xFF).isEqualTo(BinaryCacheSerializer.MAGIC);
+        assertThat(storedProduct).isEqualTo(productBytes);
+        assertThat(binary.deserialize(storedProduct)).isEqualTo(product);
+        assertThat(binary.deserialize(read("codec-test::list"))).isEqualTo(products);
+    }
+
+    @Test
+    void cacheReadsBinaryEntriesWrittenByAnotherReplica() {
+        long id = IDS.incrementAndGet();
+        ProductDto product = product(id);
+
+        // Entrée écrite par un réplica en format "binary" : le cache (écriture JSON par défaut) doit la relire
+        write("productDetails::" + id, binary.serialize(product));
+
+        Cache cache = cacheManager.getCache("productDetails");
+        assertThat(cache).isNotNull();
+        assertThat(cache.get(id, ProductDto.class)).isEqualTo(product);
+    }
+
+    @Test
+    void cacheWritesStayReadableByTheBinaryReader() {
+        long id = IDS.incrementAndGet();
+        ProductDto product = product(id);
+
+        Cache cache = cacheManager.getCache("productDetails");
+        assertThat(cache).isNotNull();
+        cache.put(id, product);
+
+        assertThat(binary.deserialize(read("productDetails::" + id))).isEqualTo(product);
+    }
+
+    private void write(String key, byte[] value) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.stringCommands().set(key.getBytes(StandardCharsets.UTF_8), value);
+        }
+    }
+
+    private byte[] read(String key) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            return connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static ProductDto product(long id) {
+        return ProductDto.builder()
+                .id(id)
+                .name("Enceinte Bluetooth " + id)
+                .description("Étanche IPX7, 12 h d'autonomie.")
+                .price(new BigDecimal("59.90"))
+                .stockQuantity(40)
+                .categoryId(3L)
+                .categoryName("Électronique")
+                .images(new ArrayList<>(List.of("/api/files/products/" + id + ".jpg")))
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+package com.ecommerce.product.cache.codec;
+
+import com.ecommerce.product.config.RedisConfig;
+import com.ecommerce.product.dto.CategoryDto;
+import com.ecommerce.product.dto.ProductDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryCacheSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer json = RedisConfig.jsonCacheSerializer();
+    private final BinaryCacheSerializer binary = RedisConfig.binaryCacheSerializer(json);
+
+    @Test
+    void productRoundTrip() {
+        ProductDto product = product(42L);
+
+        byte[] bytes = binary.serialize(product);
+
+        assertThat(bytes[0] & 0xFF).isEqualTo(BinaryCacheSerializer.MAGIC);
+        assertThat(binary.deserialize(bytes)).isEqualTo(product);
+        assertThat(bytes.length).isLessThan(json.serialize(product).length);
+    }
+
+    @Test
+    void productWithNullFieldsRoundTrip() {
+        ProductDto product = ProductDto.builder().id(7L).name("Sans catégorie").build();
+
+        assertThat(binary.deserialize(binary.serialize(product))).isEqualTo(product);
+    }
+
+    @Test
+    void extremeValuesRoundTrip() {
+        ProductDto product = ProductDto.builder()
+                .id(Long.MAX_VALUE)
+                .name("")
+                .price(new BigDecimal("-12345678901234567890.000001"))
+                .stockQuantity(-1)
+                .categoryId(0L)
+                .images(new ArrayList<>())
+                .build();
+
+        assertThat(binary.deserialize(binary.serialize(product))).isEqualTo(product);
+    }
+
+    @Test
+    void priceKeepsItsScale() {
+        ProductDto product = ProductDto.builder().id(1L).price(new BigDecimal("10.50")).build();
+
+        ProductDto read = (ProductDto) binary.deserialize(binary.serialize(product));
+
+        assertThat(read.getPrice().scale()).isEqualTo(2);
+        assertThat(read.getPrice()).isEqualTo(new BigDecimal("10.50"));
+    }
+
+    @Test
+    void productListRoundTrip() {
+        List<ProductDto> products = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            products.add(product(id));
+        }
+
+        assertThat(binary.deserialize(binary.serialize(products))).isEqualTo(products);
+    }
+
+    @Test
+    void categoryRoundTrip() {
+        CategoryDto category = CategoryDto.builder().id(3L).name("Électronique").description("Audio, TV").parentId(1L).build();
+        List<CategoryDto> categories = List.of(category, CategoryDto.builder().id(4L).name("Audio").build());
+
+        assertThat(binary.deserialize(binary.serialize(category))).isEqualTo(category);
+        assertThat(binary.deserialize(binary.serialize(new ArrayList<>(categories)))).isEqualTo(categories);
+    }
+
+    @Test
+    void valuesWithoutCodecFallBackToJson() {
+        Map<String, Object> stats = new HashMap<>(Map.of("count", 12));
+        List<ProductDto> empty = new ArrayList<>();
+
+        byte[] statsBytes = binary.serialize(stats);
+        byte[] emptyBytes = binary.serialize(empty);
+
+        assertThat(statsBytes[0] & 0xFF).isNotEqualTo(BinaryCacheSerializer.MAGIC);
+        assertThat(binary.deserialize(statsBytes)).isEqualTo(stats);
+        assertThat(binary.deserialize(emptyBytes)).isEqualTo(empty);
+    }
+
+    @Test
+    void readsEntriesWrittenAsJson() {
+        ProductDto product = product(42L);
+        List<ProductDto> products = new ArrayList<>(List.of(product(1L), product(2L)));
+
+        assertThat(binary.deserialize(json.serialize(product))).isEqualTo(product);
+        assertThat(binary.deserialize(json.serialize(products))).isEqualTo(products);
+    }
+
+    @Test
+    void unknownTagOrNewerVersionIsAMiss() {
+        byte[] unknownTag = {(byte) BinaryCacheSerializer.MAGIC, 0x7F, 1, 0};
+        byte[] newerVersion = binary.serialize(product(42L));
+        newerVersion[2] = (byte) (newerVersion[2] + 1);
+
+        assertThat(binary.deserialize(unknownTag)).isNull();
+        assertThat(binary.deserialize(newerVersion)).isNull();
+    }
+
+    @Test
+    void emptyEntryIsNull() {
+        assertThat(binary.deserialize(null)).isNull();
+        assertThat(binary.deserialize(new byte[0])).isNull();
+    }
+
+    private static ProductDto product(long id) {
+        return ProductDto.builder()
+                .id(id)
+                .name("Casque audio sans fil " + id)
+                .description("Réduction de bruit active, 30 h d'autonomie, charge rapide USB-C.")
+                .price(new BigDecimal("129.99"))
+                .stockQuantity(250)
+                .categoryId(3L)
+                .categoryName("Électronique")
+                .images(new ArrayList<>(List.of("/api/files/products/" + id + "-front.jpg")))
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.ecommerce.product.search;
+
+import com.ecommerce.product.repository.ProductCursor;
+import com.ecommerce.product.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductSearchIndex index = new ProductSearchIndex(productRepository);
+
+    private long version;
+
+    @BeforeEach
+    void setUp() {
+        version = 0L;
+    }
+
+    @Test
+    void tokenizerNormalizesCaseAccentsAndSeparators() {
+        assertThat(SearchTokenizer.tokenize("Crème-brûlée, 2 PIÈCES !")).containsExactly("creme", "brulee", "2", "pieces");
+        assertThat(SearchTokenizer.tokenize("  ")).isEmpty();
+        assertThat(SearchTokenizer.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    void queryMatchesRegardlessOfCaseAndAccents() {
+        index(1L, "Été à l'Île", null, 1L, "10.00");
+
+        assertThat(index.search("ete ile")).containsExactly(1L);
+        assertThat(index.search("ÉTÉ")).containsExactly(1L);
+        assertThat(index.search("hiver")).isEmpty();
+    }
+
+    @Test
+    void allQueryTermsMustMatch() {
+        index(1L, "Chaise en chêne", null, 1L, "80.00");
+        index(2L, "Table", "Table avec chaise assortie", 1L, "250.00");
+
+        assertThat(index.search("chaise table")).containsExactly(2L);
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionMatches() {
+        index(1L, "Table", "Livrée avec une chaise", 1L, "250.00");
+        index(2L, "Chaise pliante", null, 1L, "40.00");
+
+        assertThat(index.search("chaise")).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void exactMatchesRankAbovePrefixMatches() {
+        index(1L, "Lampes de chevet", null, 1L, "30.00");
+        index(2L, "Lampe de bureau", null, 1L, "45.00");
+
+        assertThat(index.search("lampe")).containsExactly(2L, 1L);
+        // Préfixe d'un seul caractère : pas de recherche par préfixe
+        assertThat(index.search("l")).isEmpty();
+    }
+
+    @Test
+    void filtersOnCategoryAndPriceRange() {
+        index(1L, "Bol en grès", null, 1L, "12.00");
+        index(2L, "Bol en verre", null, 2L, "8.00");
+        index(3L, "Bol en céramique", null, 1L, "25.00");
+
+        assertThat(index.search("bol", 1L, null, null)).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.search("bol", null, new BigDecimal("10.00"), new BigDecimal("20.00"))).containsExactly(1L);
+    }
+
+    @Test
+    void updateReplacesTheTermsAndRemoveDropsTheProduct() {
+        index(1L, "Tapis rouge", null, 1L, "60.00");
+
+        index(1L, "Tapis bleu", null, 1L, "60.00");
+        assertThat(index.search("rouge")).isEmpty();
+        assertThat(index.search("bleu")).containsExactly(1L);
+
+        assertThat(index.remove(1L, ++version)).isTrue();
+        assertThat(index.search("tapis")).isEmpty();
+    }
+
+    @Test
+    void olderVersionsAreIgnored() {
+        assertThat(index.index(document(1L, "Vase bleu", "20.00"), 10L)).isTrue();
+        assertThat(index.index(document(1L, "Vase rouge", "20.00"), 5L)).isFalse();
+        assertThat(index.index(document(1L, "Vase vert", "20.00"), 10L)).isFalse();
+        assertThat(index.search("vase")).containsExactly(1L);
+        assertThat(index.search("bleu")).containsExactly(1L);
+
+        // La suppression laisse sa version : une mise à jour en retard ne fait pas réapparaître le produit
+        assertThat(index.remove(1L, 20L)).isTrue();
+        assertThat(index.index(document(1L, "Vase bleu", "20.00"), 15L)).isFalse();
+        assertThat(index.search("vase")).isEmpty();
+    }
+
+    @Test
+    void sortedSearchKeepsOnlyThePageAfterTheCursor() {
+        index(1L, "Coussin lin", null, 1L, "15.00");
+        index(2L, "Coussin velours", null, 1L, "25.00");
+        index(3L, "Coussin coton", null, 1L, "15.00");
+        index(4L, "Coussin soie", null, 1L, "40.00");
+
+        ProductSearchIndex.SortedPage first = index.searchSorted("coussin", null, null, null, "price", false, null, 2);
+        assertThat(first.ids()).containsExactly(1L, 3L);
+        assertThat(first.totalMatches()).isEqualTo(4);
+
+        ProductCursor after = new ProductCursor("price", false, 3L, "15.00");
+        assertThat(index.searchSorted("coussin", null, null, null, "price", false, after, 2).ids())
+                .containsExactly(2L, 4L);
+        assertThat(index.searchSorted("coussin", null, null, null, "name", true, null, 4).ids())
+                .containsExactly(2L, 4L, 1L, 3L);
+    }
+
+    @Test
+    void rebuildLoadsTheDatabaseInBatches() {
+        when(productRepository.findSearchDocumentsAfter(eq(0L), any()))
+                .thenReturn(List.of(document(1L, "Horloge murale", "35.00"), document(2L, "Horloge de table", "20.00")));
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.search("horloge")).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void failedRebuildLeavesTheIndexNotReady() {
+        // Index pas prêt : ProductService se replie sur la recherche en base
+        when(productRepository.findSearchDocumentsAfter(anyLong(), any())).thenThrow(new IllegalStateException("db down"));
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isFalse();
+    }
+
+    private void index(Long id, String name, String description, Long categoryId, String price) {
+        index.index(new ProductSearchDocument(id, name, description, categoryId, new BigDecimal(price)), ++version);
+    }
+
+    private static ProductSearchDocument document(Long id, String name, String price) {
+        return new ProductSearchDocument(id, name, null, 1L, new BigDecimal(price));
+    }
+}
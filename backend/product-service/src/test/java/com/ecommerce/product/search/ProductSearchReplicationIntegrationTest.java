@@ -0,0 +1,137 @@
+package com.ecommerce.product.search;
+
+import com.ecommerce.common.event.ProductChangedEvent;
+import com.ecommerce.product.AbstractIntegrationTest;
+import com.ecommerce.product.cache.CacheDependencyTracker;
+import com.ecommerce.product.dto.CreateProductRequest;
+import com.ecommerce.product.dto.ProductDto;
+import com.ecommerce.product.dto.UpdateProductRequest;
+import com.ecommerce.product.event.ProductEventPublisher;
+import com.ecommerce.product.listener.ProductSearchEventListener;
+import com.ecommerce.product.repository.ProductRepository;
+import com.ecommerce.product.service.ProductService;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Une écriture faite sur un réplica devient visible dans l'index de recherche d'un autre réplica.
+ * Le second réplica est simulé par un second index, alimenté par son propre groupe de consommateurs.
+ */
+class ProductSearchReplicationIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CacheDependencyTracker cacheDependencies;
+
+    @Autowired
+    private ConsumerFactory<String, ProductChangedEvent> productEventConsumerFactory;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    private ProductSearchIndex otherReplica;
+    private KafkaMessageListenerContainer<String, ProductChangedEvent> container;
+
+    @BeforeEach
+    void startOtherReplica() {
+        kafkaAdmin.createOrModifyTopics(new NewTopic(ProductEventPublisher.TOPIC, 1, (short) 1));
+        int partitions = kafkaAdmin.describeTopics(ProductEventPublisher.TOPIC)
+                .get(ProductEventPublisher.TOPIC).partitions().size();
+
+        otherReplica = new ProductSearchIndex(productRepository);
+        otherReplica.rebuild();
+        ProductSearchEventListener listener = new ProductSearchEventListener(otherReplica, cacheDependencies);
+
+        ContainerProperties properties = new ContainerProperties(ProductEventPublisher.TOPIC);
+        properties.setGroupId("product-service-search-test-" + UUID.randomUUID());
+        properties.setMessageListener((MessageListener<String, ProductChangedEvent>) record ->
+                listener.handleProductEvent(record.value()));
+        container = new KafkaMessageListenerContainer<>(productEventConsumerFactory, properties);
+        container.start();
+        // Groupe démarré à "latest" : attendre l'affectation avant d'écrire
+        ContainerTestUtils.waitForAssignment(container, partitions);
+    }
+
+    @AfterEach
+    void stopOtherReplica() {
+        container.stop();
+    }
+
+    @Test
+    void createUpdateAndDeleteReachTheOtherReplica() {
+        String created = "replicaa" + System.nanoTime();
+        ProductDto product = productService.createProduct(createRequest(created));
+        awaitTrue(() -> otherReplica.search(created).contains(product.getId()));
+
+        String renamed = "replicab" + System.nanoTime();
+        UpdateProductRequest update = new UpdateProductRequest();
+        update.setName(renamed);
+        productService.updateProduct(product.getId(), update);
+        awaitTrue(() -> otherReplica.search(renamed).contains(product.getId()));
+        assertThat(otherReplica.search(created)).doesNotContain(product.getId());
+
+        productService.deleteProduct(product.getId());
+        awaitTrue(() -> otherReplica.search(renamed).isEmpty());
+    }
+
+    @Test
+    void lateEventDoesNotOverwriteANewerVersion() {
+        ProductSearchDocument newer = new ProductSearchDocument(Long.MAX_VALUE - 1, "plus recent", null, null, BigDecimal.ONE);
+        ProductSearchDocument older = new ProductSearchDocument(Long.MAX_VALUE - 1, "plus ancien", null, null, BigDecimal.ONE);
+
+        assertThat(otherReplica.index(newer, 20L)).isTrue();
+        assertThat(otherReplica.index(older, 10L)).isFalse();
+        assertThat(otherReplica.search("recent")).containsExactly(newer.id());
+        assertThat(otherReplica.search("ancien")).isEmpty();
+
+        // Une suppression plus ancienne que l'écriture appliquée est aussi écartée
+        assertThat(otherReplica.remove(newer.id(), 15L)).isFalse();
+        assertThat(otherReplica.remove(newer.id(), 30L)).isTrue();
+        assertThat(otherReplica.index(older, 25L)).isFalse();
+        assertThat(otherReplica.search("ancien")).isEmpty();
+    }
+
+    private static CreateProductRequest createRequest(String name) {
+        CreateProductRequest request = new CreateProductRequest();
+        request.setName(name);
+        request.setDescription("Produit répliqué");
+        request.setPrice(new BigDecimal("19.90"));
+        request.setStockQuantity(5);
+        request.setImages(List.of());
+        return request;
+    }
+
+    private static void awaitTrue(Supplier<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.get()) {
+            assertThat(System.currentTimeMillis()).as("condition not met within 10 s").isLessThan(deadline);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
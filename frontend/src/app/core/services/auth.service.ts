@@ -44,6 +44,7 @@ export class AuthService {
         tap((response) => {
           this.saveAuthData(response);
           console.log('✅ Login réussi:', response.user);
+          this.cartService.mergeGuestCart().subscribe();
         })
       );
   }
@@ -58,6 +59,7 @@ export class AuthService {
         tap((response) => {
           this.saveAuthData(response);
           console.log('✅ Inscription réussie:', response.user);
+          this.cartService.mergeGuestCart().subscribe();
         })
       );
   }
@@ -18,6 +18,8 @@ import {
 })
 export class CartService {
   private readonly CART_API = environment.cartServiceUrl;
+  // Panier invité : identifiant de session généré côté client, fusionné à la connexion
+  private readonly GUEST_SESSION_KEY = 'cartSession';
 
   // BehaviorSubject pour le panier
   private cartSubject = new BehaviorSubject<Cart | null>(null);
@@ -28,30 +30,53 @@ export class CartService {
   public cartCount$ = this.cartCountSubject.asObservable();
 
   constructor(private http: HttpClient) {
-    // Charger le panier seulement si l'utilisateur est authentifié
-    if (this.isUserAuthenticated()) {
-      this.loadCart();
-    }
+    // Charger le panier de l'utilisateur, ou le panier invité s'il existe
+    this.loadCart();
   }
 
   /**
    * Vérifier si l'utilisateur est authentifié (via localStorage)
    */
   private isUserAuthenticated(): boolean {
-    return !!localStorage.getItem('token');
+    return !!localStorage.getItem('accessToken');
+  }
+
+  /**
+   * Identifiant de session du panier invité (créé au premier ajout)
+   */
+  private guestSessionId(): string {
+    let sessionId = localStorage.getItem(this.GUEST_SESSION_KEY);
+    if (!sessionId) {
+      sessionId = crypto.randomUUID();
+      localStorage.setItem(this.GUEST_SESSION_KEY, sessionId);
+    }
+    return sessionId;
+  }
+
+  /**
+   * URL et en-têtes du panier courant : utilisateur connecté ou invité
+   */
+  private cartUrl(): string {
+    return this.isUserAuthenticated() ? this.CART_API : `${this.CART_API}/guest`;
+  }
+
+  private cartOptions(): { headers?: Record<string, string> } {
+    return this.isUserAuthenticated()
+      ? {}
+      : { headers: { 'X-Cart-Session': this.guestSessionId() } };
   }
 
   /**
    * Charger le panier depuis le backend
    */
   loadCart(): void {
-    // Ne charger que si authentifié
-    if (!this.isUserAuthenticated()) {
+    // Invité sans panier : rien à charger
+    if (!this.isUserAuthenticated() && !localStorage.getItem(this.GUEST_SESSION_KEY)) {
       return;
     }
 
     this.http
-      .get<Cart>(`${this.CART_API}`)
+      .get<Cart>(this.cartUrl(), this.cartOptions())
       .pipe(
         catchError((error) => {
           // Ignorer silencieusement les erreurs 401 (non authentifié)
@@ -71,10 +96,38 @@ export class CartService {
    */
   getCart(): Observable<Cart> {
     return this.http
-      .get<Cart>(`${this.CART_API}`)
+      .get<Cart>(this.cartUrl(), this.cartOptions())
       .pipe(tap((cart) => this.updateCartState(cart)));
   }
 
+  /**
+   * Après connexion : fusionner le panier invité dans celui de l'utilisateur (une seule requête)
+   */
+  mergeGuestCart(): Observable<Cart | null> {
+    const sessionId = localStorage.getItem(this.GUEST_SESSION_KEY);
+    if (!sessionId) {
+      this.loadCart();
+      return of(null);
+    }
+
+    return this.http
+      .post<Cart>(`${this.CART_API}/merge`, null, {
+        headers: { 'X-Cart-Session': sessionId },
+      })
+      .pipe(
+        tap((cart) => {
+          localStorage.removeItem(this.GUEST_SESSION_KEY);
+          this.updateCartState(cart);
+          console.log('✅ Panier invité fusionné:', cart);
+        }),
+        catchError((error) => {
+          console.error('❌ Erreur fusion panier invité:', error);
+          this.loadCart();
+          return of(null);
+        })
+      );
+  }
+
   /**
    * Ajouter un produit au panier
    */
@@ -93,7 +146,7 @@ export class CartService {
       images,
     };
 
-    return this.http.post<Cart>(`${this.CART_API}/items`, request).pipe(
+    return this.http.post<Cart>(`${this.cartUrl()}/items`, request, this.cartOptions()).pipe(
       tap((cart) => {
         this.updateCartState(cart);
         console.log('✅ Produit ajouté au panier:', cart);
@@ -112,7 +165,7 @@ export class CartService {
     const request: UpdateCartItemRequest = { productId, quantity };
 
     return this.http
-      .put<Cart>(`${this.CART_API}/items/${productId}`, request)
+      .put<Cart>(`${this.cartUrl()}/items/${productId}`, request, this.cartOptions())
       .pipe(
         tap((cart) => {
           this.updateCartState(cart);
@@ -129,7 +182,7 @@ export class CartService {
    * Retirer un produit du panier
    */
   removeFromCart(productId: number): Observable<Cart> {
-    return this.http.delete<Cart>(`${this.CART_API}/items/${productId}`).pipe(
+    return this.http.delete<Cart>(`${this.cartUrl()}/items/${productId}`, this.cartOptions()).pipe(
       tap((cart) => {
         this.updateCartState(cart);
         console.log('✅ Produit retiré du panier:', cart);
@@ -201,7 +254,10 @@ export class CartService {
     const request: CheckoutRequest = { shippingAddress, paymentMethod };
 
     return this.http
-      .post<CheckoutResponse>(`${this.CART_API}/checkout`, request)
+      // Clé d'idempotence : un retry (gateway, load balancer) rejoue la même commande
+      .post<CheckoutResponse>(`${this.CART_API}/checkout`, request, {
+        headers: { 'Idempotency-Key': crypto.randomUUID() },
+      })
       .pipe(
         tap((response) => {
           if (response.success) {
@@ -315,7 +371,9 @@ export class CartService {
     };
 
     return this.http
-      .post<CheckoutResponse>(`${this.CART_API}/checkout/direct`, request)
+      .post<CheckoutResponse>(`${this.CART_API}/checkout/direct`, request, {
+        headers: { 'Idempotency-Key': crypto.randomUUID() },
+      })
       .pipe(
         tap((response) => {
           if (response.success) {
@@ -1,7 +1,7 @@
 import { Component, OnInit } from '@angular/core';
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Router } from '@angular/router';
 import { environment } from '../../../../environments/environment';
 import {
@@ -21,6 +21,10 @@ export class OrdersAdminComponent implements OnInit {
   orders: Order[] = [];
   filteredOrders: Order[] = [];
   isLoading = false;
+  isLoadingMore = false;
+  // Curseur de la page suivante (null : tout est chargé)
+  nextCursor: string | null = null;
+  statusCounts: Record<string, number> = {};
   statusFilter = '';
   searchTerm = ''; // New search term
 
@@ -28,6 +32,7 @@ export class OrdersAdminComponent implements OnInit {
   // Assurez-vous que environment.orderServiceUrl pointe vers http://localhost:8083/api
   // Fix: Use orderServiceUrl (/api/orders)
   private readonly ORDERS_API = `${environment.orderServiceUrl}`;
+  private readonly PAGE_SIZE = 50;
 
   constructor(private http: HttpClient, private router: Router) {}
 
@@ -35,17 +40,15 @@ export class OrdersAdminComponent implements OnInit {
     this.loadOrders();
   }
 
+  // Première page (la plus récente) ; le filtre de statut est appliqué côté serveur
   loadOrders() {
     this.isLoading = true;
-    // Fix: Call /all for admin view
-    this.http.get<Order[]>(`${this.ORDERS_API}/all`).subscribe({
-      next: (orders) => {
-        // Sort by date desc (newest first) by default
-        this.orders = orders.sort(
-          (a, b) =>
-            new Date(b.createdAt).getTime() - new Date(a.createdAt).getTime()
-        );
-        this.filterOrders(); // Apply filters immediately
+    this.loadStatusCounts();
+    this.fetchPage(null).subscribe({
+      next: (page) => {
+        this.orders = page.orders;
+        this.nextCursor = page.nextCursor;
+        this.filterOrders();
         this.isLoading = false;
       },
       error: (error) => {
@@ -55,15 +58,75 @@ export class OrdersAdminComponent implements OnInit {
     });
   }
 
+  loadMore() {
+    if (!this.nextCursor || this.isLoadingMore) return;
+    this.isLoadingMore = true;
+    this.fetchPage(this.nextCursor).subscribe({
+      next: (page) => {
+        this.orders = [...this.orders, ...page.orders];
+        this.nextCursor = page.nextCursor;
+        this.filterOrders();
+        this.isLoadingMore = false;
+      },
+      error: (error) => {
+        console.error('Erreur chargement commandes:', error);
+        this.isLoadingMore = false;
+      },
+    });
+  }
+
+  private fetchPage(cursor: string | null) {
+    let params = new HttpParams().set('limit', this.PAGE_SIZE);
+    if (this.statusFilter) params = params.set('status', this.statusFilter);
+    if (cursor) params = params.set('cursor', cursor);
+    return this.http.get<{ orders: Order[]; nextCursor: string | null }>(
+      `${this.ORDERS_API}/admin`,
+      { params }
+    );
+  }
+
+  // Compteurs globaux (toutes les commandes, pas seulement les pages chargées)
+  private loadStatusCounts() {
+    this.http.get<any>(`${this.ORDERS_API}/stats`).subscribe({
+      next: (stats) => {
+        this.statusCounts = {
+          PENDING: stats.pendingOrders ?? 0,
+          CONFIRMED: stats.confirmedOrders ?? 0,
+          PROCESSING: stats.processingOrders ?? 0,
+          SHIPPED: stats.shippedOrders ?? 0,
+          DELIVERED: stats.deliveredOrders ?? 0,
+        };
+      },
+      error: (error) => console.error('Erreur chargement statistiques:', error),
+    });
+  }
+
+  // Export complet côté serveur (toutes les pages, même filtre de statut)
+  exportOrders(format: 'CSV' | 'NDJSON') {
+    let params = new HttpParams().set('format', format);
+    if (this.statusFilter) params = params.set('status', this.statusFilter);
+    this.http
+      .get(`${this.ORDERS_API}/admin/export`, { params, responseType: 'blob' })
+      .subscribe({
+        next: (blob) => {
+          const url = URL.createObjectURL(blob);
+          const link = document.createElement('a');
+          link.href = url;
+          link.download = `commandes.${format === 'CSV' ? 'csv' : 'ndjson'}`;
+          link.click();
+          URL.revokeObjectURL(url);
+        },
+        error: (error) => {
+          console.error('Erreur export:', error);
+          alert("❌ Erreur lors de l'export");
+        },
+      });
+  }
+
   filterOrders() {
     let result = this.orders;
 
-    // 1. Status Filter
-    if (this.statusFilter && this.statusFilter !== '') {
-      result = result.filter((o) => o.status === this.statusFilter);
-    }
-
-    // 2. Search Filter (Order Number or User ID)
+    // Search Filter (pages déjà chargées) (Order Number or User ID)
     if (this.searchTerm && this.searchTerm.trim() !== '') {
       const term = this.searchTerm.toLowerCase().trim();
       result = result.filter(
@@ -112,7 +175,7 @@ export class OrdersAdminComponent implements OnInit {
   }
 
   getCountByStatus(status: string): number {
-    return this.orders.filter((o) => o.status === status).length;
+    return this.statusCounts[status] ?? 0;
   }
 
   formatPrice(price: number): string {
@@ -7,6 +7,7 @@ export interface Cart {
   subtotal: number;
   totalAmount: number;
   promoCode: string | null;
+  promoCodes?: string[];
   discount: number | null;
   createdAt: string;
   updatedAt: string;